@@ -0,0 +1,405 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.backends.cassandra.utils;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.james.metrics.api.Meter;
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.api.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Metrics;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.QueryTimeoutException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Records latency, in-flight count, timeouts and errors of every statement
+ * executed through an {@link #instrument(Session) instrumented session}.
+ *
+ * Metrics are tagged with the operation and the table of the statement, so
+ * that the load can be attributed to the DAO owning that table. Statements
+ * slower than a threshold are counted, and a sample of them is logged and kept
+ * with every bound or literal value replaced by a bind marker.
+ */
+public class CassandraQueryInstrumentation {
+
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS = 1000;
+    public static final long DEFAULT_SLOW_QUERY_SAMPLING_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final int SAMPLED_SLOW_QUERIES_CAPACITY = 32;
+
+    public static final String QUERY_METRIC = "cassandraQuery";
+    public static final String IN_FLIGHT_METRIC = "cassandraQueryInFlight";
+    public static final String TIMEOUT_METRIC = "cassandraQueryTimeouts";
+    public static final String ERROR_METRIC = "cassandraQueryErrors";
+    public static final String SLOW_QUERY_METRIC = "cassandraSlowQueries";
+    public static final String DRIVER_RETRY_METRIC = "cassandraDriverRetries";
+    public static final String TABLE_TAG = "table";
+    public static final String OPERATION_TAG = "operation";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CassandraQueryInstrumentation.class);
+
+    public static class Builder {
+        private final MetricFactory metricFactory;
+        private Optional<Long> slowQueryThresholdMillis;
+        private Optional<Long> slowQuerySamplingIntervalMillis;
+
+        private Builder(MetricFactory metricFactory) {
+            this.metricFactory = metricFactory;
+            slowQueryThresholdMillis = Optional.empty();
+            slowQuerySamplingIntervalMillis = Optional.empty();
+        }
+
+        public Builder withSlowQueryThreshold(long slowQueryThresholdMillis) {
+            this.slowQueryThresholdMillis = Optional.of(slowQueryThresholdMillis);
+
+            return this;
+        }
+
+        public Builder withSlowQuerySamplingInterval(long slowQuerySamplingIntervalMillis) {
+            this.slowQuerySamplingIntervalMillis = Optional.of(slowQuerySamplingIntervalMillis);
+
+            return this;
+        }
+
+        public CassandraQueryInstrumentation build() {
+            Preconditions.checkState(slowQueryThresholdMillis.orElse(0L) >= 0, "Slow query threshold should not be negative");
+            Preconditions.checkState(slowQuerySamplingIntervalMillis.orElse(0L) >= 0, "Slow query sampling interval should not be negative");
+
+            return new CassandraQueryInstrumentation(metricFactory,
+                slowQueryThresholdMillis.orElse(DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS),
+                slowQuerySamplingIntervalMillis.orElse(DEFAULT_SLOW_QUERY_SAMPLING_INTERVAL_MILLIS));
+        }
+    }
+
+    public static Builder builder(MetricFactory metricFactory) {
+        return new Builder(Preconditions.checkNotNull(metricFactory));
+    }
+
+    public static class SlowQuery {
+        private final String table;
+        private final String operation;
+        private final String query;
+        private final long elapsedMillis;
+
+        SlowQuery(StatementLabel label, String query, long elapsedMillis) {
+            this.table = label.table;
+            this.operation = label.operation;
+            this.query = query;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " on " + table + " took " + elapsedMillis + " ms: " + query;
+        }
+    }
+
+    private final MetricFactory metricFactory;
+    private final long slowQueryThresholdNanos;
+    private final long slowQuerySamplingIntervalNanos;
+    private final ConcurrentMap<String, StatementMetrics> metricsByPreparedQuery;
+    private final ConcurrentMap<StatementLabel, StatementMetrics> metricsByLabel;
+    private final ArrayDeque<SlowQuery> sampledSlowQueries;
+
+    private CassandraQueryInstrumentation(MetricFactory metricFactory, long slowQueryThresholdMillis, long slowQuerySamplingIntervalMillis) {
+        this.metricFactory = metricFactory;
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+        this.slowQuerySamplingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(slowQuerySamplingIntervalMillis);
+        this.metricsByPreparedQuery = new ConcurrentHashMap<>();
+        this.metricsByLabel = new ConcurrentHashMap<>();
+        this.sampledSlowQueries = new ArrayDeque<>(SAMPLED_SLOW_QUERIES_CAPACITY);
+    }
+
+    /**
+     * Wraps the given session so that every statement it executes is recorded.
+     * The retry count of the driver is also exposed when the cluster has its
+     * metrics enabled.
+     */
+    public Session instrument(Session session) {
+        registerDriverRetries(session.getCluster());
+        return new InstrumentedSession(session, this);
+    }
+
+    public List<SlowQuery> getSampledSlowQueries() {
+        synchronized (sampledSlowQueries) {
+            return ImmutableList.copyOf(sampledSlowQueries);
+        }
+    }
+
+    QueryTracker start(Statement statement) {
+        StatementMetrics metrics = metricsFor(statement);
+        metrics.inFlight.increment();
+        return new QueryTracker(statement, metrics, System.nanoTime());
+    }
+
+    private void registerDriverRetries(Cluster cluster) {
+        Metrics driverMetrics = cluster.getMetrics();
+        if (driverMetrics != null) {
+            Metrics.Errors errors = driverMetrics.getErrorMetrics();
+            metricFactory.gauge(MetricName.of(DRIVER_RETRY_METRIC), () -> errors.getRetries().getCount());
+        }
+    }
+
+    private StatementMetrics metricsFor(Statement statement) {
+        if (statement instanceof BoundStatement) {
+            String query = ((BoundStatement) statement).preparedStatement().getQueryString();
+            StatementMetrics metrics = metricsByPreparedQuery.get(query);
+            if (metrics == null) {
+                metrics = metricsFor(StatementLabel.parse(query));
+                metricsByPreparedQuery.putIfAbsent(query, metrics);
+            }
+            return metrics;
+        }
+        return metricsFor(StatementLabel.of(statement));
+    }
+
+    private StatementMetrics metricsFor(StatementLabel label) {
+        return metricsByLabel.computeIfAbsent(label, key -> new StatementMetrics(metricFactory, key));
+    }
+
+    private void sample(StatementMetrics metrics, Statement statement, long elapsedNanos) {
+        long now = System.nanoTime();
+        long lastSample = metrics.lastSampleNanos.get();
+        if (lastSample != 0 && now - lastSample < slowQuerySamplingIntervalNanos) {
+            return;
+        }
+        if (!metrics.lastSampleNanos.compareAndSet(lastSample, now)) {
+            return;
+        }
+        SlowQuery slowQuery = new SlowQuery(metrics.label, redactedQuery(statement), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        synchronized (sampledSlowQueries) {
+            if (sampledSlowQueries.size() == SAMPLED_SLOW_QUERIES_CAPACITY) {
+                sampledSlowQueries.removeFirst();
+            }
+            sampledSlowQueries.addLast(slowQuery);
+        }
+        LOGGER.warn("Slow Cassandra query: {}", slowQuery);
+    }
+
+    @VisibleForTesting
+    static String redactedQuery(Statement statement) {
+        if (statement instanceof BoundStatement) {
+            return ((BoundStatement) statement).preparedStatement().getQueryString().trim();
+        }
+        if (statement instanceof RegularStatement) {
+            return redact(((RegularStatement) statement).getQueryString()).trim();
+        }
+        if (statement instanceof BatchStatement) {
+            StringBuilder builder = new StringBuilder("BEGIN BATCH");
+            for (Statement inner : ((BatchStatement) statement).getStatements()) {
+                builder.append(' ').append(redactedQuery(inner));
+                if (builder.charAt(builder.length() - 1) != ';') {
+                    builder.append(';');
+                }
+            }
+            return builder.append(" APPLY BATCH;").toString();
+        }
+        return statement.getClass().getSimpleName();
+    }
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern UUID_LITERAL = Pattern.compile("\\b\\p{XDigit}{8}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{12}\\b");
+    private static final Pattern BLOB_LITERAL = Pattern.compile("\\b0[xX]\\p{XDigit}*\\b");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?(?![\\w.])");
+
+    @VisibleForTesting
+    static String redact(String query) {
+        String redacted = STRING_LITERAL.matcher(query).replaceAll("?");
+        redacted = UUID_LITERAL.matcher(redacted).replaceAll("?");
+        redacted = BLOB_LITERAL.matcher(redacted).replaceAll("?");
+        return NUMBER_LITERAL.matcher(redacted).replaceAll("?");
+    }
+
+    @VisibleForTesting
+    static class StatementLabel {
+        private static final String UNKNOWN = "unknown";
+        private static final String BATCH = "batch";
+        private static final String TABLE = "(\"?\\w+\"?(?:\\.\"?\\w+\"?)?)";
+        private static final List<Pattern> PATTERNS = ImmutableList.of(
+            Pattern.compile("^\\s*(select|delete)\\b.*?\\bfrom\\s+" + TABLE, Pattern.CASE_INSENSITIVE | Pattern.DOTALL),
+            Pattern.compile("^\\s*(insert)\\s+into\\s+" + TABLE, Pattern.CASE_INSENSITIVE),
+            Pattern.compile("^\\s*(update)\\s+" + TABLE, Pattern.CASE_INSENSITIVE),
+            Pattern.compile("^\\s*(truncate)\\s+(?:table\\s+)?" + TABLE, Pattern.CASE_INSENSITIVE));
+        private static final Pattern FIRST_WORD = Pattern.compile("^\\s*(\\w+)");
+
+        static StatementLabel of(Statement statement) {
+            if (statement instanceof BoundStatement) {
+                return parse(((BoundStatement) statement).preparedStatement().getQueryString());
+            }
+            if (statement instanceof RegularStatement) {
+                return parse(((RegularStatement) statement).getQueryString());
+            }
+            if (statement instanceof BatchStatement) {
+                return ((BatchStatement) statement).getStatements().stream()
+                    .findFirst()
+                    .map(inner -> new StatementLabel(BATCH, of(inner).table))
+                    .orElse(new StatementLabel(BATCH, UNKNOWN));
+            }
+            return new StatementLabel(UNKNOWN, UNKNOWN);
+        }
+
+        static StatementLabel parse(String query) {
+            for (Pattern pattern : PATTERNS) {
+                Matcher matcher = pattern.matcher(query);
+                if (matcher.find()) {
+                    return new StatementLabel(matcher.group(1), tableName(matcher.group(2)));
+                }
+            }
+            Matcher matcher = FIRST_WORD.matcher(query);
+            if (matcher.find()) {
+                return new StatementLabel(matcher.group(1), UNKNOWN);
+            }
+            return new StatementLabel(UNKNOWN, UNKNOWN);
+        }
+
+        private static String tableName(String qualifiedName) {
+            String name = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+            if (name.startsWith("\"")) {
+                return name.replace("\"", "");
+            }
+            return name.toLowerCase(Locale.US);
+        }
+
+        final String operation;
+        final String table;
+
+        StatementLabel(String operation, String table) {
+            this.operation = operation.toLowerCase(Locale.US);
+            this.table = table;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof StatementLabel) {
+                StatementLabel other = (StatementLabel) o;
+                return operation.equals(other.operation) && table.equals(other.table);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operation.hashCode() + table.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return operation + " " + table;
+        }
+    }
+
+    private static class StatementMetrics {
+        private final StatementLabel label;
+        private final Timer latency;
+        private final Metric inFlight;
+        private final Metric timeouts;
+        private final Metric errors;
+        private final Meter slowQueries;
+        private final AtomicLong lastSampleNanos;
+
+        StatementMetrics(MetricFactory metricFactory, StatementLabel label) {
+            this.label = label;
+            this.latency = metricFactory.timer(name(QUERY_METRIC, label));
+            this.inFlight = metricFactory.counter(name(IN_FLIGHT_METRIC, label));
+            this.timeouts = metricFactory.counter(name(TIMEOUT_METRIC, label));
+            this.errors = metricFactory.counter(name(ERROR_METRIC, label));
+            this.slowQueries = metricFactory.meter(name(SLOW_QUERY_METRIC, label));
+            this.lastSampleNanos = new AtomicLong();
+        }
+
+        private static MetricName name(String name, StatementLabel label) {
+            return MetricName.of(name)
+                .tag(TABLE_TAG, label.table)
+                .tag(OPERATION_TAG, label.operation);
+        }
+    }
+
+    class QueryTracker {
+        private final Statement statement;
+        private final StatementMetrics metrics;
+        private final long startNanos;
+
+        private QueryTracker(Statement statement, StatementMetrics metrics, long startNanos) {
+            this.statement = statement;
+            this.metrics = metrics;
+            this.startNanos = startNanos;
+        }
+
+        void succeeded() {
+            complete();
+        }
+
+        void failed(Throwable error) {
+            complete();
+            if (error instanceof QueryTimeoutException) {
+                metrics.timeouts.increment();
+            } else {
+                metrics.errors.increment();
+            }
+        }
+
+        private void complete() {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            metrics.inFlight.decrement();
+            metrics.latency.update(elapsedNanos, TimeUnit.NANOSECONDS);
+            if (elapsedNanos >= slowQueryThresholdNanos) {
+                metrics.slowQueries.mark();
+                sample(metrics, statement, elapsedNanos);
+            }
+        }
+    }
+}
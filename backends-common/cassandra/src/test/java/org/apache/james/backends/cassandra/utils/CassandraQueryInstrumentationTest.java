@@ -0,0 +1,204 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.backends.cassandra.utils;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.backends.cassandra.components.CassandraIndex;
+import org.apache.james.backends.cassandra.components.CassandraModule;
+import org.apache.james.backends.cassandra.components.CassandraTable;
+import org.apache.james.backends.cassandra.components.CassandraType;
+import org.apache.james.backends.cassandra.utils.CassandraQueryInstrumentation.SlowQuery;
+import org.apache.james.backends.cassandra.utils.CassandraQueryInstrumentation.StatementLabel;
+import org.apache.james.metrics.dropwizard.DropWizardMetricFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import com.google.common.collect.ImmutableList;
+
+public class CassandraQueryInstrumentationTest {
+    private static final String TABLE_NAME = "instrumented";
+    private static final String ID = "id";
+    private static final String VALUE = "value";
+
+    private CassandraCluster cassandra;
+    private MetricRegistry registry;
+
+    @Before
+    public void setUp() {
+        cassandra = CassandraCluster.create(new CassandraModule() {
+            @Override
+            public List<CassandraTable> moduleTables() {
+                return ImmutableList.of(new CassandraTable(TABLE_NAME,
+                    SchemaBuilder.createTable(TABLE_NAME)
+                        .ifNotExists()
+                        .addPartitionKey(ID, DataType.bigint())
+                        .addColumn(VALUE, DataType.text())));
+            }
+
+            @Override
+            public List<CassandraIndex> moduleIndex() {
+                return ImmutableList.of();
+            }
+
+            @Override
+            public List<CassandraType> moduleTypes() {
+                return ImmutableList.of();
+            }
+        });
+        cassandra.ensureAllTables();
+        registry = new MetricRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        cassandra.clearAllTables();
+    }
+
+    private CassandraQueryInstrumentation.Builder instrumentation() {
+        return CassandraQueryInstrumentation.builder(new DropWizardMetricFactory(registry));
+    }
+
+    @Test
+    public void preparedStatementsShouldBeTimedPerTableAndOperation() {
+        Session session = instrumentation().build().instrument(cassandra.getConf());
+        PreparedStatement insert = session.prepare(insertInto(TABLE_NAME)
+            .value(ID, bindMarker(ID))
+            .value(VALUE, bindMarker(VALUE)));
+        CassandraAsyncExecutor executor = new CassandraAsyncExecutor(session);
+
+        executor.executeVoid(insert.bind(1L, "a")).join();
+        executor.executeVoid(insert.bind(2L, "b")).join();
+        executor.executeSingleRow(select().from(TABLE_NAME).where(eq(ID, 1L))).join();
+
+        assertThat(registry.timer("cassandraQuery-instrumented-insert").getCount()).isEqualTo(2);
+        assertThat(registry.timer("cassandraQuery-instrumented-select").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void inFlightCountShouldBeZeroOnceQueriesAreCompleted() {
+        Session session = instrumentation().build().instrument(cassandra.getConf());
+
+        new CassandraAsyncExecutor(session).executeVoid(insertInto(TABLE_NAME).value(ID, 1L).value(VALUE, "a")).join();
+
+        assertThat(registry.counter("cassandraQueryInFlight-instrumented-insert").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void failuresShouldBeCountedPerStatement() {
+        Session session = instrumentation().build().instrument(cassandra.getConf());
+
+        try {
+            new CassandraAsyncExecutor(session).execute(new SimpleStatement("SELECT * FROM missing")).join();
+        } catch (CompletionException e) {
+            // expected
+        }
+
+        assertThat(registry.counter("cassandraQueryErrors-missing-select").getCount()).isEqualTo(1);
+        assertThat(registry.counter("cassandraQueryTimeouts-missing-select").getCount()).isEqualTo(0);
+        assertThat(registry.counter("cassandraQueryInFlight-missing-select").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void slowQueriesShouldBeSampledWithoutTheirValues() {
+        CassandraQueryInstrumentation instrumentation = instrumentation()
+            .withSlowQueryThreshold(0)
+            .build();
+        CassandraAsyncExecutor executor = new CassandraAsyncExecutor(instrumentation.instrument(cassandra.getConf()));
+
+        executor.executeVoid(insertInto(TABLE_NAME).value(ID, 1L).value(VALUE, "secret")).join();
+        executor.executeVoid(insertInto(TABLE_NAME).value(ID, 2L).value(VALUE, "secret")).join();
+
+        assertThat(registry.meter("cassandraSlowQueries-instrumented-insert").getCount()).isEqualTo(2);
+        List<SlowQuery> sampled = instrumentation.getSampledSlowQueries();
+        assertThat(sampled).hasSize(1);
+        assertThat(sampled.get(0).getTable()).isEqualTo(TABLE_NAME);
+        assertThat(sampled.get(0).getOperation()).isEqualTo("insert");
+        assertThat(sampled.get(0).getQuery()).doesNotContain("secret");
+    }
+
+    @Test
+    public void fastQueriesShouldNotBeSampled() {
+        CassandraQueryInstrumentation instrumentation = instrumentation()
+            .withSlowQueryThreshold(TimeUnit.HOURS.toMillis(1))
+            .build();
+
+        new CassandraAsyncExecutor(instrumentation.instrument(cassandra.getConf()))
+            .executeVoid(insertInto(TABLE_NAME).value(ID, 1L).value(VALUE, "a")).join();
+
+        assertThat(instrumentation.getSampledSlowQueries()).isEmpty();
+        assertThat(registry.meter("cassandraSlowQueries-instrumented-insert").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void instrumentShouldExposeDriverRetries() {
+        instrumentation().build().instrument(cassandra.getConf());
+
+        assertThat(registry.getGauges()).containsKey("cassandraDriverRetries");
+    }
+
+    @Test
+    public void labelShouldIgnoreKeyspaceAndCase() {
+        StatementLabel label = StatementLabel.parse("select a, b FROM apache_james.MessageIdTable WHERE a = ?;");
+
+        assertThat(label.operation).isEqualTo("select");
+        assertThat(label.table).isEqualTo("messageidtable");
+    }
+
+    @Test
+    public void labelShouldKeepQuotedTableNames() {
+        StatementLabel label = StatementLabel.parse("UPDATE \"MailboxCounters\" SET count = count + 1 WHERE id = ?");
+
+        assertThat(label.operation).isEqualTo("update");
+        assertThat(label.table).isEqualTo("MailboxCounters");
+    }
+
+    @Test
+    public void labelShouldFallBackToFirstWordForOtherStatements() {
+        StatementLabel label = StatementLabel.parse("CREATE TABLE foo (id int PRIMARY KEY)");
+
+        assertThat(label.operation).isEqualTo("create");
+        assertThat(label.table).isEqualTo("unknown");
+    }
+
+    @Test
+    public void redactShouldReplaceLiterals() {
+        String redacted = CassandraQueryInstrumentation.redact(
+            "INSERT INTO table2 (id,name,blob,uid,n) VALUES (5b4a2f10-1a2b-11e6-8a5f-7b1c2e3d4f5a,'it''s',0xCAFE,-42,1.5e3);");
+
+        assertThat(redacted).isEqualTo("INSERT INTO table2 (id,name,blob,uid,n) VALUES (?,?,?,?,?);");
+    }
+}
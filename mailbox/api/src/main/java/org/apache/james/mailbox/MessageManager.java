@@ -38,7 +38,11 @@ import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.mailbox.model.MessageResultIterator;
+import org.apache.james.mailbox.model.MessageThread;
 import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.ThreadAlgorithm;
+
+import com.google.common.base.Optional;
 
 /**
  * Interface which represent a Mailbox
@@ -95,6 +99,54 @@ public interface MessageManager {
      */
     Iterator<MessageUid> search(SearchQuery searchQuery, MailboxSession mailboxSession) throws MailboxException;
 
+    /**
+     * Search the mailbox for messages matching the given criteria and group
+     * them into threads, as described in RFC5256.
+     * 
+     * @param searchQuery
+     *            not null
+     * @param algorithm
+     *            not null
+     * @param mailboxSession
+     *            not null
+     * @return threads of the matching messages, in the order defined by the algorithm
+     * @throws MailboxException
+     *             when the search fails
+     */
+    List<MessageThread> thread(SearchQuery searchQuery, ThreadAlgorithm algorithm, MailboxSession mailboxSession) throws MailboxException;
+
+    /**
+     * Return the uids of the messages within the given range whose
+     * mod-sequence is greater than the given one. The cost of this call
+     * should depend on the number of changes, not on the mailbox size.
+     * 
+     * @param set
+     *            not null
+     * @param modSeq
+     *            mod-sequence known by the client
+     * @param mailboxSession
+     *            not null
+     * @return changed uids, in ascending order
+     * @throws MailboxException
+     */
+    List<MessageUid> getUidsChangedSince(MessageRange set, long modSeq, MailboxSession mailboxSession) throws MailboxException;
+
+    /**
+     * Return the uids within the given range of the messages expunged with a
+     * mod-sequence greater than the given one.
+     * 
+     * @param set
+     *            not null
+     * @param modSeq
+     *            mod-sequence known by the client
+     * @param mailboxSession
+     *            not null
+     * @return expunged uids, in ascending order, or absent if the mailbox does
+     *         not keep track of expunged messages
+     * @throws MailboxException
+     */
+    Optional<List<MessageUid>> getUidsExpungedSince(MessageRange set, long modSeq, MailboxSession mailboxSession) throws MailboxException;
+
     /**
      * Expunges messages in the given range from this mailbox.
      * 
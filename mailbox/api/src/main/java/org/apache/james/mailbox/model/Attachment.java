@@ -19,15 +19,15 @@
 
 package org.apache.james.mailbox.model;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteSource;
 
 public class Attachment {
 
@@ -39,6 +39,8 @@ public class Attachment {
 
         private AttachmentId attachmentId;
         private byte[] bytes;
+        private ByteSource content;
+        private Long size;
         private String type;
 
         public Builder attachmentId(AttachmentId attachmentId) {
@@ -50,6 +52,21 @@ public class Attachment {
         public Builder bytes(byte[] bytes) {
             Preconditions.checkArgument(bytes != null);
             this.bytes = bytes;
+            this.content = ByteSource.wrap(bytes);
+            this.size = (long) bytes.length;
+            return this;
+        }
+
+        /**
+         * Content that is only read when a stream is opened, for instance chunk by chunk from the underlying storage.
+         * As the payload is not at hand, the attachmentId is then mandatory.
+         */
+        public Builder content(ByteSource content, long size) {
+            Preconditions.checkArgument(content != null);
+            Preconditions.checkArgument(size >= 0);
+            this.bytes = null;
+            this.content = content;
+            this.size = size;
             return this;
         }
 
@@ -60,32 +77,31 @@ public class Attachment {
         }
 
         public Attachment build() {
-            Preconditions.checkState(bytes != null, "'bytes' is mandatory");
+            Preconditions.checkState(content != null, "'bytes' is mandatory");
             AttachmentId builtAttachmentId = attachmentId();
             Preconditions.checkState(builtAttachmentId != null, "'attachmentId' is mandatory");
             Preconditions.checkState(type != null, "'type' is mandatory");
-            return new Attachment(bytes, builtAttachmentId, type, size());
+            return new Attachment(content, builtAttachmentId, type, size);
         }
 
         private AttachmentId attachmentId() {
             if (attachmentId != null) {
                 return attachmentId;
             }
-            return AttachmentId.forPayload(bytes);
-        }
-
-        private long size() {
-            return bytes.length;
+            if (bytes != null) {
+                return AttachmentId.forPayload(bytes);
+            }
+            return null;
         }
     }
 
-    private final byte[] bytes;
+    private final ByteSource content;
     private final AttachmentId attachmentId;
     private final String type;
     private final long size;
 
-    private Attachment(byte[] bytes, AttachmentId attachmentId, String type, long size) {
-        this.bytes = bytes;
+    private Attachment(ByteSource content, AttachmentId attachmentId, String type, long size) {
+        this.content = content;
         this.attachmentId = attachmentId;
         this.type = type;
         this.size = size;
@@ -104,7 +120,14 @@ public class Attachment {
     }
 
     public InputStream getStream() throws IOException {
-        return new ByteArrayInputStream(bytes);
+        return content.openStream();
+    }
+
+    /**
+     * Stream over at most length bytes of the content, starting at offset.
+     */
+    public InputStream getStream(long offset, long length) throws IOException {
+        return content.slice(offset, length).openStream();
     }
 
     @Override
@@ -112,16 +135,24 @@ public class Attachment {
         if (obj instanceof Attachment) {
             Attachment other = (Attachment) obj;
             return Objects.equal(attachmentId, other.attachmentId)
-                && Arrays.equals(bytes, other.bytes)
                 && Objects.equal(type, other.type)
-                && Objects.equal(size, other.size);
+                && Objects.equal(size, other.size)
+                && contentEquals(other);
         }
         return false;
     }
 
+    private boolean contentEquals(Attachment other) {
+        try {
+            return content.contentEquals(other.content);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hashCode(attachmentId, bytes, type, size);
+        return Objects.hashCode(attachmentId, type, size);
     }
 
     @Override
@@ -129,7 +160,6 @@ public class Attachment {
         return MoreObjects
                 .toStringHelper(this)
                 .add("attachmentId", attachmentId)
-                .add("bytes", bytes)
                 .add("type", type)
                 .add("size", size)
                 .toString();
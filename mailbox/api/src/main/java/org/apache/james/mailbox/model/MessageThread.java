@@ -0,0 +1,85 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.model;
+
+import java.util.List;
+
+import org.apache.james.mailbox.MessageUid;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A node of a thread of messages, as returned by the IMAP THREAD extension (RFC5256).
+ * 
+ * A node without uid stands for a message which is referenced by other messages
+ * but is not part of the result, its children are then siblings.
+ */
+public class MessageThread {
+
+    public static MessageThread of(MessageUid uid, List<MessageThread> children) {
+        return new MessageThread(Optional.of(uid), children);
+    }
+
+    public static MessageThread missingParent(List<MessageThread> children) {
+        return new MessageThread(Optional.<MessageUid>absent(), children);
+    }
+
+    private final Optional<MessageUid> uid;
+    private final List<MessageThread> children;
+
+    private MessageThread(Optional<MessageUid> uid, List<MessageThread> children) {
+        this.uid = uid;
+        this.children = ImmutableList.copyOf(children);
+    }
+
+    public Optional<MessageUid> getUid() {
+        return uid;
+    }
+
+    public List<MessageThread> getChildren() {
+        return children;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (o instanceof MessageThread) {
+            MessageThread other = (MessageThread) o;
+            return Objects.equal(uid, other.uid)
+                && Objects.equal(children, other.children);
+        }
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return Objects.hashCode(uid, children);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("uid", uid)
+            .add("children", children)
+            .toString();
+    }
+}
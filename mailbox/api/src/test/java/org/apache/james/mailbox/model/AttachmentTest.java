@@ -29,6 +29,8 @@ import org.apache.james.mailbox.model.Attachment;
 
 import org.junit.Test;
 
+import com.google.common.io.ByteSource;
+
 public class AttachmentTest {
 
     @Test
@@ -114,6 +116,63 @@ public class AttachmentTest {
         assertThat(attachment.getAttachmentId()).isEqualTo(expected);
     }
 
+    @Test (expected = IllegalStateException.class)
+    public void buildShouldThrowWhenContentIsProvidedWithoutAttachmentId() {
+        Attachment.builder()
+            .content(ByteSource.wrap("mystream".getBytes()), 8)
+            .type("content")
+            .build();
+    }
+
+    @Test
+    public void streamShouldReadProvidedContent() throws Exception {
+        String input = "mystream";
+        Attachment attachment = Attachment.builder()
+                .attachmentId(AttachmentId.from("id"))
+                .content(ByteSource.wrap(input.getBytes()), input.length())
+                .type("content")
+                .build();
+
+        assertThat(IOUtils.toString(attachment.getStream())).isEqualTo(input);
+        assertThat(attachment.getSize()).isEqualTo(input.length());
+    }
+
+    @Test
+    public void rangedStreamShouldReturnRequestedBytes() throws Exception {
+        Attachment attachment = Attachment.builder()
+                .bytes("mystream".getBytes())
+                .type("content")
+                .build();
+
+        assertThat(IOUtils.toString(attachment.getStream(2, 3))).isEqualTo("str");
+    }
+
+    @Test
+    public void rangedStreamShouldStopAtEndOfContent() throws Exception {
+        Attachment attachment = Attachment.builder()
+                .bytes("mystream".getBytes())
+                .type("content")
+                .build();
+
+        assertThat(IOUtils.toString(attachment.getStream(6, 10))).isEqualTo("am");
+    }
+
+    @Test
+    public void attachmentsShouldBeEqualWhenSameContentFromDifferentSources() throws Exception {
+        byte[] bytes = "mystream".getBytes();
+        Attachment fromBytes = Attachment.builder()
+                .bytes(bytes)
+                .type("content")
+                .build();
+        Attachment fromContent = Attachment.builder()
+                .attachmentId(AttachmentId.forPayload(bytes))
+                .content(ByteSource.wrap(bytes), bytes.length)
+                .type("content")
+                .build();
+
+        assertThat(fromContent).isEqualTo(fromBytes);
+    }
+
     @Test
     public void buildShouldSetTheSize() throws Exception {
         String input = "mystream";
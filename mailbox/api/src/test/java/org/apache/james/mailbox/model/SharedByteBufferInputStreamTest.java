@@ -0,0 +1,74 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class SharedByteBufferInputStreamTest {
+
+    private static final byte[] CONTENT = "Subject: test\r\n\r\nbody".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void asByteBufferShouldExposeWholeContentWhenNothingRead() {
+        SharedByteBufferInputStream stream = new SharedByteBufferInputStream(CONTENT);
+
+        assertThat(toString(stream.asByteBuffer())).isEqualTo("Subject: test\r\n\r\nbody");
+    }
+
+    @Test
+    public void asByteBufferShouldExposeOnlyRemainingContent() throws Exception {
+        SharedByteBufferInputStream stream = new SharedByteBufferInputStream(CONTENT);
+        stream.skip(17);
+
+        assertThat(toString(stream.asByteBuffer())).isEqualTo("body");
+    }
+
+    @Test
+    public void asByteBufferShouldBeReadOnly() {
+        assertThat(new SharedByteBufferInputStream(CONTENT).asByteBuffer().isReadOnly()).isTrue();
+    }
+
+    @Test
+    public void newStreamShouldReturnSharedByteBufferInputStream() {
+        SharedByteBufferInputStream stream = new SharedByteBufferInputStream(CONTENT);
+
+        assertThat(stream.newStream(17, -1)).isInstanceOf(SharedByteBufferInputStream.class);
+    }
+
+    @Test
+    public void newStreamShouldExposeRequestedRange() {
+        SharedByteBufferInputStream stream = new SharedByteBufferInputStream(CONTENT);
+
+        SharedByteBufferInputStream header = (SharedByteBufferInputStream) stream.newStream(0, 13);
+
+        assertThat(toString(header.asByteBuffer())).isEqualTo("Subject: test");
+    }
+
+    private String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
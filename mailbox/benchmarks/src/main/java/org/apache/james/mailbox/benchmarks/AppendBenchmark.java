@@ -0,0 +1,81 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MessageUid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MessageManager.appendMessage: MIME parsing, attachment extraction and
+ * storage of one message of the corpus.
+ *
+ * A new mailbox is used for each iteration so that the mailbox size stays
+ * comparable across iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppendBenchmark {
+
+    @Param({
+        MimeCorpus.PLAIN_TEXT,
+        MimeCorpus.HTML,
+        MimeCorpus.MAILING_LIST,
+        MimeCorpus.TWO_ATTACHMENTS,
+        MimeCorpus.PGP_SIGNED,
+        MimeCorpus.MANY_HEADERS})
+    public String message;
+
+    private byte[] content;
+    private InMemoryMailboxFixture fixture;
+
+    @Setup(Level.Trial)
+    public void loadMessage() throws Exception {
+        content = MimeCorpus.load(message);
+    }
+
+    @Setup(Level.Iteration)
+    public void createMailbox() throws Exception {
+        fixture = InMemoryMailboxFixture.create();
+    }
+
+    @Benchmark
+    public MessageUid append() throws Exception {
+        return fixture.append(content, new Flags());
+    }
+}
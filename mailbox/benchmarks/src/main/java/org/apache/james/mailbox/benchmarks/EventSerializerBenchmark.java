@@ -0,0 +1,157 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.inmemory.InMemoryId;
+import org.apache.james.mailbox.inmemory.InMemoryMailboxIdDeserializer;
+import org.apache.james.mailbox.inmemory.InMemoryMessageId;
+import org.apache.james.mailbox.model.MailboxConstants;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.model.MessageMetaData;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.SimpleMessageMetaData;
+import org.apache.james.mailbox.store.event.EventFactory;
+import org.apache.james.mailbox.store.event.EventSerializer;
+import org.apache.james.mailbox.store.json.JsonEventSerializer;
+import org.apache.james.mailbox.store.json.MessagePackEventSerializer;
+import org.apache.james.mailbox.store.json.event.EventConverter;
+import org.apache.james.mailbox.store.json.event.MailboxConverter;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trips of the events sent to distant listeners, with the JSON and
+ * MessagePack serializers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSerializerBenchmark {
+
+    private static final long MOD_SEQ = 36L;
+    private static final long SIZE = 4096L;
+
+    public enum Format {
+        JSON {
+            @Override
+            EventSerializer serializer(EventConverter eventConverter) {
+                return new JsonEventSerializer(eventConverter, new InMemoryMessageId.Factory());
+            }
+        },
+        MESSAGE_PACK {
+            @Override
+            EventSerializer serializer(EventConverter eventConverter) {
+                return new MessagePackEventSerializer(eventConverter, new InMemoryMessageId.Factory());
+            }
+        };
+
+        abstract EventSerializer serializer(EventConverter eventConverter);
+    }
+
+    @Param
+    public Format format;
+
+    @Param({"1", "100"})
+    public int messageCount;
+
+    private EventSerializer serializer;
+    private MailboxListener.Event added;
+    private MailboxListener.Event flagsUpdated;
+    private byte[] serializedAdded;
+    private byte[] serializedFlagsUpdated;
+
+    @Setup(Level.Trial)
+    public void createEvents() throws Exception {
+        serializer = format.serializer(new EventConverter(new MailboxConverter(new InMemoryMailboxIdDeserializer())));
+
+        MailboxSession session = InMemoryMailboxFixture.create().getSession();
+        SimpleMailbox mailbox = new SimpleMailbox(
+            new MailboxPath(MailboxConstants.USER_NAMESPACE, InMemoryMailboxFixture.USER, MailboxConstants.INBOX),
+            42L,
+            InMemoryId.of(1L));
+        InMemoryMessageId.Factory messageIdFactory = new InMemoryMessageId.Factory();
+
+        TreeMap<MessageUid, MessageMetaData> metaData = new TreeMap<MessageUid, MessageMetaData>();
+        List<MessageUid> uids = new ArrayList<MessageUid>();
+        List<UpdatedFlags> updatedFlags = new ArrayList<UpdatedFlags>();
+        for (int i = 1; i <= messageCount; i++) {
+            MessageUid uid = MessageUid.of(i);
+            uids.add(uid);
+            metaData.put(uid, new SimpleMessageMetaData(uid, MOD_SEQ, new Flags(), SIZE, new Date(), messageIdFactory.generate()));
+            updatedFlags.add(UpdatedFlags.builder()
+                .uid(uid)
+                .modSeq(MOD_SEQ)
+                .oldFlags(new Flags())
+                .newFlags(new Flags(Flags.Flag.SEEN))
+                .build());
+        }
+
+        EventFactory eventFactory = new EventFactory();
+        added = eventFactory.added(session, metaData, mailbox);
+        flagsUpdated = eventFactory.flagsUpdated(session, uids, mailbox, updatedFlags);
+        serializedAdded = serializer.serializeEvent(added);
+        serializedFlagsUpdated = serializer.serializeEvent(flagsUpdated);
+    }
+
+    @Benchmark
+    public byte[] serializeAdded() throws Exception {
+        return serializer.serializeEvent(added);
+    }
+
+    @Benchmark
+    public MailboxListener.Event deserializeAdded() throws Exception {
+        return serializer.deSerializeEvent(serializedAdded);
+    }
+
+    @Benchmark
+    public byte[] serializeFlagsUpdated() throws Exception {
+        return serializer.serializeEvent(flagsUpdated);
+    }
+
+    @Benchmark
+    public MailboxListener.Event deserializeFlagsUpdated() throws Exception {
+        return serializer.deSerializeEvent(serializedFlagsUpdated);
+    }
+}
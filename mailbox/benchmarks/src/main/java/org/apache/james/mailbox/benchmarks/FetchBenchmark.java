@@ -0,0 +1,124 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.benchmarks;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.model.Content;
+import org.apache.james.mailbox.model.FetchGroupImpl;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.model.MessageResult;
+import org.apache.james.mailbox.model.MessageResult.FetchGroup;
+import org.apache.james.mailbox.model.MessageResult.Header;
+import org.apache.james.mailbox.model.MessageResultIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * FETCH-like reads of the whole mailbox through MessageManager.getMessages,
+ * for the fetch groups the IMAP FETCH processor relies on. What the fetch
+ * group loads is also read, so that lazily built results are accounted for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchBenchmark {
+
+    private static final ImmutableMap<String, FetchGroup> FETCH_GROUPS = ImmutableMap.of(
+        "MINIMAL", FetchGroupImpl.MINIMAL,
+        "HEADERS", FetchGroupImpl.HEADERS,
+        "BODY_CONTENT", FetchGroupImpl.BODY_CONTENT,
+        "FULL_CONTENT", FetchGroupImpl.FULL_CONTENT);
+    private static final int BUFFER_SIZE = 8192;
+
+    @Param({"MINIMAL", "HEADERS", "BODY_CONTENT", "FULL_CONTENT"})
+    public String fetchGroup;
+
+    @Param({"100", "1000"})
+    public int messageCount;
+
+    private FetchGroup group;
+    private InMemoryMailboxFixture fixture;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        group = FETCH_GROUPS.get(fetchGroup);
+        fixture = InMemoryMailboxFixture.create();
+        fixture.populate(MimeCorpus.loadAll(), messageCount);
+        buffer = new byte[BUFFER_SIZE];
+    }
+
+    @Benchmark
+    public void fetchAll(Blackhole blackhole) throws Exception {
+        MessageManager inbox = fixture.getInbox();
+        MessageResultIterator results = inbox.getMessages(MessageRange.all(), group, fixture.getSession());
+        while (results.hasNext()) {
+            consume(results.next(), blackhole);
+        }
+    }
+
+    private void consume(MessageResult result, Blackhole blackhole) throws Exception {
+        blackhole.consume(result.getUid());
+        blackhole.consume(result.getFlags());
+        if ((group.content() & FetchGroup.HEADERS) != 0) {
+            Iterator<Header> headers = result.getHeaders().headers();
+            while (headers.hasNext()) {
+                blackhole.consume(headers.next().getValue());
+            }
+        }
+        if ((group.content() & FetchGroup.FULL_CONTENT) == FetchGroup.FULL_CONTENT) {
+            consume(result.getFullContent(), blackhole);
+        } else if ((group.content() & FetchGroup.BODY_CONTENT) != 0) {
+            consume(result.getBody(), blackhole);
+        }
+    }
+
+    private void consume(Content content, Blackhole blackhole) throws Exception {
+        InputStream inputStream = content.getInputStream();
+        try {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                blackhole.consume(read);
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
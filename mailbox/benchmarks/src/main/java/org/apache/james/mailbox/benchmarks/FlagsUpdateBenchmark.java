@@ -0,0 +1,92 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MessageManager.FlagsUpdateMode;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.model.MessageRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MessageManager.setFlags over a range of UIDs, the path of IMAP STORE.
+ *
+ * Every invocation undoes the previous one, so that each call really
+ * updates every message of the range and fires the matching events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlagsUpdateBenchmark {
+
+    private static final int MAILBOX_SIZE = 1000;
+    private static final String USER_FLAG = "$Benchmark";
+
+    @Param({"1", "100", "1000"})
+    public int rangeSize;
+
+    private InMemoryMailboxFixture fixture;
+    private MessageRange range;
+    private Flags seen;
+    private Flags flaggedWithUserFlag;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        fixture = InMemoryMailboxFixture.create();
+        fixture.populate(MimeCorpus.loadAll(), MAILBOX_SIZE);
+        range = MessageRange.range(MessageUid.MIN_VALUE, MessageUid.of(rangeSize));
+        seen = new Flags(Flags.Flag.SEEN);
+        flaggedWithUserFlag = new Flags(Flags.Flag.FLAGGED);
+        flaggedWithUserFlag.add(USER_FLAG);
+    }
+
+    @Benchmark
+    public Map<MessageUid, Flags> toggleSeen() throws Exception {
+        toggle = !toggle;
+        FlagsUpdateMode mode = toggle ? FlagsUpdateMode.ADD : FlagsUpdateMode.REMOVE;
+        return fixture.getInbox().setFlags(seen, mode, range, fixture.getSession());
+    }
+
+    @Benchmark
+    public Map<MessageUid, Flags> replaceFlags() throws Exception {
+        toggle = !toggle;
+        Flags flags = toggle ? flaggedWithUserFlag : seen;
+        return fixture.getInbox().setFlags(flags, FlagsUpdateMode.REPLACE, range, fixture.getSession());
+    }
+}
@@ -0,0 +1,116 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.List;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.acl.SimpleGroupMembershipResolver;
+import org.apache.james.mailbox.acl.UnionMailboxACLResolver;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.inmemory.InMemoryMailboxManager;
+import org.apache.james.mailbox.inmemory.InMemoryMailboxSessionMapperFactory;
+import org.apache.james.mailbox.inmemory.InMemoryMessageId;
+import org.apache.james.mailbox.model.MailboxConstants;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.store.FakeAuthenticator;
+import org.apache.james.mailbox.store.FakeAuthorizator;
+import org.apache.james.mailbox.store.NoMailboxPathLocker;
+import org.apache.james.mailbox.store.mail.model.impl.MessageParser;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link InMemoryMailboxManager} holding a single INBOX, the way the
+ * in-memory integration tests build it.
+ */
+public class InMemoryMailboxFixture {
+
+    public static final String USER = "benchmark@james.apache.org";
+
+    public static InMemoryMailboxFixture create() throws MailboxException {
+        InMemoryMailboxManager mailboxManager = new InMemoryMailboxManager(
+            new InMemoryMailboxSessionMapperFactory(),
+            new FakeAuthenticator(),
+            FakeAuthorizator.defaultReject(),
+            new NoMailboxPathLocker(),
+            new UnionMailboxACLResolver(),
+            new SimpleGroupMembershipResolver(),
+            new MessageParser(),
+            new InMemoryMessageId.Factory());
+        mailboxManager.init();
+
+        MailboxSession session = mailboxManager.createSystemSession(USER, LoggerFactory.getLogger(InMemoryMailboxFixture.class));
+        MailboxPath inbox = new MailboxPath(MailboxConstants.USER_NAMESPACE, USER, MailboxConstants.INBOX);
+        mailboxManager.createMailbox(inbox, session);
+
+        return new InMemoryMailboxFixture(mailboxManager, session, mailboxManager.getMailbox(inbox, session));
+    }
+
+    private final InMemoryMailboxManager mailboxManager;
+    private final MailboxSession session;
+    private final MessageManager inbox;
+
+    private InMemoryMailboxFixture(InMemoryMailboxManager mailboxManager, MailboxSession session, MessageManager inbox) {
+        this.mailboxManager = mailboxManager;
+        this.session = session;
+        this.inbox = inbox;
+    }
+
+    public InMemoryMailboxManager getMailboxManager() {
+        return mailboxManager;
+    }
+
+    public MailboxSession getSession() {
+        return session;
+    }
+
+    public MessageManager getInbox() {
+        return inbox;
+    }
+
+    public MessageUid append(byte[] message, Flags flags) throws MailboxException {
+        return inbox.appendMessage(new ByteArrayInputStream(message), new Date(), session, false, flags)
+            .getUid();
+    }
+
+    /**
+     * Appends count messages cycling through the corpus. Every third message
+     * is \Seen and every tenth one \Flagged, so that flag based searches
+     * match part of the mailbox.
+     */
+    public void populate(List<byte[]> corpus, int count) throws MailboxException {
+        for (int i = 0; i < count; i++) {
+            Flags flags = new Flags();
+            if (i % 3 == 0) {
+                flags.add(Flags.Flag.SEEN);
+            }
+            if (i % 10 == 0) {
+                flags.add(Flags.Flag.FLAGGED);
+            }
+            append(corpus.get(i % corpus.size()), flags);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Real world messages taken from the store test resources, from a small
+ * plain text mail to multipart mails with attachments or many headers.
+ */
+public class MimeCorpus {
+
+    public static final String PLAIN_TEXT = "noAttachment.eml";
+    public static final String HTML = "htmlMail.eml";
+    public static final String MAILING_LIST = "frnog.eml";
+    public static final String TWO_ATTACHMENTS = "twoAttachments.eml";
+    public static final String PGP_SIGNED = "pgpSignedMail.eml";
+    public static final String MANY_HEADERS = "mailWithManyHeaders.eml";
+
+    public static final List<String> MESSAGES = ImmutableList.of(PLAIN_TEXT, HTML, MAILING_LIST, TWO_ATTACHMENTS, PGP_SIGNED, MANY_HEADERS);
+
+    private static final String EML_FOLDER = "eml/";
+
+    public static byte[] load(String name) throws IOException {
+        InputStream inputStream = ClassLoader.getSystemResourceAsStream(EML_FOLDER + name);
+        Preconditions.checkArgument(inputStream != null, "Unknown message %s", name);
+        try {
+            return ByteStreams.toByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public static List<byte[]> loadAll() throws IOException {
+        ImmutableList.Builder<byte[]> messages = ImmutableList.builder();
+        for (String name : MESSAGES) {
+            messages.add(load(name));
+        }
+        return messages.build();
+    }
+}
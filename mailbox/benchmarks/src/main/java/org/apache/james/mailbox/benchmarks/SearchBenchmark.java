@@ -0,0 +1,154 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.benchmarks;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.SearchQuery.AddressType;
+import org.apache.james.mailbox.model.SearchQuery.Criterion;
+import org.apache.james.mailbox.model.SearchQuery.DateResolution;
+import org.apache.james.mailbox.model.SearchQuery.UidRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * MessageManager.search with the criteria IMAP clients send the most,
+ * evaluated by the default SimpleMessageSearchIndex of the in-memory
+ * backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    public enum Criteria {
+        ALL {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.all();
+            }
+        },
+        UNSEEN {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.flagIsUnSet(Flags.Flag.SEEN);
+            }
+        },
+        FLAGGED {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.flagIsSet(Flags.Flag.FLAGGED);
+            }
+        },
+        UID_RANGE_UNSEEN {
+            @Override
+            Criterion criterion(int messageCount) {
+                UidRange firstHalf = new UidRange(MessageUid.MIN_VALUE, MessageUid.of(messageCount / 2));
+                return SearchQuery.and(
+                    SearchQuery.uid(new UidRange[] {firstHalf}),
+                    SearchQuery.flagIsUnSet(Flags.Flag.SEEN));
+            }
+        },
+        SINCE {
+            @Override
+            Criterion criterion(int messageCount) {
+                Date yesterday = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+                return SearchQuery.internalDateAfter(yesterday, DateResolution.Day);
+            }
+        },
+        LARGER {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.sizeGreaterThan(5000);
+            }
+        },
+        FROM {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.address(AddressType.From, "airbnb.com");
+            }
+        },
+        SUBJECT {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.headerContains("Subject", "security");
+            }
+        },
+        BODY {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.bodyContains("debian");
+            }
+        },
+        TEXT {
+            @Override
+            Criterion criterion(int messageCount) {
+                return SearchQuery.textContains("attached");
+            }
+        };
+
+        abstract Criterion criterion(int messageCount);
+    }
+
+    @Param
+    public Criteria criteria;
+
+    @Param({"100", "1000"})
+    public int messageCount;
+
+    private InMemoryMailboxFixture fixture;
+    private SearchQuery query;
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        fixture = InMemoryMailboxFixture.create();
+        fixture.populate(MimeCorpus.loadAll(), messageCount);
+        query = new SearchQuery();
+        query.andCriteria(criteria.criterion(messageCount));
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) throws Exception {
+        Iterator<MessageUid> uids = fixture.getInbox().search(query, fixture.getSession());
+        while (uids.hasNext()) {
+            blackhole.consume(uids.next());
+        }
+    }
+}
@@ -100,6 +100,18 @@ public class CachingMessageMapper implements MessageMapper {
         return underlying.findRecentMessageUidsInMailbox(mailbox);
     }
 
+    @Override
+    public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq)
+            throws MailboxException {
+        return underlying.findChangedUidsSince(mailbox, set, modSeq);
+    }
+
+    @Override
+    public Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq)
+            throws MailboxException {
+        return underlying.findExpungedUidsSince(mailbox, set, modSeq);
+    }
+
     @Override
     public MessageMetaData add(Mailbox mailbox, MailboxMessage message)
             throws MailboxException {
@@ -28,6 +28,7 @@ import org.apache.james.mailbox.cassandra.mail.CassandraApplicableFlagDAO;
 import org.apache.james.mailbox.cassandra.mail.CassandraAttachmentMapper;
 import org.apache.james.mailbox.cassandra.mail.CassandraFirstUnseenDAO;
 import org.apache.james.mailbox.cassandra.mail.CassandraIndexTableHandler;
+import org.apache.james.mailbox.cassandra.mail.CassandraMailboxChangesDAO;
 import org.apache.james.mailbox.cassandra.mail.CassandraMailboxCounterDAO;
 import org.apache.james.mailbox.cassandra.mail.CassandraMailboxDAO;
 import org.apache.james.mailbox.cassandra.mail.CassandraMailboxMapper;
@@ -75,6 +76,7 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
     private final CassandraFirstUnseenDAO firstUnseenDAO;
     private final CassandraApplicableFlagDAO applicableFlagDAO;
     private final CassandraDeletedMessageDAO deletedMessageDAO;
+    private final CassandraMailboxChangesDAO mailboxChangesDAO;
     private int maxRetry;
 
     @Inject
@@ -82,7 +84,7 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
                                                 CassandraMessageDAO messageDAO, CassandraMessageIdDAO messageIdDAO, CassandraMessageIdToImapUidDAO imapUidDAO,
                                                 CassandraMailboxCounterDAO mailboxCounterDAO, CassandraMailboxRecentsDAO mailboxRecentsDAO, CassandraMailboxDAO mailboxDAO,
                                                 CassandraMailboxPathDAO mailboxPathDAO, CassandraFirstUnseenDAO firstUnseenDAO, CassandraApplicableFlagDAO applicableFlagDAO,
-                                                CassandraDeletedMessageDAO deletedMessageDAO, @Named(CassandraMailboxDAO.MAX_ACL_RETRY) Integer maxRetry) {
+                                                CassandraDeletedMessageDAO deletedMessageDAO, CassandraMailboxChangesDAO mailboxChangesDAO, @Named(CassandraMailboxDAO.MAX_ACL_RETRY) Integer maxRetry) {
         this.uidProvider = uidProvider;
         this.modSeqProvider = modSeqProvider;
         this.session = session;
@@ -95,13 +97,16 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
         this.mailboxPathDAO = mailboxPathDAO;
         this.firstUnseenDAO = firstUnseenDAO;
         this.deletedMessageDAO = deletedMessageDAO;
+        this.mailboxChangesDAO = mailboxChangesDAO;
         this.applicableFlagDAO = applicableFlagDAO;
         this.indexTableHandler = new CassandraIndexTableHandler(
             mailboxRecentsDAO,
             mailboxCounterDAO,
             firstUnseenDAO,
             applicableFlagDAO,
-            deletedMessageDAO);
+            deletedMessageDAO,
+            mailboxChangesDAO,
+            modSeqProvider);
         this.maxRetry = maxRetry;
     }
 
@@ -118,10 +123,11 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
         CassandraMailboxPathDAO mailboxPathDAO,
         CassandraFirstUnseenDAO firstUnseenDAO,
         CassandraApplicableFlagDAO applicableFlagDAO,
-        CassandraDeletedMessageDAO deletedMesageDAO) {
+        CassandraDeletedMessageDAO deletedMesageDAO,
+        CassandraMailboxChangesDAO mailboxChangesDAO) {
 
         this(uidProvider, modSeqProvider, session, messageDAO, messageIdDAO, imapUidDAO, mailboxCounterDAO,
-             mailboxRecentsDAO, mailboxDAO, mailboxPathDAO, firstUnseenDAO, applicableFlagDAO, deletedMesageDAO, DEFAULT_MAX_RETRY);
+             mailboxRecentsDAO, mailboxDAO, mailboxPathDAO, firstUnseenDAO, applicableFlagDAO, deletedMesageDAO, mailboxChangesDAO, DEFAULT_MAX_RETRY);
     }
 
     @Override
@@ -140,7 +146,8 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
                                           applicableFlagDAO,
                                           indexTableHandler,
                                           firstUnseenDAO,
-                                          deletedMessageDAO);
+                                          deletedMessageDAO,
+                                          mailboxChangesDAO);
     }
 
     @Override
@@ -152,7 +159,7 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
 
     @Override
     public MailboxMapper createMailboxMapper(MailboxSession mailboxSession) {
-        return new CassandraMailboxMapper(session, mailboxDAO, mailboxPathDAO, maxRetry);
+        return new CassandraMailboxMapper(session, mailboxDAO, mailboxPathDAO, mailboxChangesDAO, maxRetry);
     }
 
     @Override
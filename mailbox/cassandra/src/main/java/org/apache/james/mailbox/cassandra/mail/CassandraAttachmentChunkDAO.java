@@ -0,0 +1,194 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static org.apache.james.mailbox.cassandra.table.CassandraAttachmentTable.Chunks.CHUNK_NUMBER;
+import static org.apache.james.mailbox.cassandra.table.CassandraAttachmentTable.Chunks.DATA;
+import static org.apache.james.mailbox.cassandra.table.CassandraAttachmentTable.Chunks.ID;
+import static org.apache.james.mailbox.cassandra.table.CassandraAttachmentTable.Chunks.TABLE_NAME;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.james.backends.cassandra.utils.CassandraAsyncExecutor;
+import org.apache.james.mailbox.model.AttachmentId;
+
+import com.datastax.driver.core.Session;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+
+/**
+ * Stores attachment payloads as fixed size chunks, so that reading an attachment only ever holds one chunk in memory
+ * (plus the next one being prefetched) and ranged reads start directly at the chunk holding the first requested byte.
+ */
+public class CassandraAttachmentChunkDAO {
+
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private final CassandraAsyncExecutor cassandraAsyncExecutor;
+    private final int chunkSize;
+
+    public CassandraAttachmentChunkDAO(Session session) {
+        this(session, DEFAULT_CHUNK_SIZE);
+    }
+
+    public CassandraAttachmentChunkDAO(Session session, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "Chunk size should be strictly positive");
+        this.cassandraAsyncExecutor = new CassandraAsyncExecutor(session);
+        this.chunkSize = chunkSize;
+    }
+
+    public CompletableFuture<Void> storeChunks(AttachmentId attachmentId, InputStream payload) throws IOException {
+        ImmutableList.Builder<CompletableFuture<Void>> chunkInsertions = ImmutableList.builder();
+        byte[] buffer = new byte[chunkSize];
+        int chunkNumber = 0;
+        int read = ByteStreams.read(payload, buffer, 0, chunkSize);
+        while (read > 0) {
+            chunkInsertions.add(storeChunk(attachmentId, chunkNumber, Arrays.copyOf(buffer, read)));
+            chunkNumber++;
+            read = ByteStreams.read(payload, buffer, 0, chunkSize);
+        }
+        return CompletableFuture.allOf(chunkInsertions.build().toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<Void> storeChunk(AttachmentId attachmentId, int chunkNumber, byte[] data) {
+        return cassandraAsyncExecutor.executeVoid(
+            insertInto(TABLE_NAME)
+                .value(ID, attachmentId.getId())
+                .value(CHUNK_NUMBER, chunkNumber)
+                .value(DATA, ByteBuffer.wrap(data)));
+    }
+
+    private CompletableFuture<byte[]> readChunk(AttachmentId attachmentId, int chunkNumber) {
+        return cassandraAsyncExecutor.executeSingleRow(
+            select(DATA)
+                .from(TABLE_NAME)
+                .where(eq(ID, attachmentId.getId()))
+                .and(eq(CHUNK_NUMBER, chunkNumber)))
+            .thenApply(optional -> optional
+                .map(row -> {
+                    ByteBuffer data = row.getBytes(DATA);
+                    byte[] bytes = new byte[data.remaining()];
+                    data.get(bytes);
+                    return bytes;
+                })
+                .orElseThrow(() -> new IllegalStateException(
+                    String.format("Missing chunk %d of attachment %s", chunkNumber, attachmentId.getId()))));
+    }
+
+    public ByteSource content(AttachmentId attachmentId, long size) {
+        return new ChunkedContent(attachmentId, size);
+    }
+
+    private class ChunkedContent extends ByteSource {
+
+        private final AttachmentId attachmentId;
+        private final long size;
+
+        ChunkedContent(AttachmentId attachmentId, long size) {
+            this.attachmentId = attachmentId;
+            this.size = size;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return streamFrom(0);
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public ByteSource slice(final long offset, final long length) {
+            Preconditions.checkArgument(offset >= 0, "offset (%s) may not be negative", offset);
+            Preconditions.checkArgument(length >= 0, "length (%s) may not be negative", length);
+            return new ByteSource() {
+                @Override
+                public InputStream openStream() throws IOException {
+                    return ByteStreams.limit(streamFrom(offset), length);
+                }
+            };
+        }
+
+        private InputStream streamFrom(long offset) throws IOException {
+            if (offset >= size) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            int chunkCount = Ints.checkedCast((size + chunkSize - 1) / chunkSize);
+            int firstChunk = Ints.checkedCast(offset / chunkSize);
+            InputStream stream = new SequenceInputStream(new ChunkEnumeration(attachmentId, firstChunk, chunkCount));
+            ByteStreams.skipFully(stream, offset % chunkSize);
+            return stream;
+        }
+    }
+
+    private class ChunkEnumeration implements Enumeration<InputStream> {
+
+        private final AttachmentId attachmentId;
+        private final int chunkCount;
+        private int nextChunk;
+        private CompletableFuture<byte[]> prefetchedChunk;
+
+        ChunkEnumeration(AttachmentId attachmentId, int firstChunk, int chunkCount) {
+            this.attachmentId = attachmentId;
+            this.chunkCount = chunkCount;
+            this.nextChunk = firstChunk;
+            this.prefetchedChunk = prefetch();
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return prefetchedChunk != null;
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (prefetchedChunk == null) {
+                throw new NoSuchElementException();
+            }
+            byte[] chunk = prefetchedChunk.join();
+            prefetchedChunk = prefetch();
+            return new ByteArrayInputStream(chunk);
+        }
+
+        private CompletableFuture<byte[]> prefetch() {
+            if (nextChunk >= chunkCount) {
+                return null;
+            }
+            return readChunk(attachmentId, nextChunk++);
+        }
+    }
+}
@@ -31,12 +31,11 @@ import static org.apache.james.mailbox.cassandra.table.CassandraAttachmentTable.
 import static org.apache.james.mailbox.cassandra.table.CassandraAttachmentTable.TYPE;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.james.backends.cassandra.utils.CassandraAsyncExecutor;
 import org.apache.james.mailbox.exception.AttachmentNotFoundException;
 import org.apache.james.mailbox.exception.MailboxException;
@@ -57,9 +56,15 @@ import com.google.common.collect.ImmutableList.Builder;
 public class CassandraAttachmentMapper implements AttachmentMapper {
 
     private final CassandraAsyncExecutor cassandraAsyncExecutor;
+    private final CassandraAttachmentChunkDAO chunkDAO;
 
     public CassandraAttachmentMapper(Session session) {
+        this(session, new CassandraAttachmentChunkDAO(session));
+    }
+
+    public CassandraAttachmentMapper(Session session, CassandraAttachmentChunkDAO chunkDAO) {
         this.cassandraAsyncExecutor = new CassandraAsyncExecutor(session);
+        this.chunkDAO = chunkDAO;
     }
 
     @Override
@@ -84,10 +89,17 @@ public class CassandraAttachmentMapper implements AttachmentMapper {
     }
 
     private Attachment attachment(Row row) {
-        return Attachment.builder()
-                .attachmentId(AttachmentId.from(row.getString(ID)))
+        AttachmentId attachmentId = AttachmentId.from(row.getString(ID));
+        Attachment.Builder builder = Attachment.builder()
+                .attachmentId(attachmentId)
+                .type(row.getString(TYPE));
+        if (row.isNull(PAYLOAD)) {
+            return builder
+                .content(chunkDAO.content(attachmentId, row.getLong(SIZE)), row.getLong(SIZE))
+                .build();
+        }
+        return builder
                 .bytes(row.getBytes(PAYLOAD).array())
-                .type(row.getString(TYPE))
                 .build();
     }
 
@@ -127,13 +139,14 @@ public class CassandraAttachmentMapper implements AttachmentMapper {
     }
 
     private CompletableFuture<Void> asyncStoreAttachment(Attachment attachment) throws IOException {
-        return cassandraAsyncExecutor.executeVoid(
-            insertInto(TABLE_NAME)
-                .value(ID, attachment.getAttachmentId().getId())
-                .value(PAYLOAD, ByteBuffer.wrap(IOUtils.toByteArray(attachment.getStream())))
-                .value(TYPE, attachment.getType())
-                .value(SIZE, attachment.getSize())
-        );
+        try (InputStream payload = attachment.getStream()) {
+            return chunkDAO.storeChunks(attachment.getAttachmentId(), payload)
+                .thenCompose(any -> cassandraAsyncExecutor.executeVoid(
+                    insertInto(TABLE_NAME)
+                        .value(ID, attachment.getAttachmentId().getId())
+                        .value(TYPE, attachment.getType())
+                        .value(SIZE, attachment.getSize())));
+        }
     }
 
     @Override
@@ -19,6 +19,7 @@
 
 package org.apache.james.mailbox.cassandra.mail;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 
 import javax.inject.Inject;
@@ -37,18 +38,24 @@ public class CassandraIndexTableHandler {
     private final CassandraFirstUnseenDAO firstUnseenDAO;
     private final CassandraApplicableFlagDAO applicableFlagDAO;
     private final CassandraDeletedMessageDAO deletedMessageDAO;
+    private final CassandraMailboxChangesDAO mailboxChangesDAO;
+    private final CassandraModSeqProvider modSeqProvider;
 
     @Inject
     public CassandraIndexTableHandler(CassandraMailboxRecentsDAO mailboxRecentDAO,
                                       CassandraMailboxCounterDAO mailboxCounterDAO,
                                       CassandraFirstUnseenDAO firstUnseenDAO,
                                       CassandraApplicableFlagDAO applicableFlagDAO,
-                                      CassandraDeletedMessageDAO deletedMessageDAO) {
+                                      CassandraDeletedMessageDAO deletedMessageDAO,
+                                      CassandraMailboxChangesDAO mailboxChangesDAO,
+                                      CassandraModSeqProvider modSeqProvider) {
         this.mailboxRecentDAO = mailboxRecentDAO;
         this.mailboxCounterDAO = mailboxCounterDAO;
         this.firstUnseenDAO = firstUnseenDAO;
         this.applicableFlagDAO = applicableFlagDAO;
         this.deletedMessageDAO = deletedMessageDAO;
+        this.mailboxChangesDAO = mailboxChangesDAO;
+        this.modSeqProvider = modSeqProvider;
     }
 
     public CompletableFuture<Void> updateIndexOnDelete(ComposedMessageIdWithMetaData composedMessageIdWithMetaData, CassandraId mailboxId) {
@@ -61,6 +68,20 @@ public class CassandraIndexTableHandler {
             decrementUnseenOnDelete(mailboxId, composedMessageIdWithMetaData.getFlags()));
     }
 
+    /**
+     * Record the expunge of the given messages under a single new modseq
+     */
+    public CompletableFuture<Void> updateIndexOnExpunge(CassandraId mailboxId, Collection<MessageUid> uids) {
+        if (uids.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return modSeqProvider.nextModSeq(mailboxId)
+            .thenCompose(modSeq -> modSeq
+                .map(value -> mailboxChangesDAO.addExpunges(mailboxId, uids, value)
+                    .thenCompose(any -> mailboxChangesDAO.prune(mailboxId, value)))
+                .orElse(CompletableFuture.completedFuture(null)));
+    }
+
     public CompletableFuture<Void> updateIndexOnAdd(MailboxMessage message, CassandraId mailboxId) {
         Flags flags = message.createFlags();
 
@@ -70,7 +91,8 @@ public class CassandraIndexTableHandler {
             addRecentOnSave(mailboxId, message),
             incrementUnseenOnSave(mailboxId, flags),
             mailboxCounterDAO.incrementCount(mailboxId),
-            applicableFlagDAO.updateApplicableFlags(mailboxId, flags));
+            applicableFlagDAO.updateApplicableFlags(mailboxId, flags),
+            mailboxChangesDAO.addChange(mailboxId, message.getUid(), message.getModSeq()));
     }
 
     public CompletableFuture<Void> updateIndexOnFlagsUpdate(CassandraId mailboxId, UpdatedFlags updatedFlags) {
@@ -78,7 +100,8 @@ public class CassandraIndexTableHandler {
                                        manageRecentOnFlagsUpdate(mailboxId, updatedFlags),
                                        updateFirstUnseenOnFlagsUpdate(mailboxId, updatedFlags),
                                        applicableFlagDAO.updateApplicableFlags(mailboxId, updatedFlags.getNewFlags()),
-                                       updateDeletedOnFlagsUpdate(mailboxId, updatedFlags));
+                                       updateDeletedOnFlagsUpdate(mailboxId, updatedFlags),
+                                       mailboxChangesDAO.addChange(mailboxId, updatedFlags.getUid(), updatedFlags.getModSeq()));
     }
 
     private CompletableFuture<Void> updateDeletedOnFlagsUpdate(CassandraId mailboxId, UpdatedFlags updatedFlags) {
@@ -0,0 +1,283 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.gt;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.lte;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.set;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
+import static org.apache.james.mailbox.cassandra.table.CassandraMailboxChangesTable.EXPUNGED;
+import static org.apache.james.mailbox.cassandra.table.CassandraMailboxChangesTable.FLOOR_MOD_SEQ;
+import static org.apache.james.mailbox.cassandra.table.CassandraMailboxChangesTable.MAILBOX_ID;
+import static org.apache.james.mailbox.cassandra.table.CassandraMailboxChangesTable.MOD_SEQ;
+import static org.apache.james.mailbox.cassandra.table.CassandraMailboxChangesTable.TABLE_NAME;
+import static org.apache.james.mailbox.cassandra.table.CassandraMailboxChangesTable.UID;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.inject.Inject;
+
+import org.apache.james.backends.cassandra.utils.CassandraAsyncExecutor;
+import org.apache.james.backends.cassandra.utils.CassandraUtils;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.cassandra.CassandraId;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.util.CompletableFutureUtil;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.github.steveash.guavate.Guavate;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Log of the modifications applied to the messages of a mailbox, clustered by modseq.
+ *
+ * Each flags update or append of a message adds a row carrying the modseq allocated for it, and each expunge adds a
+ * row per expunged message carrying the modseq allocated for the whole expunge. This allows CONDSTORE and QRESYNC to
+ * retrieve what changed since a given modseq without scanning the whole mailbox. Rows left behind by older
+ * modifications of a message are harmless: a message is reported once, and never as changed once it has been
+ * expunged.
+ *
+ * Only the changes of the last retained modseqs are kept. Older rows are pruned after an expunge, and the floor
+ * modseq of the partition records up to which modseq changes were dropped: changes since an older modseq can then
+ * not be computed from this log.
+ */
+public class CassandraMailboxChangesDAO {
+
+    public static final long DEFAULT_RETAINED_MOD_SEQS = 10000;
+    private static final long NO_FLOOR = 0;
+
+    private final CassandraAsyncExecutor cassandraAsyncExecutor;
+    private final long retainedModSeqs;
+    private final PreparedStatement insertStatement;
+    private final PreparedStatement selectSinceStatement;
+    private final PreparedStatement selectUpToStatement;
+    private final PreparedStatement selectFloorStatement;
+    private final PreparedStatement updateFloorStatement;
+    private final PreparedStatement deleteStatement;
+    private final PreparedStatement deleteAllStatement;
+
+    @Inject
+    public CassandraMailboxChangesDAO(Session session) {
+        this(session, DEFAULT_RETAINED_MOD_SEQS);
+    }
+
+    @VisibleForTesting
+    CassandraMailboxChangesDAO(Session session, long retainedModSeqs) {
+        this.cassandraAsyncExecutor = new CassandraAsyncExecutor(session);
+        this.retainedModSeqs = retainedModSeqs;
+        this.insertStatement = prepareInsert(session);
+        this.selectSinceStatement = prepareSelectSince(session);
+        this.selectUpToStatement = prepareSelectUpTo(session);
+        this.selectFloorStatement = prepareSelectFloor(session);
+        this.updateFloorStatement = prepareUpdateFloor(session);
+        this.deleteStatement = prepareDelete(session);
+        this.deleteAllStatement = prepareDeleteAll(session);
+    }
+
+    private PreparedStatement prepareInsert(Session session) {
+        return session.prepare(insertInto(TABLE_NAME)
+            .value(MAILBOX_ID, bindMarker(MAILBOX_ID))
+            .value(MOD_SEQ, bindMarker(MOD_SEQ))
+            .value(UID, bindMarker(UID))
+            .value(EXPUNGED, bindMarker(EXPUNGED)));
+    }
+
+    private PreparedStatement prepareSelectSince(Session session) {
+        return session.prepare(select(UID, EXPUNGED)
+            .from(TABLE_NAME)
+            .where(eq(MAILBOX_ID, bindMarker(MAILBOX_ID)))
+            .and(gt(MOD_SEQ, bindMarker(MOD_SEQ))));
+    }
+
+    private PreparedStatement prepareSelectUpTo(Session session) {
+        return session.prepare(select(MOD_SEQ, UID)
+            .from(TABLE_NAME)
+            .where(eq(MAILBOX_ID, bindMarker(MAILBOX_ID)))
+            .and(lte(MOD_SEQ, bindMarker(MOD_SEQ))));
+    }
+
+    private PreparedStatement prepareSelectFloor(Session session) {
+        return session.prepare(select(FLOOR_MOD_SEQ)
+            .from(TABLE_NAME)
+            .where(eq(MAILBOX_ID, bindMarker(MAILBOX_ID)))
+            .limit(1));
+    }
+
+    private PreparedStatement prepareUpdateFloor(Session session) {
+        return session.prepare(update(TABLE_NAME)
+            .with(set(FLOOR_MOD_SEQ, bindMarker(FLOOR_MOD_SEQ)))
+            .where(eq(MAILBOX_ID, bindMarker(MAILBOX_ID))));
+    }
+
+    private PreparedStatement prepareDelete(Session session) {
+        return session.prepare(QueryBuilder.delete()
+            .from(TABLE_NAME)
+            .where(eq(MAILBOX_ID, bindMarker(MAILBOX_ID)))
+            .and(eq(MOD_SEQ, bindMarker(MOD_SEQ)))
+            .and(eq(UID, bindMarker(UID))));
+    }
+
+    private PreparedStatement prepareDeleteAll(Session session) {
+        return session.prepare(QueryBuilder.delete()
+            .from(TABLE_NAME)
+            .where(eq(MAILBOX_ID, bindMarker(MAILBOX_ID))));
+    }
+
+    public CompletableFuture<Void> addChange(CassandraId mailboxId, MessageUid uid, long modSeq) {
+        return insert(mailboxId, uid, modSeq, false);
+    }
+
+    public CompletableFuture<Void> addExpunges(CassandraId mailboxId, Collection<MessageUid> uids, long modSeq) {
+        return CompletableFutureUtil.allOf(uids.stream()
+                .map(uid -> insert(mailboxId, uid, modSeq, true)))
+            .thenAccept(any -> { });
+    }
+
+    private CompletableFuture<Void> insert(CassandraId mailboxId, MessageUid uid, long modSeq, boolean expunged) {
+        return cassandraAsyncExecutor.executeVoid(insertStatement.bind()
+            .setUUID(MAILBOX_ID, mailboxId.asUuid())
+            .setLong(MOD_SEQ, modSeq)
+            .setLong(UID, uid.asLong())
+            .setBool(EXPUNGED, expunged));
+    }
+
+    /**
+     * Return the uids changed since the given modseq, or an empty value when the changes of that time were pruned
+     */
+    public CompletableFuture<Optional<List<MessageUid>>> retrieveChangedUidsSince(CassandraId mailboxId, MessageRange range, long modSeq) {
+        return retrieveFloor(mailboxId)
+            .thenCombine(selectSince(mailboxId, modSeq), (floor, resultSet) -> {
+                if (modSeq < floor) {
+                    return Optional.empty();
+                }
+                List<Row> rows = CassandraUtils.convertToStream(resultSet).collect(Guavate.toImmutableList());
+                Set<MessageUid> expunged = expungedUids(rows);
+                return Optional.of(rows.stream()
+                    .map(this::toUid)
+                    .filter(uid -> !expunged.contains(uid))
+                    .filter(range::includes)
+                    .distinct()
+                    .sorted()
+                    .collect(Guavate.toImmutableList()));
+            });
+    }
+
+    /**
+     * Return the uids expunged since the given modseq, or an empty value when the changes of that time were pruned
+     */
+    public CompletableFuture<Optional<List<MessageUid>>> retrieveExpungedUidsSince(CassandraId mailboxId, MessageRange range, long modSeq) {
+        return retrieveFloor(mailboxId)
+            .thenCombine(selectSince(mailboxId, modSeq), (floor, resultSet) -> {
+                if (modSeq < floor) {
+                    return Optional.empty();
+                }
+                return Optional.of(expungedUids(CassandraUtils.convertToStream(resultSet).collect(Guavate.toImmutableList()))
+                    .stream()
+                    .filter(range::includes)
+                    .sorted()
+                    .collect(Guavate.toImmutableList()));
+            });
+    }
+
+    /**
+     * Drop the changes older than the retained modseqs. Pruning only happens once the dropped changes span the
+     * retained modseqs, so that it is rarely triggered.
+     */
+    public CompletableFuture<Void> prune(CassandraId mailboxId, long highestModSeq) {
+        long newFloor = highestModSeq - retainedModSeqs;
+        return retrieveFloor(mailboxId)
+            .thenCompose(floor -> {
+                if (newFloor - floor < retainedModSeqs) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                return updateFloor(mailboxId, newFloor)
+                    .thenCompose(any -> selectUpTo(mailboxId, newFloor))
+                    .thenCompose(resultSet -> CompletableFutureUtil.allOf(CassandraUtils.convertToStream(resultSet)
+                        .map(row -> deleteChange(mailboxId, row.getLong(MOD_SEQ), row.getLong(UID)))))
+                    .thenAccept(any -> { });
+            });
+    }
+
+    /**
+     * Delete the whole log of a mailbox
+     */
+    public CompletableFuture<Void> delete(CassandraId mailboxId) {
+        return cassandraAsyncExecutor.executeVoid(deleteAllStatement.bind()
+            .setUUID(MAILBOX_ID, mailboxId.asUuid()));
+    }
+
+    private CompletableFuture<Long> retrieveFloor(CassandraId mailboxId) {
+        return cassandraAsyncExecutor.executeSingleRow(selectFloorStatement.bind()
+                .setUUID(MAILBOX_ID, mailboxId.asUuid()))
+            .thenApply(row -> row
+                .filter(value -> !value.isNull(FLOOR_MOD_SEQ))
+                .map(value -> value.getLong(FLOOR_MOD_SEQ))
+                .orElse(NO_FLOOR));
+    }
+
+    private CompletableFuture<Void> updateFloor(CassandraId mailboxId, long floor) {
+        return cassandraAsyncExecutor.executeVoid(updateFloorStatement.bind()
+            .setUUID(MAILBOX_ID, mailboxId.asUuid())
+            .setLong(FLOOR_MOD_SEQ, floor));
+    }
+
+    private CompletableFuture<Void> deleteChange(CassandraId mailboxId, long modSeq, long uid) {
+        return cassandraAsyncExecutor.executeVoid(deleteStatement.bind()
+            .setUUID(MAILBOX_ID, mailboxId.asUuid())
+            .setLong(MOD_SEQ, modSeq)
+            .setLong(UID, uid));
+    }
+
+    private CompletableFuture<ResultSet> selectSince(CassandraId mailboxId, long modSeq) {
+        return cassandraAsyncExecutor.execute(selectSinceStatement.bind()
+            .setUUID(MAILBOX_ID, mailboxId.asUuid())
+            .setLong(MOD_SEQ, modSeq));
+    }
+
+    private CompletableFuture<ResultSet> selectUpTo(CassandraId mailboxId, long modSeq) {
+        return cassandraAsyncExecutor.execute(selectUpToStatement.bind()
+            .setUUID(MAILBOX_ID, mailboxId.asUuid())
+            .setLong(MOD_SEQ, modSeq));
+    }
+
+    private Set<MessageUid> expungedUids(List<Row> rows) {
+        return rows.stream()
+            .filter(row -> row.getBool(EXPUNGED))
+            .map(this::toUid)
+            .collect(Guavate.toImmutableSet());
+    }
+
+    private MessageUid toUid(Row row) {
+        return MessageUid.of(row.getLong(UID));
+    }
+}
@@ -59,13 +59,16 @@ public class CassandraMailboxMapper implements MailboxMapper {
     private final CassandraAsyncExecutor cassandraAsyncExecutor;
     private final CassandraMailboxPathDAO mailboxPathDAO;
     private final CassandraMailboxDAO mailboxDAO;
+    private final CassandraMailboxChangesDAO mailboxChangesDAO;
     private final Session session;
 
-    public CassandraMailboxMapper(Session session, CassandraMailboxDAO mailboxDAO, CassandraMailboxPathDAO mailboxPathDAO, int maxRetry) {
+    public CassandraMailboxMapper(Session session, CassandraMailboxDAO mailboxDAO, CassandraMailboxPathDAO mailboxPathDAO,
+                                  CassandraMailboxChangesDAO mailboxChangesDAO, int maxRetry) {
         this.maxRetry = maxRetry;
         this.cassandraAsyncExecutor = new CassandraAsyncExecutor(session);
         this.mailboxDAO = mailboxDAO;
         this.mailboxPathDAO = mailboxPathDAO;
+        this.mailboxChangesDAO = mailboxChangesDAO;
         this.session = session;
     }
 
@@ -74,6 +77,7 @@ public class CassandraMailboxMapper implements MailboxMapper {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
         mailboxPathDAO.delete(mailbox.generateAssociatedPath())
             .thenCompose(any -> mailboxDAO.delete(mailboxId))
+            .thenCompose(any -> mailboxChangesDAO.delete(mailboxId))
             .join();
     }
 
@@ -72,6 +72,7 @@ import org.apache.james.mailbox.model.ComposedMessageIdWithMetaData;
 import org.apache.james.mailbox.model.MailboxId;
 import org.apache.james.mailbox.model.MessageAttachment;
 import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.SharedByteBufferInputStream;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
@@ -305,13 +306,13 @@ public class CassandraMessageDAO {
     private SharedByteArrayInputStream buildContent(Row row, FetchType fetchType) {
         switch (fetchType) {
             case Full:
-                return new SharedByteArrayInputStream(getFullContent(row));
+                return new SharedByteBufferInputStream(getFullContent(row));
             case Headers:
-                return new SharedByteArrayInputStream(getFieldContent(HEADER_CONTENT, row));
+                return new SharedByteBufferInputStream(getFieldContent(HEADER_CONTENT, row));
             case Body:
-                return new SharedByteArrayInputStream(getBodyContent(row));
+                return new SharedByteBufferInputStream(getBodyContent(row));
             case Metadata:
-                return new SharedByteArrayInputStream(new byte[]{});
+                return new SharedByteBufferInputStream(new byte[]{});
             default:
                 throw new RuntimeException("Unknown FetchType " + fetchType);
         }
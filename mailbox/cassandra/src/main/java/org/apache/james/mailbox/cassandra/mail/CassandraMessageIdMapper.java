@@ -58,6 +58,7 @@ import com.github.fge.lambdas.Throwing;
 import com.github.fge.lambdas.functions.FunctionChainer;
 import com.github.steveash.guavate.Guavate;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 
 public class CassandraMessageIdMapper implements MessageIdMapper {
 
@@ -203,7 +204,8 @@ public class CassandraMessageIdMapper implements MessageIdMapper {
         return CompletableFuture.allOf(
             imapUidDAO.delete(messageId, mailboxId),
             messageIdDAO.delete(mailboxId, metaData.getComposedMessageId().getUid()))
-            .thenCompose(voidValue -> indexTableHandler.updateIndexOnDelete(metaData, mailboxId));
+            .thenCompose(voidValue -> indexTableHandler.updateIndexOnDelete(metaData, mailboxId))
+            .thenCompose(voidValue -> indexTableHandler.updateIndexOnExpunge(mailboxId, ImmutableList.of(metaData.getComposedMessageId().getUid())));
     }
 
     @Override
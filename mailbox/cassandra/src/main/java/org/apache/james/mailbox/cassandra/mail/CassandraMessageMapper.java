@@ -49,10 +49,12 @@ import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.FlagsUpdateCalculator;
 import org.apache.james.mailbox.store.SimpleMessageMetaData;
+import org.apache.james.mailbox.store.mail.AsyncMessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
+import org.apache.james.mailbox.store.mail.utils.ChangedUidsCalculator;
 import org.apache.james.util.FluentFutureStream;
 import org.apache.james.util.OptionalConverter;
 import org.slf4j.Logger;
@@ -62,12 +64,13 @@ import com.github.steveash.guavate.Guavate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 
-public class CassandraMessageMapper implements MessageMapper {
+public class CassandraMessageMapper implements MessageMapper, AsyncMessageMapper {
     private static final Logger LOGGER = LoggerFactory.getLogger(CassandraMessageMapper.class);
     public static final MailboxCounters INITIAL_COUNTERS =  MailboxCounters.builder()
         .count(0L)
         .unseen(0L)
         .build();
+    private static final int UNLIMITED = -1;
 
     private final CassandraModSeqProvider modSeqProvider;
     private final MailboxSession mailboxSession;
@@ -83,12 +86,14 @@ public class CassandraMessageMapper implements MessageMapper {
     private final CassandraFirstUnseenDAO firstUnseenDAO;
     private final AttachmentLoader attachmentLoader;
     private final CassandraDeletedMessageDAO deletedMessageDAO;
+    private final CassandraMailboxChangesDAO mailboxChangesDAO;
 
     public CassandraMessageMapper(CassandraUidProvider uidProvider, CassandraModSeqProvider modSeqProvider,
                                   MailboxSession mailboxSession, int maxRetries, CassandraAttachmentMapper attachmentMapper,
                                   CassandraMessageDAO messageDAO, CassandraMessageIdDAO messageIdDAO, CassandraMessageIdToImapUidDAO imapUidDAO,
                                   CassandraMailboxCounterDAO mailboxCounterDAO, CassandraMailboxRecentsDAO mailboxRecentDAO, CassandraApplicableFlagDAO applicableFlagDAO,
-                                  CassandraIndexTableHandler indexTableHandler, CassandraFirstUnseenDAO firstUnseenDAO, CassandraDeletedMessageDAO deletedMessageDAO) {
+                                  CassandraIndexTableHandler indexTableHandler, CassandraFirstUnseenDAO firstUnseenDAO, CassandraDeletedMessageDAO deletedMessageDAO,
+                                  CassandraMailboxChangesDAO mailboxChangesDAO) {
         this.uidProvider = uidProvider;
         this.modSeqProvider = modSeqProvider;
         this.mailboxSession = mailboxSession;
@@ -103,6 +108,7 @@ public class CassandraMessageMapper implements MessageMapper {
         this.attachmentLoader = new AttachmentLoader(attachmentMapper);
         this.applicableFlagDAO = applicableFlagDAO;
         this.deletedMessageDAO = deletedMessageDAO;
+        this.mailboxChangesDAO = mailboxChangesDAO;
     }
 
     @Override
@@ -131,6 +137,7 @@ public class CassandraMessageMapper implements MessageMapper {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
 
         deleteAsFuture(message, mailboxId)
+            .thenCompose(any -> indexTableHandler.updateIndexOnExpunge(mailboxId, ImmutableList.of(message.getUid())))
             .join();
     }
 
@@ -158,18 +165,23 @@ public class CassandraMessageMapper implements MessageMapper {
 
     @Override
     public Iterator<MailboxMessage> findInMailbox(Mailbox mailbox, MessageRange messageRange, FetchType ftype, int max) throws MailboxException {
+        return findInMailboxAsync(mailbox, messageRange, ftype, max).join();
+    }
+
+    @Override
+    public CompletableFuture<Iterator<MailboxMessage>> findInMailboxAsync(Mailbox mailbox, MessageRange messageRange, FetchType ftype, int max) {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-        return retrieveMessages(retrieveMessageIds(mailboxId, messageRange), ftype, Optional.of(max))
-                .join()
-                .map(SimpleMailboxMessage -> (MailboxMessage) SimpleMailboxMessage)
-                .sorted(Comparator.comparing(MailboxMessage::getUid))
-                .iterator();
+        return retrieveMessageIds(mailboxId, messageRange)
+                .thenCompose(messageIds -> retrieveMessages(messageIds, ftype, Optional.of(max)))
+                .thenApply(messages -> messages
+                    .map(SimpleMailboxMessage -> (MailboxMessage) SimpleMailboxMessage)
+                    .sorted(Comparator.comparing(MailboxMessage::getUid))
+                    .iterator());
     }
 
-    private List<ComposedMessageIdWithMetaData> retrieveMessageIds(CassandraId mailboxId, MessageRange messageRange) {
+    private CompletableFuture<List<ComposedMessageIdWithMetaData>> retrieveMessageIds(CassandraId mailboxId, MessageRange messageRange) {
         return messageIdDAO.retrieveMessages(mailboxId, messageRange)
-                .join()
-                .collect(Guavate.toImmutableList());
+                .thenApply(messageIds -> messageIds.collect(Guavate.toImmutableList()));
     }
 
     private CompletableFuture<Stream<SimpleMailboxMessage>> retrieveMessages(List<ComposedMessageIdWithMetaData> messageIds, FetchType fetchType, Optional<Integer> limit) {
@@ -204,6 +216,26 @@ public class CassandraMessageMapper implements MessageMapper {
                 .join();
     }
 
+    @Override
+    public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
+        Optional<List<MessageUid>> changedUids = mailboxChangesDAO.retrieveChangedUidsSince(mailboxId, set, modSeq)
+            .join();
+        if (changedUids.isPresent()) {
+            return changedUids.get();
+        }
+        return new ChangedUidsCalculator(findInMailbox(mailbox, set, FetchType.Metadata, UNLIMITED))
+            .computeChangedUidsSince(modSeq);
+    }
+
+    @Override
+    public com.google.common.base.Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
+        return com.google.common.base.Optional.fromNullable(mailboxChangesDAO.retrieveExpungedUidsSince(mailboxId, set, modSeq)
+            .join()
+            .orElse(null));
+    }
+
     @Override
     public MessageUid findFirstUnseenMessageUid(Mailbox mailbox) throws MailboxException {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
@@ -215,7 +247,7 @@ public class CassandraMessageMapper implements MessageMapper {
     public Map<MessageUid, MessageMetaData> expungeMarkedForDeletionInMailbox(Mailbox mailbox, MessageRange messageRange) throws MailboxException {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
 
-        return FluentFutureStream.of(deletedMessageDAO.retrieveDeletedMessage(mailboxId, messageRange))
+        Map<MessageUid, MessageMetaData> expunged = FluentFutureStream.of(deletedMessageDAO.retrieveDeletedMessage(mailboxId, messageRange))
             .thenComposeOnAll(
                 messageId ->
                     messageIdDAO.retrieve(mailboxId, messageId))
@@ -229,6 +261,9 @@ public class CassandraMessageMapper implements MessageMapper {
             .performOnAll(message -> deleteAsFuture(message, mailboxId))
             .join()
             .collect(Guavate.toImmutableMap(MailboxMessage::getUid, SimpleMessageMetaData::new));
+        indexTableHandler.updateIndexOnExpunge(mailboxId, expunged.keySet())
+            .join();
+        return expunged;
     }
 
     @Override
@@ -237,6 +272,7 @@ public class CassandraMessageMapper implements MessageMapper {
         MessageMetaData messageMetaData = copy(destinationMailbox, original);
         retrieveMessageId(originalMailboxId, original)
             .thenCompose(optional -> optional.map(this::deleteUsingMailboxId).orElse(CompletableFuture.completedFuture(null)))
+            .thenCompose(any -> indexTableHandler.updateIndexOnExpunge(originalMailboxId, ImmutableList.of(original.getUid())))
             .join();
         return messageMetaData;
     }
@@ -273,7 +309,8 @@ public class CassandraMessageMapper implements MessageMapper {
     @Override
     public Iterator<UpdatedFlags> updateFlags(Mailbox mailbox, FlagsUpdateCalculator flagUpdateCalculator, MessageRange set) throws MailboxException {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-        return retrieveMessages(retrieveMessageIds(mailboxId, set), FetchType.Metadata, Optional.empty())
+        return retrieveMessageIds(mailboxId, set)
+                .thenCompose(messageIds -> retrieveMessages(messageIds, FetchType.Metadata, Optional.empty()))
                 .join()
                 .flatMap(message -> updateFlagsOnMessage(mailbox, flagUpdateCalculator, message))
                 .map((UpdatedFlags updatedFlags) -> indexTableHandler.updateIndexOnFlagsUpdate(mailboxId, updatedFlags)
@@ -21,6 +21,7 @@ package org.apache.james.mailbox.cassandra.modules;
 
 import static com.datastax.driver.core.DataType.bigint;
 import static com.datastax.driver.core.DataType.blob;
+import static com.datastax.driver.core.DataType.cint;
 import static com.datastax.driver.core.DataType.text;
 
 import java.util.Collections;
@@ -33,6 +34,7 @@ import org.apache.james.backends.cassandra.components.CassandraType;
 import org.apache.james.mailbox.cassandra.table.CassandraAttachmentTable;
 
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import com.google.common.collect.ImmutableList;
 
 public class CassandraAttachmentModule implements CassandraModule {
 
@@ -41,14 +43,20 @@ public class CassandraAttachmentModule implements CassandraModule {
     private final List<CassandraType> types;
 
     public CassandraAttachmentModule() {
-        tables = Collections.singletonList(
+        tables = ImmutableList.of(
             new CassandraTable(CassandraAttachmentTable.TABLE_NAME,
                 SchemaBuilder.createTable(CassandraAttachmentTable.TABLE_NAME)
                     .ifNotExists()
                     .addPartitionKey(CassandraAttachmentTable.ID, text())
                     .addColumn(CassandraAttachmentTable.PAYLOAD, blob())
                     .addColumn(CassandraAttachmentTable.TYPE, text())
-                    .addColumn(CassandraAttachmentTable.SIZE, bigint())));
+                    .addColumn(CassandraAttachmentTable.SIZE, bigint())),
+            new CassandraTable(CassandraAttachmentTable.Chunks.TABLE_NAME,
+                SchemaBuilder.createTable(CassandraAttachmentTable.Chunks.TABLE_NAME)
+                    .ifNotExists()
+                    .addPartitionKey(CassandraAttachmentTable.Chunks.ID, text())
+                    .addClusteringColumn(CassandraAttachmentTable.Chunks.CHUNK_NUMBER, cint())
+                    .addColumn(CassandraAttachmentTable.Chunks.DATA, blob())));
         index = Collections.emptyList();
         types = Collections.emptyList();
     }
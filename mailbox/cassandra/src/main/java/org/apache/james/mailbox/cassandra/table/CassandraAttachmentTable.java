@@ -28,4 +28,11 @@ public interface CassandraAttachmentTable {
     String SIZE = "size";
     String[] FIELDS = { ID, PAYLOAD, TYPE, SIZE };
 
+    interface Chunks {
+        String TABLE_NAME = "attachmentChunks";
+        String ID = "id";
+        String CHUNK_NUMBER = "chunkNumber";
+        String DATA = "data";
+    }
+
 }
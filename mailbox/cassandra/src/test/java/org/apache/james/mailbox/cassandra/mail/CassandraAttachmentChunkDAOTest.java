@@ -0,0 +1,125 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.mailbox.cassandra.modules.CassandraAttachmentModule;
+import org.apache.james.mailbox.model.Attachment;
+import org.apache.james.mailbox.model.AttachmentId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class CassandraAttachmentChunkDAOTest {
+    private static final int CHUNK_SIZE = 4;
+    private static final AttachmentId ATTACHMENT_ID = AttachmentId.from("id");
+    private static final String PAYLOAD = "0123456789abcdefgh";
+
+    private CassandraCluster cassandra;
+    private CassandraAttachmentChunkDAO testee;
+
+    @Before
+    public void setUp() {
+        cassandra = CassandraCluster.create(new CassandraAttachmentModule());
+        cassandra.ensureAllTables();
+
+        testee = new CassandraAttachmentChunkDAO(cassandra.getConf(), CHUNK_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        cassandra.clearAllTables();
+    }
+
+    @Test
+    public void contentShouldReadBackAllChunks() throws Exception {
+        store(PAYLOAD);
+
+        assertThat(IOUtils.toString(testee.content(ATTACHMENT_ID, PAYLOAD.length()).openStream(), Charsets.UTF_8))
+            .isEqualTo(PAYLOAD);
+    }
+
+    @Test
+    public void contentShouldReadBackPayloadFittingExactlyInChunks() throws Exception {
+        store("01234567");
+
+        assertThat(IOUtils.toString(testee.content(ATTACHMENT_ID, 8).openStream(), Charsets.UTF_8))
+            .isEqualTo("01234567");
+    }
+
+    @Test
+    public void contentShouldBeEmptyWhenEmptyPayload() throws Exception {
+        store("");
+
+        assertThat(IOUtils.toString(testee.content(ATTACHMENT_ID, 0).openStream(), Charsets.UTF_8))
+            .isEmpty();
+    }
+
+    @Test
+    public void sliceShouldStartInTheMiddleOfAChunk() throws Exception {
+        store(PAYLOAD);
+
+        assertThat(IOUtils.toString(testee.content(ATTACHMENT_ID, PAYLOAD.length()).slice(6, 5).openStream(), Charsets.UTF_8))
+            .isEqualTo("6789a");
+    }
+
+    @Test
+    public void sliceShouldStopAtTheEndOfThePayload() throws Exception {
+        store(PAYLOAD);
+
+        assertThat(IOUtils.toString(testee.content(ATTACHMENT_ID, PAYLOAD.length()).slice(15, 10).openStream(), Charsets.UTF_8))
+            .isEqualTo("fgh");
+    }
+
+    @Test
+    public void sliceShouldBeEmptyWhenStartingAfterThePayload() throws Exception {
+        store(PAYLOAD);
+
+        assertThat(IOUtils.toString(testee.content(ATTACHMENT_ID, PAYLOAD.length()).slice(30, 10).openStream(), Charsets.UTF_8))
+            .isEmpty();
+    }
+
+    @Test
+    public void attachmentMapperShouldStoreAttachmentsAsChunks() throws Exception {
+        CassandraAttachmentMapper attachmentMapper = new CassandraAttachmentMapper(cassandra.getConf(), testee);
+        Attachment attachment = Attachment.builder()
+            .bytes(PAYLOAD.getBytes(Charsets.UTF_8))
+            .type("text/plain")
+            .build();
+
+        attachmentMapper.storeAttachment(attachment);
+
+        Attachment storedAttachment = attachmentMapper.getAttachment(attachment.getAttachmentId());
+        assertThat(storedAttachment).isEqualTo(attachment);
+        assertThat(IOUtils.toString(storedAttachment.getStream(3, 4), Charsets.UTF_8)).isEqualTo("3456");
+    }
+
+    private void store(String payload) throws Exception {
+        testee.storeChunks(ATTACHMENT_ID, new ByteArrayInputStream(payload.getBytes(Charsets.UTF_8))).join();
+    }
+}
@@ -38,6 +38,8 @@ import org.apache.james.mailbox.cassandra.CassandraMessageId;
 import org.apache.james.mailbox.cassandra.modules.CassandraApplicableFlagsModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraDeletedMessageModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraFirstUnseenModule;
+import org.apache.james.mailbox.cassandra.modules.CassandraMailboxChangesModule;
+import org.apache.james.mailbox.cassandra.modules.CassandraModSeqModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxCounterModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxRecentsModule;
 import org.apache.james.mailbox.model.ComposedMessageId;
@@ -67,6 +69,7 @@ public class CassandraIndexTableHandlerTest {
     private CassandraFirstUnseenDAO firstUnseenDAO;
     private CassandraIndexTableHandler testee;
     private CassandraDeletedMessageDAO deletedMessageDAO;
+    private CassandraMailboxChangesDAO mailboxChangesDAO;
     private Mailbox mailbox;
 
     @Before
@@ -77,7 +80,9 @@ public class CassandraIndexTableHandlerTest {
                 new CassandraMailboxRecentsModule(),
                 new CassandraFirstUnseenModule(),
                 new CassandraApplicableFlagsModule(),
-                new CassandraDeletedMessageModule()));
+                new CassandraDeletedMessageModule(),
+                new CassandraMailboxChangesModule(),
+                new CassandraModSeqModule()));
         cassandra.ensureAllTables();
 
         mailboxCounterDAO = new CassandraMailboxCounterDAO(cassandra.getConf());
@@ -85,12 +90,15 @@ public class CassandraIndexTableHandlerTest {
         firstUnseenDAO = new CassandraFirstUnseenDAO(cassandra.getConf());
         applicableFlagDAO = new CassandraApplicableFlagDAO(cassandra.getConf());
         deletedMessageDAO = new CassandraDeletedMessageDAO(cassandra.getConf());
+        mailboxChangesDAO = new CassandraMailboxChangesDAO(cassandra.getConf());
 
         testee = new CassandraIndexTableHandler(mailboxRecentsDAO,
                                                 mailboxCounterDAO,
                                                 firstUnseenDAO,
                                                 applicableFlagDAO,
-                                                deletedMessageDAO);
+                                                deletedMessageDAO,
+                                                mailboxChangesDAO,
+                                                new CassandraModSeqProvider(cassandra.getConf()));
 
         mailbox = new SimpleMailbox(new MailboxPath("#private", "user", "name"),
             UID_VALIDITY,
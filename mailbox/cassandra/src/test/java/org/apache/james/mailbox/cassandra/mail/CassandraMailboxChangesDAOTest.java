@@ -0,0 +1,194 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.cassandra.CassandraId;
+import org.apache.james.mailbox.cassandra.modules.CassandraMailboxChangesModule;
+import org.apache.james.mailbox.model.MessageRange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class CassandraMailboxChangesDAOTest {
+    public static final CassandraId MAILBOX_ID = CassandraId.of(UUID.fromString("110e8400-e29b-11d4-a716-446655440000"));
+    public static final CassandraId OTHER_MAILBOX_ID = CassandraId.of(UUID.fromString("120e8400-e29b-11d4-a716-446655440000"));
+    public static final MessageUid UID_1 = MessageUid.of(1);
+    public static final MessageUid UID_2 = MessageUid.of(2);
+    public static final MessageUid UID_3 = MessageUid.of(3);
+
+    private CassandraCluster cassandra;
+    private static final long RETAINED_MOD_SEQS = 2;
+
+    private CassandraMailboxChangesDAO testee;
+
+    @Before
+    public void setUp() {
+        cassandra = CassandraCluster.create(new CassandraMailboxChangesModule());
+        cassandra.ensureAllTables();
+
+        testee = new CassandraMailboxChangesDAO(cassandra.getConf(), RETAINED_MOD_SEQS);
+    }
+
+    @After
+    public void tearDown() {
+        cassandra.clearAllTables();
+    }
+
+    @Test
+    public void retrieveChangedUidsSinceShouldReturnEmptyByDefault() {
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 0).join().get())
+            .isEmpty();
+    }
+
+    @Test
+    public void retrieveChangedUidsSinceShouldOnlyReturnChangesAfterModSeq() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addChange(MAILBOX_ID, UID_2, 2).join();
+        testee.addChange(MAILBOX_ID, UID_3, 3).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 1).join().get())
+            .containsExactly(UID_2, UID_3);
+    }
+
+    @Test
+    public void retrieveChangedUidsSinceShouldReturnEachUidOnce() {
+        testee.addChange(MAILBOX_ID, UID_2, 2).join();
+        testee.addChange(MAILBOX_ID, UID_1, 3).join();
+        testee.addChange(MAILBOX_ID, UID_2, 4).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 0).join().get())
+            .containsExactly(UID_1, UID_2);
+    }
+
+    @Test
+    public void retrieveChangedUidsSinceShouldBeRestrictedToRange() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addChange(MAILBOX_ID, UID_2, 2).join();
+        testee.addChange(MAILBOX_ID, UID_3, 3).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.range(UID_2, UID_3), 0).join().get())
+            .containsExactly(UID_2, UID_3);
+    }
+
+    @Test
+    public void retrieveChangedUidsSinceShouldNotReturnExpungedUids() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addChange(MAILBOX_ID, UID_2, 2).join();
+        testee.addExpunges(MAILBOX_ID, ImmutableList.of(UID_1), 3).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 0).join().get())
+            .containsExactly(UID_2);
+    }
+
+    @Test
+    public void retrieveChangedUidsSinceShouldNotReturnOtherMailboxChanges() {
+        testee.addChange(OTHER_MAILBOX_ID, UID_1, 1).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 0).join().get())
+            .isEmpty();
+    }
+
+    @Test
+    public void retrieveExpungedUidsSinceShouldOnlyReturnExpungesAfterModSeq() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addExpunges(MAILBOX_ID, ImmutableList.of(UID_2), 2).join();
+        testee.addExpunges(MAILBOX_ID, ImmutableList.of(UID_3), 3).join();
+
+        assertThat(testee.retrieveExpungedUidsSince(MAILBOX_ID, MessageRange.all(), 2).join().get())
+            .containsExactly(UID_3);
+    }
+
+    @Test
+    public void retrieveExpungedUidsSinceShouldBeRestrictedToRange() {
+        testee.addExpunges(MAILBOX_ID, ImmutableList.of(UID_1), 1).join();
+        testee.addExpunges(MAILBOX_ID, ImmutableList.of(UID_3), 2).join();
+
+        assertThat(testee.retrieveExpungedUidsSince(MAILBOX_ID, MessageRange.one(UID_3), 0).join().get())
+            .containsExactly(UID_3);
+    }
+
+    @Test
+    public void addExpungesShouldRecordAllUidsUnderTheSameModSeq() {
+        testee.addExpunges(MAILBOX_ID, ImmutableList.of(UID_1, UID_2), 2).join();
+
+        assertThat(testee.retrieveExpungedUidsSince(MAILBOX_ID, MessageRange.all(), 1).join().get())
+            .containsExactly(UID_1, UID_2);
+    }
+
+    @Test
+    public void pruneShouldKeepChangesWhileWithinRetention() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addChange(MAILBOX_ID, UID_2, 2).join();
+        testee.addChange(MAILBOX_ID, UID_3, 3).join();
+
+        testee.prune(MAILBOX_ID, 3).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 0).join().get())
+            .containsExactly(UID_1, UID_2, UID_3);
+    }
+
+    @Test
+    public void pruneShouldDropChangesOlderThanRetention() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addChange(MAILBOX_ID, UID_2, 2).join();
+        testee.addChange(MAILBOX_ID, UID_3, 5).join();
+
+        testee.prune(MAILBOX_ID, 5).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 3).join().get())
+            .containsExactly(UID_3);
+        assertThat(cassandra.getConf().execute("SELECT * FROM mailboxChanges WHERE mailboxId = " + MAILBOX_ID.asUuid() + " AND modSeq < 3").all())
+            .isEmpty();
+    }
+
+    @Test
+    public void retrieveShouldReturnEmptyWhenChangesSinceModSeqWerePruned() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addExpunges(MAILBOX_ID, ImmutableList.of(UID_2), 5).join();
+
+        testee.prune(MAILBOX_ID, 5).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 2).join().isPresent()).isFalse();
+        assertThat(testee.retrieveExpungedUidsSince(MAILBOX_ID, MessageRange.all(), 2).join().isPresent()).isFalse();
+    }
+
+    @Test
+    public void deleteShouldRemoveAllChangesOfTheMailbox() {
+        testee.addChange(MAILBOX_ID, UID_1, 1).join();
+        testee.addChange(OTHER_MAILBOX_ID, UID_1, 1).join();
+        testee.prune(MAILBOX_ID, 10).join();
+
+        testee.delete(MAILBOX_ID).join();
+
+        assertThat(testee.retrieveChangedUidsSince(MAILBOX_ID, MessageRange.all(), 0).join().get())
+            .isEmpty();
+        assertThat(testee.retrieveChangedUidsSince(OTHER_MAILBOX_ID, MessageRange.all(), 0).join().get())
+            .containsExactly(UID_1);
+    }
+}
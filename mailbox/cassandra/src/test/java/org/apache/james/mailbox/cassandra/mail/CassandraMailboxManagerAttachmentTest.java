@@ -33,6 +33,7 @@ import org.apache.james.mailbox.cassandra.modules.CassandraApplicableFlagsModule
 import org.apache.james.mailbox.cassandra.modules.CassandraAttachmentModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraDeletedMessageModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraFirstUnseenModule;
+import org.apache.james.mailbox.cassandra.modules.CassandraMailboxChangesModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxCounterModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxRecentsModule;
@@ -55,6 +56,7 @@ public class CassandraMailboxManagerAttachmentTest extends AbstractMailboxManage
             new CassandraMailboxRecentsModule(),
             new CassandraFirstUnseenModule(),
             new CassandraDeletedMessageModule(),
+            new CassandraMailboxChangesModule(),
             new CassandraModSeqModule(),
             new CassandraUidModule(),
             new CassandraAttachmentModule(),
@@ -85,7 +87,8 @@ public class CassandraMailboxManagerAttachmentTest extends AbstractMailboxManage
                 mailboxPathDAO,
                 firstUnseenDAO,
                 new CassandraApplicableFlagDAO(cassandra.getConf()),
-                deletedMessageDAO);
+                deletedMessageDAO,
+                new CassandraMailboxChangesDAO(cassandra.getConf()));
         Authenticator noAuthenticator = null;
         Authorizator noAuthorizator = null;
         mailboxManager = new CassandraMailboxManager(mailboxSessionMapperFactory, noAuthenticator, noAuthorizator, new NoMailboxPathLocker(), new MessageParser(), messageIdFactory); 
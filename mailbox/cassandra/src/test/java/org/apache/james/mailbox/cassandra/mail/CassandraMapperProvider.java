@@ -34,6 +34,7 @@ import org.apache.james.mailbox.cassandra.modules.CassandraApplicableFlagsModule
 import org.apache.james.mailbox.cassandra.modules.CassandraAttachmentModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraDeletedMessageModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraFirstUnseenModule;
+import org.apache.james.mailbox.cassandra.modules.CassandraMailboxChangesModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxCounterModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxModule;
 import org.apache.james.mailbox.cassandra.modules.CassandraMailboxRecentsModule;
@@ -70,7 +71,8 @@ public class CassandraMapperProvider implements MapperProvider {
         new CassandraAnnotationModule(),
         new CassandraFirstUnseenModule(),
         new CassandraApplicableFlagsModule(),
-        new CassandraDeletedMessageModule()));
+        new CassandraDeletedMessageModule(),
+        new CassandraMailboxChangesModule()));
     public static final int MAX_ACL_RETRY = 10;
 
     private final MessageUidProvider messageUidProvider;
@@ -119,7 +121,8 @@ public class CassandraMapperProvider implements MapperProvider {
             mailboxPathDAO,
             firstUnseenDAO,
             new CassandraApplicableFlagDAO(cassandra.getConf()),
-            deletedMessageDAO);
+            deletedMessageDAO,
+            new CassandraMailboxChangesDAO(cassandra.getConf()));
     }
 
     @Override
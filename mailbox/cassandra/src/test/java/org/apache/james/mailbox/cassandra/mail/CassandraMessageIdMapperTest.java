@@ -0,0 +1,118 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import javax.mail.Flags;
+import javax.mail.util.SharedByteArrayInputStream;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.store.mail.MessageIdMapper;
+import org.apache.james.mailbox.store.mail.MessageMapper;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class CassandraMessageIdMapperTest {
+
+    private static final long UID_VALIDITY = 42;
+    private static final String CONTENT = "Subject: Test1 \n\nBody1\n.\n";
+
+    private CassandraMapperProvider mapperProvider;
+    private MessageIdMapper messageIdMapper;
+    private MessageMapper messageMapper;
+    private SimpleMailbox inbox;
+    private SimpleMailbox work;
+
+    @Before
+    public void setUp() throws Exception {
+        mapperProvider = new CassandraMapperProvider();
+        mapperProvider.ensureMapperPrepared();
+        messageIdMapper = mapperProvider.createMessageIdMapper();
+        messageMapper = mapperProvider.createMessageMapper();
+        inbox = createMailbox(new MailboxPath("#private", "benwa", "INBOX"));
+        work = createMailbox(new MailboxPath("#private", "benwa", "INBOX.work"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mapperProvider.clearMapper();
+    }
+
+    @Test
+    public void deleteShouldReportTheMessageAsVanishedInAllItsMailboxes() throws Exception {
+        SimpleMailboxMessage message = save(createMessage(inbox), inbox);
+        SimpleMailboxMessage copy = save(SimpleMailboxMessage.copy(work.getMailboxId(), message), work);
+        long inboxModSeq = messageMapper.getHighestModSeq(inbox);
+        long workModSeq = messageMapper.getHighestModSeq(work);
+
+        messageIdMapper.delete(message.getMessageId());
+
+        assertThat(messageMapper.findExpungedUidsSince(inbox, MessageRange.all(), inboxModSeq).get())
+            .containsExactly(message.getUid());
+        assertThat(messageMapper.findExpungedUidsSince(work, MessageRange.all(), workModSeq).get())
+            .containsExactly(copy.getUid());
+    }
+
+    @Test
+    public void deleteFromMailboxesShouldReportTheMessageAsVanishedInTheseMailboxesOnly() throws Exception {
+        SimpleMailboxMessage message = save(createMessage(inbox), inbox);
+        save(SimpleMailboxMessage.copy(work.getMailboxId(), message), work);
+        long inboxModSeq = messageMapper.getHighestModSeq(inbox);
+        long workModSeq = messageMapper.getHighestModSeq(work);
+
+        messageIdMapper.delete(message.getMessageId(), ImmutableList.of(inbox.getMailboxId()));
+
+        assertThat(messageMapper.findExpungedUidsSince(inbox, MessageRange.all(), inboxModSeq).get())
+            .containsExactly(message.getUid());
+        assertThat(messageMapper.getHighestModSeq(inbox)).isGreaterThan(inboxModSeq);
+        assertThat(messageMapper.findExpungedUidsSince(work, MessageRange.all(), workModSeq).get())
+            .isEmpty();
+    }
+
+    private SimpleMailbox createMailbox(MailboxPath path) throws MailboxException {
+        SimpleMailbox mailbox = new SimpleMailbox(path, UID_VALIDITY);
+        mailbox.setMailboxId(mapperProvider.generateId());
+        mapperProvider.createMailboxMapper().save(mailbox);
+        return mailbox;
+    }
+
+    private SimpleMailboxMessage createMessage(SimpleMailbox mailbox) {
+        return new SimpleMailboxMessage(mapperProvider.generateMessageId(), new Date(), CONTENT.length(), 16,
+            new SharedByteArrayInputStream(CONTENT.getBytes()), new Flags(), new PropertyBuilder(), mailbox.getMailboxId());
+    }
+
+    private SimpleMailboxMessage save(SimpleMailboxMessage message, SimpleMailbox mailbox) throws MailboxException {
+        message.setUid(mapperProvider.generateMessageUid());
+        message.setModSeq(mapperProvider.generateModSeq(mailbox));
+        messageIdMapper.save(message);
+        return message;
+    }
+}
@@ -83,6 +83,7 @@ import org.apache.james.mailbox.store.mail.UidProvider;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.apache.james.mailbox.store.mail.utils.ApplicableFlagCalculator;
+import org.apache.james.mailbox.store.mail.utils.ChangedUidsCalculator;
 import org.apache.james.mailbox.store.transaction.NonTransactionalMapper;
 
 import com.google.common.base.Optional;
@@ -465,6 +466,17 @@ public class HBaseMessageMapper extends NonTransactionalMapper implements Messag
         }
     }
 
+    @Override
+    public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return new ChangedUidsCalculator(findInMailbox(mailbox, set, FetchType.Metadata, -1))
+            .computeChangedUidsSince(modSeq);
+    }
+
+    @Override
+    public Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return Optional.absent();
+    }
+
     @Override
     public List<MessageUid> findRecentMessageUidsInMailbox(Mailbox mailbox) throws MailboxException {
         /** TODO: improve performance by implementing a last seen and last recent value per mailbox.
@@ -200,6 +200,33 @@ public class JPAMessageMapper extends JPATransactionalMapper implements MessageM
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        try {
+            JPAId mailboxId = (JPAId) mailbox.getMailboxId();
+            Query query = getEntityManager().createNamedQuery("findChangedMessageUidsInMailbox")
+                .setParameter("idParam", mailboxId.getRawId())
+                .setParameter("modSeqParam", modSeq);
+            List<Long> resultList = query.getResultList();
+            ImmutableList.Builder<MessageUid> results = ImmutableList.builder();
+            for (long result: resultList) {
+                MessageUid uid = MessageUid.of(result);
+                if (set.includes(uid)) {
+                    results.add(uid);
+                }
+            }
+            return results.build();
+        } catch (PersistenceException e) {
+            throw new MailboxException("Search of changed messages failed in mailbox " + mailbox, e);
+        }
+    }
+
+    @Override
+    public Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return Optional.absent();
+    }
+
     @Override
     public Map<MessageUid, MessageMetaData> expungeMarkedForDeletionInMailbox(Mailbox mailbox, MessageRange set)
             throws MailboxException {
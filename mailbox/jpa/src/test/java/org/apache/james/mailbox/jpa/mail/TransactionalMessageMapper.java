@@ -116,6 +116,16 @@ public class TransactionalMessageMapper implements MessageMapper {
         return messageMapper.findRecentMessageUidsInMailbox(mailbox);
     }
 
+    @Override
+    public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return messageMapper.findChangedUidsSince(mailbox, set, modSeq);
+    }
+
+    @Override
+    public Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return messageMapper.findExpungedUidsSince(mailbox, set, modSeq);
+    }
+
     @Override
     public MessageMetaData add(final Mailbox mailbox, final MailboxMessage message) throws MailboxException {
         MessageMetaData data = messageMapper.execute(new Transaction<MessageMetaData>() {
@@ -71,6 +71,7 @@ import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
 import org.apache.james.mailbox.store.search.ListeningMessageSearchIndex;
 import org.apache.james.mailbox.store.search.SearchUtil;
+import org.apache.james.mailbox.store.search.SortKeys;
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.dom.Header;
 import org.apache.james.mime4j.dom.address.Address;
@@ -573,6 +574,8 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
 
         doc.add(new NumericField(SIZE_FIELD,Store.YES, true).setLongValue(membership.getFullContentOctets()));
 
+        final SortKeys sortKeys = SortKeys.of(membership);
+
         // content handler which will index the headers and the body of the message
         SimpleContentHandler handler = new SimpleContentHandler() {
             
@@ -581,11 +584,6 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
             public void headers(Header header) {
                 
                 Date sentDate = null;
-                String firstFromMailbox = "";
-                String firstToMailbox = "";
-                String firstCcMailbox = "";
-                String firstFromDisplay = "";
-                String firstToDisplay = "";
                 
                 Iterator<org.apache.james.mime4j.stream.Field> fields = header.iterator();
                 while(fields.hasNext()) {
@@ -635,44 +633,12 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
                                         org.apache.james.mime4j.dom.address.Mailbox mailbox = (org.apache.james.mime4j.dom.address.Mailbox) address;
                                         String value = AddressFormatter.DEFAULT.encode(mailbox).toUpperCase(Locale.ENGLISH);
                                         doc.add(new Field(field, value, Store.NO, Index.ANALYZED));
-                                        if (i == 0) {
-                                            String mailboxAddress = SearchUtil.getMailboxAddress(mailbox);
-                                            String mailboxDisplay = SearchUtil.getDisplayAddress(mailbox);
-
-                                            if ("To".equalsIgnoreCase(headerName)) {
-                                                firstToMailbox = mailboxAddress;
-                                                firstToDisplay = mailboxDisplay;
-                                            } else if ("From".equalsIgnoreCase(headerName)) {
-                                                firstFromMailbox = mailboxAddress;
-                                                firstFromDisplay = mailboxDisplay;
-                                                
-                                            } else if ("Cc".equalsIgnoreCase(headerName)) {
-                                                firstCcMailbox = mailboxAddress;
-                                            }
-                                            
-                                        }
                                     } else if (address instanceof Group) {
                                         MailboxList mList = ((Group) address).getMailboxes();
                                         for (int a = 0; a < mList.size(); a++) {
                                             org.apache.james.mime4j.dom.address.Mailbox mailbox = mList.get(a);
                                             String value = AddressFormatter.DEFAULT.encode(mailbox).toUpperCase(Locale.ENGLISH);
                                             doc.add(new Field(field, value, Store.NO, Index.ANALYZED));
-
-                                            if (i == 0 && a == 0) {
-                                                String mailboxAddress = SearchUtil.getMailboxAddress(mailbox);
-                                                String mailboxDisplay = SearchUtil.getDisplayAddress(mailbox);
-
-                                                if ("To".equalsIgnoreCase(headerName)) {
-                                                    firstToMailbox = mailboxAddress;
-                                                    firstToDisplay = mailboxDisplay;
-                                                } else if ("From".equalsIgnoreCase(headerName)) {
-                                                    firstFromMailbox = mailboxAddress;
-                                                    firstFromDisplay = mailboxDisplay;
-
-                                                } else if ("Cc".equalsIgnoreCase(headerName)) {
-                                                    firstCcMailbox = mailboxAddress;
-                                                }
-                                            }
                                         }
                                     }
                                 }
@@ -680,14 +646,9 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
                             
                             doc.add(new Field(field, headerValue, Store.NO, Index.ANALYZED));
 
-                    } else if (headerName.equalsIgnoreCase("Subject")) {
-                        doc.add(new Field(BASE_SUBJECT_FIELD, SearchUtil.getBaseSubject(headerValue), Store.YES, Index.NOT_ANALYZED));
-                    } 
+                    }
                 }
-                if (sentDate == null) {
-                    sentDate = membership.getInternalDate();
-                } else {
-                    
+                if (sentDate != null) {
                     doc.add(new Field(SENT_DATE_FIELD_YEAR_RESOLUTION, DateTools.dateToString(sentDate, DateTools.Resolution.YEAR), Store.NO, Index.NOT_ANALYZED));
                     doc.add(new Field(SENT_DATE_FIELD_MONTH_RESOLUTION, DateTools.dateToString(sentDate, DateTools.Resolution.MONTH), Store.NO, Index.NOT_ANALYZED));
                     doc.add(new Field(SENT_DATE_FIELD_DAY_RESOLUTION, DateTools.dateToString(sentDate, DateTools.Resolution.DAY), Store.NO, Index.NOT_ANALYZED));
@@ -697,13 +658,15 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
                     doc.add(new Field(SENT_DATE_FIELD_MILLISECOND_RESOLUTION, DateTools.dateToString(sentDate, DateTools.Resolution.MILLISECOND), Store.NO, Index.NOT_ANALYZED));
                     
                 }
-                doc.add(new Field(SENT_DATE_SORT_FIELD_MILLISECOND_RESOLUTION,DateTools.dateToString(sentDate, DateTools.Resolution.MILLISECOND), Store.NO, Index.NOT_ANALYZED));
 
-                doc.add(new Field(FIRST_FROM_MAILBOX_NAME_FIELD, firstFromMailbox, Store.YES, Index.NOT_ANALYZED));
-                doc.add(new Field(FIRST_TO_MAILBOX_NAME_FIELD, firstToMailbox, Store.YES, Index.NOT_ANALYZED));
-                doc.add(new Field(FIRST_CC_MAILBOX_NAME_FIELD, firstCcMailbox, Store.YES, Index.NOT_ANALYZED));
-                doc.add(new Field(FIRST_FROM_MAILBOX_DISPLAY_FIELD, firstFromDisplay, Store.YES, Index.NOT_ANALYZED));
-                doc.add(new Field(FIRST_TO_MAILBOX_DISPLAY_FIELD, firstToDisplay, Store.YES, Index.NOT_ANALYZED));
+                // The sort fields use the keys stored with the message, so that they match the other indexes
+                doc.add(new Field(BASE_SUBJECT_FIELD, sortKeys.getBaseSubject(), Store.YES, Index.NOT_ANALYZED));
+                doc.add(new Field(SENT_DATE_SORT_FIELD_MILLISECOND_RESOLUTION,DateTools.dateToString(new Date(sortKeys.getSentDate()), DateTools.Resolution.MILLISECOND), Store.NO, Index.NOT_ANALYZED));
+                doc.add(new Field(FIRST_FROM_MAILBOX_NAME_FIELD, sortKeys.getMailboxFrom(), Store.YES, Index.NOT_ANALYZED));
+                doc.add(new Field(FIRST_TO_MAILBOX_NAME_FIELD, sortKeys.getMailboxTo(), Store.YES, Index.NOT_ANALYZED));
+                doc.add(new Field(FIRST_CC_MAILBOX_NAME_FIELD, sortKeys.getMailboxCc(), Store.YES, Index.NOT_ANALYZED));
+                doc.add(new Field(FIRST_FROM_MAILBOX_DISPLAY_FIELD, sortKeys.getDisplayFrom(), Store.YES, Index.NOT_ANALYZED));
+                doc.add(new Field(FIRST_TO_MAILBOX_DISPLAY_FIELD, sortKeys.getDisplayTo(), Store.YES, Index.NOT_ANALYZED));
            
             }
 
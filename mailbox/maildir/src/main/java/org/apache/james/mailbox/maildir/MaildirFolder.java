@@ -31,8 +31,11 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -61,6 +64,7 @@ public class MaildirFolder {
 
     public static final String VALIDITY_FILE = "james-uidvalidity";
     public static final String UIDLIST_FILE = "james-uidlist";
+    public static final String UIDINDEX_FILE = "james-uidindex";
     public static final String ACL_FILE = "james-acl";
     public static final String CUR = "cur";
     public static final String NEW = "new";
@@ -72,6 +76,7 @@ public class MaildirFolder {
     private final File tmpFolder;
     private final File uidFile;
     private final File aclFile;
+    private final MaildirUidIndex uidIndex;
     
     private Optional<MessageUid> lastUid;
     private int messageCount = 0;
@@ -95,6 +100,7 @@ public class MaildirFolder {
         this.tmpFolder = new File(rootFolder, TMP);
         this.uidFile = new File(rootFolder, UIDLIST_FILE);
         this.aclFile = new File(rootFolder, ACL_FILE);
+        this.uidIndex = new MaildirUidIndex(new File(rootFolder, UIDINDEX_FILE), uidFile);
         this.locker = locker;
         this.path = path;
         this.lastUid = Optional.absent();
@@ -328,7 +334,8 @@ public class MaildirFolder {
     }
     
     /**
-     * Searches the uid list for a certain uid and returns the according {@link MaildirMessageName}
+     * Searches the uid list for a certain uid and returns the according {@link MaildirMessageName}.
+     * The uid index is used without locking when it is up to date.
      * 
      * @param session
      * @param uid The uid to search for
@@ -336,43 +343,21 @@ public class MaildirFolder {
      * @throws IOException If the uidlist file cannot be found or read
      */
     public MaildirMessageName getMessageNameByUid(final MailboxSession session, final MessageUid uid) throws MailboxException {
-       
+        Optional<String> indexedName = uidIndex.lookup(uid);
+        if (indexedName.isPresent()) {
+            return newMaildirMessageName(this, indexedName.get());
+        }
         return locker.executeWithLock(session, path, new LockAwareExecution<MaildirMessageName>() {
             
             @Override
             public MaildirMessageName execute() throws MailboxException {
-                FileReader fileReader = null;
-                BufferedReader reader = null;
-                File uidList = uidFile;
-                try {
-                    fileReader = new FileReader(uidList);
-                    reader = new BufferedReader(fileReader);
-                    String uidString = String.valueOf(uid.asLong());
-                    String line = reader.readLine(); // the header
-                    int lineNumber = 1;
-                    while ((line = reader.readLine()) != null) {
-                        if (!line.equals("")) {
-                            int gap = line.indexOf(" ");
-                            if (gap == -1) {
-                                // there must be some issues in the file if no gap can be found
-                            	session.getLog().info("Corrupted entry in uid-file " + uidList + " line " + lineNumber++);
-                                continue;
-                            }
-                            
-                            if (line.substring(0, gap).equals(uidString)) {
-                                return newMaildirMessageName(MaildirFolder.this, line.substring(gap + 1));
-                            }
-                        }
-                    }
-                    
-                    // TODO: Is this right!?
+                if (uidIndex.isUsable()) {
+                    // the uid is not part of the mailbox
                     return null;
-                } catch (IOException e) {
-                    throw new MailboxException("Unable to read messagename for uid " + uid, e);
-                } finally {
-                    IOUtils.closeQuietly(reader);
-                    IOUtils.closeQuietly(fileReader);
-                }                
+                }
+                Map<MessageUid, MaildirMessageName> uidMap = readUidFile(session, MessageUid.MIN_VALUE, null);
+                rebuildIndex(session, uidMap);
+                return uidMap.get(uid);
             }
         }, true);
     }
@@ -389,6 +374,16 @@ public class MaildirFolder {
      */
     public SortedMap<MessageUid, MaildirMessageName> getUidMap(final MailboxSession session, final MessageUid from, final MessageUid to)
     throws MailboxException {
+        if (uidFile.isFile() && !isModified()) {
+            Optional<SortedMap<MessageUid, String>> indexedNames = uidIndex.range(from, to);
+            if (indexedNames.isPresent()) {
+                SortedMap<MessageUid, MaildirMessageName> uidMap = new TreeMap<MessageUid, MaildirMessageName>();
+                for (Entry<MessageUid, String> entry : indexedNames.get().entrySet()) {
+                    uidMap.put(entry.getKey(), newMaildirMessageName(this, entry.getValue()));
+                }
+                return uidMap;
+            }
+        }
         return locker.executeWithLock(session, path, new LockAwareExecution<SortedMap<MessageUid, MaildirMessageName>>() {
             
             @Override
@@ -409,7 +404,9 @@ public class MaildirFolder {
                         }
                     } else {
                         // the uidList is up to date
-                        uidMap.putAll(readUidFile(session, from, to));
+                        Map<MessageUid, MaildirMessageName> allUids = readUidFile(session, MessageUid.MIN_VALUE, null);
+                        rebuildIndex(session, allUids);
+                        uidMap.putAll(truncateMap(allUids, from, to));
                     }
                 } else {
                     // the uidList does not exist
@@ -580,6 +577,7 @@ public class MaildirFolder {
         } finally {
             IOUtils.closeQuietly(pw);
         }     
+        rebuildIndex(null, uidMap);
 
         return uidMap;
     }
@@ -633,6 +631,7 @@ public class MaildirFolder {
             IOUtils.closeQuietly(fileReader);
             IOUtils.closeQuietly(reader);
         }               
+        rebuildIndex(null, uidMap);
         return uidMap;
     }
 
@@ -756,16 +755,19 @@ public class MaildirFolder {
      * @param name The name of the message's file
      * @return The uid of the message
      */
-    public MessageUid appendMessage(MailboxSession session, final String name) throws MailboxException {
+    public MessageUid appendMessage(final MailboxSession session, final String name) throws MailboxException {
         return locker.executeWithLock(session, path, new LockAwareExecution<MessageUid>() {
             
             @Override
             public MessageUid execute() throws MailboxException {
                 File uidList = uidFile;
                 MessageUid uid = null;
+                boolean appended = false;
+                Map<MessageUid, String> createdNames = null;
                 FileReader fileReader = null;
                 BufferedReader reader = null;
                 PrintWriter pw = null;
+                beginIndexWrite(session);
                 try {
                     if (uidList.isFile()) {
                         fileReader = new FileReader(uidList);
@@ -775,11 +777,22 @@ public class MaildirFolder {
                         if (line != null)
                             readUidListHeader(line);
                         ArrayList<String> lines = new ArrayList<String>();
-                        while ((line = reader.readLine()) != null)
+                        String baseName = stripMetaFromName(name);
+                        while ((line = reader.readLine()) != null) {
+                            int gap = line.indexOf(" ");
+                            if (gap != -1 && stripMetaFromName(line.substring(gap + 1)).equals(baseName)) {
+                                // already registered, for instance by a MaildirWatcher
+                                uid = MessageUid.of(Long.valueOf(line.substring(0, gap)));
+                                line = String.valueOf(uid.asLong()) + " " + name;
+                            }
                             lines.add(line);
-                        uid = getNextUid();
-                        lines.add(String.valueOf(uid.asLong()) + " " + name);
-                        messageCount++;
+                        }
+                        if (uid == null) {
+                            uid = getNextUid();
+                            lines.add(String.valueOf(uid.asLong()) + " " + name);
+                            messageCount++;
+                            appended = true;
+                        }
                         pw = new PrintWriter(uidList);
                         pw.println(createUidListHeader());
                         for (String entry : lines)
@@ -793,10 +806,12 @@ public class MaildirFolder {
                         String[] newFiles = newFolder.list();
                         messageCount = curFiles.length + newFiles.length;
                         ArrayList<String> lines = new ArrayList<String>();
+                        createdNames = new TreeMap<MessageUid, String>();
                         String[] allFiles = (String[]) ArrayUtils.addAll(curFiles, newFiles);
                         for (String file : allFiles) {
                             MessageUid theUid = getNextUid();
                             lines.add(String.valueOf(theUid.asLong()) + " " + file);
+                            createdNames.put(theUid, file);
                             // the listed names already include the message to append
                             if (file.equals(name))
                                 uid = theUid;
@@ -813,6 +828,13 @@ public class MaildirFolder {
                     IOUtils.closeQuietly(reader);
                     IOUtils.closeQuietly(fileReader);
                 }
+                if (createdNames != null) {
+                    rebuildIndexWithNames(session, createdNames);
+                } else if (appended) {
+                    appendToIndex(session, uid, name);
+                } else if (uid != null) {
+                    updateIndex(session, uid, name);
+                }
                 if (uid == null) {
                     throw new MailboxException("Unable to append msg");
                 } else {
@@ -830,7 +852,7 @@ public class MaildirFolder {
      * @param messageName
      * @throws MailboxException
      */
-    public void update(MailboxSession session, final MessageUid uid, final String messageName) throws MailboxException {
+    public void update(final MailboxSession session, final MessageUid uid, final String messageName) throws MailboxException {
         locker.executeWithLock(session, path, new LockAwareExecution<Void>() {
             
             @Override
@@ -839,6 +861,7 @@ public class MaildirFolder {
                 FileReader fileReader = null;
                 BufferedReader reader = null;
                 PrintWriter writer = null;
+                beginIndexWrite(session);
                 try {
                     fileReader = new FileReader(uidList);
                     reader = new BufferedReader(fileReader);
@@ -862,6 +885,7 @@ public class MaildirFolder {
                     IOUtils.closeQuietly(reader);
                     IOUtils.closeQuietly(fileReader);
                 }    
+                updateIndex(session, uid, messageName);
                 return null;
             }
         }, true);
@@ -885,6 +909,7 @@ public class MaildirFolder {
                 BufferedReader reader = null;
                 PrintWriter writer = null;
                 MaildirMessageName deletedMessage = null;
+                beginIndexWrite(session);
                 try {
                     fileReader = new FileReader(uidList);
                     reader = new BufferedReader(fileReader);
@@ -917,8 +942,6 @@ public class MaildirFolder {
                         for (String entry : lines)
                             writer.println(entry);
                     }
-                    return deletedMessage;
-
                 } catch (IOException e) {
                     throw new MailboxException("Unable to delete msg with uid " + uid, e);
                 } finally {
@@ -926,12 +949,242 @@ public class MaildirFolder {
                     IOUtils.closeQuietly(reader);
                     IOUtils.closeQuietly(fileReader);
                 }   
+                removeFromIndex(session, uid);
+                return deletedMessage;
             }
         }, true);
         
 
     }
     
+    /**
+     * Records in the uid list the message files created, renamed or deleted by another program,
+     * for instance an external MDA or MUA writing into this maildir.
+     *
+     * A created file whose base name is already listed is a rename, a deleted file is only
+     * removed from the uid list when the message does not exist under another name.
+     *
+     * @param session
+     * @param createdNames The names of the files which appeared in ./cur or ./new
+     * @param deletedNames The names of the files which disappeared from ./cur or ./new
+     * @return The changes actually recorded in the uid list
+     * @throws MailboxException If there is a problem with the uid list file
+     */
+    public Changes synchronize(MailboxSession session, Collection<String> createdNames, Collection<String> deletedNames)
+    throws MailboxException {
+        return synchronize(session, createdNames, deletedNames, false);
+    }
+
+    private Changes synchronize(final MailboxSession session, final Collection<String> createdNames, final Collection<String> deletedNames,
+            final boolean allNames) throws MailboxException {
+        return locker.executeWithLock(session, path, new LockAwareExecution<Changes>() {
+
+            @Override
+            public Changes execute() throws MailboxException {
+                if (!uidFile.isFile()) {
+                    // the uid list will be created, with all the messages, on next read
+                    return new Changes();
+                }
+                SortedMap<MessageUid, MaildirMessageName> uidMap = new TreeMap<MessageUid, MaildirMessageName>(
+                    readUidFile(session, MessageUid.MIN_VALUE, null));
+                Map<String, MessageUid> uidsByBaseName = new HashMap<String, MessageUid>(uidMap.size());
+                for (Entry<MessageUid, MaildirMessageName> entry : uidMap.entrySet()) {
+                    uidsByBaseName.put(stripMetaFromName(entry.getValue().getFullName()), entry.getKey());
+                }
+
+                if (allNames) {
+                    for (MaildirMessageName messageName : uidMap.values()) {
+                        deletedNames.add(messageName.getFullName());
+                    }
+                }
+
+                Changes changes = new Changes();
+                for (String name : createdNames) {
+                    if (!isListed(name)) {
+                        continue;
+                    }
+                    MessageUid uid = uidsByBaseName.get(stripMetaFromName(name));
+                    MaildirMessageName messageName = newMaildirMessageName(MaildirFolder.this, name);
+                    if (uid == null) {
+                        uid = getNextUid();
+                        messageCount++;
+                        uidsByBaseName.put(stripMetaFromName(name), uid);
+                        changes.added.put(uid, messageName);
+                    } else if (!uidMap.get(uid).getFullName().equals(name)) {
+                        if (changes.added.containsKey(uid)) {
+                            changes.added.put(uid, messageName);
+                        } else {
+                            if (!changes.previousNames.containsKey(uid)) {
+                                changes.previousNames.put(uid, uidMap.get(uid));
+                            }
+                            changes.renamed.put(uid, messageName);
+                        }
+                    } else {
+                        continue;
+                    }
+                    uidMap.put(uid, messageName);
+                }
+                for (String name : deletedNames) {
+                    MessageUid uid = uidsByBaseName.get(stripMetaFromName(name));
+                    if (uid != null && uidMap.get(uid).getFullName().equals(name) && !isListed(name)) {
+                        changes.removed.put(uid, uidMap.remove(uid));
+                        uidsByBaseName.remove(stripMetaFromName(name));
+                        messageCount--;
+                    }
+                }
+                for (MessageUid uid : changes.removed.keySet()) {
+                    changes.renamed.remove(uid);
+                    changes.previousNames.remove(uid);
+                    changes.added.remove(uid);
+                }
+                if (changes.isEmpty()) {
+                    return changes;
+                }
+
+                beginIndexWrite(session);
+                PrintWriter pw = null;
+                try {
+                    pw = new PrintWriter(uidFile);
+                    pw.println(createUidListHeader());
+                    for (Entry<MessageUid, MaildirMessageName> entry : uidMap.entrySet())
+                        pw.println(String.valueOf(entry.getKey().asLong()) + " " + entry.getValue().getFullName());
+                } catch (IOException e) {
+                    throw new MailboxException("Unable to synchronize uid file", e);
+                } finally {
+                    IOUtils.closeQuietly(pw);
+                }
+                for (MessageUid uid : changes.removed.keySet()) {
+                    removeFromIndex(session, uid);
+                }
+                for (Entry<MessageUid, MaildirMessageName> entry : changes.renamed.entrySet()) {
+                    updateIndex(session, entry.getKey(), entry.getValue().getFullName());
+                }
+                for (Entry<MessageUid, MaildirMessageName> entry : changes.added.entrySet()) {
+                    appendToIndex(session, entry.getKey(), entry.getValue().getFullName());
+                }
+                return changes;
+            }
+        }, true);
+    }
+
+    /**
+     * Compares the whole content of ./cur and ./new with the uid list, when the individual
+     * file changes are unknown.
+     *
+     * @param session
+     * @return The changes actually recorded in the uid list
+     * @throws MailboxException If there is a problem with the uid list file
+     */
+    public Changes synchronizeAll(MailboxSession session) throws MailboxException {
+        List<String> createdNames = new ArrayList<String>();
+        for (File folder : new File[] { curFolder, newFolder }) {
+            String[] names = folder.list();
+            if (names != null) {
+                createdNames.addAll(Arrays.asList(names));
+            }
+        }
+        return synchronize(session, createdNames, new ArrayList<String>(), true);
+    }
+
+    private boolean isListed(String name) {
+        return new File(curFolder, name).isFile() || new File(newFolder, name).isFile();
+    }
+
+    /**
+     * Changes recorded by {@link MaildirFolder#synchronize(MailboxSession, Collection, Collection)}
+     */
+    public static class Changes {
+        private final SortedMap<MessageUid, MaildirMessageName> added = new TreeMap<MessageUid, MaildirMessageName>();
+        private final SortedMap<MessageUid, MaildirMessageName> renamed = new TreeMap<MessageUid, MaildirMessageName>();
+        private final SortedMap<MessageUid, MaildirMessageName> previousNames = new TreeMap<MessageUid, MaildirMessageName>();
+        private final SortedMap<MessageUid, MaildirMessageName> removed = new TreeMap<MessageUid, MaildirMessageName>();
+
+        public SortedMap<MessageUid, MaildirMessageName> getAdded() {
+            return added;
+        }
+
+        /**
+         * The new names of the renamed messages, a rename usually meaning that flags changed
+         */
+        public SortedMap<MessageUid, MaildirMessageName> getRenamed() {
+            return renamed;
+        }
+
+        /**
+         * The names the renamed messages had before
+         */
+        public SortedMap<MessageUid, MaildirMessageName> getPreviousNames() {
+            return previousNames;
+        }
+
+        public SortedMap<MessageUid, MaildirMessageName> getRemoved() {
+            return removed;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && renamed.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    private void rebuildIndex(MailboxSession session, Map<MessageUid, MaildirMessageName> uidMap) {
+        Map<MessageUid, String> names = new HashMap<MessageUid, String>(uidMap.size());
+        for (Entry<MessageUid, MaildirMessageName> entry : uidMap.entrySet()) {
+            names.put(entry.getKey(), entry.getValue().getFullName());
+        }
+        rebuildIndexWithNames(session, names);
+    }
+
+    private void rebuildIndexWithNames(MailboxSession session, Map<MessageUid, String> names) {
+        try {
+            uidIndex.rebuild(names);
+        } catch (IOException e) {
+            discardIndex(session, e);
+        }
+    }
+
+    private void beginIndexWrite(MailboxSession session) {
+        try {
+            uidIndex.beginWrite();
+        } catch (IOException e) {
+            discardIndex(session, e);
+        }
+    }
+
+    private void appendToIndex(MailboxSession session, MessageUid uid, String name) {
+        try {
+            uidIndex.append(uid, name);
+        } catch (IOException e) {
+            discardIndex(session, e);
+        }
+    }
+
+    private void updateIndex(MailboxSession session, MessageUid uid, String name) {
+        try {
+            uidIndex.update(uid, name);
+        } catch (IOException e) {
+            discardIndex(session, e);
+        }
+    }
+
+    private void removeFromIndex(MailboxSession session, MessageUid uid) {
+        try {
+            uidIndex.remove(uid);
+        } catch (IOException e) {
+            discardIndex(session, e);
+        }
+    }
+
+    /**
+     * The uid index is only a cache of the uid list: failing to maintain it must not fail
+     * the mailbox operation. It gets rebuilt on the next lookup.
+     */
+    private void discardIndex(MailboxSession session, IOException e) {
+        if (session != null) {
+            session.getLog().warn("Discarding uid index of " + rootFolder, e);
+        }
+        uidIndex.discard();
+    }
+
     /** 
      * The absolute path of this folder.
      */
@@ -56,6 +56,8 @@ public class MaildirStore implements UidProvider, ModSeqProvider {
 
     private boolean messageNameStrictParse = false;
 
+    private volatile MaildirWatcher watcher;
+
     /**
      * Construct a MaildirStore with a location. The location String
      * currently may contain the
@@ -85,11 +87,28 @@ public class MaildirStore implements UidProvider, ModSeqProvider {
      * @return The MaildirFolder
      */
     public MaildirFolder createMaildirFolder(Mailbox mailbox) {
+        MaildirWatcher currentWatcher = watcher;
+        if (currentWatcher != null) {
+            currentWatcher.watch(mailbox);
+        }
+        return newMaildirFolder(mailbox);
+    }
+
+    MaildirFolder newMaildirFolder(Mailbox mailbox) {
         MaildirFolder mf = new MaildirFolder(getFolderName(mailbox), mailbox.generateAssociatedPath(), locker);
         mf.setMessageNameStrictParse(isMessageNameStrictParse());
         return mf;
     }
 
+    /**
+     * Sets the {@link MaildirWatcher} to notify of the mailboxes in use, <code>null</code> to
+     * stop watching them.
+     * @param watcher
+     */
+    public void setWatcher(MaildirWatcher watcher) {
+        this.watcher = watcher;
+    }
+
     /**
      * Creates a Mailbox object with data loaded from the file system
      * @param root The main maildir folder containing the mailbox to load
@@ -0,0 +1,527 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.maildir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.james.mailbox.MessageUid;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+
+/**
+ * Binary index of the uid list of a {@link MaildirFolder}, used to look message names up by uid
+ * without scanning the uid list file nor taking the mailbox lock.
+ * <p>
+ * The index is a single file made of a header, a fixed capacity table of records sorted by uid,
+ * and the message names appended after that table. A record holds a uid together with the offset
+ * and the length of its message name. Readers binary search the table with positional reads, so
+ * that a lookup only reads the header, a few records and a name.
+ * Appending a message or renaming it only appends its name and writes one record. The file is
+ * rewritten, then renamed over the previous one, when the table is full or the whole uid list
+ * has been rebuilt.
+ * <p>
+ * Writers are expected to hold the mailbox lock. The generation stored in the header is odd while
+ * the index is being modified. Readers only trust what they read when the generation was even and
+ * did not change meanwhile, and when the uid list file still has the length and the modification
+ * date the index was written for. Otherwise callers should fall back to the uid list, which stays
+ * the reference: the index can be deleted at any time and gets rebuilt from it.
+ */
+public class MaildirUidIndex {
+
+    private static final int MAGIC = 0x4A554958;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_POSITION = 0;
+    private static final int VERSION_POSITION = 4;
+    private static final int GENERATION_POSITION = 8;
+    private static final int UID_LIST_MODIFIED_POSITION = 16;
+    private static final int UID_LIST_LENGTH_POSITION = 24;
+    private static final int CAPACITY_POSITION = 32;
+    private static final int COUNT_POSITION = 36;
+    private static final int NAMES_END_POSITION = 40;
+    private static final int HEADER_SIZE = 48;
+
+    private static final int RECORD_UID = 0;
+    private static final int RECORD_NAME_OFFSET = 8;
+    private static final int RECORD_NAME_LENGTH = 16;
+    private static final int RECORD_SIZE = 20;
+
+    private static final int REMOVED = -1;
+    private static final int RECORDS_PER_READ = 256;
+    private static final int MIN_CAPACITY = 64;
+    private static final Charset CHARSET = Charsets.UTF_8;
+
+    private final File indexFile;
+    private final File uidList;
+
+    public MaildirUidIndex(File indexFile, File uidList) {
+        this.indexFile = indexFile;
+        this.uidList = uidList;
+    }
+
+    /**
+     * Returns the name of the message with the given uid, or absent if the index does not hold
+     * it or can not be trusted.
+     */
+    public Optional<String> lookup(MessageUid uid) {
+        RandomAccessFile file = null;
+        try {
+            file = openForReading();
+            if (file == null) {
+                return Optional.absent();
+            }
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = readHeader(channel);
+            long generation = header.getLong(GENERATION_POSITION);
+            long size = channel.size();
+            if (!isUsable(header, size)) {
+                return Optional.absent();
+            }
+            int position = search(channel, header.getInt(COUNT_POSITION), uid.asLong());
+            Optional<String> name = Optional.absent();
+            if (position >= 0) {
+                name = readName(channel, readRecord(channel, position), 0, size);
+            }
+            if (readHeader(channel).getLong(GENERATION_POSITION) != generation) {
+                return Optional.absent();
+            }
+            return name;
+        } catch (IOException e) {
+            return Optional.absent();
+        } catch (IndexOutOfBoundsException e) {
+            return Optional.absent();
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Returns the names of the messages with a uid between the given boundaries, or absent if the
+     * index can not be trusted.
+     *
+     * @param to The upper uid limit. <code>null</code> disables the upper limit
+     */
+    public Optional<SortedMap<MessageUid, String>> range(MessageUid from, MessageUid to) {
+        RandomAccessFile file = null;
+        try {
+            file = openForReading();
+            if (file == null) {
+                return Optional.absent();
+            }
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = readHeader(channel);
+            long generation = header.getLong(GENERATION_POSITION);
+            long size = channel.size();
+            if (!isUsable(header, size)) {
+                return Optional.absent();
+            }
+            int count = header.getInt(COUNT_POSITION);
+            int position = insertionPoint(search(channel, count, from.asLong()));
+            int end = count;
+            if (to != null) {
+                int toPosition = search(channel, count, to.asLong());
+                end = toPosition >= 0 ? toPosition + 1 : insertionPoint(toPosition);
+            }
+            SortedMap<MessageUid, String> names = new TreeMap<MessageUid, String>();
+            ByteBuffer records = ByteBuffer.allocate(RECORDS_PER_READ * RECORD_SIZE);
+            while (position < end) {
+                int chunk = Math.min(RECORDS_PER_READ, end - position);
+                records.clear();
+                records.limit(chunk * RECORD_SIZE);
+                readFully(channel, records, recordPosition(position));
+                for (int i = 0; i < chunk; i++) {
+                    int recordOffset = i * RECORD_SIZE;
+                    Optional<String> name = readName(channel, records, recordOffset, size);
+                    if (name.isPresent()) {
+                        names.put(MessageUid.of(records.getLong(recordOffset + RECORD_UID)), name.get());
+                    }
+                }
+                position += chunk;
+            }
+            if (readHeader(channel).getLong(GENERATION_POSITION) != generation) {
+                return Optional.absent();
+            }
+            return Optional.of(names);
+        } catch (IOException e) {
+            return Optional.absent();
+        } catch (IndexOutOfBoundsException e) {
+            return Optional.absent();
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Tells whether the index matches the uid list. Only meaningful while holding the mailbox lock.
+     */
+    public boolean isUsable() {
+        RandomAccessFile file = null;
+        try {
+            file = openForReading();
+            return file != null && isUsable(readHeader(file.getChannel()), file.length());
+        } catch (IOException e) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Marks the index as being modified. To be called before writing the uid list, so that no
+     * reader relies on the index while both are out of sync.
+     */
+    public void beginWrite() throws IOException {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = readHeader(channel);
+            long generation = header.getLong(GENERATION_POSITION);
+            if (!isValidHeader(header, channel.size()) || isOdd(generation)) {
+                // a previous write did not complete
+                IOUtils.closeQuietly(file);
+                discard();
+                return;
+            }
+            writeLong(channel, GENERATION_POSITION, generation + 1);
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Replaces the whole index by the given uid to message name mapping.
+     */
+    public void rebuild(Map<MessageUid, String> names) throws IOException {
+        SortedMap<MessageUid, String> sortedNames = new TreeMap<MessageUid, String>(names);
+        int capacity = Math.max(MIN_CAPACITY, sortedNames.size() * 2);
+        long namesStart = namesStart(capacity);
+
+        ByteBuffer records = ByteBuffer.allocate(capacity * RECORD_SIZE);
+        ByteBuffer nameBytes = ByteBuffer.allocate(encodedLength(sortedNames));
+        for (Entry<MessageUid, String> entry : sortedNames.entrySet()) {
+            byte[] name = entry.getValue().getBytes(CHARSET);
+            records.putLong(entry.getKey().asLong());
+            records.putLong(namesStart + nameBytes.position());
+            records.putInt(name.length);
+            nameBytes.put(name);
+        }
+        records.clear();
+        nameBytes.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC_POSITION, MAGIC);
+        header.putInt(VERSION_POSITION, VERSION);
+        header.putLong(GENERATION_POSITION, 0);
+        header.putLong(UID_LIST_MODIFIED_POSITION, uidList.lastModified());
+        header.putLong(UID_LIST_LENGTH_POSITION, uidList.length());
+        header.putInt(CAPACITY_POSITION, capacity);
+        header.putInt(COUNT_POSITION, sortedNames.size());
+        header.putLong(NAMES_END_POSITION, namesStart + nameBytes.limit());
+
+        File temporaryFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temporaryFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            writeFully(channel, header, 0);
+            writeFully(channel, records, HEADER_SIZE);
+            writeFully(channel, nameBytes, namesStart);
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+        if (!temporaryFile.renameTo(indexFile)) {
+            FileUtils.deleteQuietly(indexFile);
+            if (!temporaryFile.renameTo(indexFile)) {
+                FileUtils.deleteQuietly(temporaryFile);
+                throw new IOException("Could not replace " + indexFile);
+            }
+        }
+    }
+
+    /**
+     * Adds a message, whose uid should be greater than all indexed uids.
+     */
+    public void append(MessageUid uid, String name) throws IOException {
+        RandomAccessFile file = openForWriting();
+        if (file == null) {
+            return;
+        }
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = readHeader(channel);
+            int count = header.getInt(COUNT_POSITION);
+            boolean isFull = count >= header.getInt(CAPACITY_POSITION);
+            if (isFull || (count > 0 && readRecord(channel, count - 1).getLong(RECORD_UID) >= uid.asLong())) {
+                SortedMap<MessageUid, String> names = readAll(channel, header);
+                names.put(uid, name);
+                IOUtils.closeQuietly(file);
+                rebuild(names);
+                return;
+            }
+            long nameOffset = appendName(channel, header, name);
+            writeRecord(channel, count, uid.asLong(), nameOffset, name.getBytes(CHARSET).length);
+            writeInt(channel, COUNT_POSITION, count + 1);
+            commit(channel, header);
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Changes the name of an indexed message.
+     */
+    public void update(MessageUid uid, String name) throws IOException {
+        RandomAccessFile file = openForWriting();
+        if (file == null) {
+            return;
+        }
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = readHeader(channel);
+            int position = search(channel, header.getInt(COUNT_POSITION), uid.asLong());
+            if (position >= 0) {
+                long nameOffset = appendName(channel, header, name);
+                writeRecord(channel, position, uid.asLong(), nameOffset, name.getBytes(CHARSET).length);
+            }
+            commit(channel, header);
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Removes a message from the index.
+     */
+    public void remove(MessageUid uid) throws IOException {
+        RandomAccessFile file = openForWriting();
+        if (file == null) {
+            return;
+        }
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = readHeader(channel);
+            int position = search(channel, header.getInt(COUNT_POSITION), uid.asLong());
+            if (position >= 0) {
+                writeRecord(channel, position, uid.asLong(), 0, REMOVED);
+            }
+            commit(channel, header);
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Deletes the index. It will be rebuilt from the uid list.
+     */
+    public void discard() {
+        FileUtils.deleteQuietly(indexFile);
+    }
+
+    private RandomAccessFile openForReading() throws IOException {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        return new RandomAccessFile(indexFile, "r");
+    }
+
+    private RandomAccessFile openForWriting() throws IOException {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+        ByteBuffer header = readHeader(file.getChannel());
+        if (!isValidHeader(header, file.length())) {
+            IOUtils.closeQuietly(file);
+            discard();
+            return null;
+        }
+        return file;
+    }
+
+    private boolean isUsable(ByteBuffer header, long size) {
+        return isValidHeader(header, size)
+            && !isOdd(header.getLong(GENERATION_POSITION))
+            && header.getLong(UID_LIST_MODIFIED_POSITION) == uidList.lastModified()
+            && header.getLong(UID_LIST_LENGTH_POSITION) == uidList.length();
+    }
+
+    private boolean isValidHeader(ByteBuffer header, long size) {
+        int capacity = header.getInt(CAPACITY_POSITION);
+        int count = header.getInt(COUNT_POSITION);
+        return header.getInt(MAGIC_POSITION) == MAGIC
+            && header.getInt(VERSION_POSITION) == VERSION
+            && capacity > 0
+            && count >= 0 && count <= capacity
+            && header.getLong(NAMES_END_POSITION) <= size;
+    }
+
+    private boolean isOdd(long generation) {
+        return (generation & 1) == 1;
+    }
+
+    private long namesStart(int capacity) {
+        return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+    }
+
+    private int encodedLength(Map<MessageUid, String> names) {
+        int length = 0;
+        for (String name : names.values()) {
+            length += name.getBytes(CHARSET).length;
+        }
+        return length;
+    }
+
+    private int search(FileChannel channel, int count, long uid) throws IOException {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleUid = readRecord(channel, middle).getLong(RECORD_UID);
+            if (middleUid < uid) {
+                low = middle + 1;
+            } else if (middleUid > uid) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int insertionPoint(int searchResult) {
+        return searchResult >= 0 ? searchResult : -searchResult - 1;
+    }
+
+    private Optional<String> readName(FileChannel channel, ByteBuffer records, int recordOffset, long size) throws IOException {
+        long offset = records.getLong(recordOffset + RECORD_NAME_OFFSET);
+        int length = records.getInt(recordOffset + RECORD_NAME_LENGTH);
+        if (length == REMOVED) {
+            return Optional.absent();
+        }
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IndexOutOfBoundsException("Corrupted record in " + indexFile);
+        }
+        ByteBuffer name = ByteBuffer.allocate(length);
+        readFully(channel, name, offset);
+        return Optional.of(new String(name.array(), CHARSET));
+    }
+
+    private int recordPosition(int position) {
+        return HEADER_SIZE + position * RECORD_SIZE;
+    }
+
+    private SortedMap<MessageUid, String> readAll(FileChannel channel, ByteBuffer header) throws IOException {
+        int count = header.getInt(COUNT_POSITION);
+        SortedMap<MessageUid, String> names = new TreeMap<MessageUid, String>();
+        for (int position = 0; position < count; position++) {
+            ByteBuffer record = readRecord(channel, position);
+            int length = record.getInt(RECORD_NAME_LENGTH);
+            if (length != REMOVED) {
+                ByteBuffer name = ByteBuffer.allocate(length);
+                readFully(channel, name, record.getLong(RECORD_NAME_OFFSET));
+                names.put(MessageUid.of(record.getLong(RECORD_UID)), new String(name.array(), CHARSET));
+            }
+        }
+        return names;
+    }
+
+    private ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        return header;
+    }
+
+    private ByteBuffer readRecord(FileChannel channel, int position) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        readFully(channel, record, recordPosition(position));
+        return record;
+    }
+
+    private long appendName(FileChannel channel, ByteBuffer header, String name) throws IOException {
+        long namesEnd = header.getLong(NAMES_END_POSITION);
+        byte[] bytes = name.getBytes(CHARSET);
+        writeFully(channel, ByteBuffer.wrap(bytes), namesEnd);
+        header.putLong(NAMES_END_POSITION, namesEnd + bytes.length);
+        writeLong(channel, NAMES_END_POSITION, namesEnd + bytes.length);
+        return namesEnd;
+    }
+
+    private void writeRecord(FileChannel channel, int position, long uid, long nameOffset, int nameLength) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putLong(RECORD_UID, uid);
+        record.putLong(RECORD_NAME_OFFSET, nameOffset);
+        record.putInt(RECORD_NAME_LENGTH, nameLength);
+        writeFully(channel, record, recordPosition(position));
+    }
+
+    /**
+     * Records the uid list the index now matches, and ends the modification.
+     */
+    private void commit(FileChannel channel, ByteBuffer header) throws IOException {
+        long generation = header.getLong(GENERATION_POSITION);
+        writeLong(channel, UID_LIST_MODIFIED_POSITION, uidList.lastModified());
+        writeLong(channel, UID_LIST_LENGTH_POSITION, uidList.length());
+        writeLong(channel, GENERATION_POSITION, isOdd(generation) ? generation + 1 : generation + 2);
+    }
+
+    private void writeInt(FileChannel channel, long position, int value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(0, value);
+        writeFully(channel, buffer, position);
+    }
+
+    private void writeLong(FileChannel channel, long position, long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(0, value);
+        writeFully(channel, buffer, position);
+    }
+
+    private void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long writePosition = position;
+        while (buffer.hasRemaining()) {
+            writePosition += channel.write(buffer, writePosition);
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long readPosition = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, readPosition);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + indexFile);
+            }
+            readPosition += read;
+        }
+    }
+}
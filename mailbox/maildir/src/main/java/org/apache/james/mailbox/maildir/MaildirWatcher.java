@@ -0,0 +1,335 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.maildir;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Flags;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MessageMetaData;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.SimpleMessageMetaData;
+import org.apache.james.mailbox.store.StoreMailboxManager;
+import org.apache.james.mailbox.store.event.MailboxEventDispatcher;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the ./cur and ./new folders of the maildir mailboxes in use, so that messages
+ * delivered, renamed or deleted by other programs (MDAs like procmail or dovecot-lda, other
+ * MUAs...) are recorded in the uid list and its index as soon as this happens. The matching
+ * mailbox events are dispatched, which notifies IMAP IDLE sessions without polling the maildir.
+ * <p>
+ * Once started, a mailbox is watched when the {@link MaildirStore} opens one of its folders,
+ * and stops being watched after being idle for a while. Events are processed in batches by a
+ * single thread, after a short delay letting the writers complete their own uid list updates.
+ */
+public class MaildirWatcher {
+
+    public static final long DEFAULT_IDLE_TIMEOUT_IN_MS = TimeUnit.MINUTES.toMillis(30);
+    public static final long DEFAULT_SETTLE_DELAY_IN_MS = 200;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaildirWatcher.class);
+    private static final String SESSION_USER = "maildir-watcher";
+    private static final long IDLE_CHECK_PERIOD_IN_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final MaildirStore store;
+    private final StoreMailboxManager mailboxManager;
+    private final long idleTimeoutInMs;
+    private final long settleDelayInMs;
+    private final ConcurrentHashMap<File, WatchedFolder> watchedFolders;
+    private final ConcurrentHashMap<WatchKey, WatchedFolder> watchedKeys;
+    private WatchService watchService;
+    private MailboxSession session;
+    private Thread thread;
+
+    public MaildirWatcher(MaildirStore store, StoreMailboxManager mailboxManager) {
+        this(store, mailboxManager, DEFAULT_IDLE_TIMEOUT_IN_MS, DEFAULT_SETTLE_DELAY_IN_MS);
+    }
+
+    public MaildirWatcher(MaildirStore store, StoreMailboxManager mailboxManager, long idleTimeoutInMs, long settleDelayInMs) {
+        this.store = store;
+        this.mailboxManager = mailboxManager;
+        this.idleTimeoutInMs = idleTimeoutInMs;
+        this.settleDelayInMs = settleDelayInMs;
+        this.watchedFolders = new ConcurrentHashMap<File, WatchedFolder>();
+        this.watchedKeys = new ConcurrentHashMap<WatchKey, WatchedFolder>();
+    }
+
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        session = mailboxManager.createSystemSession(SESSION_USER, LOGGER);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processEvents();
+            }
+        }, "maildir-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        store.setWatcher(this);
+    }
+
+    public void stop() {
+        store.setWatcher(null);
+        IOUtils.closeQuietly(watchService);
+        if (thread != null) {
+            thread.interrupt();
+        }
+        watchedFolders.clear();
+        watchedKeys.clear();
+    }
+
+    /**
+     * Starts watching the folders of the given mailbox, or marks them as still in use.
+     * @param mailbox
+     */
+    public void watch(Mailbox mailbox) {
+        File rootFolder = new File(store.getFolderName(mailbox));
+        WatchedFolder watchedFolder = watchedFolders.get(rootFolder);
+        if (watchedFolder != null) {
+            watchedFolder.touch();
+            return;
+        }
+        WatchedFolder candidate = new WatchedFolder(mailbox, rootFolder);
+        if (watchedFolders.putIfAbsent(rootFolder, candidate) == null) {
+            try {
+                candidate.register();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to watch maildir folder " + rootFolder, e);
+                unwatch(candidate);
+            } catch (ClosedWatchServiceException e) {
+                unwatch(candidate);
+            }
+        }
+    }
+
+    /**
+     * Tells whether the folders of the given mailbox are being watched.
+     * @param mailbox
+     */
+    public boolean isWatched(Mailbox mailbox) {
+        return watchedFolders.containsKey(new File(store.getFolderName(mailbox)));
+    }
+
+    private void processEvents() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.poll(IDLE_CHECK_PERIOD_IN_MS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Thread.sleep(settleDelayInMs);
+                    Map<WatchedFolder, FolderEvents> events = new HashMap<WatchedFolder, FolderEvents>();
+                    while (key != null) {
+                        collect(key, events);
+                        key = watchService.poll();
+                    }
+                    for (Entry<WatchedFolder, FolderEvents> entry : events.entrySet()) {
+                        synchronize(entry.getKey(), entry.getValue());
+                    }
+                }
+                expireIdleFolders();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.error("Error while processing maildir changes", e);
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Map<WatchedFolder, FolderEvents> events) {
+        WatchedFolder watchedFolder = watchedKeys.get(key);
+        List<WatchEvent<?>> keyEvents = key.pollEvents();
+        if (watchedFolder == null) {
+            key.cancel();
+            return;
+        }
+        FolderEvents folderEvents = events.get(watchedFolder);
+        if (folderEvents == null) {
+            folderEvents = new FolderEvents();
+            events.put(watchedFolder, folderEvents);
+        }
+        for (WatchEvent<?> event : keyEvents) {
+            if (event.kind() == OVERFLOW) {
+                folderEvents.overflow = true;
+            } else if (event.kind() == ENTRY_CREATE) {
+                folderEvents.createdNames.add(((Path) event.context()).toString());
+            } else if (event.kind() == ENTRY_DELETE) {
+                folderEvents.deletedNames.add(((Path) event.context()).toString());
+            }
+        }
+        if (!key.reset()) {
+            // the mailbox has been deleted or renamed
+            unwatch(watchedFolder);
+        }
+    }
+
+    private void synchronize(WatchedFolder watchedFolder, FolderEvents events) {
+        MaildirFolder folder = store.newMaildirFolder(watchedFolder.mailbox);
+        try {
+            MaildirFolder.Changes changes;
+            if (events.overflow) {
+                changes = folder.synchronizeAll(session);
+            } else {
+                changes = folder.synchronize(session, events.createdNames, events.deletedNames);
+            }
+            dispatch(watchedFolder.mailbox, changes);
+        } catch (MailboxException e) {
+            LOGGER.error("Unable to record changes made to maildir folder " + watchedFolder.rootFolder, e);
+        }
+    }
+
+    private void dispatch(Mailbox mailbox, MaildirFolder.Changes changes) {
+        MailboxEventDispatcher dispatcher = mailboxManager.getEventDispatcher();
+        if (!changes.getAdded().isEmpty()) {
+            dispatcher.added(session, toMetaData(changes.getAdded()), mailbox);
+        }
+        if (!changes.getRemoved().isEmpty()) {
+            dispatcher.expunged(session, toMetaData(changes.getRemoved()), mailbox);
+        }
+        List<MessageUid> uids = new ArrayList<MessageUid>();
+        List<UpdatedFlags> updatedFlags = new ArrayList<UpdatedFlags>();
+        for (Entry<MessageUid, MaildirMessageName> entry : changes.getRenamed().entrySet()) {
+            Flags oldFlags = flagsOf(changes.getPreviousNames().get(entry.getKey()));
+            Flags newFlags = flagsOf(entry.getValue());
+            if (!oldFlags.equals(newFlags)) {
+                uids.add(entry.getKey());
+                updatedFlags.add(UpdatedFlags.builder()
+                    .uid(entry.getKey())
+                    .modSeq(modSeqOf(entry.getValue()))
+                    .oldFlags(oldFlags)
+                    .newFlags(newFlags)
+                    .build());
+            }
+        }
+        if (!uids.isEmpty()) {
+            dispatcher.flagsUpdated(session, uids, mailbox, updatedFlags);
+        }
+    }
+
+    private SortedMap<MessageUid, MessageMetaData> toMetaData(SortedMap<MessageUid, MaildirMessageName> messageNames) {
+        SortedMap<MessageUid, MessageMetaData> metaData = new TreeMap<MessageUid, MessageMetaData>();
+        for (Entry<MessageUid, MaildirMessageName> entry : messageNames.entrySet()) {
+            MaildirMessageName messageName = entry.getValue();
+            Long size = messageName.getSize();
+            metaData.put(entry.getKey(), new SimpleMessageMetaData(entry.getKey(),
+                modSeqOf(messageName),
+                flagsOf(messageName),
+                size == null ? 0 : size,
+                messageName.getInternalDate(),
+                null));
+        }
+        return metaData;
+    }
+
+    private Flags flagsOf(MaildirMessageName messageName) {
+        if (messageName == null || messageName.getFlags() == null) {
+            return new Flags();
+        }
+        return messageName.getFlags();
+    }
+
+    private long modSeqOf(MaildirMessageName messageName) {
+        try {
+            return messageName.getFile().lastModified();
+        } catch (IOException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    private void expireIdleFolders() {
+        long now = System.currentTimeMillis();
+        for (WatchedFolder watchedFolder : watchedFolders.values()) {
+            if (now - watchedFolder.lastAccess > idleTimeoutInMs) {
+                unwatch(watchedFolder);
+            }
+        }
+    }
+
+    private void unwatch(WatchedFolder watchedFolder) {
+        watchedFolders.remove(watchedFolder.rootFolder, watchedFolder);
+        for (WatchKey key : watchedFolder.keys) {
+            key.cancel();
+            watchedKeys.remove(key);
+        }
+    }
+
+    private class WatchedFolder {
+        private final Mailbox mailbox;
+        private final File rootFolder;
+        private final List<WatchKey> keys;
+        private volatile long lastAccess;
+
+        private WatchedFolder(Mailbox mailbox, File rootFolder) {
+            this.mailbox = mailbox;
+            this.rootFolder = rootFolder;
+            this.keys = new ArrayList<WatchKey>();
+            this.lastAccess = System.currentTimeMillis();
+        }
+
+        private void register() throws IOException {
+            for (String subFolder : new String[] { MaildirFolder.CUR, MaildirFolder.NEW }) {
+                File folder = new File(rootFolder, subFolder);
+                if (folder.isDirectory()) {
+                    WatchKey key = folder.toPath().register(watchService, ENTRY_CREATE, ENTRY_DELETE, OVERFLOW);
+                    keys.add(key);
+                    watchedKeys.put(key, this);
+                }
+            }
+        }
+
+        private void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private static class FolderEvents {
+        private final Set<String> createdNames = new LinkedHashSet<String>();
+        private final Set<String> deletedNames = new LinkedHashSet<String>();
+        private boolean overflow = false;
+    }
+}
@@ -0,0 +1,242 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.maildir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.james.mailbox.MessageUid;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+public class MaildirUidIndexTest {
+
+    private static final MessageUid UID_1 = MessageUid.of(1);
+    private static final MessageUid UID_2 = MessageUid.of(2);
+    private static final MessageUid UID_3 = MessageUid.of(3);
+    private static final MessageUid UID_4 = MessageUid.of(4);
+    private static final String NAME_1 = "1283597817.M1P1.localhost,S=10:2,S";
+    private static final String NAME_2 = "1283597818.M2P1.localhost,S=20:2,";
+    private static final String NAME_3 = "1283597819.M3P1.localhost,S=30:2,F";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File uidList;
+    private File indexFile;
+    private MaildirUidIndex testee;
+
+    @Before
+    public void setUp() throws Exception {
+        uidList = temporaryFolder.newFile(MaildirFolder.UIDLIST_FILE);
+        indexFile = new File(temporaryFolder.getRoot(), MaildirFolder.UIDINDEX_FILE);
+        writeUidList("1 2 2");
+        testee = new MaildirUidIndex(indexFile, uidList);
+    }
+
+    @Test
+    public void lookupShouldReturnAbsentWhenNoIndex() {
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.absent());
+    }
+
+    @Test
+    public void isUsableShouldReturnFalseWhenNoIndex() {
+        assertThat(testee.isUsable()).isFalse();
+    }
+
+    @Test
+    public void lookupShouldReturnRebuiltNames() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1, UID_2, NAME_2));
+
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.of(NAME_1));
+        assertThat(testee.lookup(UID_2)).isEqualTo(Optional.of(NAME_2));
+    }
+
+    @Test
+    public void lookupShouldReturnAbsentWhenUnknownUid() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1, UID_3, NAME_3));
+
+        assertThat(testee.lookup(UID_2)).isEqualTo(Optional.absent());
+        assertThat(testee.isUsable()).isTrue();
+    }
+
+    @Test
+    public void lookupShouldReturnAbsentWhenUidListChanged() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1));
+
+        writeUidList("1 1 1\n1 " + NAME_1);
+
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.absent());
+        assertThat(testee.isUsable()).isFalse();
+    }
+
+    @Test
+    public void lookupShouldReturnAbsentWhileBeingWritten() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1));
+
+        testee.beginWrite();
+
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.absent());
+    }
+
+    @Test
+    public void lookupShouldReturnAppendedName() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1));
+
+        testee.beginWrite();
+        writeUidList("1 2 2\n1 " + NAME_1 + "\n2 " + NAME_2);
+        testee.append(UID_2, NAME_2);
+
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.of(NAME_1));
+        assertThat(testee.lookup(UID_2)).isEqualTo(Optional.of(NAME_2));
+    }
+
+    @Test
+    public void appendShouldKeepAllNamesWhenCapacityIsExceeded() throws Exception {
+        testee.rebuild(ImmutableMap.<MessageUid, String>of());
+
+        for (int i = 1; i <= 200; i++) {
+            testee.append(MessageUid.of(i), "message" + i);
+        }
+
+        assertThat(testee.lookup(MessageUid.of(1))).isEqualTo(Optional.of("message1"));
+        assertThat(testee.lookup(MessageUid.of(150))).isEqualTo(Optional.of("message150"));
+        assertThat(testee.lookup(MessageUid.of(200))).isEqualTo(Optional.of("message200"));
+    }
+
+    @Test
+    public void appendShouldKeepUidsSortedWhenAppendingALowerUid() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_3, NAME_3));
+
+        testee.append(UID_1, NAME_1);
+
+        assertThat(testee.range(MessageUid.MIN_VALUE, null).get())
+            .isEqualTo(ImmutableSortedMap.of(UID_1, NAME_1, UID_3, NAME_3));
+    }
+
+    @Test
+    public void lookupShouldReturnUpdatedName() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1, UID_2, NAME_2));
+
+        testee.update(UID_1, NAME_3);
+
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.of(NAME_3));
+        assertThat(testee.lookup(UID_2)).isEqualTo(Optional.of(NAME_2));
+    }
+
+    @Test
+    public void lookupShouldReturnAbsentWhenRemoved() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1, UID_2, NAME_2));
+
+        testee.remove(UID_1);
+
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.absent());
+        assertThat(testee.lookup(UID_2)).isEqualTo(Optional.of(NAME_2));
+    }
+
+    @Test
+    public void rangeShouldReturnNamesBetweenBoundaries() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1, UID_2, NAME_2, UID_3, NAME_3));
+
+        assertThat(testee.range(UID_2, UID_3).get())
+            .isEqualTo(ImmutableSortedMap.of(UID_2, NAME_2, UID_3, NAME_3));
+    }
+
+    @Test
+    public void rangeShouldNotHaveUpperLimitWhenNull() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1, UID_2, NAME_2, UID_3, NAME_3));
+
+        assertThat(testee.range(UID_2, null).get())
+            .isEqualTo(ImmutableSortedMap.of(UID_2, NAME_2, UID_3, NAME_3));
+    }
+
+    @Test
+    public void rangeShouldSkipRemovedNames() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1, UID_2, NAME_2, UID_3, NAME_3));
+
+        testee.remove(UID_2);
+
+        assertThat(testee.range(UID_1, UID_4).get())
+            .isEqualTo(ImmutableSortedMap.of(UID_1, NAME_1, UID_3, NAME_3));
+    }
+
+    @Test
+    public void rangeShouldReturnNamesSpanningSeveralReads() throws Exception {
+        SortedMap<MessageUid, String> names = new TreeMap<MessageUid, String>();
+        for (long uid = 1; uid <= 1000; uid++) {
+            names.put(MessageUid.of(uid), "name-" + uid);
+        }
+        testee.rebuild(names);
+
+        assertThat(testee.range(MessageUid.of(100), MessageUid.of(900)).get())
+            .isEqualTo(names.subMap(MessageUid.of(100), MessageUid.of(901)));
+    }
+
+    @Test
+    public void rangeShouldReturnAbsentWhenUidListChanged() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1));
+
+        writeUidList("1 1 1\n1 " + NAME_1);
+
+        assertThat(testee.range(UID_1, null).isPresent()).isFalse();
+    }
+
+    @Test
+    public void beginWriteShouldDiscardAnIndexWhoseLastWriteDidNotComplete() throws Exception {
+        testee.rebuild(ImmutableMap.of(UID_1, NAME_1));
+        testee.beginWrite();
+
+        testee.beginWrite();
+
+        assertThat(indexFile).doesNotExist();
+    }
+
+    @Test
+    public void lookupShouldReturnAbsentWhenCorrupted() throws Exception {
+        FileUtils.writeStringToFile(indexFile, "this is not an index, but it is long enough to hold a header", Charsets.UTF_8);
+
+        assertThat(testee.lookup(UID_1)).isEqualTo(Optional.absent());
+    }
+
+    @Test
+    public void writesShouldIgnoreMissingIndex() throws Exception {
+        testee.beginWrite();
+        testee.append(UID_1, NAME_1);
+        testee.update(UID_1, NAME_2);
+        testee.remove(UID_1);
+
+        assertThat(indexFile).doesNotExist();
+    }
+
+    private void writeUidList(String content) throws IOException {
+        FileUtils.writeStringToFile(uidList, content, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,247 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.maildir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.List;
+import java.util.SortedMap;
+
+import javax.mail.Flags;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.mock.MockMailboxSession;
+import org.apache.james.mailbox.model.MailboxConstants;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.model.MessageMetaData;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.JVMMailboxPathLocker;
+import org.apache.james.mailbox.store.StoreMailboxManager;
+import org.apache.james.mailbox.store.event.MailboxEventDispatcher;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+
+public class MaildirWatcherTest {
+
+    private static final MessageUid UID_1 = MessageUid.of(1);
+    private static final MessageUid UID_2 = MessageUid.of(2);
+    private static final String BASE_NAME_1 = "1283597817.M1P1.localhost";
+    private static final String BASE_NAME_2 = "1283597818.M2P1.localhost";
+    private static final String NAME_1 = BASE_NAME_1 + ",S=10:2,";
+    private static final String NAME_1_SEEN = BASE_NAME_1 + ",S=10:2,S";
+    private static final String NAME_2 = BASE_NAME_2 + ",S=20:2,";
+    private static final int TIMEOUT_IN_MS = 10000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MailboxSession session;
+    private Mailbox mailbox;
+    private MaildirStore store;
+    private MaildirFolder folder;
+    private MailboxEventDispatcher dispatcher;
+    private MaildirWatcher testee;
+
+    @Before
+    public void setUp() throws Exception {
+        session = new MockMailboxSession("user");
+        mailbox = new SimpleMailbox(new MailboxPath(MailboxConstants.USER_NAMESPACE, "user", MailboxConstants.INBOX), 1);
+        store = new MaildirStore(temporaryFolder.getRoot().getAbsolutePath() + "/%user", new JVMMailboxPathLocker());
+        folder = store.createMaildirFolder(mailbox);
+        assertThat(folder.getCurFolder().mkdirs()).isTrue();
+        assertThat(folder.getNewFolder().mkdirs()).isTrue();
+        assertThat(folder.getTmpFolder().mkdirs()).isTrue();
+        writeMessage(folder.getCurFolder(), NAME_1);
+        folder.getUidMap(session, MessageUid.MIN_VALUE, null);
+
+        dispatcher = mock(MailboxEventDispatcher.class);
+        StoreMailboxManager mailboxManager = mock(StoreMailboxManager.class);
+        when(mailboxManager.getEventDispatcher()).thenReturn(dispatcher);
+        when(mailboxManager.createSystemSession(anyString(), any(Logger.class))).thenReturn(session);
+        testee = new MaildirWatcher(store, mailboxManager, MaildirWatcher.DEFAULT_IDLE_TIMEOUT_IN_MS, 10);
+    }
+
+    @After
+    public void tearDown() {
+        testee.stop();
+    }
+
+    @Test
+    public void synchronizeShouldRecordCreatedMessages() throws Exception {
+        writeMessage(folder.getNewFolder(), NAME_2);
+
+        MaildirFolder.Changes changes = folder.synchronize(session, ImmutableList.of(NAME_2), ImmutableList.<String>of());
+
+        assertThat(changes.getAdded().keySet()).containsOnly(UID_2);
+        assertThat(folder.getMessageNameByUid(session, UID_2).getFullName()).isEqualTo(NAME_2);
+    }
+
+    @Test
+    public void synchronizeShouldIgnoreMessagesAlreadyListed() throws Exception {
+        MaildirFolder.Changes changes = folder.synchronize(session, ImmutableList.of(NAME_1), ImmutableList.<String>of());
+
+        assertThat(changes.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void synchronizeShouldIgnoreMissingFiles() throws Exception {
+        MaildirFolder.Changes changes = folder.synchronize(session, ImmutableList.of(NAME_2), ImmutableList.<String>of());
+
+        assertThat(changes.isEmpty()).isTrue();
+        assertThat(folder.getMessageNameByUid(session, UID_2)).isNull();
+    }
+
+    @Test
+    public void synchronizeShouldRecordRenamedMessages() throws Exception {
+        renameMessage(NAME_1, NAME_1_SEEN);
+
+        MaildirFolder.Changes changes = folder.synchronize(session, ImmutableList.of(NAME_1_SEEN), ImmutableList.of(NAME_1));
+
+        assertThat(changes.getRenamed().get(UID_1).getFullName()).isEqualTo(NAME_1_SEEN);
+        assertThat(changes.getPreviousNames().get(UID_1).getFullName()).isEqualTo(NAME_1);
+        assertThat(changes.getRemoved()).isEmpty();
+        assertThat(folder.getMessageNameByUid(session, UID_1).getFullName()).isEqualTo(NAME_1_SEEN);
+    }
+
+    @Test
+    public void synchronizeShouldRecordDeletedMessages() throws Exception {
+        FileUtils.forceDelete(new File(folder.getCurFolder(), NAME_1));
+
+        MaildirFolder.Changes changes = folder.synchronize(session, ImmutableList.<String>of(), ImmutableList.of(NAME_1));
+
+        assertThat(changes.getRemoved().keySet()).containsOnly(UID_1);
+        assertThat(folder.getMessageNameByUid(session, UID_1)).isNull();
+    }
+
+    @Test
+    public void synchronizeShouldNotRemoveMessagesStillExisting() throws Exception {
+        MaildirFolder.Changes changes = folder.synchronize(session, ImmutableList.<String>of(), ImmutableList.of(NAME_1));
+
+        assertThat(changes.isEmpty()).isTrue();
+        assertThat(folder.getMessageNameByUid(session, UID_1).getFullName()).isEqualTo(NAME_1);
+    }
+
+    @Test
+    public void synchronizeAllShouldRecordEveryChange() throws Exception {
+        writeMessage(folder.getNewFolder(), NAME_2);
+        renameMessage(NAME_1, NAME_1_SEEN);
+
+        MaildirFolder.Changes changes = folder.synchronizeAll(session);
+
+        assertThat(changes.getAdded().keySet()).containsOnly(UID_2);
+        assertThat(changes.getRenamed().keySet()).containsOnly(UID_1);
+        assertThat(changes.getRemoved()).isEmpty();
+    }
+
+    @Test
+    public void appendMessageShouldReuseTheUidOfASynchronizedMessage() throws Exception {
+        writeMessage(folder.getNewFolder(), NAME_2);
+        folder.synchronize(session, ImmutableList.of(NAME_2), ImmutableList.<String>of());
+
+        assertThat(folder.appendMessage(session, NAME_2)).isEqualTo(UID_2);
+        assertThat(folder.getUidMap(session, MessageUid.MIN_VALUE, null)).hasSize(2);
+    }
+
+    @Test
+    public void watchShouldRegisterTheMailboxFolder() throws Exception {
+        testee.start();
+
+        store.createMaildirFolder(mailbox);
+
+        assertThat(testee.isWatched(mailbox)).isTrue();
+    }
+
+    @Test
+    public void createMaildirFolderShouldNotWatchWhenStopped() throws Exception {
+        testee.start();
+        testee.stop();
+
+        store.createMaildirFolder(mailbox);
+
+        assertThat(testee.isWatched(mailbox)).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void watcherShouldDispatchAddedMessages() throws Exception {
+        testee.start();
+        store.createMaildirFolder(mailbox);
+
+        writeMessage(folder.getNewFolder(), NAME_2);
+
+        ArgumentCaptor<SortedMap> captor = ArgumentCaptor.forClass(SortedMap.class);
+        verify(dispatcher, timeout(TIMEOUT_IN_MS)).added(eq(session), captor.capture(), eq(mailbox));
+        assertThat(((SortedMap<MessageUid, MessageMetaData>) captor.getValue()).keySet()).containsOnly(UID_2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void watcherShouldDispatchFlagUpdates() throws Exception {
+        testee.start();
+        store.createMaildirFolder(mailbox);
+
+        renameMessage(NAME_1, NAME_1_SEEN);
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(dispatcher, timeout(TIMEOUT_IN_MS)).flagsUpdated(eq(session), any(List.class), eq(mailbox), captor.capture());
+        UpdatedFlags updatedFlags = ((List<UpdatedFlags>) captor.getValue()).get(0);
+        assertThat(updatedFlags.getUid()).isEqualTo(UID_1);
+        assertThat(updatedFlags.getNewFlags().contains(Flags.Flag.SEEN)).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void watcherShouldDispatchExpungedMessages() throws Exception {
+        testee.start();
+        store.createMaildirFolder(mailbox);
+
+        FileUtils.forceDelete(new File(folder.getCurFolder(), NAME_1));
+
+        ArgumentCaptor<SortedMap> captor = ArgumentCaptor.forClass(SortedMap.class);
+        verify(dispatcher, timeout(TIMEOUT_IN_MS)).expunged(eq(session), captor.capture(), eq(mailbox));
+        assertThat(((SortedMap<MessageUid, MessageMetaData>) captor.getValue()).keySet()).containsOnly(UID_1);
+    }
+
+    private void writeMessage(File directory, String name) throws Exception {
+        FileUtils.writeStringToFile(new File(directory, name), "Subject: test\r\n\r\nbody");
+    }
+
+    private void renameMessage(String from, String to) throws Exception {
+        assertThat(new File(folder.getCurFolder(), from).renameTo(new File(folder.getCurFolder(), to))).isTrue();
+    }
+}
@@ -0,0 +1,136 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.inmemory.mail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.inmemory.InMemoryId;
+import org.apache.james.mailbox.model.MessageRange;
+
+/**
+ * Keeps, for each mailbox, the uids of the messages ordered by the mod-sequence of their last change, and the uids of
+ * the expunged messages ordered by the mod-sequence of their expunge. Lookups only visit the changes which happened
+ * after the requested mod-sequence.
+ */
+public class InMemoryMessageChangeIndex {
+
+    private static class MailboxChanges {
+        private final NavigableMap<Long, Set<MessageUid>> changedUidsByModSeq = new TreeMap<Long, Set<MessageUid>>();
+        private final NavigableMap<Long, Set<MessageUid>> expungedUidsByModSeq = new TreeMap<Long, Set<MessageUid>>();
+        private final Map<MessageUid, Long> modSeqByUid = new HashMap<MessageUid, Long>();
+
+        public synchronized void changed(MessageUid uid, long modSeq) {
+            removeChange(uid);
+            add(changedUidsByModSeq, modSeq, uid);
+            modSeqByUid.put(uid, modSeq);
+        }
+
+        public synchronized void expunged(MessageUid uid, long modSeq) {
+            removeChange(uid);
+            add(expungedUidsByModSeq, modSeq, uid);
+        }
+
+        public synchronized List<MessageUid> changedSince(MessageRange set, long modSeq) {
+            return uidsSince(changedUidsByModSeq, set, modSeq);
+        }
+
+        public synchronized List<MessageUid> expungedSince(MessageRange set, long modSeq) {
+            return uidsSince(expungedUidsByModSeq, set, modSeq);
+        }
+
+        private void removeChange(MessageUid uid) {
+            Long modSeq = modSeqByUid.remove(uid);
+            if (modSeq != null) {
+                Set<MessageUid> uids = changedUidsByModSeq.get(modSeq);
+                uids.remove(uid);
+                if (uids.isEmpty()) {
+                    changedUidsByModSeq.remove(modSeq);
+                }
+            }
+        }
+
+        private void add(NavigableMap<Long, Set<MessageUid>> uidsByModSeq, long modSeq, MessageUid uid) {
+            Set<MessageUid> uids = uidsByModSeq.get(modSeq);
+            if (uids == null) {
+                uids = new TreeSet<MessageUid>();
+                uidsByModSeq.put(modSeq, uids);
+            }
+            uids.add(uid);
+        }
+
+        private List<MessageUid> uidsSince(NavigableMap<Long, Set<MessageUid>> uidsByModSeq, MessageRange set, long modSeq) {
+            List<MessageUid> result = new ArrayList<MessageUid>();
+            for (Set<MessageUid> uids : uidsByModSeq.tailMap(modSeq, false).values()) {
+                for (MessageUid uid : uids) {
+                    if (set.includes(uid)) {
+                        result.add(uid);
+                    }
+                }
+            }
+            Collections.sort(result);
+            return result;
+        }
+    }
+
+    private final ConcurrentMap<InMemoryId, MailboxChanges> changesByMailbox = new ConcurrentHashMap<InMemoryId, MailboxChanges>();
+
+    public void changed(InMemoryId mailboxId, MessageUid uid, long modSeq) {
+        getChanges(mailboxId).changed(uid, modSeq);
+    }
+
+    public void expunged(InMemoryId mailboxId, MessageUid uid, long modSeq) {
+        getChanges(mailboxId).expunged(uid, modSeq);
+    }
+
+    public List<MessageUid> changedSince(InMemoryId mailboxId, MessageRange set, long modSeq) {
+        return getChanges(mailboxId).changedSince(set, modSeq);
+    }
+
+    public List<MessageUid> expungedSince(InMemoryId mailboxId, MessageRange set, long modSeq) {
+        return getChanges(mailboxId).expungedSince(set, modSeq);
+    }
+
+    public void deleteAll() {
+        changesByMailbox.clear();
+    }
+
+    private MailboxChanges getChanges(InMemoryId mailboxId) {
+        MailboxChanges changes = changesByMailbox.get(mailboxId);
+        if (changes == null) {
+            changes = new MailboxChanges();
+            MailboxChanges existing = changesByMailbox.putIfAbsent(mailboxId, changes);
+            if (existing != null) {
+                changes = existing;
+            }
+        }
+        return changes;
+    }
+}
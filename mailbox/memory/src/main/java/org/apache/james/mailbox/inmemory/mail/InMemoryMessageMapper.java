@@ -45,14 +45,20 @@ import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
 import org.apache.james.mailbox.store.mail.utils.ApplicableFlagCalculator;
 
+import com.google.common.base.Optional;
+
 public class InMemoryMessageMapper extends AbstractMessageMapper {
     private final Map<InMemoryId, Map<MessageUid, MailboxMessage>> mailboxByUid;
+    private final InMemoryMessageChangeIndex changeIndex;
+    private final ModSeqProvider modSeqProvider;
     private static final int INITIAL_SIZE = 256;
 
     public InMemoryMessageMapper(MailboxSession session, UidProvider uidProvider,
             ModSeqProvider modSeqProvider) {
         super(session, uidProvider, modSeqProvider);
         this.mailboxByUid = new ConcurrentHashMap<InMemoryId, Map<MessageUid, MailboxMessage>>(INITIAL_SIZE);
+        this.changeIndex = new InMemoryMessageChangeIndex();
+        this.modSeqProvider = modSeqProvider;
     }
 
     private Map<MessageUid, MailboxMessage> getMembershipByUidForMailbox(Mailbox mailbox) {
@@ -86,7 +92,13 @@ public class InMemoryMessageMapper extends AbstractMessageMapper {
 
     @Override
     public void delete(Mailbox mailbox, MailboxMessage message) throws MailboxException {
-        getMembershipByUidForMailbox(mailbox).remove(message.getUid());
+        expunge((InMemoryId) mailbox.getMailboxId(), message.getUid());
+    }
+
+    private void expunge(InMemoryId mailboxId, MessageUid uid) throws MailboxException {
+        if (getMembershipByUidForId(mailboxId).remove(uid) != null) {
+            changeIndex.expunged(mailboxId, uid, modSeqProvider.nextModSeq(mailboxSession, mailboxId));
+        }
     }
 
     @Override
@@ -94,7 +106,7 @@ public class InMemoryMessageMapper extends AbstractMessageMapper {
         InMemoryId originalMailboxId = (InMemoryId) original.getMailboxId();
         MessageUid uid = original.getUid();
         MessageMetaData messageMetaData = copy(mailbox, original);
-        getMembershipByUidForId(originalMailboxId).remove(uid);
+        expunge(originalMailboxId, uid);
         return messageMetaData;
     }
 
@@ -129,6 +141,16 @@ public class InMemoryMessageMapper extends AbstractMessageMapper {
         return results;
     }
 
+    @Override
+    public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return changeIndex.changedSince((InMemoryId) mailbox.getMailboxId(), set, modSeq);
+    }
+
+    @Override
+    public Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return Optional.of(changeIndex.expungedSince((InMemoryId) mailbox.getMailboxId(), set, modSeq));
+    }
+
     @Override
     public MessageUid findFirstUnseenMessageUid(Mailbox mailbox) throws MailboxException {
         List<MailboxMessage> memberships = new ArrayList<MailboxMessage>(getMembershipByUidForMailbox(mailbox).values());
@@ -166,6 +188,7 @@ public class InMemoryMessageMapper extends AbstractMessageMapper {
 
     public void deleteAll() {
         mailboxByUid.clear();
+        changeIndex.deleteAll();
     }
 
     @Override
@@ -193,6 +216,7 @@ public class InMemoryMessageMapper extends AbstractMessageMapper {
         copy.setUid(message.getUid());
         copy.setModSeq(message.getModSeq());
         getMembershipByUidForMailbox(mailbox).put(message.getUid(), copy);
+        changeIndex.changed((InMemoryId) mailbox.getMailboxId(), message.getUid(), message.getModSeq());
 
         return new SimpleMessageMetaData(message);
     }
@@ -99,7 +99,8 @@ public class InMemoryMapperProvider implements MapperProvider {
             Capabilities.MAILBOX,
             Capabilities.ATTACHMENT,
             Capabilities.ANNOTATION,
-            Capabilities.MOVE);
+            Capabilities.MOVE,
+            Capabilities.EXPUNGE_TRACKING);
     }
 
     @Override
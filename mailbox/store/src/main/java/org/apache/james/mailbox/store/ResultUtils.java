@@ -64,27 +64,7 @@ public class ResultUtils {
             }
             @Override
             public void field(Field field) throws MimeException {
-                String fieldValue;
-                if (field instanceof RawField) {
-                    // check if we can access the body in the raw form so no unfolding was done under the hood
-                    ByteSequence raw = field.getRaw();
-                    int len = raw.length();
-                    int off = ((RawField) field).getDelimiterIdx() + 1;
-                    if (len > off + 1 && (raw.byteAt(off) & 0xff) == 0x20) off++;
-                
-                    fieldValue = ContentUtil.decode(raw, off, len - off);
-                } else {
-                    fieldValue = field.getBody();
-                }
-                if (fieldValue.endsWith("\r\f")) {
-                    fieldValue = fieldValue.substring(0,fieldValue.length() - 2);
-                }
-                if (fieldValue.startsWith(" ")) {
-                    fieldValue = fieldValue.substring(1);
-                }
-                
-                final ResultHeader resultHeader = new ResultHeader(field.getName(), fieldValue);
-                results.add(resultHeader);
+                results.add(createHeader(field));
             }
         });
         try {
@@ -95,6 +75,40 @@ public class ResultUtils {
         return results;
     }
 
+    /**
+     * Create the headers from already parsed fields, the same way {@link #createHeaders(MailboxMessage)} does
+     */
+    public static List<MessageResult.Header> createHeaders(Iterable<Field> fields) {
+        final List<MessageResult.Header> results = new ArrayList<MessageResult.Header>();
+        for (Field field : fields) {
+            results.add(createHeader(field));
+        }
+        return results;
+    }
+
+    private static MessageResult.Header createHeader(Field field) {
+        String fieldValue;
+        if (field instanceof RawField) {
+            // check if we can access the body in the raw form so no unfolding was done under the hood
+            ByteSequence raw = field.getRaw();
+            int len = raw.length();
+            int off = ((RawField) field).getDelimiterIdx() + 1;
+            if (len > off + 1 && (raw.byteAt(off) & 0xff) == 0x20) off++;
+        
+            fieldValue = ContentUtil.decode(raw, off, len - off);
+        } else {
+            fieldValue = field.getBody();
+        }
+        if (fieldValue.endsWith("\r\f")) {
+            fieldValue = fieldValue.substring(0,fieldValue.length() - 2);
+        }
+        if (fieldValue.startsWith(" ")) {
+            fieldValue = fieldValue.substring(1);
+        }
+        
+        return new ResultHeader(field.getName(), fieldValue);
+    }
+
   
   
     
@@ -21,10 +21,10 @@ package org.apache.james.mailbox.store;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.model.MailboxConstants;
@@ -81,7 +81,7 @@ public class SimpleMailboxSession implements MailboxSession, MailboxSession.User
         }
 
         this.localePreferences = localePreferences;
-        this.attributes = new HashMap<Object, Object>();
+        this.attributes = new ConcurrentHashMap<Object, Object>();
         this.pathSeparator = pathSeparator;
     }
     
@@ -64,8 +64,10 @@ import org.apache.james.mailbox.model.MessageMetaData;
 import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.mailbox.model.MessageResultIterator;
+import org.apache.james.mailbox.model.MessageThread;
 import org.apache.james.mailbox.model.SearchQuery;
 import org.apache.james.mailbox.model.SimpleMailboxACL;
+import org.apache.james.mailbox.model.ThreadAlgorithm;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.quota.QuotaManager;
 import org.apache.james.mailbox.quota.QuotaRootResolver;
@@ -80,6 +82,8 @@ import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
 import org.apache.james.mailbox.store.quota.QuotaChecker;
 import org.apache.james.mailbox.store.search.MessageSearchIndex;
+import org.apache.james.mailbox.store.search.MessageThreader;
+import org.apache.james.mailbox.store.search.SortKeys;
 import org.apache.james.mailbox.store.streaming.BodyOffsetInputStream;
 import org.apache.james.mailbox.store.streaming.CountingInputStream;
 import org.apache.james.mailbox.store.transaction.Mapper;
@@ -95,6 +99,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
@@ -395,6 +400,7 @@ public class StoreMessageManager implements org.apache.james.mailbox.MessageMana
             if (internalDate == null) {
                 internalDate = new Date();
             }
+            SortKeys.compute(ResultUtils.createHeaders(header), internalDate).addTo(propertyBuilder);
             byte[] discard = new byte[4096];
             while (tmpMsgIn.read(discard) != -1) {
                 // consume the rest of the stream so everything get copied to
@@ -750,6 +756,30 @@ public class StoreMessageManager implements org.apache.james.mailbox.MessageMana
         return index.search(mailboxSession, getMailboxEntity(), query);
     }
 
+    @Override
+    public List<MessageThread> thread(SearchQuery query, ThreadAlgorithm algorithm, MailboxSession mailboxSession) throws MailboxException {
+        final List<MessageUid> uids = ImmutableList.copyOf(search(query, mailboxSession));
+        final MessageMapper messageMapper = mapperFactory.getMessageMapper(mailboxSession);
+        final List<MailboxMessage> messages = new ArrayList<MailboxMessage>(uids.size());
+        for (MessageRange range : MessageRange.toRanges(uids)) {
+            Iterator<MailboxMessage> it = messageMapper.findInMailbox(getMailboxEntity(), range, FetchType.Headers, -1);
+            while (it.hasNext()) {
+                messages.add(it.next());
+            }
+        }
+        return MessageThreader.thread(messages, algorithm);
+    }
+
+    @Override
+    public List<MessageUid> getUidsChangedSince(MessageRange set, long modSeq, MailboxSession mailboxSession) throws MailboxException {
+        return mapperFactory.getMessageMapper(mailboxSession).findChangedUidsSince(getMailboxEntity(), set, modSeq);
+    }
+
+    @Override
+    public Optional<List<MessageUid>> getUidsExpungedSince(MessageRange set, long modSeq, MailboxSession mailboxSession) throws MailboxException {
+        return mapperFactory.getMessageMapper(mailboxSession).findExpungedUidsSince(getMailboxEntity(), set, modSeq);
+    }
+
     private Iterator<MessageMetaData> copy(Iterator<MailboxMessage> originalRows, MailboxSession session) throws MailboxException {
         final List<MessageMetaData> copiedRows = new ArrayList<MessageMetaData>();
         final MessageMapper messageMapper = mapperFactory.getMessageMapper(session);
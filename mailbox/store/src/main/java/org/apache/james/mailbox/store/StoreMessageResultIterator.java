@@ -18,10 +18,13 @@
  ****************************************************************/
 package org.apache.james.mailbox.store;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.mail.Flags;
 
@@ -38,6 +41,7 @@ import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.mailbox.model.MessageResultIterator;
 import org.apache.james.mailbox.model.MimeDescriptor;
+import org.apache.james.mailbox.store.mail.AsyncMessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -45,8 +49,31 @@ import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 
 import com.google.common.base.Objects;
 
+/**
+ * Iterates over the messages of a {@link MessageRange}, reading them from the {@link MessageMapper} by batches.
+ * <p>
+ * The size of the batches depends on what is fetched: batches without content are larger than the
+ * configured batch size, while batches reading content are sized after the size of the messages
+ * read so far. When the mapper is an {@link AsyncMessageMapper}, the next batch is requested as soon as the
+ * current one is read, so that it gets loaded while the current one is processed.
+ */
 public class StoreMessageResultIterator implements MessageResultIterator {
 
+    /**
+     * Batches without content hold this many times the configured batch size
+     */
+    static final int METADATA_BATCH_FACTOR = 5;
+
+    /**
+     * Batches reading headers hold this many times the configured batch size
+     */
+    static final int HEADERS_BATCH_FACTOR = 2;
+
+    /**
+     * Amount of content targeted by a batch reading message content
+     */
+    static final long CONTENT_BATCH_BYTES = 4 * 1024 * 1024;
+
     private Iterator<MailboxMessage> next = null;
     private MailboxException exception;
     private final Mailbox mailbox;
@@ -58,6 +85,11 @@ public class StoreMessageResultIterator implements MessageResultIterator {
     private final Type type;
     private final MessageMapper mapper;
     private final FetchType ftype;
+    private int nextBatchSize;
+    private long readBytes;
+    private long readMessages;
+    private MessageUid prefetchedFrom;
+    private Future<Iterator<MailboxMessage>> prefetched;
 
     public StoreMessageResultIterator(MessageMapper mapper, Mailbox mailbox, MessageRange range, int batchSize, org.apache.james.mailbox.model.MessageResult.FetchGroup group) {
         this.mailbox = mailbox;
@@ -69,6 +101,21 @@ public class StoreMessageResultIterator implements MessageResultIterator {
         this.batchSize = batchSize;
         this.type = range.getType();
         this.ftype = getFetchType(group);
+        this.nextBatchSize = initialBatchSize(batchSize, ftype);
+    }
+
+    private static int initialBatchSize(int batchSize, FetchType ftype) {
+        if (batchSize <= 0) {
+            return batchSize;
+        }
+        switch (ftype) {
+        case Metadata:
+            return batchSize * METADATA_BATCH_FACTOR;
+        case Headers:
+            return batchSize * HEADERS_BATCH_FACTOR;
+        default:
+            return batchSize;
+        }
     }
 
     /**
@@ -137,24 +184,78 @@ public class StoreMessageResultIterator implements MessageResultIterator {
     }
 
     private void readBatch() throws MailboxException {
-        MessageRange range;
+        adaptBatchSize();
+        if (prefetched != null && cursor.equals(prefetchedFrom)) {
+            next = prefetched();
+        } else {
+            next = mapper.findInMailbox(mailbox, rangeFrom(cursor), ftype, nextBatchSize);
+        }
+        prefetched = null;
+        if (mapper instanceof AsyncMessageMapper) {
+            prefetchNextBatch((AsyncMessageMapper) mapper);
+        }
+    }
+
+    private MessageRange rangeFrom(MessageUid from) {
         switch (type) {
         default:
         case ALL:
             // In case of all, we start on cursor and don't specify a to
-            range = MessageRange.from(cursor);
-            break;
+            return MessageRange.from(from);
         case FROM:
-            range = MessageRange.from(cursor);
-            break;
+            return MessageRange.from(from);
         case ONE:
-            range = MessageRange.one(cursor);
-            break;
+            return MessageRange.one(from);
         case RANGE:
-            range = MessageRange.range(cursor, to);
-            break;
+            return MessageRange.range(from, to);
+        }
+    }
+
+    /**
+     * Size the batches reading content after the average size of the messages read so far
+     */
+    private void adaptBatchSize() {
+        if (batchSize <= 0 || readMessages == 0 || ftype == FetchType.Metadata || ftype == FetchType.Headers) {
+            return;
+        }
+        long averageSize = Math.max(1, readBytes / readMessages);
+        nextBatchSize = (int) Math.max(1, Math.min(batchSize, CONTENT_BATCH_BYTES / averageSize));
+    }
+
+    /**
+     * Request the batch following the one which was just read, unless it is the last one
+     */
+    private void prefetchNextBatch(AsyncMessageMapper asyncMapper) throws MailboxException {
+        if (nextBatchSize <= 0) {
+            return;
+        }
+        List<MailboxMessage> batch = new ArrayList<MailboxMessage>(nextBatchSize);
+        while (next.hasNext()) {
+            batch.add(next.next());
+        }
+        next = batch.iterator();
+        if (batch.size() < nextBatchSize) {
+            return;
+        }
+        MessageUid nextFrom = batch.get(batch.size() - 1).getUid().next();
+        if (nextFrom.compareTo(to) <= 0 && nextFrom.compareTo(cursor) > 0) {
+            prefetchedFrom = nextFrom;
+            prefetched = asyncMapper.findInMailboxAsync(mailbox, rangeFrom(nextFrom), ftype, nextBatchSize);
+        }
+    }
+
+    private Iterator<MailboxMessage> prefetched() throws MailboxException {
+        try {
+            return prefetched.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailboxException("Interrupted while reading messages", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MailboxException) {
+                throw (MailboxException) e.getCause();
+            }
+            throw new MailboxException("Unable to read messages", e.getCause());
         }
-        next = mapper.findInMailbox(mailbox, range, ftype, batchSize);
     }
 
     @Override
@@ -164,10 +265,12 @@ public class StoreMessageResultIterator implements MessageResultIterator {
         }
         
         final MailboxMessage message = next.next();
+        readBytes += message.getFullContentOctets();
+        readMessages++;
+        cursor = message.getUid();
         MessageResult result;
         try {
             result = ResultUtils.loadMessageResult(message, group);
-            cursor = result.getUid();
         } catch (MailboxException e) {
             result = new UnloadedMessageResult(message, e);
         }
@@ -34,6 +34,7 @@ import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.FlagsUpdateCalculator;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.mail.utils.ChangedUidsCalculator;
 import org.apache.james.mailbox.store.transaction.TransactionalMapper;
 
 import com.google.common.base.Optional;
@@ -72,6 +73,23 @@ public abstract class AbstractMessageMapper extends TransactionalMapper implemen
             .build();
     }
 
+    /**
+     * Scan the messages of the range. Mappers which maintain an index ordered by mod-sequence should override it.
+     */
+    @Override
+    public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return new ChangedUidsCalculator(findInMailbox(mailbox, set, FetchType.Metadata, -1))
+            .computeChangedUidsSince(modSeq);
+    }
+
+    /**
+     * Expunged messages are not tracked by default.
+     */
+    @Override
+    public Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+        return Optional.absent();
+    }
+
     @Override
     public Iterator<UpdatedFlags> updateFlags(Mailbox mailbox, FlagsUpdateCalculator flagsUpdateCalculator, MessageRange set) throws MailboxException {
         final List<UpdatedFlags> updatedFlags = new ArrayList<UpdatedFlags>();
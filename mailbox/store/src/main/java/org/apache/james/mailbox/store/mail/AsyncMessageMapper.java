@@ -0,0 +1,43 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.mail;
+
+import java.util.Iterator;
+import java.util.concurrent.Future;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+
+/**
+ * Implemented by {@link MessageMapper}s which can fetch messages without blocking the caller.
+ * This allows the next batch of a large fetch to be read while the current one is processed.
+ */
+public interface AsyncMessageMapper {
+
+    /**
+     * Same as {@link MessageMapper#findInMailbox(Mailbox, MessageRange, FetchType, int)}, but returns
+     * as soon as the request is issued.
+     */
+    Future<Iterator<MailboxMessage>> findInMailboxAsync(Mailbox mailbox, MessageRange set, FetchType type, int limit)
+            throws MailboxException;
+}
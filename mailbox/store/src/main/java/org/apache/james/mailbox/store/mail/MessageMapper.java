@@ -113,6 +113,18 @@ public interface MessageMapper extends Mapper {
      */
     List<MessageUid> findRecentMessageUidsInMailbox(Mailbox mailbox) throws MailboxException;
 
+    /**
+     * Return the uids of the {@link MailboxMessage}'s of the given range whose mod-sequence is greater than the given one.
+     * The list must be ordered by uid.
+     */
+    List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException;
+
+    /**
+     * Return the uids of the given range which were expunged with a mod-sequence greater than the given one. The list
+     * must be ordered by uid. Mappers which do not keep track of expunged messages return an absent value.
+     */
+    Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException;
+
 
     /**
      * Add the given {@link MailboxMessage} to the underlying storage. Be aware that implementation may choose to replace the uid of the given message while storing.
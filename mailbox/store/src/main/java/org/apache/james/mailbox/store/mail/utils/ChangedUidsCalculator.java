@@ -0,0 +1,56 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.mail.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Compute the uids changed since a given mod-sequence by scanning the messages of a range. Used by the mappers which
+ * have no index ordered by mod-sequence.
+ */
+public class ChangedUidsCalculator {
+
+    private final Iterator<MailboxMessage> mailboxMessages;
+
+    public ChangedUidsCalculator(Iterator<MailboxMessage> mailboxMessages) {
+        Preconditions.checkNotNull(mailboxMessages);
+        this.mailboxMessages = mailboxMessages;
+    }
+
+    public List<MessageUid> computeChangedUidsSince(long modSeq) {
+        List<MessageUid> uids = new ArrayList<MessageUid>();
+        while (mailboxMessages.hasNext()) {
+            MailboxMessage message = mailboxMessages.next();
+            if (message.getModSeq() > modSeq) {
+                uids.add(message.getUid());
+            }
+        }
+        Collections.sort(uids);
+        return uids;
+    }
+}
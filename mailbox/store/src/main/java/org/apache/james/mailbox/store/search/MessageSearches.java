@@ -120,7 +120,7 @@ public class MessageSearches implements Iterable<SimpleMessageSearchIndex.Search
             }
         }
         List<MailboxMessage> sortedResults = FluentIterable.from(builder.build())
-            .toSortedList(CombinedComparator.create(query.getSorts()));
+            .toSortedList(CombinedComparator.create(query.getSorts(), SortKeys.cached()));
         return FluentIterable.from(sortedResults)
             .transform(new Function<MailboxMessage, SimpleMessageSearchIndex.SearchResult>() {
                 @Override
@@ -272,10 +272,16 @@ public class MessageSearches implements Iterable<SimpleMessageSearchIndex.Search
         addAddressList(headerImpl, headersMessage.getTo());
         addAddressList(headerImpl, headersMessage.getCc());
         addAddressList(headerImpl, headersMessage.getBcc());
-        headerImpl.addField(Fields.subject(headersMessage.getSubject()));
+        addSubject(headerImpl, headersMessage.getSubject());
         return headerImpl;
     }
 
+    private void addSubject(HeaderImpl headerImpl, String subject) {
+        if (subject != null) {
+            headerImpl.addField(Fields.subject(subject));
+        }
+    }
+
     private void addFrom(HeaderImpl headerImpl, MailboxList from) {
         if (from != null) {
             headerImpl.addField(Fields.from(Lists.newArrayList(from.iterator())));
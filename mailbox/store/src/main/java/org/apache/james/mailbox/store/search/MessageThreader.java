@@ -0,0 +1,338 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.NotImplementedException;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.model.MessageThread;
+import org.apache.james.mailbox.model.ThreadAlgorithm;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+
+/**
+ * Group messages into threads, following the algorithms described in RFC5256.
+ * 
+ * The {@link SortKeys} of each message are read once, so that threading does
+ * not need to parse the headers of the messages which were stored with them.
+ */
+public class MessageThreader {
+
+    private static class Node {
+        private MessageUid uid;
+        private SortKeys sortKeys;
+        private Node parent;
+        private final List<Node> children = new ArrayList<Node>();
+
+        private Node(MessageUid uid, SortKeys sortKeys) {
+            this.uid = uid;
+            this.sortKeys = sortKeys;
+        }
+
+        private Node() {
+            this(null, null);
+        }
+
+        private boolean isMissing() {
+            return sortKeys == null;
+        }
+
+        /**
+         * Return the node standing for this one when sorting or grouping:
+         * missing nodes are represented by their first child
+         */
+        private Node representative() {
+            if (isMissing() && !children.isEmpty()) {
+                return children.get(0).representative();
+            }
+            return this;
+        }
+
+        private String getBaseSubject() {
+            Node representative = representative();
+            if (representative.isMissing()) {
+                return "";
+            }
+            return representative.sortKeys.getBaseSubject();
+        }
+
+        private boolean isReachableFrom(Node node) {
+            for (Node current = node; current != null; current = current.parent) {
+                if (current == this) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addChild(Node child) {
+            child.unlink();
+            child.parent = this;
+            children.add(child);
+        }
+
+        private void unlink() {
+            if (parent != null) {
+                parent.children.remove(this);
+                parent = null;
+            }
+        }
+    }
+
+    private static final Comparator<Node> SENT_DATE_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(Node o1, Node o2) {
+            Node representative1 = o1.representative();
+            Node representative2 = o2.representative();
+            if (representative1.isMissing() || representative2.isMissing()) {
+                return Boolean.valueOf(representative2.isMissing()).compareTo(representative1.isMissing());
+            }
+            long sentDate1 = representative1.sortKeys.getSentDate();
+            long sentDate2 = representative2.sortKeys.getSentDate();
+            if (sentDate1 != sentDate2) {
+                return sentDate1 < sentDate2 ? -1 : 1;
+            }
+            return representative1.uid.compareTo(representative2.uid);
+        }
+    };
+
+    private static final Comparator<Node> BASE_SUBJECT_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(Node o1, Node o2) {
+            int result = o1.getBaseSubject().compareTo(o2.getBaseSubject());
+            if (result == 0) {
+                return SENT_DATE_ORDER.compare(o1, o2);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Group the given messages into threads
+     */
+    public static List<MessageThread> thread(List<MailboxMessage> messages, ThreadAlgorithm algorithm) {
+        List<Node> nodes = new ArrayList<Node>(messages.size());
+        for (MailboxMessage message : messages) {
+            nodes.add(new Node(message.getUid(), SortKeys.of(message)));
+        }
+        switch (algorithm) {
+        case OrderedSubject:
+            return toThreads(orderedSubject(nodes));
+        case References:
+            return toThreads(references(nodes));
+        default:
+            throw new NotImplementedException("Unsupported thread algorithm " + algorithm);
+        }
+    }
+
+    /**
+     * See RFC5256 ORDEREDSUBJECT
+     */
+    private static List<Node> orderedSubject(List<Node> nodes) {
+        Collections.sort(nodes, BASE_SUBJECT_ORDER);
+        List<Node> roots = new ArrayList<Node>();
+        Node currentRoot = null;
+        for (Node node : nodes) {
+            if (currentRoot != null && currentRoot.getBaseSubject().equals(node.getBaseSubject())) {
+                currentRoot.addChild(node);
+            } else {
+                currentRoot = node;
+                roots.add(node);
+            }
+        }
+        Collections.sort(roots, SENT_DATE_ORDER);
+        return roots;
+    }
+
+    /**
+     * See RFC5256 REFERENCES
+     */
+    private static List<Node> references(List<Node> nodes) {
+        Collections.sort(nodes, new Comparator<Node>() {
+            @Override
+            public int compare(Node o1, Node o2) {
+                return o1.uid.compareTo(o2.uid);
+            }
+        });
+        List<Node> allNodes = new ArrayList<Node>();
+        Map<String, Node> nodesById = new HashMap<String, Node>();
+
+        // (1) Link the messages using their references
+        for (Node node : nodes) {
+            Node messageNode = node;
+            String messageId = node.sortKeys.getMessageId();
+            Node known = nodesById.get(messageId);
+            if (messageId.isEmpty() || (known != null && !known.isMissing())) {
+                // Messages without id or with a duplicated id can not be referenced
+                allNodes.add(messageNode);
+            } else if (known != null) {
+                // Fill the node created when this message was first referenced
+                known.uid = node.uid;
+                known.sortKeys = node.sortKeys;
+                messageNode = known;
+            } else {
+                nodesById.put(messageId, messageNode);
+                allNodes.add(messageNode);
+            }
+
+            Node previous = null;
+            for (String reference : node.sortKeys.getReferences()) {
+                Node referenced = nodesById.get(reference);
+                if (referenced == null) {
+                    referenced = new Node();
+                    nodesById.put(reference, referenced);
+                    allNodes.add(referenced);
+                }
+                if (previous != null && referenced.parent == null && referenced != previous
+                        && !referenced.isReachableFrom(previous)) {
+                    previous.addChild(referenced);
+                }
+                previous = referenced;
+            }
+            messageNode.unlink();
+            if (previous != null && previous != messageNode && !messageNode.isReachableFrom(previous)) {
+                previous.addChild(messageNode);
+            }
+        }
+
+        // (2) Gather the root set
+        List<Node> roots = new ArrayList<Node>();
+        for (Node node : allNodes) {
+            if (node.parent == null) {
+                roots.add(node);
+            }
+        }
+
+        // (3) Prune the missing messages
+        roots = prune(roots, true);
+
+        // (4) Sort the root set
+        for (Node root : roots) {
+            Collections.sort(root.children, SENT_DATE_ORDER);
+        }
+        Collections.sort(roots, SENT_DATE_ORDER);
+
+        // (5) Group the root set by base subject
+        roots = groupBySubject(roots);
+
+        // (6) Sort the siblings
+        for (Node root : roots) {
+            sortChildren(root);
+        }
+        return roots;
+    }
+
+    private static List<Node> prune(List<Node> siblings, boolean isRoot) {
+        List<Node> result = new ArrayList<Node>();
+        for (Node node : siblings) {
+            List<Node> children = prune(new ArrayList<Node>(node.children), false);
+            node.children.clear();
+            for (Node child : children) {
+                child.parent = node;
+                node.children.add(child);
+            }
+            if (!node.isMissing()) {
+                result.add(node);
+            } else if (!node.children.isEmpty()) {
+                if (isRoot && node.children.size() > 1) {
+                    result.add(node);
+                } else {
+                    // Promote the children of the missing message
+                    for (Node child : node.children) {
+                        child.parent = isRoot ? null : node.parent;
+                        result.add(child);
+                    }
+                    node.children.clear();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Node> groupBySubject(List<Node> roots) {
+        Map<String, Node> nodesBySubject = new HashMap<String, Node>();
+        for (Node root : roots) {
+            String subject = root.getBaseSubject();
+            if (subject.isEmpty()) {
+                continue;
+            }
+            Node known = nodesBySubject.get(subject);
+            if (known == null
+                    || (root.isMissing() && !known.isMissing())
+                    || (!known.isMissing() && !root.isMissing() && known.sortKeys.isReplyOrForward() && !root.sortKeys.isReplyOrForward())) {
+                nodesBySubject.put(subject, root);
+            }
+        }
+
+        List<Node> result = new ArrayList<Node>(roots);
+        for (Node root : roots) {
+            String subject = root.getBaseSubject();
+            Node known = nodesBySubject.get(subject);
+            if (subject.isEmpty() || known == null || known == root) {
+                continue;
+            }
+            result.remove(root);
+            if (known.isMissing() && root.isMissing()) {
+                for (Node child : new ArrayList<Node>(root.children)) {
+                    known.addChild(child);
+                }
+            } else if (known.isMissing()) {
+                known.addChild(root);
+            } else if (!root.isMissing() && root.sortKeys.isReplyOrForward() && !known.sortKeys.isReplyOrForward()) {
+                known.addChild(root);
+            } else {
+                Node missing = new Node();
+                result.set(result.indexOf(known), missing);
+                missing.addChild(known);
+                missing.addChild(root);
+                nodesBySubject.put(subject, missing);
+            }
+        }
+        return result;
+    }
+
+    private static void sortChildren(Node node) {
+        for (Node child : node.children) {
+            sortChildren(child);
+        }
+        Collections.sort(node.children, SENT_DATE_ORDER);
+    }
+
+    private static List<MessageThread> toThreads(List<Node> nodes) {
+        List<MessageThread> threads = new ArrayList<MessageThread>(nodes.size());
+        for (Node node : nodes) {
+            threads.add(toThread(node));
+        }
+        return threads;
+    }
+
+    private static MessageThread toThread(Node node) {
+        List<MessageThread> children = toThreads(node.children);
+        if (node.isMissing()) {
+            return MessageThread.missingParent(children);
+        }
+        return MessageThread.of(node.uid, children);
+    }
+}
@@ -335,7 +335,7 @@ public class SearchUtil {
      */
     private static String removeSubjectBlob(String subject) {
         String subj = subject;
-        while(subj.charAt(0) == OPEN_SQUARE_BRACKED) {
+        while(subj.length() > 0 && subj.charAt(0) == OPEN_SQUARE_BRACKED) {
             int length = subj.length();
             subj = removeBlob(subject);
             int i = 0;
@@ -344,7 +344,7 @@ public class SearchUtil {
             } else {
                 return subject;
             }
-            while (subj.charAt(i) == WS) {
+            while (i < subj.length() && subj.charAt(i) == WS) {
                 i++;
             }
             subj = subj.substring(i);
@@ -371,7 +371,7 @@ public class SearchUtil {
      */
     private static String removeSubjLeaders(String subject) {
         int subString = 0;
-        while (subject.charAt(subString) == WS) {
+        while (subString < subject.length() && subject.charAt(subString) == WS) {
             subString++;
         }
         if (subString > 0) {
@@ -391,7 +391,7 @@ public class SearchUtil {
             } else {
                 return subject;
             }
-            while (subj.charAt(subString) == WS) {
+            while (subString < subj.length() && subj.charAt(subString) == WS) {
                 subString++;
             }
 
@@ -401,13 +401,13 @@ public class SearchUtil {
              * = 1; } else { subString = 0; }
              */
 
-            if (subj.charAt(subString) == COLON) {
+            if (subString < subj.length() && subj.charAt(subString) == COLON) {
                 subString++;
             } else {
                 return subject;
             }
 
-            while (subj.charAt(subString) == WS) {
+            while (subString < subj.length() && subj.charAt(subString) == WS) {
                 subString++;
             }
             return subj.substring(subString);
@@ -430,12 +430,12 @@ public class SearchUtil {
 
         int originalSize = decodedSubject.length();
         int curPos = originalSize -1;
-        while(true) {
+        while(curPos >= 0) {
             char c = decodedSubject.charAt(curPos--);
             if (c == WS) {
                 subStringEnd--;
             } else {
-                if (subStringEnd > FWD_PARENS.length() && decodedSubject.endsWith(FWD_PARENS)) {
+                if (subStringEnd >= FWD_PARENS.length() && decodedSubject.regionMatches(true, subStringEnd - FWD_PARENS.length(), FWD_PARENS, 0, FWD_PARENS.length())) {
                     subStringEnd -= FWD_PARENS.length();
                 } 
                 break;
@@ -0,0 +1,365 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MessageResult.Header;
+import org.apache.james.mailbox.store.ResultUtils;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.mail.model.Property;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mime4j.dom.datetime.DateTime;
+import org.apache.james.mime4j.field.datetime.parser.DateTimeParser;
+import org.apache.james.mime4j.field.datetime.parser.ParseException;
+
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Keys used to SORT and THREAD messages, as described in RFC5256.
+ * 
+ * They are computed once when the message is appended and stored as message
+ * properties, so that sorting does not need to parse the headers of the
+ * messages on every comparison. Messages stored without these properties fall
+ * back to parsing their headers.
+ */
+public class SortKeys {
+
+    public static final String BASE_SUBJECT = "SORT_BASE_SUBJECT";
+    public static final String SENT_DATE = "SORT_SENT_DATE";
+    public static final String DISPLAY_FROM = "SORT_DISPLAY_FROM";
+    public static final String DISPLAY_TO = "SORT_DISPLAY_TO";
+    public static final String MAILBOX_FROM = "SORT_MAILBOX_FROM";
+    public static final String MAILBOX_TO = "SORT_MAILBOX_TO";
+    public static final String MAILBOX_CC = "SORT_MAILBOX_CC";
+    public static final String REPLY_OR_FORWARD = "THREAD_REPLY_OR_FORWARD";
+    public static final String MESSAGE_ID = "THREAD_MESSAGE_ID";
+    public static final String REFERENCES = "THREAD_REFERENCES";
+
+    /**
+     * Some mailbox implementations limit the length of property values. Oldest
+     * references are dropped first as the last ones are the most relevant for threading,
+     * while messages with a longer key are stored without keys and fall back to parsing
+     * their headers.
+     */
+    private static final int MAX_VALUE_LENGTH = 1000;
+    private static final Pattern MESSAGE_ID_PATTERN = Pattern.compile("<[^<>]*>");
+    private static final Pattern REPLY_OR_FORWARD_PATTERN = Pattern.compile("^\\s*(\\[[^\\[\\]]*\\]\\s*)*(RE|FWD?)\\s*(\\[[^\\[\\]]*\\])?\\s*:.*|.*\\(FWD\\)\\s*$|^\\s*\\[FWD:.*\\]\\s*$", Pattern.DOTALL);
+    private static final Splitter REFERENCES_SPLITTER = Splitter.on(' ').omitEmptyStrings();
+    private static final Joiner REFERENCES_JOINER = Joiner.on(' ');
+
+    /**
+     * Compute the keys of a message on every call
+     */
+    public static final Function<MailboxMessage, SortKeys> ON_DEMAND = new Function<MailboxMessage, SortKeys>() {
+        @Override
+        public SortKeys apply(MailboxMessage message) {
+            return of(message);
+        }
+    };
+
+    /**
+     * Return a function computing the keys of each message only once, to be used
+     * while sorting a given set of messages
+     */
+    public static Function<MailboxMessage, SortKeys> cached() {
+        final Map<MailboxMessage, SortKeys> keys = new IdentityHashMap<MailboxMessage, SortKeys>();
+        return new Function<MailboxMessage, SortKeys>() {
+            @Override
+            public SortKeys apply(MailboxMessage message) {
+                SortKeys sortKeys = keys.get(message);
+                if (sortKeys == null) {
+                    sortKeys = of(message);
+                    keys.put(message, sortKeys);
+                }
+                return sortKeys;
+            }
+        };
+    }
+
+    /**
+     * Return the keys stored with the message, or compute them from its headers
+     * if they are missing
+     */
+    public static SortKeys of(MailboxMessage message) {
+        SortKeys stored = fromProperties(message.getProperties());
+        if (stored != null) {
+            return stored;
+        }
+        try {
+            return compute(ResultUtils.createHeaders(message), message.getInternalDate());
+        } catch (IOException e) {
+            return compute(ImmutableList.<Header>of(), message.getInternalDate());
+        }
+    }
+
+    /**
+     * Compute the keys from the headers of a message
+     * 
+     * @param headers
+     *            headers of the message
+     * @param internalDate
+     *            used as sent date when the message has no valid Date header
+     */
+    public static SortKeys compute(List<Header> headers, Date internalDate) {
+        String subject = getHeaderValue("Subject", headers);
+        return new SortKeys(SearchUtil.getBaseSubject(subject),
+            isReplyOrForward(subject),
+            getSentDate(getRawHeaderValue("Date", headers), internalDate),
+            SearchUtil.getDisplayAddress(getHeaderValue("From", headers)),
+            SearchUtil.getDisplayAddress(getHeaderValue("To", headers)),
+            SearchUtil.getMailboxAddress(getHeaderValue("From", headers)),
+            SearchUtil.getMailboxAddress(getHeaderValue("To", headers)),
+            SearchUtil.getMailboxAddress(getHeaderValue("Cc", headers)),
+            getMessageId(getRawHeaderValue("Message-ID", headers)),
+            getReferences(getRawHeaderValue("References", headers), getRawHeaderValue("In-Reply-To", headers)));
+    }
+
+    private static SortKeys fromProperties(List<Property> properties) {
+        String baseSubject = null;
+        String replyOrForward = null;
+        String sentDate = null;
+        String displayFrom = null;
+        String displayTo = null;
+        String mailboxFrom = null;
+        String mailboxTo = null;
+        String mailboxCc = null;
+        String messageId = null;
+        String references = null;
+        for (Property property : properties) {
+            if (!PropertyBuilder.JAMES_INTERNALS.equals(property.getNamespace())) {
+                continue;
+            }
+            String localName = property.getLocalName();
+            if (BASE_SUBJECT.equals(localName)) {
+                baseSubject = property.getValue();
+            } else if (REPLY_OR_FORWARD.equals(localName)) {
+                replyOrForward = property.getValue();
+            } else if (SENT_DATE.equals(localName)) {
+                sentDate = property.getValue();
+            } else if (DISPLAY_FROM.equals(localName)) {
+                displayFrom = property.getValue();
+            } else if (DISPLAY_TO.equals(localName)) {
+                displayTo = property.getValue();
+            } else if (MAILBOX_FROM.equals(localName)) {
+                mailboxFrom = property.getValue();
+            } else if (MAILBOX_TO.equals(localName)) {
+                mailboxTo = property.getValue();
+            } else if (MAILBOX_CC.equals(localName)) {
+                mailboxCc = property.getValue();
+            } else if (MESSAGE_ID.equals(localName)) {
+                messageId = property.getValue();
+            } else if (REFERENCES.equals(localName)) {
+                references = property.getValue();
+            }
+        }
+        if (baseSubject == null || replyOrForward == null || sentDate == null || displayFrom == null || displayTo == null
+                || mailboxFrom == null || mailboxTo == null || mailboxCc == null || messageId == null || references == null) {
+            return null;
+        }
+        try {
+            return new SortKeys(baseSubject, Boolean.valueOf(replyOrForward), Long.parseLong(sentDate), displayFrom, displayTo,
+                mailboxFrom, mailboxTo, mailboxCc, messageId, ImmutableList.copyOf(REFERENCES_SPLITTER.split(references)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String getHeaderValue(String headerName, List<Header> headers) {
+        return getRawHeaderValue(headerName, headers).toUpperCase(Locale.ENGLISH);
+    }
+
+    private static String getRawHeaderValue(String headerName, List<Header> headers) {
+        for (Header header : headers) {
+            try {
+                if (headerName.equalsIgnoreCase(header.getName())) {
+                    return header.getValue();
+                }
+            } catch (MailboxException e) {
+                // skip the header line
+            }
+        }
+        return "";
+    }
+
+    private static long getSentDate(String value, Date internalDate) {
+        try {
+            DateTime dateTime = new DateTimeParser(new StringReader(value)).parseAll();
+            return dateTime.getDate().getTime();
+        } catch (ParseException e) {
+            // if we can not parse the date header we should use the internaldate as fallback
+            return internalDate.getTime();
+        }
+    }
+
+    private static boolean isReplyOrForward(String subject) {
+        return REPLY_OR_FORWARD_PATTERN.matcher(subject).matches();
+    }
+
+    private static String getMessageId(String value) {
+        Matcher matcher = MESSAGE_ID_PATTERN.matcher(value);
+        if (matcher.find()) {
+            return matcher.group();
+        }
+        return "";
+    }
+
+    private static List<String> getReferences(String references, String inReplyTo) {
+        List<String> result = new ArrayList<String>();
+        Matcher matcher = MESSAGE_ID_PATTERN.matcher(references);
+        while (matcher.find()) {
+            result.add(matcher.group());
+        }
+        if (result.isEmpty()) {
+            String parent = getMessageId(inReplyTo);
+            if (!parent.isEmpty()) {
+                result.add(parent);
+            }
+        }
+        return ImmutableList.copyOf(result);
+    }
+
+    private final String baseSubject;
+    private final boolean replyOrForward;
+    private final long sentDate;
+    private final String displayFrom;
+    private final String displayTo;
+    private final String mailboxFrom;
+    private final String mailboxTo;
+    private final String mailboxCc;
+    private final String messageId;
+    private final List<String> references;
+
+    private SortKeys(String baseSubject, boolean replyOrForward, long sentDate, String displayFrom, String displayTo,
+            String mailboxFrom, String mailboxTo, String mailboxCc, String messageId, List<String> references) {
+        this.baseSubject = baseSubject;
+        this.replyOrForward = replyOrForward;
+        this.sentDate = sentDate;
+        this.displayFrom = displayFrom;
+        this.displayTo = displayTo;
+        this.mailboxFrom = mailboxFrom;
+        this.mailboxTo = mailboxTo;
+        this.mailboxCc = mailboxCc;
+        this.messageId = messageId;
+        this.references = references;
+    }
+
+    /**
+     * Store the keys as properties of the message, unless one of them is too long to be stored
+     */
+    public void addTo(PropertyBuilder propertyBuilder) {
+        if (isTooLong(baseSubject) || isTooLong(displayFrom) || isTooLong(displayTo) || isTooLong(mailboxFrom)
+                || isTooLong(mailboxTo) || isTooLong(mailboxCc) || isTooLong(messageId)) {
+            return;
+        }
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, BASE_SUBJECT, baseSubject);
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, REPLY_OR_FORWARD, Boolean.toString(replyOrForward));
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, SENT_DATE, Long.toString(sentDate));
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, DISPLAY_FROM, displayFrom);
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, DISPLAY_TO, displayTo);
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, MAILBOX_FROM, mailboxFrom);
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, MAILBOX_TO, mailboxTo);
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, MAILBOX_CC, mailboxCc);
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, MESSAGE_ID, messageId);
+        propertyBuilder.setProperty(PropertyBuilder.JAMES_INTERNALS, REFERENCES, truncate(references));
+    }
+
+    private boolean isTooLong(String value) {
+        return value.length() > MAX_VALUE_LENGTH;
+    }
+
+    private String truncate(List<String> references) {
+        List<String> kept = references;
+        String value = REFERENCES_JOINER.join(kept);
+        while (isTooLong(value)) {
+            kept = kept.subList(1, kept.size());
+            value = REFERENCES_JOINER.join(kept);
+        }
+        return value;
+    }
+
+    /**
+     * Return the base subject as defined in RFC5256 2.1
+     */
+    public String getBaseSubject() {
+        return baseSubject;
+    }
+
+    /**
+     * Return true if the subject denotes a reply or a forward, as defined in RFC5256 2.1
+     */
+    public boolean isReplyOrForward() {
+        return replyOrForward;
+    }
+
+    /**
+     * Return the sent date as defined in RFC5256 2.2, in milliseconds since the epoch
+     */
+    public long getSentDate() {
+        return sentDate;
+    }
+
+    public String getDisplayFrom() {
+        return displayFrom;
+    }
+
+    public String getDisplayTo() {
+        return displayTo;
+    }
+
+    public String getMailboxFrom() {
+        return mailboxFrom;
+    }
+
+    public String getMailboxTo() {
+        return mailboxTo;
+    }
+
+    public String getMailboxCc() {
+        return mailboxCc;
+    }
+
+    /**
+     * Return the message id, or an empty String if the message has none
+     */
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * Return the ids of the parents of the message, oldest first
+     */
+    public List<String> getReferences() {
+        return references;
+    }
+}
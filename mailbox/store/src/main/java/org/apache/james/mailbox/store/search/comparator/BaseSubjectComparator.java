@@ -21,18 +21,44 @@ package org.apache.james.mailbox.store.search.comparator;
 import java.util.Comparator;
 
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
-import org.apache.james.mailbox.store.search.SearchUtil;
+import org.apache.james.mailbox.store.search.SortKeys;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
 
 public class BaseSubjectComparator extends AbstractHeaderComparator{
 
     public final static Comparator<MailboxMessage> BASESUBJECT = new BaseSubjectComparator();
-    private final static String SUBJECT = "subject";
-    
+
+    private final Function<MailboxMessage, SortKeys> sortKeys;
+
+    public BaseSubjectComparator() {
+        this(SortKeys.ON_DEMAND);
+    }
+
+    public BaseSubjectComparator(Function<MailboxMessage, SortKeys> sortKeys) {
+        this.sortKeys = sortKeys;
+    }
+
     @Override
     public int compare(MailboxMessage o1, MailboxMessage o2) {
-        String baseSubject1 = SearchUtil.getBaseSubject(getHeaderValue(SUBJECT, o1));
-        String baseSubject2 = SearchUtil.getBaseSubject(getHeaderValue(SUBJECT, o2));
+        String baseSubject1 = sortKeys.apply(o1).getBaseSubject();
+        String baseSubject2 = sortKeys.apply(o2).getBaseSubject();
 
         return baseSubject1.compareToIgnoreCase(baseSubject2);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof BaseSubjectComparator) {
+            BaseSubjectComparator that = (BaseSubjectComparator) o;
+            return Objects.equal(this.sortKeys, that.sortKeys);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(sortKeys);
+    }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.james.mailbox.model.SearchQuery.Sort;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.search.SortKeys;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -36,44 +37,51 @@ import com.google.common.collect.FluentIterable;
 public class CombinedComparator implements Comparator<MailboxMessage>{
 
     public static CombinedComparator create(List<Sort> sorts) {
+        return create(sorts, SortKeys.ON_DEMAND);
+    }
+
+    /**
+     * @param sortKeys gives the {@link SortKeys} of the compared messages, see {@link SortKeys#cached()}
+     */
+    public static CombinedComparator create(List<Sort> sorts, Function<MailboxMessage, SortKeys> sortKeys) {
         Preconditions.checkNotNull(sorts);
         Preconditions.checkArgument(!sorts.isEmpty());
         return new CombinedComparator(FluentIterable.from(sorts)
-            .transform(toComparator())
+            .transform(toComparator(sortKeys))
             .toList());
     }
 
-    private static Function<Sort, Comparator<MailboxMessage>> toComparator() {
+    private static Function<Sort, Comparator<MailboxMessage>> toComparator(final Function<MailboxMessage, SortKeys> sortKeys) {
         return new Function<Sort, Comparator<MailboxMessage>>() {
             @Override
             public Comparator<MailboxMessage> apply(Sort input) {
-                return optionalResverse(toComparator(input), input.isReverse());
+                return optionalResverse(toComparator(input, sortKeys), input.isReverse());
             }
         };
     }
 
-    private static Comparator<MailboxMessage> toComparator(Sort sort) {
+    private static Comparator<MailboxMessage> toComparator(Sort sort, Function<MailboxMessage, SortKeys> sortKeys) {
         switch (sort.getSortClause()) {
             case Arrival:
                 return InternalDateComparator.INTERNALDATE;
             case MailboxCc:
-                return HeaderMailboxComparator.CC_COMPARATOR;
+                return new HeaderMailboxComparator(AbstractHeaderComparator.CC, sortKeys);
             case MailboxFrom:
-                return HeaderMailboxComparator.FROM_COMPARATOR;
+                return new HeaderMailboxComparator(AbstractHeaderComparator.FROM, sortKeys);
             case Size:
                 return SizeComparator.SIZE;
             case BaseSubject:
-                return BaseSubjectComparator.BASESUBJECT;
+                return new BaseSubjectComparator(sortKeys);
             case MailboxTo:
-                return HeaderMailboxComparator.TO_COMPARATOR;
+                return new HeaderMailboxComparator(AbstractHeaderComparator.TO, sortKeys);
             case Uid:
                 return UidComparator.UID;
             case SentDate:
-                return SentDateComparator.SENTDATE;
+                return new SentDateComparator(sortKeys);
             case DisplayFrom:
-                return HeaderDisplayComparator.FROM_COMPARATOR;
+                return new HeaderDisplayComparator(AbstractHeaderComparator.FROM, sortKeys);
             case DisplayTo:
-                return HeaderDisplayComparator.TO_COMPARATOR;
+                return new HeaderDisplayComparator(AbstractHeaderComparator.TO, sortKeys);
             case Id:
                 return MessageIdComparator.MESSAGE_ID_COMPARATOR;
             default:
@@ -22,21 +22,56 @@ import java.util.Comparator;
 
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.apache.james.mailbox.store.search.SearchUtil;
+import org.apache.james.mailbox.store.search.SortKeys;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
 
 public class HeaderDisplayComparator extends AbstractHeaderComparator{
     public final static Comparator<MailboxMessage> FROM_COMPARATOR = new HeaderDisplayComparator(FROM);
     public final static Comparator<MailboxMessage> TO_COMPARATOR = new HeaderDisplayComparator(TO);
 
     private final String headerName;
+    private final Function<MailboxMessage, SortKeys> sortKeys;
 
     public HeaderDisplayComparator(String headerName) {
+        this(headerName, SortKeys.ON_DEMAND);
+    }
+
+    public HeaderDisplayComparator(String headerName, Function<MailboxMessage, SortKeys> sortKeys) {
         this.headerName = headerName;
+        this.sortKeys = sortKeys;
     }
 
     @Override
     public int compare(MailboxMessage o1, MailboxMessage o2) {
-        String display1 = SearchUtil.getDisplayAddress(getHeaderValue(headerName, o1));
-        String display2 = SearchUtil.getDisplayAddress(getHeaderValue(headerName, o2));
+        String display1 = getDisplayAddress(o1);
+        String display2 = getDisplayAddress(o2);
         return display1.compareToIgnoreCase(display2);
     }
+
+    private String getDisplayAddress(MailboxMessage message) {
+        if (FROM.equals(headerName)) {
+            return sortKeys.apply(message).getDisplayFrom();
+        }
+        if (TO.equals(headerName)) {
+            return sortKeys.apply(message).getDisplayTo();
+        }
+        return SearchUtil.getDisplayAddress(getHeaderValue(headerName, message));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof HeaderDisplayComparator) {
+            HeaderDisplayComparator that = (HeaderDisplayComparator) o;
+            return Objects.equal(this.headerName, that.headerName)
+                && Objects.equal(this.sortKeys, that.sortKeys);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(headerName, sortKeys);
+    }
 }
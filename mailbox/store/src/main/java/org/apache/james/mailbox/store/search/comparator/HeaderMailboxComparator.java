@@ -22,6 +22,10 @@ import java.util.Comparator;
 
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.apache.james.mailbox.store.search.SearchUtil;
+import org.apache.james.mailbox.store.search.SortKeys;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
 
 public class HeaderMailboxComparator extends AbstractHeaderComparator{
     public final static Comparator<MailboxMessage> FROM_COMPARATOR = new HeaderMailboxComparator(FROM);
@@ -29,17 +33,50 @@ public class HeaderMailboxComparator extends AbstractHeaderComparator{
     public final static Comparator<MailboxMessage> CC_COMPARATOR = new HeaderMailboxComparator(CC);
 
     private final String headerName;
+    private final Function<MailboxMessage, SortKeys> sortKeys;
 
     public HeaderMailboxComparator(String headerName) {
+        this(headerName, SortKeys.ON_DEMAND);
+    }
+
+    public HeaderMailboxComparator(String headerName, Function<MailboxMessage, SortKeys> sortKeys) {
         this.headerName = headerName;
+        this.sortKeys = sortKeys;
     }
 
     @Override
     public int compare(MailboxMessage o1, MailboxMessage o2) {
-        String mailbox1 = SearchUtil.getMailboxAddress(getHeaderValue(headerName, o1));
-        String mailbox2 = SearchUtil.getMailboxAddress(getHeaderValue(headerName, o2));
+        String mailbox1 = getMailboxAddress(o1);
+        String mailbox2 = getMailboxAddress(o2);
 
         return mailbox1.compareToIgnoreCase(mailbox2);
     }
-}
 
+    private String getMailboxAddress(MailboxMessage message) {
+        if (FROM.equals(headerName)) {
+            return sortKeys.apply(message).getMailboxFrom();
+        }
+        if (TO.equals(headerName)) {
+            return sortKeys.apply(message).getMailboxTo();
+        }
+        if (CC.equals(headerName)) {
+            return sortKeys.apply(message).getMailboxCc();
+        }
+        return SearchUtil.getMailboxAddress(getHeaderValue(headerName, message));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof HeaderMailboxComparator) {
+            HeaderMailboxComparator that = (HeaderMailboxComparator) o;
+            return Objects.equal(this.headerName, that.headerName)
+                && Objects.equal(this.sortKeys, that.sortKeys);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(headerName, sortKeys);
+    }
+}
@@ -18,14 +18,13 @@
  ****************************************************************/
 package org.apache.james.mailbox.store.search.comparator;
 
-import java.io.StringReader;
 import java.util.Comparator;
-import java.util.Date;
 
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
-import org.apache.james.mime4j.dom.datetime.DateTime;
-import org.apache.james.mime4j.field.datetime.parser.DateTimeParser;
-import org.apache.james.mime4j.field.datetime.parser.ParseException;
+import org.apache.james.mailbox.store.search.SortKeys;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
 
 /**
  * {@link Comparator} which works like stated in RFC5256 2.2 Sent Date
@@ -34,28 +33,39 @@ import org.apache.james.mime4j.field.datetime.parser.ParseException;
 public class SentDateComparator extends AbstractHeaderComparator {
     public final static Comparator<MailboxMessage> SENTDATE = new SentDateComparator();
 
+    private final Function<MailboxMessage, SortKeys> sortKeys;
+
+    public SentDateComparator() {
+        this(SortKeys.ON_DEMAND);
+    }
+
+    public SentDateComparator(Function<MailboxMessage, SortKeys> sortKeys) {
+        this.sortKeys = sortKeys;
+    }
+
     @Override
     public int compare(MailboxMessage o1, MailboxMessage o2) {
-        Date date1 = getSentDate(o1);
-        Date date2 = getSentDate(o2);
-        int i = date1.compareTo(date2);
+        long date1 = sortKeys.apply(o1).getSentDate();
+        long date2 = sortKeys.apply(o2).getSentDate();
         
         // sent date was the same so use the uid as tie-breaker
-        if (i == 0) {
+        if (date1 == date2) {
             return UidComparator.UID.compare(o1, o2);
         }
-        return 0;
+        return date1 < date2 ? -1 : 1;
     }
-    
-    private Date getSentDate(MailboxMessage message) {
-        final String value = getHeaderValue("Date", message);
-        final StringReader reader = new StringReader(value);
-        try {
-            DateTime dateTime = new DateTimeParser(reader).parseAll();
-            return dateTime.getDate();
-        } catch (ParseException e) {
-            // if we can not parse the date header we should use the internaldate as fallback
-            return message.getInternalDate();
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof SentDateComparator) {
+            SentDateComparator that = (SentDateComparator) o;
+            return Objects.equal(this.sortKeys, that.sortKeys);
         }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(sortKeys);
     }
 }
@@ -798,4 +798,12 @@ public class SearchUtilsTest {
         assertFalse(new MessageSearches().isMatch(SearchQuery.address(AddressType.From, "user-from@domain.org"), row, recent));
     }
 
+    @Test
+    public void textContainsShouldMatchMessagesWithoutSubject() throws Exception {
+        builder.header("From", "user-from@domain.org");
+        builder.body = "any text\r\n".getBytes();
+        MailboxMessage row = builder.build();
+        assertTrue(new MessageSearches().isMatch(SearchQuery.textContains("text"), row, recent));
+    }
+
 }
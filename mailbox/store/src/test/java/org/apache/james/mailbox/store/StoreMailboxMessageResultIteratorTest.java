@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import javax.mail.Flags;
 import javax.mail.util.SharedByteArrayInputStream;
@@ -42,6 +43,7 @@ import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.mailbox.model.TestId;
 import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.mail.AsyncMessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -53,10 +55,21 @@ import org.junit.Test;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
 
 public class StoreMailboxMessageResultIteratorTest {
 
     private final class TestFetchGroup implements FetchGroup {
+        private final int content;
+
+        public TestFetchGroup() {
+            this(FetchGroup.MINIMAL);
+        }
+
+        public TestFetchGroup(int content) {
+            this.content = content;
+        }
+
         @Override
         public Set<PartContentDescriptor> getPartContentDescriptors() {
             return new HashSet<PartContentDescriptor>();
@@ -64,17 +77,24 @@ public class StoreMailboxMessageResultIteratorTest {
 
         @Override
         public int content() {
-            return FetchGroup.MINIMAL;
+            return content;
         }
     }
 
-    private final class TestMessageMapper implements MessageMapper {
+    private class TestMessageMapper implements MessageMapper {
         
 
         private final MessageRange messageRange;
+        private final int messageSize;
+        private final List<Integer> limits = new ArrayList<Integer>();
 
         public TestMessageMapper(MessageRange messageRange) {
+            this(messageRange, 0);
+        }
+
+        public TestMessageMapper(MessageRange messageRange, int messageSize) {
             this.messageRange = messageRange;
+            this.messageSize = messageSize;
         }
         
         @Override
@@ -99,7 +119,7 @@ public class StoreMailboxMessageResultIteratorTest {
         public Iterator<MailboxMessage> findInMailbox(Mailbox mailbox, MessageRange set,
                                                               org.apache.james.mailbox.store.mail.MessageMapper.FetchType type, int limit)
                 throws MailboxException {
-            
+            limits.add(limit);
             List<MailboxMessage> messages = new ArrayList<MailboxMessage>();
             for (MessageUid uid: Iterables.limit(set, limit)) {
                 if (messageRange.includes(uid)) {
@@ -110,7 +130,7 @@ public class StoreMailboxMessageResultIteratorTest {
         }
 
         private SimpleMailboxMessage createMessage(MessageUid uid) {
-            SimpleMailboxMessage message = new SimpleMailboxMessage(new DefaultMessageId(), null, 0, 0, new SharedByteArrayInputStream(
+            SimpleMailboxMessage message = new SimpleMailboxMessage(new DefaultMessageId(), null, messageSize, 0, new SharedByteArrayInputStream(
                     "".getBytes()), new Flags(), new PropertyBuilder(), TestId.of(1L));
             message.setUid(uid);
             return message;
@@ -150,6 +170,16 @@ public class StoreMailboxMessageResultIteratorTest {
 
         }
 
+        @Override
+        public List<MessageUid> findChangedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<List<MessageUid>> findExpungedUidsSince(Mailbox mailbox, MessageRange set, long modSeq) throws MailboxException {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public MessageMetaData add(Mailbox mailbox, MailboxMessage message) throws MailboxException {
             throw new UnsupportedOperationException();
@@ -188,6 +218,78 @@ public class StoreMailboxMessageResultIteratorTest {
         }
     }
 
+    private final class TestAsyncMessageMapper extends TestMessageMapper implements AsyncMessageMapper {
+        private int asyncCalls;
+
+        public TestAsyncMessageMapper(MessageRange messageRange) {
+            super(messageRange);
+        }
+
+        @Override
+        public Future<Iterator<MailboxMessage>> findInMailboxAsync(Mailbox mailbox, MessageRange set, FetchType type, int limit) throws MailboxException {
+            asyncCalls++;
+            return Futures.immediateFuture(findInMailbox(mailbox, set, type, limit));
+        }
+    }
+
+    private static final Extractor<MessageResult, Long> UID_EXTRACTOR = new Extractor<MessageResult, Long>() {
+        @Override
+        public Long extract(MessageResult input) {
+            return input.getUid().asLong();
+        }
+    };
+
+    @Test
+    public void metadataBatchesShouldBeLargerThanTheBatchSize() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(100));
+        TestMessageMapper mapper = new TestMessageMapper(MessageRange.all());
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, 10, new TestFetchGroup());
+
+        assertThat(it).hasSize(100);
+        assertThat(mapper.limits).containsExactly(50, 50);
+    }
+
+    @Test
+    public void headersBatchesShouldBeLargerThanTheBatchSize() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(100));
+        TestMessageMapper mapper = new TestMessageMapper(MessageRange.all());
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, 10, new TestFetchGroup(FetchGroup.HEADERS));
+
+        assertThat(it).hasSize(100);
+        assertThat(mapper.limits.get(0)).isEqualTo(20);
+    }
+
+    @Test
+    public void contentBatchesShouldBeSizedAfterTheMessageSize() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(20));
+        int messageSize = (int) (StoreMessageResultIterator.CONTENT_BATCH_BYTES / 4);
+        TestMessageMapper mapper = new TestMessageMapper(MessageRange.all(), messageSize);
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, 10, new TestFetchGroup(FetchGroup.FULL_CONTENT));
+
+        assertThat(it).extracting(UID_EXTRACTOR).hasSize(20);
+        assertThat(mapper.limits).startsWith(10, 4, 4);
+    }
+
+    @Test
+    public void asyncMapperShouldPrefetchTheNextBatch() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(10));
+        TestAsyncMessageMapper mapper = new TestAsyncMessageMapper(MessageRange.all());
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, 1, new TestFetchGroup());
+
+        assertThat(it).extracting(UID_EXTRACTOR).containsExactly(1l, 2l, 3l, 4l, 5l, 6l, 7l, 8l, 9l, 10l);
+        assertThat(mapper.asyncCalls).isEqualTo(1);
+    }
+
+    @Test
+    public void asyncMapperShouldNotPrefetchAfterTheLastBatch() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(3));
+        TestAsyncMessageMapper mapper = new TestAsyncMessageMapper(MessageRange.all());
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, 1, new TestFetchGroup());
+
+        assertThat(it).hasSize(3);
+        assertThat(mapper.asyncCalls).isEqualTo(0);
+    }
+
     @Test
     public void testBatching() {
         MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(10));
@@ -40,7 +40,8 @@ public interface MapperProvider {
         MOVE,
         UNIQUE_MESSAGE_ID,
         THREAD_SAFE_FLAGS_UPDATE,
-        INCREMENTAL_APPLICABLE_FLAGS
+        INCREMENTAL_APPLICABLE_FLAGS,
+        EXPUNGE_TRACKING
     }
 
     List<Capabilities> getSupportedCapabilities();
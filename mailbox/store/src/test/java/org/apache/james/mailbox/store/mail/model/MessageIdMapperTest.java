@@ -38,6 +38,7 @@ import org.apache.james.mailbox.exception.MailboxNotFoundException;
 import org.apache.james.mailbox.model.MailboxId;
 import org.apache.james.mailbox.model.MailboxPath;
 import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.mail.MailboxMapper;
 import org.apache.james.mailbox.store.mail.MessageIdMapper;
@@ -264,6 +265,43 @@ public class MessageIdMapperTest<T extends MapperProvider> {
         assertThat(mailboxes).isEmpty();
     }
 
+    @ContractTest
+    public void deleteShouldRecordTheExpungeInEachMailbox() throws Exception {
+        Assume.assumeTrue(mapperProvider.getSupportedCapabilities().contains(MapperProvider.Capabilities.EXPUNGE_TRACKING));
+        message1.setUid(mapperProvider.generateMessageUid());
+        message1.setModSeq(mapperProvider.generateModSeq(benwaInboxMailbox));
+        sut.save(message1);
+
+        SimpleMailboxMessage message1InOtherMailbox = SimpleMailboxMessage.copy(benwaWorkMailbox.getMailboxId(), message1);
+        message1InOtherMailbox.setUid(mapperProvider.generateMessageUid());
+        message1InOtherMailbox.setModSeq(mapperProvider.generateModSeq(benwaWorkMailbox));
+        sut.save(message1InOtherMailbox);
+        long inboxModSeq = messageMapper.getHighestModSeq(benwaInboxMailbox);
+        long workModSeq = messageMapper.getHighestModSeq(benwaWorkMailbox);
+
+        sut.delete(message1.getMessageId());
+
+        assertThat(messageMapper.findExpungedUidsSince(benwaInboxMailbox, MessageRange.all(), inboxModSeq).get())
+            .containsExactly(message1.getUid());
+        assertThat(messageMapper.findExpungedUidsSince(benwaWorkMailbox, MessageRange.all(), workModSeq).get())
+            .containsExactly(message1InOtherMailbox.getUid());
+    }
+
+    @ContractTest
+    public void deleteWithMailboxIdsShouldRecordTheExpungeInTheGivenMailbox() throws Exception {
+        Assume.assumeTrue(mapperProvider.getSupportedCapabilities().contains(MapperProvider.Capabilities.EXPUNGE_TRACKING));
+        message1.setUid(mapperProvider.generateMessageUid());
+        message1.setModSeq(mapperProvider.generateModSeq(benwaInboxMailbox));
+        sut.save(message1);
+        long modSeq = messageMapper.getHighestModSeq(benwaInboxMailbox);
+
+        sut.delete(message1.getMessageId(), ImmutableList.of(benwaInboxMailbox.getMailboxId()));
+
+        assertThat(messageMapper.findExpungedUidsSince(benwaInboxMailbox, MessageRange.all(), modSeq).get())
+            .containsExactly(message1.getUid());
+        assertThat(messageMapper.getHighestModSeq(benwaInboxMailbox)).isGreaterThan(modSeq);
+    }
+
     @ContractTest
     public void deleteWithMailboxIdsShouldNotDeleteIndicesWhenMailboxIdsIsEmpty() throws Exception {
         message1.setUid(mapperProvider.generateMessageUid());
@@ -996,6 +996,88 @@ public class MessageMapperTest<T extends MapperProvider> {
             .isEqualTo(new Flags(Flag.DELETED));
     }
 
+    @ContractTest
+    public void findChangedUidsSinceShouldReturnMessagesAddedAfterTheModSeq() throws MailboxException {
+        saveMessages();
+
+        assertThat(messageMapper.findChangedUidsSince(benwaInboxMailbox, MessageRange.all(), message3.getModSeq()))
+            .containsExactly(message4.getUid(), message5.getUid());
+    }
+
+    @ContractTest
+    public void findChangedUidsSinceShouldReturnMessagesWhoseFlagsWereUpdated() throws MailboxException {
+        saveMessages();
+        long modSeq = messageMapper.getHighestModSeq(benwaInboxMailbox);
+        messageMapper.updateFlags(benwaInboxMailbox, new FlagsUpdateCalculator(new Flags(Flags.Flag.SEEN), FlagsUpdateMode.ADD), MessageRange.one(message2.getUid()));
+
+        assertThat(messageMapper.findChangedUidsSince(benwaInboxMailbox, MessageRange.all(), modSeq))
+            .containsExactly(message2.getUid());
+    }
+
+    @ContractTest
+    public void findChangedUidsSinceShouldBeRestrictedToTheGivenRange() throws MailboxException {
+        saveMessages();
+
+        assertThat(messageMapper.findChangedUidsSince(benwaInboxMailbox, MessageRange.range(message2.getUid(), message3.getUid()), 0))
+            .containsExactly(message2.getUid(), message3.getUid());
+    }
+
+    @ContractTest
+    public void findChangedUidsSinceShouldNotReturnDeletedMessages() throws MailboxException {
+        saveMessages();
+        messageMapper.delete(benwaInboxMailbox, message5);
+
+        assertThat(messageMapper.findChangedUidsSince(benwaInboxMailbox, MessageRange.all(), 0))
+            .containsExactly(message1.getUid(), message2.getUid(), message3.getUid(), message4.getUid());
+    }
+
+    @ContractTest
+    public void deleteShouldIncrementModSeqWhenExpungesAreTracked() throws MailboxException {
+        Assume.assumeTrue(mapperProvider.getSupportedCapabilities().contains(Capabilities.EXPUNGE_TRACKING));
+        saveMessages();
+        long modSeq = messageMapper.getHighestModSeq(benwaInboxMailbox);
+        messageMapper.delete(benwaInboxMailbox, message2);
+
+        assertThat(messageMapper.getHighestModSeq(benwaInboxMailbox)).isGreaterThan(modSeq);
+    }
+
+    @ContractTest
+    public void findExpungedUidsSinceShouldReturnMessagesDeletedAfterTheModSeq() throws MailboxException {
+        Assume.assumeTrue(mapperProvider.getSupportedCapabilities().contains(Capabilities.EXPUNGE_TRACKING));
+        saveMessages();
+        messageMapper.delete(benwaInboxMailbox, message2);
+        long modSeq = messageMapper.getHighestModSeq(benwaInboxMailbox);
+        messageMapper.delete(benwaInboxMailbox, message3);
+        messageMapper.delete(benwaInboxMailbox, message4);
+
+        assertThat(messageMapper.findExpungedUidsSince(benwaInboxMailbox, MessageRange.all(), modSeq).get())
+            .containsExactly(message3.getUid(), message4.getUid());
+    }
+
+    @ContractTest
+    public void findExpungedUidsSinceShouldBeRestrictedToTheGivenRange() throws MailboxException {
+        Assume.assumeTrue(mapperProvider.getSupportedCapabilities().contains(Capabilities.EXPUNGE_TRACKING));
+        saveMessages();
+        messageMapper.delete(benwaInboxMailbox, message2);
+        messageMapper.delete(benwaInboxMailbox, message4);
+
+        assertThat(messageMapper.findExpungedUidsSince(benwaInboxMailbox, MessageRange.one(message4.getUid()), 0).get())
+            .containsExactly(message4.getUid());
+    }
+
+    @ContractTest
+    public void findExpungedUidsSinceShouldReturnExpungedMessages() throws MailboxException {
+        Assume.assumeTrue(mapperProvider.getSupportedCapabilities().contains(Capabilities.EXPUNGE_TRACKING));
+        saveMessages();
+        long modSeq = messageMapper.getHighestModSeq(benwaInboxMailbox);
+        markThenPerformExpunge(MessageRange.all());
+
+        assertThat(messageMapper.findExpungedUidsSince(benwaInboxMailbox, MessageRange.all(), modSeq).get())
+            .containsExactly(message1.getUid(), message4.getUid());
+        assertThat(messageMapper.findChangedUidsSince(benwaInboxMailbox, MessageRange.all(), modSeq))
+            .isEmpty();
+    }
+
     private Map<MessageUid, MessageMetaData> markThenPerformExpunge(MessageRange range) throws MailboxException {
         messageMapper.updateFlags(benwaInboxMailbox, new FlagsUpdateCalculator(new Flags(Flags.Flag.DELETED), FlagsUpdateMode.REPLACE), MessageRange.one(message1.getUid()));
         messageMapper.updateFlags(benwaInboxMailbox, new FlagsUpdateCalculator(new Flags(Flags.Flag.DELETED), FlagsUpdateMode.REPLACE), MessageRange.one(message4.getUid()));
@@ -0,0 +1,81 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.mail.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import javax.mail.Flags;
+import javax.mail.util.SharedByteArrayInputStream;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.model.TestId;
+import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.google.common.collect.ImmutableList;
+
+public class ChangedUidsCalculatorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void constructorShouldThrowWhenNull() throws Exception {
+        expectedException.expect(NullPointerException.class);
+        new ChangedUidsCalculator(null);
+    }
+
+    @Test
+    public void computeChangedUidsSinceShouldReturnEmptyWhenNoMessages() throws Exception {
+        ChangedUidsCalculator calculator = new ChangedUidsCalculator(ImmutableList.<MailboxMessage>of().iterator());
+
+        assertThat(calculator.computeChangedUidsSince(0)).isEmpty();
+    }
+
+    @Test
+    public void computeChangedUidsSinceShouldReturnSortedUidsOfMessagesWithAGreaterModSeq() throws Exception {
+        ChangedUidsCalculator calculator = new ChangedUidsCalculator(ImmutableList.of(
+                createMessage(MessageUid.of(3), 12),
+                createMessage(MessageUid.of(1), 10),
+                createMessage(MessageUid.of(2), 11),
+                createMessage(MessageUid.of(4), 9))
+            .iterator());
+
+        assertThat(calculator.computeChangedUidsSince(10)).containsExactly(MessageUid.of(2), MessageUid.of(3));
+    }
+
+    private MailboxMessage createMessage(MessageUid uid, long modSeq) {
+        String content = "Any content";
+        int bodyStart = 10;
+        SimpleMailboxMessage message = new SimpleMailboxMessage(new DefaultMessageId(), new Date(), content.length(), bodyStart,
+            new SharedByteArrayInputStream(content.getBytes()), new Flags(), new PropertyBuilder(), TestId.of(1));
+        message.setUid(uid);
+        message.setModSeq(modSeq);
+        return message;
+    }
+
+}
@@ -0,0 +1,121 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mailbox.store.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.mail.Flags;
+import javax.mail.util.SharedByteArrayInputStream;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.model.MessageThread;
+import org.apache.james.mailbox.model.TestId;
+import org.apache.james.mailbox.model.ThreadAlgorithm;
+import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class MessageThreaderTest {
+
+    @Test
+    public void orderedSubjectShouldGroupMessagesByBaseSubject() {
+        List<MailboxMessage> messages = ImmutableList.of(
+            message(1, "Subject: Lunch\r\nDate: Thu, 01 Jan 2015 10:00:00 +0000\r\n"),
+            message(2, "Subject: Meeting\r\nDate: Thu, 01 Jan 2015 09:00:00 +0000\r\n"),
+            message(3, "Subject: Re: Lunch\r\nDate: Thu, 01 Jan 2015 11:00:00 +0000\r\n"),
+            message(4, "Subject: Re: Lunch\r\nDate: Thu, 01 Jan 2015 10:30:00 +0000\r\n"));
+
+        assertThat(MessageThreader.thread(messages, ThreadAlgorithm.OrderedSubject)).containsExactly(
+            thread(2),
+            thread(1, thread(4), thread(3)));
+    }
+
+    @Test
+    public void referencesShouldLinkRepliesToTheirParents() {
+        List<MailboxMessage> messages = ImmutableList.of(
+            message(1, "Subject: Lunch\r\nMessage-ID: <1@test>\r\nDate: Thu, 01 Jan 2015 10:00:00 +0000\r\n"),
+            message(2, "Subject: Re: Lunch\r\nMessage-ID: <2@test>\r\nIn-Reply-To: <1@test>\r\nDate: Thu, 01 Jan 2015 11:00:00 +0000\r\n"),
+            message(3, "Subject: Re: Lunch\r\nMessage-ID: <3@test>\r\nReferences: <1@test> <2@test>\r\nDate: Thu, 01 Jan 2015 12:00:00 +0000\r\n"),
+            message(4, "Subject: Re: Lunch\r\nMessage-ID: <4@test>\r\nReferences: <1@test>\r\nDate: Thu, 01 Jan 2015 11:30:00 +0000\r\n"),
+            message(5, "Subject: Meeting\r\nMessage-ID: <5@test>\r\nDate: Thu, 01 Jan 2015 09:00:00 +0000\r\n"));
+
+        assertThat(MessageThreader.thread(messages, ThreadAlgorithm.References)).containsExactly(
+            thread(5),
+            thread(1, thread(2, thread(3)), thread(4)));
+    }
+
+    @Test
+    public void referencesShouldKeepSiblingsUnderMissingParent() {
+        List<MailboxMessage> messages = ImmutableList.of(
+            message(1, "Subject: A\r\nMessage-ID: <1@test>\r\nReferences: <0@test>\r\nDate: Thu, 01 Jan 2015 10:00:00 +0000\r\n"),
+            message(2, "Subject: B\r\nMessage-ID: <2@test>\r\nReferences: <0@test>\r\nDate: Thu, 01 Jan 2015 11:00:00 +0000\r\n"));
+
+        assertThat(MessageThreader.thread(messages, ThreadAlgorithm.References)).containsExactly(
+            MessageThread.missingParent(ImmutableList.of(thread(1), thread(2))));
+    }
+
+    @Test
+    public void referencesShouldPromoteSingleChildOfMissingParent() {
+        List<MailboxMessage> messages = ImmutableList.of(
+            message(1, "Subject: A\r\nMessage-ID: <1@test>\r\nReferences: <0@test>\r\n"));
+
+        assertThat(MessageThreader.thread(messages, ThreadAlgorithm.References)).containsExactly(thread(1));
+    }
+
+    @Test
+    public void referencesShouldGroupUnlinkedRepliesBySubject() {
+        List<MailboxMessage> messages = ImmutableList.of(
+            message(1, "Subject: Lunch\r\nMessage-ID: <1@test>\r\nDate: Thu, 01 Jan 2015 10:00:00 +0000\r\n"),
+            message(2, "Subject: Re: Lunch\r\nMessage-ID: <2@test>\r\nDate: Thu, 01 Jan 2015 11:00:00 +0000\r\n"));
+
+        assertThat(MessageThreader.thread(messages, ThreadAlgorithm.References)).containsExactly(
+            thread(1, thread(2)));
+    }
+
+    @Test
+    public void referencesShouldIgnoreLoops() {
+        List<MailboxMessage> messages = ImmutableList.of(
+            message(1, "Subject: A\r\nMessage-ID: <1@test>\r\nReferences: <2@test>\r\nDate: Thu, 01 Jan 2015 10:00:00 +0000\r\n"),
+            message(2, "Subject: B\r\nMessage-ID: <2@test>\r\nReferences: <1@test>\r\nDate: Thu, 01 Jan 2015 11:00:00 +0000\r\n"));
+
+        assertThat(MessageThreader.thread(messages, ThreadAlgorithm.References)).containsExactly(
+            thread(2, thread(1)));
+    }
+
+    private MessageThread thread(long uid, MessageThread... children) {
+        return MessageThread.of(MessageUid.of(uid), ImmutableList.copyOf(children));
+    }
+
+    private MailboxMessage message(long uid, String headers) {
+        String content = headers + "\r\nbody\r\n";
+        SimpleMailboxMessage message = new SimpleMailboxMessage(new DefaultMessageId(), new Date(uid), content.length(), headers.length() + 2,
+            new SharedByteArrayInputStream(content.getBytes()), new Flags(), new PropertyBuilder(), TestId.of(42L));
+        message.setUid(MessageUid.of(uid));
+        return message;
+    }
+}
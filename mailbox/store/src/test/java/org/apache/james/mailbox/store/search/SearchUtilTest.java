@@ -70,6 +70,18 @@ public class SearchUtilTest {
     public void testComplexExtraction() {
         assertEquals("Test", SearchUtil.getBaseSubject("Re: re:re: fwd:[fwd: \t  Test]  (fwd)  (fwd)(fwd) "));
     }
+
+    @Test
+    public void getBaseSubjectShouldReturnEmptyForEmptySubject() {
+        assertEquals("", SearchUtil.getBaseSubject(""));
+        assertEquals("", SearchUtil.getBaseSubject("  "));
+        assertEquals("", SearchUtil.getBaseSubject("Re:"));
+    }
+
+    @Test
+    public void getBaseSubjectShouldIgnoreCaseOfForwardTrailer() {
+        assertEquals("TEST", SearchUtil.getBaseSubject("TEST (FWD)"));
+    }
     
     @Test
     public void getMessageIdIfSupportedByUnderlyingStorageOrNullForNullMessageIdShouldReturnNull() {
@@ -0,0 +1,134 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mailbox.store.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import javax.mail.Flags;
+import javax.mail.util.SharedByteArrayInputStream;
+
+import org.apache.james.mailbox.model.TestId;
+import org.apache.james.mailbox.store.ResultUtils;
+import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.base.Strings;
+
+public class SortKeysTest {
+
+    private static final Date INTERNAL_DATE = new Date(1000L);
+
+    @Test
+    public void ofShouldParseHeadersWhenNoKeysAreStored() {
+        SortKeys sortKeys = SortKeys.of(message(new PropertyBuilder(),
+            "Subject: Re: [list] Hello\r\n" +
+            "From: Alice Doe <alice@example.com>\r\n" +
+            "To: bob@example.com\r\n" +
+            "Cc: Carol <carol@example.com>\r\n" +
+            "Date: Thu, 01 Jan 2015 00:00:00 +0000\r\n" +
+            "Message-ID: <2@example.com>\r\n" +
+            "References: <0@example.com> <1@example.com>\r\n"));
+
+        assertThat(sortKeys.getBaseSubject()).isEqualTo("HELLO");
+        assertThat(sortKeys.isReplyOrForward()).isTrue();
+        assertThat(sortKeys.getSentDate()).isEqualTo(1420070400000L);
+        assertThat(sortKeys.getDisplayFrom()).isEqualTo("ALICE DOE");
+        assertThat(sortKeys.getDisplayTo()).isEqualTo("BOB@EXAMPLE.COM");
+        assertThat(sortKeys.getMailboxFrom()).isEqualTo("ALICE");
+        assertThat(sortKeys.getMailboxTo()).isEqualTo("BOB");
+        assertThat(sortKeys.getMailboxCc()).isEqualTo("CAROL");
+        assertThat(sortKeys.getMessageId()).isEqualTo("<2@example.com>");
+        assertThat(sortKeys.getReferences()).containsExactly("<0@example.com>", "<1@example.com>");
+    }
+
+    @Test
+    public void ofShouldUseDefaultsWhenHeadersAreMissing() {
+        SortKeys sortKeys = SortKeys.of(message(new PropertyBuilder(), "X-Header: value\r\n"));
+
+        assertThat(sortKeys.getBaseSubject()).isEmpty();
+        assertThat(sortKeys.isReplyOrForward()).isFalse();
+        assertThat(sortKeys.getSentDate()).isEqualTo(INTERNAL_DATE.getTime());
+        assertThat(sortKeys.getDisplayFrom()).isEmpty();
+        assertThat(sortKeys.getMessageId()).isEmpty();
+        assertThat(sortKeys.getReferences()).isEmpty();
+    }
+
+    @Test
+    public void referencesShouldFallBackToInReplyTo() {
+        SortKeys sortKeys = SortKeys.of(message(new PropertyBuilder(),
+            "In-Reply-To: <1@example.com> (Alice's message)\r\n"));
+
+        assertThat(sortKeys.getReferences()).containsExactly("<1@example.com>");
+    }
+
+    @Test
+    public void forwardedSubjectShouldBeDetected() {
+        SortKeys sortKeys = SortKeys.of(message(new PropertyBuilder(), "Subject: Hello (fwd)\r\n"));
+
+        assertThat(sortKeys.getBaseSubject()).isEqualTo("HELLO");
+        assertThat(sortKeys.isReplyOrForward()).isTrue();
+    }
+
+    @Test
+    public void ofShouldReadStoredKeysInsteadOfParsingHeaders() throws Exception {
+        PropertyBuilder propertyBuilder = new PropertyBuilder();
+        MailboxMessage original = message(new PropertyBuilder(),
+            "Subject: Stored\r\n" +
+            "References: <0@example.com> <1@example.com>\r\n");
+        SortKeys.compute(ResultUtils.createHeaders(original), INTERNAL_DATE).addTo(propertyBuilder);
+
+        SortKeys sortKeys = SortKeys.of(message(propertyBuilder, "Subject: Other\r\n"));
+
+        assertThat(sortKeys.getBaseSubject()).isEqualTo("STORED");
+        assertThat(sortKeys.getSentDate()).isEqualTo(INTERNAL_DATE.getTime());
+        assertThat(sortKeys.getReferences()).containsExactly("<0@example.com>", "<1@example.com>");
+    }
+
+    @Test
+    public void addToShouldNotStoreKeysWhenOneIsTooLong() throws Exception {
+        PropertyBuilder propertyBuilder = new PropertyBuilder();
+        MailboxMessage original = message(new PropertyBuilder(), "Subject: " + Strings.repeat("a", 1001) + "\r\n");
+
+        SortKeys.compute(ResultUtils.createHeaders(original), INTERNAL_DATE).addTo(propertyBuilder);
+
+        assertThat(propertyBuilder.toProperties()).isEmpty();
+    }
+
+    @Test
+    public void cachedShouldComputeTheKeysOfAMessageOnce() {
+        MailboxMessage message = message(new PropertyBuilder(), "Subject: Hello\r\n");
+        Function<MailboxMessage, SortKeys> sortKeys = SortKeys.cached();
+
+        assertThat(sortKeys.apply(message)).isSameAs(sortKeys.apply(message));
+    }
+
+    private MailboxMessage message(PropertyBuilder propertyBuilder, String headers) {
+        String content = headers + "\r\nbody\r\n";
+        return new SimpleMailboxMessage(new DefaultMessageId(), INTERNAL_DATE, content.length(), headers.length() + 2,
+            new SharedByteArrayInputStream(content.getBytes()), new Flags(), propertyBuilder, TestId.of(42L));
+    }
+}
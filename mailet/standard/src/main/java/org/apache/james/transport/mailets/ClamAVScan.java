@@ -20,26 +20,28 @@
 
 package org.apache.james.transport.mailets;
 
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.util.scanner.ClamdClient;
+import org.apache.james.util.scanner.ScannerConnectionPool;
 import org.apache.mailet.Mail;
 import org.apache.mailet.MailAddress;
 import org.apache.mailet.base.GenericMailet;
 import org.apache.mailet.base.RFC2822Headers;
 
+import javax.inject.Inject;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.Reader;
 import java.io.StringWriter;
-import java.io.Writer;
 import java.net.ConnectException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.HashSet;
@@ -50,8 +52,8 @@ import java.util.Set;
 /**
  * <P>Does an antivirus scan check using a ClamAV daemon (CLAMD)</P>
  * <p/>
- * <P> Interacts directly with the daemon using the "stream" method,
- * which should have the lowest possible overhead.</P>
+ * <P> Interacts directly with the daemon using the "INSTREAM" command over
+ * pooled "IDSESSION" connections, which should have the lowest possible overhead.</P>
  * <P>The CLAMD daemon will typically reside on <I>localhost</I>, but could reside on a
  * different host.
  * It may also consist on a set of multiple daemons, each residing on a different
@@ -77,8 +79,16 @@ import java.util.Set;
  * <LI><CODE>&lt;pingIntervalMilli&gt;</CODE>: the interval (in milliseconds)
  * between each connection retry during startup.
  * The default is <I>30000</I> (30 seconds).</LI>
- * <LI><CODE>&lt;streamBufferSize&gt;</CODE>: the BufferedOutputStream buffer size to use
- * writing to the <I>stream connection</I>. The default is <I>8192</I>.</LI>
+ * <LI><CODE>&lt;streamBufferSize&gt;</CODE>: the buffer size, and so the maximum chunk size, to use
+ * writing to the <I>INSTREAM</I> command. The default is <I>8192</I>.</LI>
+ * <LI><CODE>&lt;maxConnectionsPerHost&gt;</CODE>: the maximum number of mails scanned concurrently
+ * by each IP address. The default is <I>8</I>.</LI>
+ * <LI><CODE>&lt;maxIdleMilli&gt;</CODE>: the time (in milliseconds) after which an idle connection
+ * is closed instead of being reused. The default is <I>20000</I> (20 seconds).</LI>
+ * <LI><CODE>&lt;circuitBreakerThreshold&gt;</CODE>: the number of consecutive failures after which an
+ * IP address is not used anymore for a while, <I>0</I> to always use it. The default is <I>5</I>.</LI>
+ * <LI><CODE>&lt;circuitBreakerDelayMilli&gt;</CODE>: the time (in milliseconds) before retrying an
+ * IP address which is not used anymore. The default is <I>30000</I> (30 seconds).</LI>
  * </UL>
  * <p/>
  * <P>The actions performed are as follows:</P>
@@ -97,19 +107,16 @@ import java.util.Set;
  * </OL>
  * <LI>For every mail</LI>
  * <OL>
- * <LI>connects to CLAMD at the "next" IP in the round-robin list, on
- * the specified <CODE>&lt;port&gt;</CODE>, and increments the "next" index;
- * if the connection request is not accepted tries with the next one
- * in the list unless all of them have failed;</LI>
- * <LI>sends a "<CODE>STREAM</CODE>" request;</LI>
- * <LI>parses the "<CODE>PORT <I>streamPort</I></CODE>" answer obtaining the port number;</LI>
- * <LI>makes a second connection (the <I>stream connection</I>) to CLAMD at the same host (or IP)
- * on the <I>streamPort</I> just obtained;</LI>
- * <LI>sends the mime message to CLAMD (using {@link MimeMessage#writeTo(java.io.OutputStream)})
- * through the <I>stream connection</I>;</LI>
- * <LI>closes the <I>stream connection</I>;</LI>
- * <LI>gets the "<CODE>OK</CODE>" or "<CODE>... FOUND</CODE>" answer from the main connection;</LI>
- * <LI>closes the main connection;</LI>
+ * <LI>borrows a connection to CLAMD at the "next" IP in the round-robin list, on
+ * the specified <CODE>&lt;port&gt;</CODE>; an idle "<CODE>IDSESSION</CODE>" connection
+ * is reused if there is one, and at most <CODE>&lt;maxConnectionsPerHost&gt;</CODE>
+ * mails are scanned concurrently by each IP;
+ * if the request fails tries with the next one in the list unless all of them have failed;</LI>
+ * <LI>sends a "<CODE>INSTREAM</CODE>" request followed by the mime message
+ * (using {@link MimeMessage#writeTo(java.io.OutputStream)}) split in chunks of
+ * <CODE>&lt;streamBufferSize&gt;</CODE> bytes;</LI>
+ * <LI>gets the "<CODE>OK</CODE>" or "<CODE>... FOUND</CODE>" answer;</LI>
+ * <LI>gives the connection back to the pool;</LI>
  * <LI>sets the "<CODE>org.apache.james.infected</CODE>" <I>mail attribute</I> to either
  * "<CODE>true</CODE>" or "<CODE>false</CODE>";</LI>
  * <LI>adds the "<CODE>X-MessageIsInfected</CODE>" <I>header</I> to either
@@ -125,9 +132,14 @@ import java.util.Set;
  * &lt;<CODE>maxmessagesize</CODE>&gt; in SMTP &lt;<CODE>handler</CODE>&gt;</LI>
  * <LI><CODE>MaxThreads</CODE> should? be &gt;= the James config.xml parameter
  * &lt;<CODE>threads</CODE>&gt; in &lt;<CODE>spoolmanager</CODE>&gt;</LI>
+ * <LI><CODE>IdleTimeout</CODE> must be &gt; the &lt;<CODE>maxIdleMilli</CODE>&gt; parameter</LI>
  * <LI><CODE>ScanMail</CODE> must be uncommented</LI>
  * </UL>
  * <p/>
+ * <P>After &lt;<CODE>circuitBreakerThreshold</CODE>&gt; consecutive failures an IP is not
+ * used anymore for &lt;<CODE>circuitBreakerDelayMilli</CODE>&gt; milliseconds. The scan
+ * latency is published as the "<CODE>clamdScan</CODE>" timer metric.</P>
+ * <p/>
  * <P>Here follows an example of config.xml definitions deploying CLAMD on localhost,
  * and handling the infected messages:</P>
  * <PRE><CODE>
@@ -189,6 +201,14 @@ public class ClamAVScan extends GenericMailet {
 
     private static final int DEFAULT_STREAM_BUFFER_SIZE = 8192;
 
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+    private static final int DEFAULT_MAX_IDLE_MILLI = 20000;
+
+    private static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5;
+
+    private static final int DEFAULT_CIRCUIT_BREAKER_DELAY_MILLI = 30000;
+
     //private static final int DEFAULT_CONNECTION_TIMEOUT = 20000;
 
     private static final String STREAM_PORT_STRING = "PORT ";
@@ -229,11 +249,38 @@ public class ClamAVScan extends GenericMailet {
      */
     private int streamBufferSize;
 
+    /**
+     * Holds value of property maxConnectionsPerHost.
+     */
+    private int maxConnectionsPerHost;
+
+    /**
+     * Holds value of property maxIdleMilli.
+     */
+    private int maxIdleMilli;
+
+    /**
+     * Holds value of property circuitBreakerThreshold.
+     */
+    private int circuitBreakerThreshold;
+
+    /**
+     * Holds value of property circuitBreakerDelayMilli.
+     */
+    private int circuitBreakerDelayMilli;
+
     /**
      * Holds value of property addresses.
      */
     private InetAddress[] addresses;
 
+    /**
+     * The client holding the pooled connections to CLAMD
+     */
+    private ClamdClient clamdClient;
+
+    private MetricFactory metricFactory = new NoopMetricFactory();
+
     /**
      * Holds the index of the next address to connect to
      */
@@ -259,10 +306,19 @@ public class ClamAVScan extends GenericMailet {
                 "port",
                 "maxPings",
                 "pingIntervalMilli",
-                "streamBufferSize"
+                "streamBufferSize",
+                "maxConnectionsPerHost",
+                "maxIdleMilli",
+                "circuitBreakerThreshold",
+                "circuitBreakerDelayMilli"
         };
     }
 
+    @Inject
+    public void setMetricFactory(MetricFactory metricFactory) {
+        this.metricFactory = metricFactory;
+    }
+
     /**
      * Initializer for property debug.
      */
@@ -453,6 +509,130 @@ public class ClamAVScan extends GenericMailet {
         this.streamBufferSize = streamBufferSize;
     }
 
+    /**
+     * Initializer for property maxConnectionsPerHost.
+     */
+    protected void initMaxConnectionsPerHost() {
+        String maxConnectionsPerHostParam = getInitParameter("maxConnectionsPerHost");
+        setMaxConnectionsPerHost((maxConnectionsPerHostParam == null) ? DEFAULT_MAX_CONNECTIONS_PER_HOST : Integer.parseInt(maxConnectionsPerHostParam));
+        if (isDebug()) {
+            log("maxConnectionsPerHost: " + getMaxConnectionsPerHost());
+        }
+    }
+
+    /**
+     * Getter for property maxConnectionsPerHost.
+     *
+     * @return Value of property maxConnectionsPerHost.
+     */
+    public int getMaxConnectionsPerHost() {
+
+        return this.maxConnectionsPerHost;
+    }
+
+    /**
+     * Setter for property maxConnectionsPerHost.
+     *
+     * @param maxConnectionsPerHost New value of property maxConnectionsPerHost.
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Initializer for property maxIdleMilli.
+     */
+    protected void initMaxIdleMilli() {
+        String maxIdleMilliParam = getInitParameter("maxIdleMilli");
+        setMaxIdleMilli((maxIdleMilliParam == null) ? DEFAULT_MAX_IDLE_MILLI : Integer.parseInt(maxIdleMilliParam));
+        if (isDebug()) {
+            log("maxIdleMilli: " + getMaxIdleMilli());
+        }
+    }
+
+    /**
+     * Getter for property maxIdleMilli.
+     *
+     * @return Value of property maxIdleMilli.
+     */
+    public int getMaxIdleMilli() {
+
+        return this.maxIdleMilli;
+    }
+
+    /**
+     * Setter for property maxIdleMilli.
+     *
+     * @param maxIdleMilli New value of property maxIdleMilli.
+     */
+    public void setMaxIdleMilli(int maxIdleMilli) {
+
+        this.maxIdleMilli = maxIdleMilli;
+    }
+
+    /**
+     * Initializer for property circuitBreakerThreshold.
+     */
+    protected void initCircuitBreakerThreshold() {
+        String circuitBreakerThresholdParam = getInitParameter("circuitBreakerThreshold");
+        setCircuitBreakerThreshold((circuitBreakerThresholdParam == null) ? DEFAULT_CIRCUIT_BREAKER_THRESHOLD : Integer.parseInt(circuitBreakerThresholdParam));
+        if (isDebug()) {
+            log("circuitBreakerThreshold: " + getCircuitBreakerThreshold());
+        }
+    }
+
+    /**
+     * Getter for property circuitBreakerThreshold.
+     *
+     * @return Value of property circuitBreakerThreshold.
+     */
+    public int getCircuitBreakerThreshold() {
+
+        return this.circuitBreakerThreshold;
+    }
+
+    /**
+     * Setter for property circuitBreakerThreshold.
+     *
+     * @param circuitBreakerThreshold New value of property circuitBreakerThreshold.
+     */
+    public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    /**
+     * Initializer for property circuitBreakerDelayMilli.
+     */
+    protected void initCircuitBreakerDelayMilli() {
+        String circuitBreakerDelayMilliParam = getInitParameter("circuitBreakerDelayMilli");
+        setCircuitBreakerDelayMilli((circuitBreakerDelayMilliParam == null) ? DEFAULT_CIRCUIT_BREAKER_DELAY_MILLI : Integer.parseInt(circuitBreakerDelayMilliParam));
+        if (isDebug()) {
+            log("circuitBreakerDelayMilli: " + getCircuitBreakerDelayMilli());
+        }
+    }
+
+    /**
+     * Getter for property circuitBreakerDelayMilli.
+     *
+     * @return Value of property circuitBreakerDelayMilli.
+     */
+    public int getCircuitBreakerDelayMilli() {
+
+        return this.circuitBreakerDelayMilli;
+    }
+
+    /**
+     * Setter for property circuitBreakerDelayMilli.
+     *
+     * @param circuitBreakerDelayMilli New value of property circuitBreakerDelayMilli.
+     */
+    public void setCircuitBreakerDelayMilli(int circuitBreakerDelayMilli) {
+
+        this.circuitBreakerDelayMilli = circuitBreakerDelayMilli;
+    }
+
     /**
      * Indexed getter for property addresses.
      *
@@ -570,12 +750,18 @@ public class ClamAVScan extends GenericMailet {
             initMaxPings();
             initPingIntervalMilli();
             initStreamBufferSize();
+            initMaxConnectionsPerHost();
+            initMaxIdleMilli();
+            initCircuitBreakerThreshold();
+            initCircuitBreakerDelayMilli();
 
             // If "maxPings is > ping the CLAMD server to check if it is up
             if (getMaxPings() > 0) {
                 ping();
             }
 
+            clamdClient = createClamdClient();
+
         } catch (Exception e) {
             log("Exception thrown", e);
             throw new MessagingException("Exception thrown", e);
@@ -605,59 +791,14 @@ public class ClamAVScan extends GenericMailet {
             return;
         }
 
-        // get the socket
-        Socket socket = getClamdSocket();
-        BufferedReader reader = null;
-        PrintWriter writer = null;
-        Socket streamSocket = null;
-        BufferedOutputStream bos = null;
-
         try {
+            ClamdClient.Result result = clamdClient.scan(mimeMessage);
+            InetAddress address = result.getAddress().getAddress();
 
-            // prepare the reader and writer for the commands
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ASCII"));
-            writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), true);
-
-            // write a request for a port to use for streaming out the data to scan
-            writer.println("STREAM");
-            writer.flush();
-
-            // parse and get the "stream" port#
-            int streamPort = getStreamPortFromAnswer(reader.readLine());
-
-            // get the "stream" socket and the related (buffered) output stream
-            streamSocket = new Socket(socket.getInetAddress(), streamPort);
-            bos = new BufferedOutputStream(streamSocket.getOutputStream(), getStreamBufferSize());
-
-            // stream out the message to the scanner
-            mimeMessage.writeTo(bos);
-            bos.flush();
-            bos.close();
-            streamSocket.close();
+            if (result.isInfected()) {
+                String logMessage = result.getAnswer() + " (by CLAMD on " + address + ")";
+                log(logMessage);
 
-            String answer;
-            boolean virusFound = false;
-            String logMessage = "";
-            for (; ; ) {
-                answer = reader.readLine();
-                if (answer != null) {
-                    answer = answer.trim();
-
-                    // if a virus is found the answer will be '... FOUND'
-                    if (answer.substring(answer.length() - FOUND_STRING.length()).equals(FOUND_STRING)) {
-                        virusFound = true;
-                        logMessage = answer + " (by CLAMD on " + socket.getInetAddress() + ")";
-                        log(logMessage);
-                    }
-                } else {
-                    break;
-                }
-            }
-
-            reader.close();
-            writer.close();
-
-            if (virusFound) {
                 String errorMessage = mail.getErrorMessage();
                 if (errorMessage == null) {
                     errorMessage = "";
@@ -682,7 +823,7 @@ public class ClamAVScan extends GenericMailet {
 
             } else {
                 if (isDebug()) {
-                    log("OK (by CLAMD on " + socket.getInetAddress() + ")");
+                    log("OK (by CLAMD on " + address + ")");
                 }
                 mail.setAttribute(MAIL_ATTRIBUTE_NAME, "false");
 
@@ -698,85 +839,36 @@ public class ClamAVScan extends GenericMailet {
             }
 
         } catch (Exception ex) {
-            log("Exception caught calling CLAMD on " + socket.getInetAddress() + ": " + ex.getMessage(), ex);
+            log("Exception caught calling CLAMD on " + clamdClient.getAddresses() + ": " + ex.getMessage(), ex);
             throw new MessagingException("Exception caught", ex);
-        } finally {
-            shutdownReader(reader);
-            shutdownWriter(writer);
-            shutdownStream(bos);
-            shutdownSocket(streamSocket);
-            shutdownSocket(socket);
-        }
-
-    }
-
-    /**
-     * Unconditionally close an <code>OutputStream</code>.
-     * Equivalent to {@link OutputStream#close()}, except any exceptions will be ignored.
-     *
-     * @param output A (possibly null) OutputStream
-     */
-    private static void shutdownStream(OutputStream output) {
-        if (null == output) {
-            return;
-        }
-
-        try {
-            output.close();
-        } catch (IOException ignored) {
-        }
-    }
-
-    /**
-     * Unconditionally close an <code>Socket</code>.
-     * Equivalent to {@link Socket#close()}, except any exceptions will be ignored.
-     *
-     * @param socket A (possibly null) Socket
-     */
-    private static void shutdownSocket(Socket socket) {
-        if (null == socket) {
-            return;
         }
 
-        try {
-            socket.close();
-        } catch (IOException ioe) {
-        }
     }
 
     /**
-     * Unconditionally close an <code>Writer</code>.
-     * Equivalent to {@link Writer#close()}, except any exceptions will be ignored.
-     *
-     * @param output A (possibly null) Writer
+     * Closes the pooled connections to CLAMD.
      */
-    private void shutdownWriter(Writer output) {
-        if (null == output) {
-            return;
-        }
-
-        try {
-            output.close();
-        } catch (IOException ioe) {
+    public void destroy() {
+        if (clamdClient != null) {
+            clamdClient.close();
         }
     }
 
-
     /**
-     * Unconditionally close an <code>Reader</code>.
-     * Equivalent to {@link Reader#close()}, except any exceptions will be ignored.
+     * Creates the client scanning the mails on all the resolved addresses.
      *
-     * @param input A (possibly null) Reader
+     * @return the client
      */
-    private void shutdownReader(Reader input) {
-        if (null == input) {
-            return;
-        }
-
-        try {
-            input.close();
-        } catch (IOException ioe) {
+    protected ClamdClient createClamdClient() {
+        ScannerConnectionPool.Builder pool = ClamdClient.poolBuilder()
+                .maxConnectionsPerHost(getMaxConnectionsPerHost())
+                .maxIdleMillis(getMaxIdleMilli())
+                .bufferSize(getStreamBufferSize())
+                .circuitBreaker(getCircuitBreakerThreshold(), getCircuitBreakerDelayMilli());
+        for (InetAddress address : getAddresses()) {
+            pool.address(new InetSocketAddress(address, getPort()));
         }
+        return new ClamdClient(pool.build(), metricFactory, getStreamBufferSize());
     }
 
     /**
@@ -24,4 +24,22 @@ public interface MetricFactory {
     Metric generate(String name);
 
     TimeMetric timer(String name);
+
+    Metric counter(MetricName name);
+
+    Timer timer(MetricName name);
+
+    Timer timer(MetricName name, Reservoir reservoir);
+
+    Histogram histogram(MetricName name);
+
+    Histogram histogram(MetricName name, Reservoir reservoir);
+
+    Meter meter(MetricName name);
+
+    /**
+     * Registers a gauge, replacing any gauge previously registered under the
+     * same name.
+     */
+    <T> void gauge(MetricName name, Gauge<T> gauge);
 }
@@ -0,0 +1,130 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.metrics.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Identifies a metric by a name and an ordered set of tags.
+ * 
+ * <p>
+ * Tags let backends aggregate a metric along several dimensions (protocol,
+ * command, backend...) instead of encoding them in the name. Backends that
+ * do not support tags use the {@link #flatName()}, which appends the tag
+ * values to the name, separated by dashes: <code>IMAP</code> tagged with
+ * <code>command=FETCH</code> is flattened to <code>IMAP-FETCH</code>.
+ * </p>
+ * 
+ * <p>
+ * Instances are immutable. They are meant to be built once, typically when
+ * binding a metric handle, and not on each measurement.
+ * </p>
+ */
+public final class MetricName {
+
+    public static final char FLAT_NAME_SEPARATOR = '-';
+
+    public static MetricName of(String name) {
+        if (name == null || name.length() == 0) {
+            throw new IllegalArgumentException("Metric name should not be empty");
+        }
+        return new MetricName(name, Collections.<String, String>emptyMap());
+    }
+
+    private final String name;
+    private final Map<String, String> tags;
+    private final String flatName;
+
+    private MetricName(String name, Map<String, String> tags) {
+        this.name = name;
+        this.tags = tags;
+        this.flatName = computeFlatName(name, tags);
+    }
+
+    /**
+     * Returns a copy of this name with an additional tag. Setting an existing
+     * key replaces its value but keeps its position.
+     */
+    public MetricName tag(String key, String value) {
+        if (key == null || key.length() == 0) {
+            throw new IllegalArgumentException("Tag key should not be empty");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Tag value should not be null");
+        }
+        Map<String, String> newTags = new LinkedHashMap<String, String>(tags);
+        newTags.put(key, value);
+        return new MetricName(name, Collections.unmodifiableMap(newTags));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tags of this name, in the order they were added.
+     */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public boolean hasTags() {
+        return !tags.isEmpty();
+    }
+
+    /**
+     * The name used by backends which do not support tags.
+     */
+    public String flatName() {
+        return flatName;
+    }
+
+    private static String computeFlatName(String name, Map<String, String> tags) {
+        if (tags.isEmpty()) {
+            return name;
+        }
+        StringBuilder builder = new StringBuilder(name);
+        for (String value : tags.values()) {
+            builder.append(FLAT_NAME_SEPARATOR).append(value);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MetricName) {
+            MetricName other = (MetricName) o;
+            return name.equals(other.name) && tags.equals(other.tags);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + tags.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name + tags;
+    }
+}
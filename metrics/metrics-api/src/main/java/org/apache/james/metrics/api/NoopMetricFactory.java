@@ -18,6 +18,8 @@
  ****************************************************************/
 package org.apache.james.metrics.api;
 
+import java.util.concurrent.TimeUnit;
+
 public class NoopMetricFactory implements MetricFactory {
 
     @Override
@@ -42,6 +44,40 @@ public class NoopMetricFactory implements MetricFactory {
         return new NoopTimeMetric();
     }
 
+    @Override
+    public Metric counter(MetricName name) {
+        return new NoopMetric();
+    }
+
+    @Override
+    public Timer timer(MetricName name) {
+        return new NoopTimer();
+    }
+
+    @Override
+    public Timer timer(MetricName name, Reservoir reservoir) {
+        return new NoopTimer();
+    }
+
+    @Override
+    public Histogram histogram(MetricName name) {
+        return new NoopHistogram();
+    }
+
+    @Override
+    public Histogram histogram(MetricName name, Reservoir reservoir) {
+        return new NoopHistogram();
+    }
+
+    @Override
+    public Meter meter(MetricName name) {
+        return new NoopMeter();
+    }
+
+    @Override
+    public <T> void gauge(MetricName name, Gauge<T> gauge) {
+    }
+
     public static class NoopTimeMetric implements TimeMetric {
 
         @Override
@@ -55,4 +91,34 @@ public class NoopMetricFactory implements MetricFactory {
             return 0;
         }
     }
+
+    public static class NoopTimer implements Timer {
+
+        @Override
+        public TimeMetric time() {
+            return new NoopTimeMetric();
+        }
+
+        @Override
+        public void update(long duration, TimeUnit unit) {
+        }
+    }
+
+    public static class NoopHistogram implements Histogram {
+
+        @Override
+        public void update(long value) {
+        }
+    }
+
+    public static class NoopMeter implements Meter {
+
+        @Override
+        public void mark() {
+        }
+
+        @Override
+        public void mark(long count) {
+        }
+    }
 }
@@ -0,0 +1,105 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.metrics.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how a histogram or a timer samples the recorded values to
+ * compute its percentiles.
+ */
+public final class Reservoir {
+
+    public enum Type {
+        /** Biased towards the last five minutes, the default. */
+        EXPONENTIALLY_DECAYING,
+        /** Uniform sample of all the values ever recorded. */
+        UNIFORM,
+        /** The last recorded values. */
+        SLIDING_WINDOW,
+        /** The values recorded during the last period of time. */
+        SLIDING_TIME_WINDOW
+    }
+
+    private static final Reservoir EXPONENTIALLY_DECAYING = new Reservoir(Type.EXPONENTIALLY_DECAYING, 0, 0, null);
+
+    public static Reservoir exponentiallyDecaying() {
+        return EXPONENTIALLY_DECAYING;
+    }
+
+    public static Reservoir uniform(int size) {
+        return new Reservoir(Type.UNIFORM, checkSize(size), 0, null);
+    }
+
+    public static Reservoir slidingWindow(int size) {
+        return new Reservoir(Type.SLIDING_WINDOW, checkSize(size), 0, null);
+    }
+
+    public static Reservoir slidingTimeWindow(long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window should be positive");
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("Window unit should not be null");
+        }
+        return new Reservoir(Type.SLIDING_TIME_WINDOW, 0, window, unit);
+    }
+
+    private static int checkSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size should be positive");
+        }
+        return size;
+    }
+
+    private final Type type;
+    private final int size;
+    private final long window;
+    private final TimeUnit windowUnit;
+
+    private Reservoir(Type type, int size, long window, TimeUnit windowUnit) {
+        this.type = type;
+        this.size = size;
+        this.window = window;
+        this.windowUnit = windowUnit;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Sample size, for {@link Type#UNIFORM} and {@link Type#SLIDING_WINDOW}.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Window length, for {@link Type#SLIDING_TIME_WINDOW}.
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    public TimeUnit getWindowUnit() {
+        return windowUnit;
+    }
+}
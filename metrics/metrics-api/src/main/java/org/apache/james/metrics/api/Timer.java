@@ -0,0 +1,39 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.metrics.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle on a timer bound once to its {@link MetricName}.
+ * 
+ * <p>
+ * Hot call sites should keep the handle in a field rather than looking it up
+ * on each call. {@link #update(long, TimeUnit)} records a duration measured by
+ * the caller without allocating a {@link TimeMetric}.
+ * </p>
+ */
+public interface Timer {
+
+    TimeMetric time();
+
+    void update(long duration, TimeUnit unit);
+
+}
@@ -0,0 +1,80 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.metrics.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class MetricNameTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ofShouldRejectEmptyName() {
+        MetricName.of("");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tagShouldRejectNullValue() {
+        MetricName.of("name").tag("key", null);
+    }
+
+    @Test
+    public void flatNameShouldBeTheNameWhenNoTag() {
+        assertThat(MetricName.of("name").flatName()).isEqualTo("name");
+    }
+
+    @Test
+    public void flatNameShouldAppendTagValuesInOrder() {
+        MetricName name = MetricName.of("IMAP").tag("command", "FETCH").tag("backend", "cassandra");
+
+        assertThat(name.flatName()).isEqualTo("IMAP-FETCH-cassandra");
+    }
+
+    @Test
+    public void tagShouldNotModifyTheOriginalName() {
+        MetricName name = MetricName.of("name");
+
+        name.tag("key", "value");
+
+        assertThat(name.hasTags()).isFalse();
+    }
+
+    @Test
+    public void tagShouldReplaceTheValueOfAnExistingKey() {
+        MetricName name = MetricName.of("name").tag("key", "value").tag("other", "a").tag("key", "newValue");
+
+        assertThat(name.getTags()).containsExactly(entry("key", "newValue"), entry("other", "a"));
+    }
+
+    @Test
+    public void namesShouldBeEqualWhenSameNameAndTags() {
+        assertThat(MetricName.of("name").tag("key", "value")).isEqualTo(MetricName.of("name").tag("key", "value"));
+        assertThat(MetricName.of("name").tag("key", "value").hashCode()).isEqualTo(MetricName.of("name").tag("key", "value").hashCode());
+    }
+
+    @Test
+    public void namesShouldNotBeEqualWhenTagsDiffer() {
+        assertThat(MetricName.of("name").tag("key", "value")).isNotEqualTo(MetricName.of("name").tag("key", "other"));
+    }
+
+    private static org.assertj.core.data.MapEntry entry(String key, String value) {
+        return org.assertj.core.data.MapEntry.entry(key, value);
+    }
+}
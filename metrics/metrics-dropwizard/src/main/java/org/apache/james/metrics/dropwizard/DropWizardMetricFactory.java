@@ -19,27 +19,42 @@
 
 package org.apache.james.metrics.dropwizard;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.james.metrics.api.Gauge;
+import org.apache.james.metrics.api.Histogram;
+import org.apache.james.metrics.api.Meter;
 import org.apache.james.metrics.api.Metric;
 import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.api.Reservoir;
 import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.metrics.api.Timer;
 
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingTimeWindowReservoir;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.UniformReservoir;
 
 public class DropWizardMetricFactory implements MetricFactory {
 
     private final MetricRegistry metricRegistry;
     private final JmxReporter jmxReporter;
+    private final ConcurrentMap<String, MetricName> metricNames;
 
     @Inject
     public DropWizardMetricFactory(MetricRegistry metricRegistry) {
         this.metricRegistry = metricRegistry;
         this.jmxReporter = JmxReporter.forRegistry(metricRegistry)
             .build();
+        this.metricNames = new ConcurrentHashMap<String, MetricName>();
     }
 
     @Override
@@ -52,6 +67,68 @@ public class DropWizardMetricFactory implements MetricFactory {
         return new DropWizardTimeMetric(name, metricRegistry.timer(name).time());
     }
 
+    @Override
+    public Metric counter(MetricName name) {
+        return new DropWizardMetric(metricRegistry.counter(register(name)));
+    }
+
+    @Override
+    public Timer timer(MetricName name) {
+        String registryName = register(name);
+        return new DropWizardTimer(registryName, metricRegistry.timer(registryName));
+    }
+
+    @Override
+    public Timer timer(MetricName name, Reservoir reservoir) {
+        String registryName = register(name);
+        com.codahale.metrics.Timer timer = getOrAdd(registryName, new com.codahale.metrics.Timer(toReservoir(reservoir)), com.codahale.metrics.Timer.class);
+        return new DropWizardTimer(registryName, timer);
+    }
+
+    @Override
+    public Histogram histogram(MetricName name) {
+        return new DropWizardHistogram(metricRegistry.histogram(register(name)));
+    }
+
+    @Override
+    public Histogram histogram(MetricName name, Reservoir reservoir) {
+        String registryName = register(name);
+        return new DropWizardHistogram(getOrAdd(registryName, new com.codahale.metrics.Histogram(toReservoir(reservoir)), com.codahale.metrics.Histogram.class));
+    }
+
+    @Override
+    public Meter meter(MetricName name) {
+        return new DropWizardMeter(metricRegistry.meter(register(name)));
+    }
+
+    @Override
+    public <T> void gauge(MetricName name, final Gauge<T> gauge) {
+        String registryName = register(name);
+        metricRegistry.remove(registryName);
+        metricRegistry.register(registryName, new com.codahale.metrics.Gauge<T>() {
+            @Override
+            public T getValue() {
+                return gauge.getValue();
+            }
+        });
+    }
+
+    /**
+     * Returns the tagged name a metric of the registry was created with, or
+     * an untagged name for metrics created by name only.
+     */
+    public MetricName getMetricName(String registryName) {
+        MetricName metricName = metricNames.get(registryName);
+        if (metricName == null) {
+            return MetricName.of(registryName);
+        }
+        return metricName;
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
     public void start() throws ConfigurationException {
         jmxReporter.start();
     }
@@ -61,4 +138,40 @@ public class DropWizardMetricFactory implements MetricFactory {
         jmxReporter.stop();
     }
 
+    private String register(MetricName name) {
+        String registryName = name.flatName();
+        if (name.hasTags()) {
+            metricNames.putIfAbsent(registryName, name);
+        }
+        return registryName;
+    }
+
+    private <T extends com.codahale.metrics.Metric> T getOrAdd(String registryName, T metric, Class<T> type) {
+        com.codahale.metrics.Metric existing = metricRegistry.getMetrics().get(registryName);
+        if (existing == null) {
+            try {
+                return metricRegistry.register(registryName, metric);
+            } catch (IllegalArgumentException e) {
+                existing = metricRegistry.getMetrics().get(registryName);
+            }
+        }
+        if (type.isInstance(existing)) {
+            return type.cast(existing);
+        }
+        throw new IllegalArgumentException(registryName + " is already used for a different type of metric");
+    }
+
+    private com.codahale.metrics.Reservoir toReservoir(Reservoir reservoir) {
+        switch (reservoir.getType()) {
+        case UNIFORM:
+            return new UniformReservoir(reservoir.getSize());
+        case SLIDING_WINDOW:
+            return new SlidingWindowReservoir(reservoir.getSize());
+        case SLIDING_TIME_WINDOW:
+            return new SlidingTimeWindowReservoir(reservoir.getWindow(), reservoir.getWindowUnit());
+        default:
+            return new ExponentiallyDecayingReservoir();
+        }
+    }
+
 }
@@ -0,0 +1,117 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.metrics.dropwizard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.metrics.api.Gauge;
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.api.Reservoir;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class DropWizardMetricFactoryTest {
+
+    private static final MetricName FETCH = MetricName.of("IMAP").tag("command", "FETCH");
+
+    private MetricRegistry registry;
+    private DropWizardMetricFactory testee;
+
+    @Before
+    public void setUp() {
+        registry = new MetricRegistry();
+        testee = new DropWizardMetricFactory(registry);
+    }
+
+    @Test
+    public void taggedTimerShouldBeRegisteredUnderItsFlatName() {
+        testee.timer(FETCH).update(10, TimeUnit.MILLISECONDS);
+
+        assertThat(registry.getTimers().get("IMAP-FETCH").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void taggedTimerShouldShareItsMetricWithTheLegacyName() {
+        testee.timer(FETCH).update(10, TimeUnit.MILLISECONDS);
+        testee.timer("IMAP-FETCH").stopAndPublish();
+
+        assertThat(registry.getTimers().get("IMAP-FETCH").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void getMetricNameShouldReturnTheTaggedName() {
+        testee.timer(FETCH);
+
+        assertThat(testee.getMetricName("IMAP-FETCH")).isEqualTo(FETCH);
+    }
+
+    @Test
+    public void getMetricNameShouldReturnAnUntaggedNameForUnknownMetrics() {
+        testee.generate("counter");
+
+        assertThat(testee.getMetricName("counter")).isEqualTo(MetricName.of("counter"));
+    }
+
+    @Test
+    public void histogramShouldUseTheGivenReservoir() {
+        MetricName name = MetricName.of("size");
+        testee.histogram(name, Reservoir.slidingWindow(2)).update(1);
+        testee.histogram(name, Reservoir.slidingWindow(2)).update(2);
+        testee.histogram(name, Reservoir.slidingWindow(2)).update(3);
+
+        assertThat(registry.getHistograms().get("size").getCount()).isEqualTo(3);
+        assertThat(registry.getHistograms().get("size").getSnapshot().getValues()).containsOnly(2, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogramShouldRejectANameUsedByAnotherMetricType() {
+        testee.timer(FETCH);
+
+        testee.histogram(FETCH, Reservoir.uniform(10));
+    }
+
+    @Test
+    public void meterShouldCountMarks() {
+        testee.meter(MetricName.of("events")).mark(3);
+
+        assertThat(registry.getMeters().get("events").getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void gaugeShouldReplaceAPreviousRegistration() {
+        testee.gauge(MetricName.of("gauge"), constant(1));
+        testee.gauge(MetricName.of("gauge"), constant(2));
+
+        assertThat(registry.getGauges().get("gauge").getValue()).isEqualTo(2);
+    }
+
+    private Gauge<Integer> constant(final int value) {
+        return new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return value;
+            }
+        };
+    }
+}
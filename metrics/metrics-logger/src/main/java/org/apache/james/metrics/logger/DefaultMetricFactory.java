@@ -18,9 +18,16 @@
  ****************************************************************/
 package org.apache.james.metrics.logger;
 
+import org.apache.james.metrics.api.Gauge;
+import org.apache.james.metrics.api.Histogram;
+import org.apache.james.metrics.api.Meter;
 import org.apache.james.metrics.api.Metric;
 import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.metrics.api.Reservoir;
 import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.metrics.api.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,4 +45,38 @@ public class DefaultMetricFactory implements MetricFactory {
         return new DefaultTimeMetric(name);
     }
 
+    @Override
+    public Metric counter(MetricName name) {
+        return new DefaultMetric();
+    }
+
+    @Override
+    public Timer timer(MetricName name) {
+        return new DefaultTimer(name.flatName());
+    }
+
+    @Override
+    public Timer timer(MetricName name, Reservoir reservoir) {
+        return timer(name);
+    }
+
+    @Override
+    public Histogram histogram(MetricName name) {
+        return new NoopMetricFactory.NoopHistogram();
+    }
+
+    @Override
+    public Histogram histogram(MetricName name, Reservoir reservoir) {
+        return histogram(name);
+    }
+
+    @Override
+    public Meter meter(MetricName name) {
+        return new NoopMetricFactory.NoopMeter();
+    }
+
+    @Override
+    public <T> void gauge(MetricName name, Gauge<T> gauge) {
+    }
+
 }
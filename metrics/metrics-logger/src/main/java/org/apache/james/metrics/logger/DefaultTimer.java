@@ -0,0 +1,45 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.metrics.logger;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.metrics.api.Timer;
+
+public class DefaultTimer implements Timer {
+
+    private final String name;
+
+    public DefaultTimer(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public TimeMetric time() {
+        return new DefaultTimeMetric(name);
+    }
+
+    @Override
+    public void update(long duration, TimeUnit unit) {
+        DefaultMetricFactory.LOGGER.info("Time spent in " + name + ": " + unit.toMillis(duration) + " ms.");
+    }
+
+}
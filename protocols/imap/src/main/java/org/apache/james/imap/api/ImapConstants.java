@@ -179,6 +179,8 @@ public interface ImapConstants {
 
     String SEARCH_COMMAND_NAME = "SEARCH";
 
+    String THREAD_COMMAND_NAME = "THREAD";
+
     String RENAME_COMMAND_NAME = "RENAME";
 
     String NOOP_COMMAND_NAME = "NOOP";
@@ -249,6 +251,8 @@ public interface ImapConstants {
 
     String SEARCH_RESPONSE_NAME = "SEARCH";
 
+    String THREAD_RESPONSE_NAME = "THREAD";
+
     String ACL_RESPONSE_NAME = "ACL";
 
     String QUOTA_RESPONSE_NAME = "QUOTA";
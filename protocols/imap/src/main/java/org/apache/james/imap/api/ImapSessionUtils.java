@@ -28,10 +28,21 @@ public class ImapSessionUtils {
 
     public static final String MAILBOX_SESSION_ATTRIBUTE_SESSION_KEY = "org.apache.james.api.imap.MAILBOX_SESSION_ATTRIBUTE_SESSION_KEY";
 
+    /**
+     * When set, EXPUNGE and VANISHED responses are not sent as part of UID FETCH responses but delayed to the next
+     * command allowing them. This keeps message sequence numbers stable while several UID FETCH commands of the same
+     * session are processed concurrently.
+     */
+    public static final String DEFER_EXPUNGE_RESPONSES_ATTRIBUTE_SESSION_KEY = "org.apache.james.api.imap.DEFER_EXPUNGE_RESPONSES_ATTRIBUTE_SESSION_KEY";
+
     public static MailboxSession getMailboxSession(ImapSession session) {
         return (MailboxSession) session.getAttribute(ImapSessionUtils.MAILBOX_SESSION_ATTRIBUTE_SESSION_KEY);
     }
 
+    public static boolean isExpungeResponsesDeferred(ImapSession session) {
+        return Boolean.TRUE.equals(session.getAttribute(DEFER_EXPUNGE_RESPONSES_ATTRIBUTE_SESSION_KEY));
+    }
+
     public static String getUserName(ImapSession imapSession) {
         final String result;
         final MailboxSession mailboxSession = getMailboxSession(imapSession);
@@ -87,6 +87,7 @@ public class ImapParserFactory implements ImapCommandParserFactory {
         _imapCommands.put(ImapConstants.COPY_COMMAND_NAME, CopyCommandParser.class);
         _imapCommands.put(ImapConstants.MOVE_COMMAND_NAME, MoveCommandParser.class);
         _imapCommands.put(ImapConstants.SEARCH_COMMAND_NAME, SearchCommandParser.class);
+        _imapCommands.put(ImapConstants.THREAD_COMMAND_NAME, ThreadCommandParser.class);
         _imapCommands.put(ImapConstants.FETCH_COMMAND_NAME, FetchCommandParser.class);
         _imapCommands.put(ImapConstants.STORE_COMMAND_NAME, StoreCommandParser.class);
         _imapCommands.put(ImapConstants.UID_COMMAND_NAME, UidCommandParser.class);
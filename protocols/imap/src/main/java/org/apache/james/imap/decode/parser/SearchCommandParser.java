@@ -51,7 +51,11 @@ import org.apache.james.protocols.imap.DecodingException;
 public class SearchCommandParser extends AbstractUidCommandParser {
 
     public SearchCommandParser() {
-        super(ImapCommand.selectedStateCommand(ImapConstants.SEARCH_COMMAND_NAME));
+        this(ImapCommand.selectedStateCommand(ImapConstants.SEARCH_COMMAND_NAME));
+    }
+
+    protected SearchCommandParser(ImapCommand command) {
+        super(command);
     }
 
     /**
@@ -886,15 +890,23 @@ public class SearchCommandParser extends AbstractUidCommandParser {
     }
 
     public SearchKey decode(ImapSession session, ImapRequestLineReader request) throws DecodingException, IllegalCharsetNameException, UnsupportedCharsetException {
+        return decode(session, request, null);
+    }
+
+    /**
+     * Parses the search keys, decoding their values using the given charset.
+     * The CHARSET search key is only allowed when no charset is given.
+     */
+    protected SearchKey decode(ImapSession session, ImapRequestLineReader request, Charset charset) throws DecodingException, IllegalCharsetNameException, UnsupportedCharsetException {
         request.nextWordChar();
-        final SearchKey firstKey = searchKey(session, request, null, true);
+        final SearchKey firstKey = searchKey(session, request, charset, charset == null);
         final SearchKey result;
         if (request.nextChar() == ' ') {
             List<SearchKey> keys = new ArrayList<SearchKey>();
             keys.add(firstKey);
             while (request.nextChar() == ' ') {
                 request.nextWordChar();
-                final SearchKey key = searchKey(session, request, null, false);
+                final SearchKey key = searchKey(session, request, charset, false);
                 keys.add(key);
             }
             result = SearchKey.buildAnd(keys);
@@ -905,7 +917,7 @@ public class SearchCommandParser extends AbstractUidCommandParser {
         return result;
     }
 
-    private ImapMessage unsupportedCharset(String tag, ImapCommand command) {
+    protected ImapMessage unsupportedCharset(String tag, ImapCommand command) {
         final StatusResponseFactory factory = getStatusResponseFactory();
         final ResponseCode badCharset = StatusResponse.ResponseCode.badCharset(CharsetUtil.getAvailableCharsetNames());
         return factory.taggedNo(tag, command, HumanReadableText.BAD_CHARSET, badCharset);
@@ -0,0 +1,82 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.imap.decode.parser;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+
+import org.apache.james.imap.api.ImapCommand;
+import org.apache.james.imap.api.ImapConstants;
+import org.apache.james.imap.api.ImapMessage;
+import org.apache.james.imap.api.display.HumanReadableText;
+import org.apache.james.imap.api.message.request.SearchKey;
+import org.apache.james.imap.api.process.ImapSession;
+import org.apache.james.imap.decode.ImapRequestLineReader;
+import org.apache.james.imap.message.request.ThreadRequest;
+import org.apache.james.mailbox.model.ThreadAlgorithm;
+import org.apache.james.protocols.imap.DecodingException;
+
+/**
+ * Parse THREAD commands, as defined in RFC5256
+ */
+public class ThreadCommandParser extends SearchCommandParser {
+
+    public static final String ORDEREDSUBJECT = "ORDEREDSUBJECT";
+    public static final String REFERENCES = "REFERENCES";
+
+    public ThreadCommandParser() {
+        super(ImapCommand.selectedStateCommand(ImapConstants.THREAD_COMMAND_NAME));
+    }
+
+    private ThreadAlgorithm algorithm(ImapRequestLineReader request) throws DecodingException {
+        final String algorithm = request.atom().toUpperCase(Locale.US);
+        if (ORDEREDSUBJECT.equals(algorithm)) {
+            return ThreadAlgorithm.OrderedSubject;
+        } else if (REFERENCES.equals(algorithm)) {
+            return ThreadAlgorithm.References;
+        }
+        throw new DecodingException(HumanReadableText.ILLEGAL_ARGUMENTS, "Unknown thread algorithm: " + algorithm);
+    }
+
+    /**
+     * @see
+     * org.apache.james.imap.decode.parser.AbstractUidCommandParser#decode(org.apache.james.imap.api.ImapCommand,
+     * org.apache.james.imap.decode.ImapRequestLineReader, java.lang.String,
+     * boolean, org.apache.james.imap.api.process.ImapSession)
+     */
+    protected ImapMessage decode(ImapCommand command, ImapRequestLineReader request, String tag, boolean useUids, ImapSession session) throws DecodingException {
+        try {
+            final ThreadAlgorithm algorithm = algorithm(request);
+            final Charset charset = Charset.forName(request.astring());
+            final SearchKey key = decode(session, request, charset);
+            return new ThreadRequest(command, algorithm, key, useUids, tag);
+        } catch (IllegalCharsetNameException e) {
+            session.getLog().debug("Unable to decode request", e);
+            return unsupportedCharset(tag, command);
+        } catch (UnsupportedCharsetException e) {
+            session.getLog().debug("Unable to decode request", e);
+            return unsupportedCharset(tag, command);
+        }
+    }
+
+}
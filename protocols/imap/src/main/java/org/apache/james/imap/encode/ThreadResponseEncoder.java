@@ -0,0 +1,80 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.imap.encode;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.james.imap.api.ImapConstants;
+import org.apache.james.imap.api.ImapMessage;
+import org.apache.james.imap.api.process.ImapSession;
+import org.apache.james.imap.encode.base.AbstractChainedImapEncoder;
+import org.apache.james.imap.message.response.ThreadResponse;
+
+/**
+ * Encodes <code>THREAD</code> responses, as defined in RFC5256:
+ * <code>* THREAD (2)(3 6 (4 23)(44 7 96))</code>
+ */
+public class ThreadResponseEncoder extends AbstractChainedImapEncoder {
+
+    public ThreadResponseEncoder(ImapEncoder next) {
+        super(next);
+    }
+
+    protected void doEncode(ImapMessage acceptableMessage, ImapResponseComposer composer, ImapSession session) throws IOException {
+        ThreadResponse response = (ThreadResponse) acceptableMessage;
+        composer.untagged();
+        composer.message(ImapConstants.THREAD_RESPONSE_NAME);
+        threadLists(response.getThreads(), composer);
+        composer.end();
+    }
+
+    private void threadLists(List<ThreadResponse.Thread> threads, ImapResponseComposer composer) throws IOException {
+        boolean first = true;
+        for (ThreadResponse.Thread thread : threads) {
+            if (!first) {
+                // Thread lists are not separated by spaces
+                composer.skipNextSpace();
+            }
+            composer.openParen();
+            threadMembers(thread, composer);
+            composer.closeParen();
+            first = false;
+        }
+    }
+
+    private void threadMembers(ThreadResponse.Thread thread, ImapResponseComposer composer) throws IOException {
+        if (thread.getId() == null) {
+            threadLists(thread.getChildren(), composer);
+            return;
+        }
+        composer.message(thread.getId());
+        if (thread.getChildren().size() == 1) {
+            threadMembers(thread.getChildren().get(0), composer);
+        } else {
+            threadLists(thread.getChildren(), composer);
+        }
+    }
+
+    protected boolean isAcceptable(ImapMessage message) {
+        return (message instanceof ThreadResponse);
+    }
+}
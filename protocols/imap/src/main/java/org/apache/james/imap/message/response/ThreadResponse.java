@@ -0,0 +1,102 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.imap.message.response;
+
+import java.util.List;
+
+import org.apache.james.imap.api.message.response.ImapResponseMessage;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A <code>THREAD</code> response, as defined in RFC5256.
+ */
+public class ThreadResponse implements ImapResponseMessage {
+
+    /**
+     * A message of a thread, identified by its uid or its message sequence
+     * number. Messages which are not part of the response have no id.
+     */
+    public static class Thread {
+        private final Long id;
+        private final List<Thread> children;
+
+        public Thread(Long id, List<Thread> children) {
+            this.id = id;
+            this.children = ImmutableList.copyOf(children);
+        }
+
+        /**
+         * Return the id, or null if the message is not part of the response
+         */
+        public Long getId() {
+            return id;
+        }
+
+        public List<Thread> getChildren() {
+            return children;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Thread) {
+                Thread other = (Thread) o;
+                return Objects.equal(id, other.id)
+                    && Objects.equal(children, other.children);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(id, children);
+        }
+    }
+
+    private final List<Thread> threads;
+
+    public ThreadResponse(List<Thread> threads) {
+        this.threads = ImmutableList.copyOf(threads);
+    }
+
+    public final List<Thread> getThreads() {
+        return threads;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof ThreadResponse) {
+            return threads.equals(((ThreadResponse) o).threads);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return threads.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadResponse: " + threads.size() + " threads";
+    }
+}
@@ -23,6 +23,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.mail.Flags;
 
@@ -64,16 +67,20 @@ import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MessageResultIterator;
 import org.apache.james.mailbox.model.SearchQuery;
 import org.apache.james.metrics.api.MetricFactory;
-import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.api.Timer;
 
 import com.google.common.base.Optional;
 
 abstract public class AbstractMailboxProcessor<M extends ImapRequest> extends AbstractChainedProcessor<M> {
 
     public static final String IMAP_PREFIX = "IMAP-";
+    public static final String IMAP_METRIC_NAME = "IMAP";
+    public static final String COMMAND_TAG = "command";
     private final MailboxManager mailboxManager;
     private final StatusResponseFactory factory;
     private final MetricFactory metricFactory;
+    private final ConcurrentMap<String, Timer> commandTimers;
 
     public AbstractMailboxProcessor(Class<M> acceptableClass, ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory,
             MetricFactory metricFactory) {
@@ -81,6 +88,7 @@ abstract public class AbstractMailboxProcessor<M extends ImapRequest> extends Ab
         this.mailboxManager = mailboxManager;
         this.factory = factory;
         this.metricFactory = metricFactory;
+        this.commandTimers = new ConcurrentHashMap<String, Timer>();
     }
 
     @Override
@@ -92,9 +100,26 @@ abstract public class AbstractMailboxProcessor<M extends ImapRequest> extends Ab
         ImapCommand command = message.getCommand();
         String tag = message.getTag();
 
-        TimeMetric timeMetric = metricFactory.timer(IMAP_PREFIX + command.getName());
+        Timer timer = commandTimer(command);
+        long start = System.nanoTime();
         doProcess(message, command, tag, responder, session);
-        timeMetric.stopAndPublish();
+        timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the timer of the given command, bound on first use so that
+     * timing a command does not build any metric name.
+     */
+    private Timer commandTimer(ImapCommand command) {
+        Timer timer = commandTimers.get(command.getName());
+        if (timer == null) {
+            timer = metricFactory.timer(MetricName.of(IMAP_METRIC_NAME).tag(COMMAND_TAG, command.getName()));
+            Timer previous = commandTimers.putIfAbsent(command.getName(), timer);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return timer;
     }
 
     final void doProcess(M message, ImapCommand command, String tag, Responder responder, ImapSession session) {
@@ -150,6 +175,14 @@ abstract public class AbstractMailboxProcessor<M extends ImapRequest> extends Ab
     }
 
     private void unsolicitedResponses(ImapSession session, ImapProcessor.Responder responder, SelectedMailbox selected, boolean omitExpunged, boolean useUid) {
+        // Commands of the same session may be processed concurrently, so make sure
+        // the pending events are reported and reset only once
+        synchronized (selected) {
+            unsolicitedResponsesOnLockedMailbox(session, responder, selected, omitExpunged, useUid);
+        }
+    }
+
+    private void unsolicitedResponsesOnLockedMailbox(ImapSession session, ImapProcessor.Responder responder, SelectedMailbox selected, boolean omitExpunged, boolean useUid) {
         final boolean sizeChanged = selected.isSizeChanged();
         // New message response
         if (sizeChanged) {
@@ -557,37 +590,49 @@ abstract public class AbstractMailboxProcessor<M extends ImapRequest> extends Ab
         //      as above.  In the case where there have been no expunges, the server
         //      can ignore this data.
         if (metaData.getHighestModSeq() > changedSince) {
-            SearchQuery searchQuery = new SearchQuery();
-            SearchQuery.UidRange[] nRanges = new SearchQuery.UidRange[ranges.size()];
             Set<MessageUid> vanishedUids = new HashSet<MessageUid>();
-            for (int i = 0; i < ranges.size(); i++) {
-                MessageRange r = ranges.get(i);
-                SearchQuery.UidRange nr;
-                if (r.getType() == Type.ONE) {
-                    nr = new SearchQuery.UidRange(r.getUidFrom());
+            for (MessageRange range : ranges) {
+                Optional<List<MessageUid>> expungedUids = mailbox.getUidsExpungedSince(range, changedSince, session);
+                if (expungedUids.isPresent()) {
+                    vanishedUids.addAll(expungedUids.get());
                 } else {
-                    nr = new SearchQuery.UidRange(r.getUidFrom(), r.getUidTo());
+                    vanishedUids.addAll(missingUids(session, mailbox, range));
                 }
-                MessageUid from = nr.getLowValue();
-                MessageUid to = nr.getHighValue();
-                while(from.compareTo(to) <= 0) {
-                    vanishedUids.add(from);
-                    from = from.next();
-                }
-                nRanges[i] = nr;
-                
             }
-            searchQuery.andCriteria(SearchQuery.uid(nRanges));
-            searchQuery.andCriteria(SearchQuery.modSeqGreaterThan(changedSince));
-            Iterator<MessageUid> uids = mailbox.search(searchQuery, session);
-            while(uids.hasNext()) {
-                vanishedUids.remove(uids.next());
+            if (!vanishedUids.isEmpty()) {
+                UidRange[] vanishedIdRanges = uidRanges(MessageRange.toRanges(vanishedUids));
+                responder.respond(new VanishedResponse(vanishedIdRanges, true));
             }
-            UidRange[] vanishedIdRanges = uidRanges(MessageRange.toRanges(vanishedUids));
-            responder.respond(new VanishedResponse(vanishedIdRanges, true));
         }
-        
-        
+    }
+
+    /**
+     * Return the uids of the given range which do not belong to any message of the mailbox anymore.
+     * 
+     * This is used when the mailbox does not keep track of expunged messages. Servers storing minimal state are then allowed
+     * to report them all as vanished, as long as existing messages are never reported.
+     */
+    private Set<MessageUid> missingUids(MailboxSession session, MessageManager mailbox, MessageRange range) throws MailboxException {
+        SearchQuery.UidRange uidRange;
+        if (range.getType() == Type.ONE) {
+            uidRange = new SearchQuery.UidRange(range.getUidFrom());
+        } else {
+            uidRange = new SearchQuery.UidRange(range.getUidFrom(), range.getUidTo());
+        }
+        Set<MessageUid> missingUids = new HashSet<MessageUid>();
+        MessageUid from = uidRange.getLowValue();
+        MessageUid to = uidRange.getHighValue();
+        while (from.compareTo(to) <= 0) {
+            missingUids.add(from);
+            from = from.next();
+        }
+        SearchQuery searchQuery = new SearchQuery();
+        searchQuery.andCriteria(SearchQuery.uid(new SearchQuery.UidRange[] { uidRange }));
+        Iterator<MessageUid> uids = mailbox.search(searchQuery, session);
+        while (uids.hasNext()) {
+            missingUids.remove(uids.next());
+        }
+        return missingUids;
     }
     
     
@@ -42,6 +42,7 @@ import org.apache.james.imap.main.PathConverter;
 import org.apache.james.imap.message.request.AbstractMailboxSelectionRequest;
 import org.apache.james.imap.message.response.ExistsResponse;
 import org.apache.james.imap.message.response.RecentResponse;
+import org.apache.james.imap.processor.base.MailboxChangeLogRegistry;
 import org.apache.james.imap.processor.base.SelectedMailboxImpl;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.MailboxSession;
@@ -54,7 +55,6 @@ import org.apache.james.mailbox.exception.MailboxNotFoundException;
 import org.apache.james.mailbox.exception.MessageRangeException;
 import org.apache.james.mailbox.model.MailboxPath;
 import org.apache.james.mailbox.model.MessageRange;
-import org.apache.james.mailbox.model.SearchQuery;
 import org.apache.james.metrics.api.MetricFactory;
 
 abstract class AbstractSelectionProcessor<M extends AbstractMailboxSelectionRequest> extends AbstractMailboxProcessor<M> implements PermitEnableCapabilityProcessor {
@@ -62,14 +62,21 @@ abstract class AbstractSelectionProcessor<M extends AbstractMailboxSelectionRequ
     final StatusResponseFactory statusResponseFactory;
 
     private final boolean openReadOnly;
+    private final MailboxChangeLogRegistry changeLogRegistry;
     private final static List<String> CAPS = Collections.unmodifiableList(Arrays.asList(ImapConstants.SUPPORTS_QRESYNC, ImapConstants.SUPPORTS_CONDSTORE));
 
     
     public AbstractSelectionProcessor(Class<M> acceptableClass, ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory statusResponseFactory, boolean openReadOnly,
             MetricFactory metricFactory) {
+        this(acceptableClass, next, mailboxManager, statusResponseFactory, openReadOnly, null, metricFactory);
+    }
+
+    public AbstractSelectionProcessor(Class<M> acceptableClass, ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory statusResponseFactory, boolean openReadOnly,
+            MailboxChangeLogRegistry changeLogRegistry, MetricFactory metricFactory) {
         super(acceptableClass, next, mailboxManager, statusResponseFactory, metricFactory);
         this.statusResponseFactory = statusResponseFactory;
         this.openReadOnly = openReadOnly;
+        this.changeLogRegistry = changeLogRegistry;
 
     }
 
@@ -173,8 +180,6 @@ abstract class AbstractSelectionProcessor<M extends AbstractMailboxSelectionRequ
                 //  The server sends the client any pending flag changes (using FETCH
                 //  responses that MUST contain UIDs) and expunges those that have
                 //  occurred in this mailbox since the provided modification sequence.
-                SearchQuery sq = new SearchQuery();
-                sq.andCriteria(SearchQuery.modSeqGreaterThan(request.getKnownModSeq()));
                 
                 UidRange[] uidSet = request.getUidSet();
 
@@ -311,6 +316,14 @@ abstract class AbstractSelectionProcessor<M extends AbstractMailboxSelectionRequ
                     //          mailbox.
                     //
                     respondVanished(mailboxSession, mailbox, ranges, modSeq, metaData , responder);
+
+                    // Send the pending flag changes. The mailbox gives the uids changed since the known mod-sequence directly,
+                    // so that unchanged messages are not loaded.
+                    for (MessageRange range : ranges) {
+                        for (MessageRange changedRange : MessageRange.toRanges(mailbox.getUidsChangedSince(range, modSeq, mailboxSession))) {
+                            addFlagsResponses(session, selected, responder, true, changedRange, mailbox, mailboxSession);
+                        }
+                    }
                 }
                 taggedOk(responder, tag, command, metaData, HumanReadableText.SELECT);
             } else {
@@ -412,7 +425,7 @@ abstract class AbstractSelectionProcessor<M extends AbstractMailboxSelectionRequ
             if (currentMailbox != null) {
                 getStatusResponseFactory().untaggedOk(HumanReadableText.QRESYNC_CLOSED, ResponseCode.closed());
             }
-            session.selected(new SelectedMailboxImpl(getMailboxManager(),  session, mailboxPath));
+            session.selected(new SelectedMailboxImpl(getMailboxManager(), session, mailboxPath, changeLogRegistry));
 
             sessionMailbox = session.getSelected();
             
@@ -20,12 +20,14 @@
 package org.apache.james.imap.processor;
 
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.james.imap.api.message.response.StatusResponseFactory;
 import org.apache.james.imap.api.process.ImapProcessor;
 import org.apache.james.imap.api.process.MailboxTyper;
+import org.apache.james.imap.processor.base.MailboxChangeLogRegistry;
 import org.apache.james.imap.processor.fetch.FetchProcessor;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.SubscriptionManager;
@@ -33,16 +35,43 @@ import org.apache.james.mailbox.quota.QuotaManager;
 import org.apache.james.mailbox.quota.QuotaRootResolver;
 import org.apache.james.metrics.api.MetricFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * TODO: perhaps this should be a POJO
  */
 public class DefaultProcessorChain {
 
+    /**
+     * Shared by all the chains which are not given their own executor, so that
+     * building a chain does not leave a new pool behind. Its threads are daemons
+     * and do not prevent the JVM from exiting.
+     */
+    private static final Executor DEFAULT_NOTIFICATION_EXECUTOR = Executors.newFixedThreadPool(
+        MailboxChangeLogRegistry.DEFAULT_NOTIFICATION_POOL_SIZE,
+        new ThreadFactoryBuilder()
+            .setNameFormat("imap-mailbox-notification-%d")
+            .setDaemon(true)
+            .build());
+
     public static ImapProcessor createDefaultChain(ImapProcessor chainEndProcessor,
                   final MailboxManager mailboxManager, SubscriptionManager subscriptionManager,
                   final StatusResponseFactory statusResponseFactory, MailboxTyper mailboxTyper, QuotaManager quotaManager,
                   final QuotaRootResolver quotaRootResolver, long idleKeepAlive, TimeUnit milliseconds, Set<String> disabledCaps,
                   MetricFactory metricFactory) {
+        return createDefaultChain(chainEndProcessor, mailboxManager, subscriptionManager, statusResponseFactory, mailboxTyper, quotaManager,
+            quotaRootResolver, idleKeepAlive, milliseconds, disabledCaps, metricFactory, DEFAULT_NOTIFICATION_EXECUTOR);
+    }
+
+    /**
+     * @param notificationExecutor runs the mailbox change notifications of the selected
+     *            mailboxes. Its lifecycle is left to the caller.
+     */
+    public static ImapProcessor createDefaultChain(ImapProcessor chainEndProcessor,
+                  final MailboxManager mailboxManager, SubscriptionManager subscriptionManager,
+                  final StatusResponseFactory statusResponseFactory, MailboxTyper mailboxTyper, QuotaManager quotaManager,
+                  final QuotaRootResolver quotaRootResolver, long idleKeepAlive, TimeUnit milliseconds, Set<String> disabledCaps,
+                  MetricFactory metricFactory, Executor notificationExecutor) {
         final SystemMessageProcessor systemProcessor = new SystemMessageProcessor(chainEndProcessor, mailboxManager);
         final LogoutProcessor logoutProcessor = new LogoutProcessor(systemProcessor, mailboxManager, statusResponseFactory, metricFactory);
 
@@ -77,16 +106,18 @@ public class DefaultProcessorChain {
             authenticateProcessor = new AuthenticateProcessor(copyProcessor, mailboxManager, statusResponseFactory, metricFactory);
         }
         final ExpungeProcessor expungeProcessor = new ExpungeProcessor(authenticateProcessor, mailboxManager, statusResponseFactory, metricFactory);
-        final ExamineProcessor examineProcessor = new ExamineProcessor(expungeProcessor, mailboxManager, statusResponseFactory, metricFactory);
+        // Sessions selecting the same mailbox share a single listener per mailbox
+        final MailboxChangeLogRegistry changeLogRegistry = new MailboxChangeLogRegistry(mailboxManager, notificationExecutor);
+        final ExamineProcessor examineProcessor = new ExamineProcessor(expungeProcessor, mailboxManager, statusResponseFactory, changeLogRegistry, metricFactory);
         final AppendProcessor appendProcessor = new AppendProcessor(examineProcessor, mailboxManager, statusResponseFactory, metricFactory);
         final StoreProcessor storeProcessor = new StoreProcessor(appendProcessor, mailboxManager, statusResponseFactory, metricFactory);
         final NoopProcessor noopProcessor = new NoopProcessor(storeProcessor, mailboxManager, statusResponseFactory, metricFactory);
         final IdleProcessor idleProcessor;
         if (idleKeepAlive > 0) {
-            idleProcessor = new IdleProcessor(noopProcessor, mailboxManager, statusResponseFactory, idleKeepAlive, milliseconds, Executors.newScheduledThreadPool(IdleProcessor.DEFAULT_SCHEDULED_POOL_CORE_SIZE), metricFactory);
+            idleProcessor = new IdleProcessor(noopProcessor, mailboxManager, statusResponseFactory, idleKeepAlive, milliseconds, Executors.newScheduledThreadPool(IdleProcessor.DEFAULT_SCHEDULED_POOL_CORE_SIZE), changeLogRegistry, metricFactory);
         } else {
             // We don't want to send keep alives so now scheduled executur needed
-            idleProcessor = new IdleProcessor(noopProcessor, mailboxManager, statusResponseFactory, idleKeepAlive, milliseconds, null, metricFactory);
+            idleProcessor = new IdleProcessor(noopProcessor, mailboxManager, statusResponseFactory, idleKeepAlive, milliseconds, null, changeLogRegistry, metricFactory);
         }
         final StatusProcessor statusProcessor = new StatusProcessor(idleProcessor, mailboxManager, statusResponseFactory, metricFactory);
         final LSubProcessor lsubProcessor = new LSubProcessor(statusProcessor, mailboxManager, subscriptionManager, statusResponseFactory, metricFactory);
@@ -95,8 +126,10 @@ public class DefaultProcessorChain {
         final SearchProcessor searchProcessor = new SearchProcessor(listProcessor, mailboxManager, statusResponseFactory, metricFactory);
         // WITHIN extension
         capabilityProcessor.addProcessor(searchProcessor);
+        final ThreadProcessor threadProcessor = new ThreadProcessor(searchProcessor, mailboxManager, statusResponseFactory, metricFactory);
+        capabilityProcessor.addProcessor(threadProcessor);
 
-        final SelectProcessor selectProcessor = new SelectProcessor(searchProcessor, mailboxManager, statusResponseFactory, metricFactory);
+        final SelectProcessor selectProcessor = new SelectProcessor(threadProcessor, mailboxManager, statusResponseFactory, changeLogRegistry, metricFactory);
         final NamespaceProcessor namespaceProcessor = new NamespaceProcessor(selectProcessor, mailboxManager, statusResponseFactory, metricFactory);
 
         capabilityProcessor.addProcessor(xlistProcessor);
@@ -42,6 +42,8 @@ import org.apache.james.imap.api.process.ImapSession;
 import org.apache.james.imap.api.process.SelectedMailbox;
 import org.apache.james.imap.message.request.IdleRequest;
 import org.apache.james.imap.message.response.ContinuationResponse;
+import org.apache.james.imap.processor.base.MailboxChangeLog;
+import org.apache.james.imap.processor.base.MailboxChangeLogRegistry;
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.MailboxSession;
@@ -59,6 +61,7 @@ public class IdleProcessor extends AbstractMailboxProcessor<IdleRequest> impleme
     private final static String DONE = "DONE";
     private final TimeUnit heartbeatIntervalUnit;
     private final long heartbeatInterval;
+    private final MailboxChangeLogRegistry changeLogRegistry;
 
     public IdleProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory,
             MetricFactory metricFactory) {
@@ -68,10 +71,20 @@ public class IdleProcessor extends AbstractMailboxProcessor<IdleRequest> impleme
 
     public IdleProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory, long heartbeatInterval, TimeUnit heartbeatIntervalUnit, ScheduledExecutorService heartbeatExecutor,
             MetricFactory metricFactory) {
+        this(next, mailboxManager, factory, heartbeatInterval, heartbeatIntervalUnit, heartbeatExecutor, null, metricFactory);
+    }
+
+    /**
+     * When a {@link MailboxChangeLogRegistry} is given, idling sessions are woken up by the shared
+     * {@link MailboxChangeLog} of the selected mailbox instead of registering their own listener.
+     */
+    public IdleProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory, long heartbeatInterval, TimeUnit heartbeatIntervalUnit, ScheduledExecutorService heartbeatExecutor,
+            MailboxChangeLogRegistry changeLogRegistry, MetricFactory metricFactory) {
         super(IdleRequest.class, next, mailboxManager, factory, metricFactory);
         this.heartbeatInterval = heartbeatInterval;
         this.heartbeatIntervalUnit = heartbeatIntervalUnit;
         this.heartbeatExecutor = heartbeatExecutor;
+        this.changeLogRegistry = changeLogRegistry;
 
     }
 
@@ -83,11 +96,26 @@ public class IdleProcessor extends AbstractMailboxProcessor<IdleRequest> impleme
             final MailboxSession mailboxSession = ImapSessionUtils.getMailboxSession(session);
             final SelectedMailbox sm = session.getSelected();
             final MailboxListener idleListener;
-            if (sm != null) {
+            final MailboxChangeLog changeLog;
+            final Runnable changeListener;
+            if (sm != null && changeLogRegistry != null) {
+                idleListener = null;
+                changeLog = changeLogRegistry.subscribe(sm.getPath(), mailboxSession);
+                changeListener = new Runnable() {
+                    public void run() {
+                        unsolicitedResponses(session, responder, false);
+                    }
+                };
+                changeLog.addChangeListener(changeListener);
+            } else if (sm != null) {
                 idleListener = new IdleMailboxListener(session, responder);
                 mailboxManager.addListener(sm.getPath(), idleListener , mailboxSession);
+                changeLog = null;
+                changeListener = null;
             } else {
                 idleListener = null;
+                changeLog = null;
+                changeListener = null;
             }
 
             final AtomicBoolean idleActive = new AtomicBoolean(true);
@@ -116,6 +144,16 @@ public class IdleProcessor extends AbstractMailboxProcessor<IdleRequest> impleme
                             }
                         }
                     }
+                    if (changeLog != null) {
+                        changeLog.removeChangeListener(changeListener);
+                        try {
+                            changeLogRegistry.unsubscribe(changeLog, mailboxSession);
+                        } catch (MailboxException e) {
+                            if (session.getLog().isInfoEnabled()) {
+                                session.getLog().info("Unable to unsubscribe idle session from mailbox change log", e);
+                            }
+                        }
+                    }
                     session.popLineHandler();
                     if (!DONE.equals(line.toUpperCase(Locale.US))) {
                         StatusResponse response = getStatusResponseFactory().taggedBad(tag, command, HumanReadableText.INVALID_COMMAND);
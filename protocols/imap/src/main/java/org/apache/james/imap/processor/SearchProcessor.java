@@ -77,6 +77,15 @@ public class SearchProcessor extends AbstractMailboxProcessor<SearchRequest> imp
         super(SearchRequest.class, next, mailboxManager, factory, metricFactory);
     }
 
+    /**
+     * Allow sub classes to handle specialized search requests
+     */
+    @SuppressWarnings("unchecked")
+    protected SearchProcessor(Class<? extends SearchRequest> acceptableClass, ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory,
+            MetricFactory metricFactory) {
+        super((Class<SearchRequest>) acceptableClass, next, mailboxManager, factory, metricFactory);
+    }
+
     protected void doProcess(SearchRequest request, ImapSession session, String tag, ImapCommand command, Responder responder) {
         final SearchOperation operation = request.getSearchOperation();
         final SearchKey searchKey = operation.getSearchKey();
@@ -262,7 +271,7 @@ public class SearchProcessor extends AbstractMailboxProcessor<SearchRequest> imp
     }
 
 
-    private SearchQuery toQuery(SearchKey key, ImapSession session) throws MessageRangeException {
+    protected SearchQuery toQuery(SearchKey key, ImapSession session) throws MessageRangeException {
         final SearchQuery result = new SearchQuery();
         final SelectedMailbox selected = session.getSelected();
         if (selected != null) {
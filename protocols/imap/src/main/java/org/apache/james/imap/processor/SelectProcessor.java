@@ -22,6 +22,7 @@ package org.apache.james.imap.processor;
 import org.apache.james.imap.api.message.response.StatusResponseFactory;
 import org.apache.james.imap.api.process.ImapProcessor;
 import org.apache.james.imap.message.request.SelectRequest;
+import org.apache.james.imap.processor.base.MailboxChangeLogRegistry;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.metrics.api.MetricFactory;
 
@@ -32,4 +33,9 @@ public class SelectProcessor extends AbstractSelectionProcessor<SelectRequest> {
         super(SelectRequest.class, next, mailboxManager, statusResponseFactory, false, metricFactory);
     }
 
+    public SelectProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory statusResponseFactory,
+            MailboxChangeLogRegistry changeLogRegistry, MetricFactory metricFactory) {
+        super(SelectRequest.class, next, mailboxManager, statusResponseFactory, false, changeLogRegistry, metricFactory);
+    }
+
 }
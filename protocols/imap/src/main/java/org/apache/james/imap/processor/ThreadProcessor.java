@@ -0,0 +1,118 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.imap.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.james.imap.api.ImapCommand;
+import org.apache.james.imap.api.ImapSessionUtils;
+import org.apache.james.imap.api.display.HumanReadableText;
+import org.apache.james.imap.api.message.response.StatusResponseFactory;
+import org.apache.james.imap.api.process.ImapProcessor;
+import org.apache.james.imap.api.process.ImapSession;
+import org.apache.james.imap.api.process.SelectedMailbox;
+import org.apache.james.imap.message.request.SearchRequest;
+import org.apache.james.imap.message.request.ThreadRequest;
+import org.apache.james.imap.message.response.ThreadResponse;
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.exception.MessageRangeException;
+import org.apache.james.mailbox.model.MessageThread;
+import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.metrics.api.MetricFactory;
+
+/**
+ * Processor for the THREAD extension, as defined in RFC5256
+ */
+public class ThreadProcessor extends SearchProcessor {
+
+    private final static List<String> CAPS = Collections.unmodifiableList(Arrays.asList("THREAD=ORDEREDSUBJECT", "THREAD=REFERENCES"));
+
+    public ThreadProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory,
+            MetricFactory metricFactory) {
+        super(ThreadRequest.class, next, mailboxManager, factory, metricFactory);
+    }
+
+    @Override
+    protected void doProcess(SearchRequest searchRequest, ImapSession session, String tag, ImapCommand command, Responder responder) {
+        final ThreadRequest request = (ThreadRequest) searchRequest;
+        final boolean useUids = request.isUseUids();
+        try {
+            final MessageManager mailbox = getSelectedMailbox(session);
+            final SearchQuery query = toQuery(request.getSearchOperation().getSearchKey(), session);
+            final List<MessageThread> threads = mailbox.thread(query, request.getAlgorithm(), ImapSessionUtils.getMailboxSession(session));
+
+            responder.respond(new ThreadResponse(toResponseThreads(threads, session, useUids)));
+
+            boolean omitExpunged = (!useUids);
+            unsolicitedResponses(session, responder, omitExpunged, useUids);
+            okComplete(command, tag, responder);
+        } catch (MessageRangeException e) {
+            if (session.getLog().isDebugEnabled()) {
+                session.getLog().debug("Thread failed in mailbox " + session.getSelected().getPath() + " because of an invalid sequence-set ", e);
+            }
+            taggedBad(command, tag, responder, HumanReadableText.INVALID_MESSAGESET);
+        } catch (MailboxException e) {
+            if (session.getLog().isInfoEnabled()) {
+                session.getLog().info("Thread failed in mailbox " + session.getSelected().getPath(), e);
+            }
+            no(command, tag, responder, HumanReadableText.SEARCH_FAILED);
+        } finally {
+            // The THREAD response has no room for the highest mod-sequence
+            session.setAttribute(SEARCH_MODSEQ, null);
+        }
+    }
+
+    private List<ThreadResponse.Thread> toResponseThreads(List<MessageThread> threads, ImapSession session, boolean useUids) {
+        List<ThreadResponse.Thread> results = new ArrayList<ThreadResponse.Thread>(threads.size());
+        for (MessageThread thread : threads) {
+            results.add(toResponseThread(thread, session, useUids));
+        }
+        return results;
+    }
+
+    private ThreadResponse.Thread toResponseThread(MessageThread thread, ImapSession session, boolean useUids) {
+        Long id = null;
+        if (thread.getUid().isPresent()) {
+            if (useUids) {
+                id = thread.getUid().get().asLong();
+            } else {
+                int msn = session.getSelected().msn(thread.getUid().get());
+                if (msn != SelectedMailbox.NO_SUCH_MESSAGE) {
+                    id = (long) msn;
+                }
+            }
+        }
+        return new ThreadResponse.Thread(id, toResponseThreads(thread.getChildren(), session, useUids));
+    }
+
+    /**
+     * @see org.apache.james.imap.processor.CapabilityImplementingProcessor
+     * #getImplementedCapabilities(org.apache.james.imap.api.process.ImapSession)
+     */
+    public List<String> getImplementedCapabilities(ImapSession session) {
+        return CAPS;
+    }
+}
@@ -0,0 +1,198 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imap.processor.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.model.MailboxPath;
+
+/**
+ * {@link MailboxListener} recording the events of a mailbox in a bounded log
+ * shared by all the sessions of this node which selected it.
+ * 
+ * Recording an event is O(1) whatever the number of sessions. Each session
+ * holds a {@link Cursor} and reads the events it did not see yet when it needs
+ * them, for example on NOOP or when woken up while IDLE.
+ * 
+ * The log keeps at most maxEvents events. A cursor pointing to an event which
+ * was already discarded is reported as overflowed, and the session needs to
+ * resynchronize from the mailbox.
+ */
+public class MailboxChangeLog implements MailboxListener {
+
+    /**
+     * Position of a session in the log
+     */
+    public static final class Cursor {
+        private long position;
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+    }
+
+    /**
+     * Events read from the log
+     */
+    public static final class Changes {
+        private final List<Event> events;
+        private final boolean overflowed;
+
+        private Changes(List<Event> events, boolean overflowed) {
+            this.events = events;
+            this.overflowed = overflowed;
+        }
+
+        /**
+         * Return the events, oldest first
+         */
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        /**
+         * Return true if some events were discarded before being read, the
+         * reader then needs to resynchronize its state from the mailbox
+         */
+        public boolean isOverflowed() {
+            return overflowed;
+        }
+    }
+
+    private static final Changes NO_CHANGES = new Changes(Collections.<Event>emptyList(), false);
+
+    private final int maxEvents;
+    private final Executor notificationExecutor;
+    private final LinkedList<Event> events = new LinkedList<Event>();
+    private final Set<Runnable> changeListeners = Collections.newSetFromMap(new ConcurrentHashMap<Runnable, Boolean>());
+    private final AtomicBoolean notificationPending = new AtomicBoolean(false);
+    private final Runnable notification = new Runnable() {
+        public void run() {
+            notificationPending.set(false);
+            for (Runnable changeListener : changeListeners) {
+                changeListener.run();
+            }
+        }
+    };
+
+    private volatile MailboxPath path;
+    private volatile long nextPosition = 0;
+    private long firstPosition = 0;
+    private int subscriberCount = 0;
+
+    public MailboxChangeLog(MailboxPath path, int maxEvents, Executor notificationExecutor) {
+        this.path = path;
+        this.maxEvents = maxEvents;
+        this.notificationExecutor = notificationExecutor;
+    }
+
+    @Override
+    public ListenerType getType() {
+        return ListenerType.MAILBOX;
+    }
+
+    @Override
+    public ExecutionMode getExecutionMode() {
+        return ExecutionMode.SYNCHRONOUS;
+    }
+
+    public void event(Event event) {
+        synchronized (this) {
+            if (event instanceof MailboxRenamed) {
+                path = ((MailboxRenamed) event).getNewPath();
+            }
+            events.addLast(event);
+            nextPosition++;
+            if (events.size() > maxEvents) {
+                events.removeFirst();
+                firstPosition++;
+            }
+        }
+        if (!changeListeners.isEmpty() && notificationPending.compareAndSet(false, true)) {
+            // Several events arriving meanwhile will be reported by a single notification
+            notificationExecutor.execute(notification);
+        }
+    }
+
+    /**
+     * Return the path of the mailbox, following renames
+     */
+    public MailboxPath getPath() {
+        return path;
+    }
+
+    /**
+     * Return a cursor positioned after the last recorded event
+     */
+    public synchronized Cursor cursor() {
+        return new Cursor(nextPosition);
+    }
+
+    /**
+     * Return true if events were recorded after the given cursor
+     */
+    public boolean hasChanges(Cursor cursor) {
+        return cursor.position != nextPosition;
+    }
+
+    /**
+     * Return the events recorded after the given cursor and move the cursor after them
+     */
+    public Changes read(Cursor cursor) {
+        if (!hasChanges(cursor)) {
+            return NO_CHANGES;
+        }
+        synchronized (this) {
+            boolean overflowed = cursor.position < firstPosition;
+            long start = Math.max(cursor.position, firstPosition);
+            List<Event> result = new ArrayList<Event>(events.subList((int) (start - firstPosition), events.size()));
+            cursor.position = nextPosition;
+            return new Changes(result, overflowed);
+        }
+    }
+
+    /**
+     * Register a callback which will be run, on the notification executor, when new events are recorded.
+     * Notifications of events arriving in a burst are coalesced.
+     */
+    public void addChangeListener(Runnable changeListener) {
+        changeListeners.add(changeListener);
+    }
+
+    public void removeChangeListener(Runnable changeListener) {
+        changeListeners.remove(changeListener);
+    }
+
+    synchronized int incrementSubscribers() {
+        return ++subscriberCount;
+    }
+
+    synchronized int decrementSubscribers() {
+        return --subscriberCount;
+    }
+}
@@ -0,0 +1,94 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imap.processor.base;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxPath;
+
+/**
+ * Holds one {@link MailboxChangeLog} per mailbox selected on this node.
+ * 
+ * The log registers a single listener on the {@link MailboxManager} when the
+ * mailbox is first subscribed to, and unregisters it once the last session
+ * unsubscribed.
+ */
+public class MailboxChangeLogRegistry {
+
+    public static final int DEFAULT_MAX_EVENTS = 1024;
+    public static final int DEFAULT_NOTIFICATION_POOL_SIZE = 2;
+
+    private final MailboxManager mailboxManager;
+    private final int maxEvents;
+    private final Executor notificationExecutor;
+    private final Map<MailboxPath, MailboxChangeLog> logs = new HashMap<MailboxPath, MailboxChangeLog>();
+
+    public MailboxChangeLogRegistry(MailboxManager mailboxManager, Executor notificationExecutor) {
+        this(mailboxManager, DEFAULT_MAX_EVENTS, notificationExecutor);
+    }
+
+    public MailboxChangeLogRegistry(MailboxManager mailboxManager, int maxEvents, Executor notificationExecutor) {
+        this.mailboxManager = mailboxManager;
+        this.maxEvents = maxEvents;
+        this.notificationExecutor = notificationExecutor;
+    }
+
+    /**
+     * Return the log of the given mailbox, registering it if needed. Each call
+     * should be matched by a call to {@link #unsubscribe(MailboxChangeLog, MailboxSession)}.
+     */
+    public synchronized MailboxChangeLog subscribe(MailboxPath path, MailboxSession session) throws MailboxException {
+        MailboxChangeLog log = getLog(path);
+        if (log == null) {
+            log = new MailboxChangeLog(path, maxEvents, notificationExecutor);
+            mailboxManager.addListener(path, log, session);
+            logs.put(path, log);
+        }
+        log.incrementSubscribers();
+        return log;
+    }
+
+    public synchronized void unsubscribe(MailboxChangeLog log, MailboxSession session) throws MailboxException {
+        if (log.decrementSubscribers() == 0) {
+            logs.values().remove(log);
+            mailboxManager.removeListener(log.getPath(), log, session);
+        }
+    }
+
+    private MailboxChangeLog getLog(MailboxPath path) {
+        MailboxChangeLog log = logs.get(path);
+        if (log != null && !log.getPath().equals(path)) {
+            // The mailbox was renamed meanwhile
+            logs.remove(path);
+            logs.put(log.getPath(), log);
+            return null;
+        }
+        return log;
+    }
+
+    synchronized int size() {
+        return logs.size();
+    }
+}
@@ -93,11 +93,29 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
     private MessageUid highestUid = MessageUid.MIN_VALUE;
 
     private int highestMsn = 0;
+
+    private final MailboxChangeLogRegistry changeLogRegistry;
+
+    private MailboxChangeLog changeLog;
+
+    private MailboxChangeLog.Cursor cursor;
+
+    private boolean catchingUp = false;
     
     public SelectedMailboxImpl(MailboxManager mailboxManager, ImapSession session, MailboxPath path) throws MailboxException {
+        this(mailboxManager, session, path, null);
+    }
+
+    /**
+     * When a {@link MailboxChangeLogRegistry} is given, the events of the mailbox are read lazily from the
+     * {@link MailboxChangeLog} shared by all the sessions of this node instead of being pushed to a
+     * listener per session.
+     */
+    public SelectedMailboxImpl(MailboxManager mailboxManager, ImapSession session, MailboxPath path, MailboxChangeLogRegistry changeLogRegistry) throws MailboxException {
         this.session = session;
         this.sessionId = ImapSessionUtils.getMailboxSession(session).getSessionId();
         this.mailboxManager = mailboxManager;
+        this.changeLogRegistry = changeLogRegistry;
         
         // Ignore events from our session
         setSilentFlagChanges(true);
@@ -118,7 +136,12 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
     private void init() throws MailboxException {
         MailboxSession mailboxSession = ImapSessionUtils.getMailboxSession(session);
         
-        mailboxManager.addListener(path, this, mailboxSession);
+        if (changeLogRegistry != null) {
+            changeLog = changeLogRegistry.subscribe(path, mailboxSession);
+            cursor = changeLog.cursor();
+        } else {
+            mailboxManager.addListener(path, this, mailboxSession);
+        }
 
         MessageResultIterator messages = mailboxManager.getMailbox(path, mailboxSession).getMessages(MessageRange.all(), FetchGroupImpl.MINIMAL, mailboxSession);
         synchronized (this) {
@@ -180,6 +203,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized Optional<MessageUid> getFirstUid() {
+        catchUp();
         if (uidToMsn.isEmpty()) {
             return Optional.absent();
         } else {
@@ -189,6 +213,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized Optional<MessageUid> getLastUid() {
+        catchUp();
         if (uidToMsn.isEmpty()) {
             return Optional.absent();
         } else {
@@ -202,7 +227,12 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
         MailboxSession mailboxSession = ImapSessionUtils.getMailboxSession(session);
 
         try {
-            mailboxManager.removeListener(path, this, mailboxSession);
+            if (changeLog != null) {
+                changeLogRegistry.unsubscribe(changeLog, mailboxSession);
+                changeLog = null;
+            } else {
+                mailboxManager.removeListener(path, this, mailboxSession);
+            }
         } catch (MailboxException e) {
             if (session.getLog().isInfoEnabled()) {
                 session.getLog().info("Unable to remove listener " + this + " from mailbox while closing it", e);
@@ -221,6 +251,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized  boolean removeRecent(MessageUid uid) {
+        catchUp();
         final boolean result = recentUids.remove(uid);
         if (result) {
             recentUidRemoved = true;
@@ -230,23 +261,27 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized boolean addRecent(MessageUid uid) {
+        catchUp();
         return recentUids.add(uid);
     }
 
     @Override
     public synchronized Collection<MessageUid> getRecent() {
+        catchUp();
         checkExpungedRecents();
         return new ArrayList<MessageUid>(recentUids);
     }
 
     @Override
     public synchronized int recentCount() {
+        catchUp();
         checkExpungedRecents();
         return recentUids.size();
     }
 
     @Override
     public synchronized MailboxPath getPath() {
+        catchUp();
         return path;
     }
 
@@ -258,11 +293,13 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized boolean isRecent(MessageUid uid) {
+        catchUp();
         return recentUids.contains(uid);
     }
 
     @Override
     public synchronized boolean isRecentUidRemoved() {
+        catchUp();
         return recentUidRemoved;
     }
 
@@ -281,6 +318,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized  int remove(MessageUid uid) {
+        catchUp();
         final int result = msn(uid);
         expunge(uid);
         return result;
@@ -322,6 +360,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      *         false otherwise
      */
     public synchronized final boolean isSilentFlagChanges() {
+        catchUp();
         return silentFlagChanges;
     }
 
@@ -333,6 +372,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      *            ignored, false otherwise
      */
     public synchronized final void setSilentFlagChanges(boolean silentFlagChanges) {
+        catchUp();
         this.silentFlagChanges = silentFlagChanges;
     }
 
@@ -343,6 +383,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      */
     
     public synchronized final boolean isSizeChanged() {
+        catchUp();
         return sizeChanged;
     }
 
@@ -354,6 +395,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      */
     
     public synchronized final boolean isDeletedByOtherSession() {
+        catchUp();
         return isDeletedByOtherSession;
     }
 
@@ -362,6 +404,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      */
     @Override
     public synchronized Collection<MessageUid> flagUpdateUids() {
+        catchUp();
         // copy the TreeSet to fix possible
         // java.util.ConcurrentModificationException
         // See IMAP-278
@@ -371,6 +414,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized Collection<MessageUid> expungedUids() {
+        catchUp();
         // copy the TreeSet to fix possible
         // java.util.ConcurrentModificationException
         // See IMAP-278
@@ -383,11 +427,13 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     
     public synchronized Flags getApplicableFlags() {
+        catchUp();
         return applicableFlags;
     }
 
     
     public synchronized boolean hasNewApplicableFlags() {
+        catchUp();
         return applicableFlagsChanged;
     }
 
@@ -398,9 +444,66 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     
     public synchronized void event(Event event) {
+        applyEvent(event);
+    }
+
+    /**
+     * Apply the events recorded in the shared {@link MailboxChangeLog} since the last call
+     */
+    private void catchUp() {
+        if (changeLog == null || catchingUp || !changeLog.hasChanges(cursor)) {
+            return;
+        }
+        catchingUp = true;
+        try {
+            MailboxChangeLog.Changes changes = changeLog.read(cursor);
+            if (changes.isOverflowed()) {
+                resynchronize();
+            }
+            for (Event event : changes.getEvents()) {
+                applyEvent(event);
+            }
+        } finally {
+            catchingUp = false;
+        }
+    }
+
+    /**
+     * Some events were discarded from the shared {@link MailboxChangeLog} before we read them, so compare
+     * our state with the mailbox content. All the remaining messages are reported as having updated flags.
+     */
+    private void resynchronize() {
+        MailboxSession mailboxSession = ImapSessionUtils.getMailboxSession(session);
+        try {
+            MessageResultIterator messages = mailboxManager.getMailbox(path, mailboxSession).getMessages(MessageRange.all(), FetchGroupImpl.MINIMAL, mailboxSession);
+            Set<MessageUid> currentUids = new TreeSet<MessageUid>();
+            while (messages.hasNext()) {
+                MessageResult mr = messages.next();
+                currentUids.add(mr.getUid());
+                applicableFlags.add(mr.getFlags());
+                if (!uidToMsn.containsKey(mr.getUid())) {
+                    add(mr.getUid());
+                    sizeChanged = true;
+                }
+            }
+            applicableFlags.remove(Flags.Flag.RECENT);
+            for (MessageUid uid : uidToMsn.keySet()) {
+                if (currentUids.contains(uid)) {
+                    flagUpdateUids.add(uid);
+                } else {
+                    expungedUids.add(uid);
+                }
+            }
+        } catch (MailboxException e) {
+            if (session.getLog().isInfoEnabled()) {
+                session.getLog().info("Unable to resynchronize selected mailbox " + path, e);
+            }
+        }
+    }
 
+    private void applyEvent(Event event) {
         // Check if the event was for the mailbox we are observing
-        if (event.getMailboxPath().equals(getPath())) {
+        if (event.getMailboxPath().equals(path)) {
             final long eventSessionId = event.getSession().getSessionId();
             if (event instanceof MessageEvent) {
                 final MessageEvent messageEvent = (MessageEvent) event;
@@ -484,6 +587,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized int msn(MessageUid uid) {
+        catchUp();
         Integer msn = uidToMsn.get(uid);
         if (msn != null) {
             return msn.intValue();
@@ -494,6 +598,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     @Override
     public synchronized Optional<MessageUid> uid(int msn) {
+        catchUp();
         if (msn == -1) {
             return Optional.absent();
         }
@@ -507,6 +612,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     
     public synchronized long existsCount() {
+        catchUp();
         return uidToMsn.size();
     }
     
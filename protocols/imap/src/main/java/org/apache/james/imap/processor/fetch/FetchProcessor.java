@@ -51,6 +51,8 @@ import org.apache.james.mailbox.model.MessageResult.MimePath;
 import org.apache.james.mailbox.model.MessageResultIterator;
 import org.apache.james.metrics.api.MetricFactory;
 
+import com.google.common.collect.ImmutableList;
+
 public class FetchProcessor extends AbstractMailboxProcessor<FetchRequest> {
 
     public FetchProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory,
@@ -122,7 +124,7 @@ public class FetchProcessor extends AbstractMailboxProcessor<FetchRequest> {
             
             // Don't send expunge responses if FETCH is used to trigger this
             // processor. See IMAP-284
-            final boolean omitExpunged = (!useUids);
+            final boolean omitExpunged = (!useUids) || ImapSessionUtils.isExpungeResponsesDeferred(session);
             unsolicitedResponses(session, responder, omitExpunged, useUids);
             okComplete(command, tag, responder);
         } catch (MessageRangeException e) {
@@ -158,41 +160,57 @@ public class FetchProcessor extends AbstractMailboxProcessor<FetchRequest> {
         FetchGroup resultToFetch = getFetchGroup(fetch);
 
         for (MessageRange range : ranges) {
-            MessageResultIterator messages = mailbox.getMessages(range, resultToFetch, mailboxSession);
-            while (messages.hasNext()) {
-                final MessageResult result = messages.next();
+            for (MessageRange fetchedRange : rangesToFetch(mailbox, range, fetch, mailboxSession)) {
+                processMessageRange(session, mailbox, fetchedRange, fetch, useUids, mailboxSession, responder, builder, resultToFetch);
+            }
+        }
+    }
 
-                //skip unchanged messages - this should be filtered at the mailbox level to take advantage of indexes
-                if (fetch.isModSeq() && result.getModSeq() <= fetch.getChangedSince()) {
-                    continue;
-                }
+    /**
+     * When CHANGEDSINCE is given, restrict the range to the messages changed since the given mod-sequence, so that
+     * unchanged messages do not need to be loaded at all.
+     */
+    private List<MessageRange> rangesToFetch(MessageManager mailbox, MessageRange range, FetchData fetch, MailboxSession mailboxSession) throws MailboxException {
+        if (fetch.getChangedSince() == -1) {
+            return ImmutableList.of(range);
+        }
+        return MessageRange.toRanges(mailbox.getUidsChangedSince(range, fetch.getChangedSince(), mailboxSession));
+    }
 
-                try {
-                    final FetchResponse response = builder.build(fetch, result, mailbox, session, useUids);
-                    responder.respond(response);
-                } catch (MessageRangeException e) {
-                    // we can't for whatever reason find the message so
-                    // just skip it and log it to debug
-                    if (session.getLog().isDebugEnabled()) {
-                        session.getLog().debug("Unable to find message with uid " + result.getUid(), e);
-                    }
-                } catch (MailboxException e) {
-                    // we can't for whatever reason find parse all requested parts of the message. This may because it was deleted while try to access the parts.
-                    // So we just skip it 
-                    //
-                    // See IMAP-347
-                    if (session.getLog().isDebugEnabled()) {
-                        session.getLog().debug("Unable to fetch message with uid " + result.getUid() + ", so skip it", e);
-                    }
-                }
+    private void processMessageRange(ImapSession session, MessageManager mailbox, MessageRange range, FetchData fetch, boolean useUids, MailboxSession mailboxSession, Responder responder, FetchResponseBuilder builder, FetchGroup resultToFetch) throws MailboxException {
+        MessageResultIterator messages = mailbox.getMessages(range, resultToFetch, mailboxSession);
+        while (messages.hasNext()) {
+            final MessageResult result = messages.next();
+
+            //skip unchanged messages - the mailbox already restricted the range to changed messages, this only guards against concurrent updates
+            if (fetch.isModSeq() && result.getModSeq() <= fetch.getChangedSince()) {
+                continue;
             }
 
-            // Throw the exception if we received one
-            if (messages.getException() != null) {
-                throw messages.getException();
+            try {
+                final FetchResponse response = builder.build(fetch, result, mailbox, session, useUids);
+                responder.respond(response);
+            } catch (MessageRangeException e) {
+                // we can't for whatever reason find the message so
+                // just skip it and log it to debug
+                if (session.getLog().isDebugEnabled()) {
+                    session.getLog().debug("Unable to find message with uid " + result.getUid(), e);
+                }
+            } catch (MailboxException e) {
+                // we can't for whatever reason find parse all requested parts of the message. This may because it was deleted while try to access the parts.
+                // So we just skip it 
+                //
+                // See IMAP-347
+                if (session.getLog().isDebugEnabled()) {
+                    session.getLog().debug("Unable to fetch message with uid " + result.getUid() + ", so skip it", e);
+                }
             }
         }
 
+        // Throw the exception if we received one
+        if (messages.getException() != null) {
+            throw messages.getException();
+        }
     }
 
     protected FetchGroup getFetchGroup(FetchData fetch) {
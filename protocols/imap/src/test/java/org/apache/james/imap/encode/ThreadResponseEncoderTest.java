@@ -0,0 +1,90 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.imap.encode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.james.imap.api.ImapMessage;
+import org.apache.james.imap.encode.base.ByteImapResponseWriter;
+import org.apache.james.imap.encode.base.ImapResponseComposerImpl;
+import org.apache.james.imap.message.response.SearchResponse;
+import org.apache.james.imap.message.response.ThreadResponse;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class ThreadResponseEncoderTest {
+
+    private ByteImapResponseWriter writer;
+    private ImapResponseComposer composer;
+    private ThreadResponseEncoder encoder;
+    private Mockery context = new JUnit4Mockery();
+
+    @Before
+    public void setUp() throws Exception {
+        writer = new ByteImapResponseWriter();
+        composer = new ImapResponseComposerImpl(writer);
+        encoder = new ThreadResponseEncoder(context.mock(ImapEncoder.class));
+    }
+
+    @Test
+    public void isAcceptableShouldOnlyAcceptThreadResponses() {
+        assertThat(encoder.isAcceptable(new ThreadResponse(ImmutableList.<ThreadResponse.Thread>of()))).isTrue();
+        assertThat(encoder.isAcceptable(new SearchResponse(new long[0], null))).isFalse();
+        assertThat(encoder.isAcceptable(context.mock(ImapMessage.class))).isFalse();
+    }
+
+    @Test
+    public void encodeShouldWriteEmptyResponse() throws Exception {
+        encoder.encode(new ThreadResponse(ImmutableList.<ThreadResponse.Thread>of()), composer, new FakeImapSession());
+
+        assertThat(writer.getString()).isEqualTo("* THREAD\r\n");
+    }
+
+    @Test
+    public void encodeShouldWriteRfc5256Example() throws Exception {
+        ThreadResponse response = new ThreadResponse(ImmutableList.of(
+            thread(2),
+            thread(3, thread(6, thread(4, thread(23)), thread(44, thread(7, thread(96)))))));
+
+        encoder.encode(response, composer, new FakeImapSession());
+
+        assertThat(writer.getString()).isEqualTo("* THREAD (2)(3 6 (4 23)(44 7 96))\r\n");
+    }
+
+    @Test
+    public void encodeShouldWriteSiblingsOfMissingParent() throws Exception {
+        ThreadResponse response = new ThreadResponse(ImmutableList.of(
+            new ThreadResponse.Thread(null, ImmutableList.of(thread(3), thread(5))),
+            thread(7)));
+
+        encoder.encode(response, composer, new FakeImapSession());
+
+        assertThat(writer.getString()).isEqualTo("* THREAD ((3)(5))(7)\r\n");
+    }
+
+    private ThreadResponse.Thread thread(long id, ThreadResponse.Thread... children) {
+        return new ThreadResponse.Thread(id, ImmutableList.copyOf(children));
+    }
+}
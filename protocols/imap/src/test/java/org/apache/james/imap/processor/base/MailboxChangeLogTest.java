@@ -0,0 +1,145 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.imap.processor.base;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.mock.MockMailboxSession;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MailboxChangeLogTest {
+
+    private static final MailboxPath PATH = new MailboxPath("#private", "user", "INBOX");
+
+    private MailboxSession session;
+    private List<Runnable> pendingNotifications;
+    private MailboxChangeLog testee;
+
+    @Before
+    public void setUp() {
+        session = new MockMailboxSession("user");
+        pendingNotifications = new ArrayList<Runnable>();
+        testee = new MailboxChangeLog(PATH, 2, new Executor() {
+            public void execute(Runnable command) {
+                pendingNotifications.add(command);
+            }
+        });
+    }
+
+    @Test
+    public void readShouldReturnEventsRecordedAfterTheCursor() {
+        MailboxListener.Event before = event();
+        MailboxListener.Event after = event();
+        testee.event(before);
+        MailboxChangeLog.Cursor cursor = testee.cursor();
+        testee.event(after);
+
+        MailboxChangeLog.Changes changes = testee.read(cursor);
+
+        assertThat(changes.getEvents()).containsExactly(after);
+        assertThat(changes.isOverflowed()).isFalse();
+    }
+
+    @Test
+    public void readShouldMoveTheCursor() {
+        MailboxChangeLog.Cursor cursor = testee.cursor();
+        testee.event(event());
+        testee.read(cursor);
+
+        assertThat(testee.hasChanges(cursor)).isFalse();
+        assertThat(testee.read(cursor).getEvents()).isEmpty();
+    }
+
+    @Test
+    public void readShouldReportOverflowWhenEventsWereDiscarded() {
+        MailboxChangeLog.Cursor cursor = testee.cursor();
+        MailboxListener.Event second = event();
+        MailboxListener.Event third = event();
+        testee.event(event());
+        testee.event(second);
+        testee.event(third);
+
+        MailboxChangeLog.Changes changes = testee.read(cursor);
+
+        assertThat(changes.isOverflowed()).isTrue();
+        assertThat(changes.getEvents()).containsExactly(second, third);
+    }
+
+    @Test
+    public void renameShouldUpdateThePath() {
+        final MailboxPath newPath = new MailboxPath("#private", "user", "other");
+        testee.event(new MailboxListener.MailboxRenamed(session, PATH) {
+            @Override
+            public MailboxPath getNewPath() {
+                return newPath;
+            }
+        });
+
+        assertThat(testee.getPath()).isEqualTo(newPath);
+    }
+
+    @Test
+    public void notificationsShouldBeCoalesced() {
+        final AtomicInteger notificationCount = new AtomicInteger();
+        testee.addChangeListener(new Runnable() {
+            public void run() {
+                notificationCount.incrementAndGet();
+            }
+        });
+
+        testee.event(event());
+        testee.event(event());
+        for (Runnable notification : pendingNotifications) {
+            notification.run();
+        }
+
+        assertThat(pendingNotifications).hasSize(1);
+        assertThat(notificationCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void removedChangeListenerShouldNotBeNotified() {
+        Runnable changeListener = new Runnable() {
+            public void run() {
+            }
+        };
+        testee.addChangeListener(changeListener);
+        testee.removeChangeListener(changeListener);
+
+        testee.event(event());
+
+        assertThat(pendingNotifications).isEmpty();
+    }
+
+    private MailboxListener.Event event() {
+        return new MailboxListener.Event(session, PATH) {
+        };
+    }
+}
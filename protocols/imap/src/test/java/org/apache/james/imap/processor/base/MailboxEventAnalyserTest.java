@@ -33,6 +33,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.mail.Flags;
 
@@ -69,10 +70,12 @@ import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.mailbox.model.MessageResultIterator;
+import org.apache.james.mailbox.model.MessageThread;
 import org.apache.james.mailbox.model.MimeDescriptor;
 import org.apache.james.mailbox.model.MultimailboxesSearchQuery;
 import org.apache.james.mailbox.model.SearchQuery;
 import org.apache.james.mailbox.model.TestId;
+import org.apache.james.mailbox.model.ThreadAlgorithm;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
 import org.junit.Test;
@@ -80,6 +83,7 @@ import org.slf4j.Logger;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 public class MailboxEventAnalyserTest {
 
@@ -198,6 +202,21 @@ public class MailboxEventAnalyserTest {
                     throw new UnsupportedOperationException("Not implemented");
                 }
 
+                @Override
+                public List<MessageThread> thread(SearchQuery searchQuery, ThreadAlgorithm algorithm, MailboxSession mailboxSession) throws MailboxException {
+                    throw new UnsupportedOperationException("Not implemented");
+                }
+
+                @Override
+                public List<MessageUid> getUidsChangedSince(MessageRange set, long modSeq, MailboxSession mailboxSession) throws MailboxException {
+                    throw new UnsupportedOperationException("Not implemented");
+                }
+
+                @Override
+                public Optional<List<MessageUid>> getUidsExpungedSince(MessageRange set, long modSeq, MailboxSession mailboxSession) throws MailboxException {
+                    throw new UnsupportedOperationException("Not implemented");
+                }
+
                 @Override
                 public Iterator<MessageUid> expunge(MessageRange set, MailboxSession mailboxSession) throws MailboxException {
                     throw new UnsupportedOperationException("Not implemented");
@@ -752,4 +771,52 @@ public class MailboxEventAnalyserTest {
         assertNotNull(iterator);
         assertFalse(iterator.hasNext());
     }
+
+    @Test
+    public void sizeChangeRecordedInSharedChangeLogShouldBeReported() throws Exception {
+        MyMailboxSession mSession = new MyMailboxSession(BASE_SESSION_ID);
+        MyImapSession imapsession = new MyImapSession(mSession);
+        MailboxChangeLogRegistry registry = new MailboxChangeLogRegistry(mockManager, DIRECT_EXECUTOR);
+        SelectedMailboxImpl analyser = new SelectedMailboxImpl(mockManager, imapsession, mailboxPath, registry);
+
+        MailboxChangeLog changeLog = registry.subscribe(mailboxPath, mSession);
+        changeLog.event(new FakeMailboxListenerAdded(mSession, ImmutableList.of(MessageUid.of(11)), mailboxPath));
+
+        assertTrue(analyser.isSizeChanged());
+        assertEquals(2, analyser.existsCount());
+    }
+
+    @Test
+    public void overflowedChangeLogShouldTriggerResynchronization() throws Exception {
+        MyMailboxSession mSession = new MyMailboxSession(BASE_SESSION_ID);
+        MyImapSession imapsession = new MyImapSession(mSession);
+        MailboxChangeLogRegistry registry = new MailboxChangeLogRegistry(mockManager, 1, DIRECT_EXECUTOR);
+        SelectedMailboxImpl analyser = new SelectedMailboxImpl(mockManager, imapsession, mailboxPath, registry);
+
+        MailboxChangeLog changeLog = registry.subscribe(mailboxPath, mSession);
+        changeLog.event(new FakeMailboxListenerAdded(mSession, ImmutableList.of(MessageUid.of(11)), mailboxPath));
+        changeLog.event(new FakeMailboxListenerAdded(mSession, ImmutableList.of(MessageUid.of(12)), mailboxPath));
+
+        assertTrue(analyser.isSizeChanged());
+        assertEquals(ImmutableSet.of(MessageUid.of(1)), ImmutableSet.copyOf(analyser.flagUpdateUids()));
+        assertEquals(2, analyser.msn(MessageUid.of(12)));
+    }
+
+    @Test
+    public void deselectShouldReleaseSharedChangeLog() throws Exception {
+        MyMailboxSession mSession = new MyMailboxSession(BASE_SESSION_ID);
+        MyImapSession imapsession = new MyImapSession(mSession);
+        MailboxChangeLogRegistry registry = new MailboxChangeLogRegistry(mockManager, DIRECT_EXECUTOR);
+        SelectedMailboxImpl analyser = new SelectedMailboxImpl(mockManager, imapsession, mailboxPath, registry);
+
+        analyser.deselect();
+
+        assertEquals(0, registry.size());
+    }
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
 }
@@ -20,7 +20,9 @@ package org.apache.james.protocols.smtp;
 
 import java.util.List;
 
+import org.apache.james.protocols.api.ProtocolSession.State;
 import org.apache.james.protocols.netty.HandlerConstants;
+import org.apache.james.protocols.smtp.core.DataCmdHandler;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -33,10 +35,27 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Splitter;
 import com.google.common.collect.FluentIterable;
 
+/**
+ * Splits the SMTP commands in lines, and the message content in larger frames:
+ * <ul>
+ * <li>the body of a DATA command is split in blocks of complete lines. A line starting with a dot,
+ * and so the end of the data, is still passed alone to the line handlers.</li>
+ * <li>the chunks of BDAT commands are passed as they are received, without any line processing.</li>
+ * </ul>
+ */
 public class AllButStartTlsDelimiterChannelHandler extends DelimiterBasedFrameDecoder {
 
     private static final String STARTTLS = "starttls";
+    private static final String BDAT = "bdat ";
+    private static final int MAX_BLOCK_LENGTH = 64 * 1024;
+    private static final byte DOT = '.';
+    private static final byte LF = '\n';
+
     private final ChannelPipeline pipeline;
+    private Object dataTransfer;
+    private Object completedDataTransfer;
+    private boolean readingBody;
+    private long chunkRemaining;
 
     public AllButStartTlsDelimiterChannelHandler(ChannelPipeline pipeline, int maxFrameLength, boolean stripDelimiter, ChannelBuffer[] delimiters) {
         super(maxFrameLength, stripDelimiter, delimiters);
@@ -47,13 +66,104 @@ public class AllButStartTlsDelimiterChannelHandler extends DelimiterBasedFrameDe
     protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
         SMTPSession session = (SMTPSession) pipeline.getContext(HandlerConstants.CORE_HANDLER).getAttachment();
 
-        if (session.needsCommandInjectionDetection()) {
+        if (chunkRemaining > 0) {
+            return decodeChunk(buffer);
+        }
+        if (session != null) {
+            Object transfer = session.getAttachment(DataCmdHandler.DATA_TRANSFER, State.Transaction);
+            if (transfer != null && transfer != completedDataTransfer) {
+                return decodeData(ctx, channel, buffer, transfer);
+            }
+            if (session.getAttachment(DataCmdHandler.CHUNKING_SUPPORTED, State.Connection) == null) {
+                session.setAttachment(DataCmdHandler.CHUNKING_SUPPORTED, Boolean.TRUE, State.Connection);
+            }
+        }
+
+        if (session != null && session.needsCommandInjectionDetection()) {
             String trimedLowerCasedInput = readAll(buffer).trim().toLowerCase();
             if (hasCommandInjection(trimedLowerCasedInput)) {
                 throw new CommandInjectionDetectedException();
             }
         }
-        return super.decode(ctx, channel, buffer);
+        Object frame = super.decode(ctx, channel, buffer);
+        if (frame != null) {
+            chunkRemaining = chunkSize((ChannelBuffer) frame);
+        }
+        return frame;
+    }
+
+    private Object decodeChunk(ChannelBuffer buffer) {
+        int length = (int) Math.min(buffer.readableBytes(), Math.min(chunkRemaining, MAX_BLOCK_LENGTH));
+        if (length == 0) {
+            return null;
+        }
+        chunkRemaining -= length;
+        return buffer.readBytes(length);
+    }
+
+    private Object decodeData(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer, Object transfer) throws Exception {
+        if (transfer != dataTransfer) {
+            dataTransfer = transfer;
+            readingBody = false;
+        }
+        if (readingBody) {
+            ChannelBuffer block = readBlock(buffer);
+            if (block != null) {
+                return block;
+            }
+        }
+        ChannelBuffer line = (ChannelBuffer) super.decode(ctx, channel, buffer);
+        if (line != null) {
+            if (isEndOfData(line)) {
+                completedDataTransfer = transfer;
+            } else if (isEmptyLine(line)) {
+                readingBody = true;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Read the complete lines at the beginning of the buffer, up to the first line starting with a dot
+     */
+    private ChannelBuffer readBlock(ChannelBuffer buffer) {
+        int start = buffer.readerIndex();
+        int limit = Math.min(buffer.writerIndex(), start + MAX_BLOCK_LENGTH);
+        int end = start;
+        while (end < limit && buffer.getByte(end) != DOT) {
+            int lineFeed = buffer.indexOf(end, limit, LF);
+            if (lineFeed == -1) {
+                break;
+            }
+            end = lineFeed + 1;
+        }
+        if (end == start) {
+            return null;
+        }
+        return buffer.readBytes(end - start);
+    }
+
+    private boolean isEndOfData(ChannelBuffer line) {
+        int start = line.readerIndex();
+        int length = line.readableBytes();
+        return line.getByte(start) == DOT
+            && ((length == 3 && line.getByte(start + 1) == '\r') || length == 2)
+            && line.getByte(start + length - 1) == LF;
+    }
+
+    private boolean isEmptyLine(ChannelBuffer line) {
+        int start = line.readerIndex();
+        int length = line.readableBytes();
+        return (length == 2 && line.getByte(start) == '\r') || length == 1;
+    }
+
+    private long chunkSize(ChannelBuffer line) {
+        if (line.readableBytes() <= BDAT.length()
+                || !line.toString(line.readerIndex(), BDAT.length(), Charsets.US_ASCII).toLowerCase().equals(BDAT)) {
+            return 0;
+        }
+        String argument = line.toString(line.readerIndex() + BDAT.length(), line.readableBytes() - BDAT.length(), Charsets.US_ASCII);
+        return Math.max(DataCmdHandler.chunkSize(argument), 0);
     }
 
     private String readAll(ChannelBuffer buffer) {
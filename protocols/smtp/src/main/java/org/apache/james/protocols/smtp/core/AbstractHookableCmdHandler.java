@@ -20,12 +20,18 @@
 package org.apache.james.protocols.smtp.core;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import org.apache.james.metrics.api.MetricFactory;
-import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.api.Timer;
 import org.apache.james.protocols.api.Request;
 import org.apache.james.protocols.api.Response;
 import org.apache.james.protocols.api.handler.CommandHandler;
@@ -43,7 +49,11 @@ import org.apache.james.protocols.smtp.hook.HookReturnCode;
  */
 public abstract class AbstractHookableCmdHandler<Hook extends org.apache.james.protocols.smtp.hook.Hook> implements CommandHandler<SMTPSession>, ExtensibleHandler {
 
+    public static final String SMTP_METRIC_NAME = "SMTP";
+    public static final String COMMAND_TAG = "command";
+
     private final MetricFactory metricFactory;
+    private volatile Map<String, Timer> commandTimers;
     private List<Hook> hooks;
     private List<HookResultHook> rHooks;
 
@@ -59,7 +69,8 @@ public abstract class AbstractHookableCmdHandler<Hook extends org.apache.james.p
      * #onCommand(org.apache.james.protocols.api.ProtocolSession, Request)
      */
     public Response onCommand(SMTPSession session, Request request) {
-        TimeMetric timeMetric = metricFactory.timer("SMTP-" + request.getCommand().toLowerCase());
+        Timer timer = commandTimer(request.getCommand());
+        long start = System.nanoTime();
         String command = request.getCommand();
         String parameters = request.getArgument();
         Response response = doFilterChecks(session, command, parameters);
@@ -77,9 +88,35 @@ public abstract class AbstractHookableCmdHandler<Hook extends org.apache.james.p
                 return response;
             }
         } finally {
-            timeMetric.stopAndPublish();
+            timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+    }
+
+    /**
+     * Returns the timer of the given command. Timers of the implemented
+     * commands are bound on first use, so that timing a command does not
+     * build any metric name.
+     */
+    private Timer commandTimer(String command) {
+        Map<String, Timer> timers = commandTimers;
+        if (timers == null) {
+            Map<String, Timer> implTimers = new TreeMap<String, Timer>(String.CASE_INSENSITIVE_ORDER);
+            for (String implCommand : getImplCommands()) {
+                implTimers.put(implCommand, bindTimer(implCommand));
+            }
+            timers = Collections.unmodifiableMap(implTimers);
+            commandTimers = timers;
         }
+        Timer timer = timers.get(command);
+        if (timer == null) {
+            return bindTimer(command);
+        }
+        return timer;
+    }
 
+    private Timer bindTimer(String command) {
+        return metricFactory.timer(MetricName.of(SMTP_METRIC_NAME).tag(COMMAND_TAG, command.toLowerCase(Locale.US)));
     }
 
     /**
@@ -25,13 +25,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.james.metrics.api.MetricFactory;
-import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.api.Timer;
 import org.apache.james.protocols.api.ProtocolSession;
 import org.apache.james.protocols.api.Request;
 import org.apache.james.protocols.api.Response;
@@ -45,19 +48,28 @@ import org.apache.james.protocols.smtp.MailEnvelopeImpl;
 import org.apache.james.protocols.smtp.SMTPResponse;
 import org.apache.james.protocols.smtp.SMTPRetCode;
 import org.apache.james.protocols.smtp.SMTPSession;
+import org.apache.james.protocols.smtp.core.esmtp.EhloExtension;
 import org.apache.james.protocols.smtp.dsn.DSNStatus;
 
 
 /**
-  * handles DATA command
+  * handles DATA command, and the BDAT command of the CHUNKING extension (RFC 3030)
  */
-public class DataCmdHandler implements CommandHandler<SMTPSession>, ExtensibleHandler {
+public class DataCmdHandler implements CommandHandler<SMTPSession>, ExtensibleHandler, EhloExtension {
 
     private static final Response NO_RECIPIENT = new SMTPResponse(SMTPRetCode.BAD_SEQUENCE, DSNStatus.getStatus(DSNStatus.PERMANENT,DSNStatus.DELIVERY_OTHER)+" No recipients specified").immutable();
     private static final Response NO_SENDER = new SMTPResponse(SMTPRetCode.BAD_SEQUENCE, DSNStatus.getStatus(DSNStatus.PERMANENT,DSNStatus.DELIVERY_OTHER)+" No sender specified").immutable();
     private static final Response UNEXPECTED_ARG = new SMTPResponse(SMTPRetCode.SYNTAX_ERROR_COMMAND_UNRECOGNIZED, DSNStatus.getStatus(DSNStatus.PERMANENT,DSNStatus.DELIVERY_INVALID_ARG)+" Unexpected argument provided with DATA command").immutable();
     private static final Response DATA_READY = new SMTPResponse(SMTPRetCode.DATA_READY, "Ok Send data ending with <CRLF>.<CRLF>").immutable();
-    private static final Collection<String> COMMANDS = Collections.unmodifiableCollection(Arrays.asList("DATA"));
+    private static final Response CHUNKING_NOT_SUPPORTED = new SMTPResponse(SMTPRetCode.UNIMPLEMENTED_COMMAND, DSNStatus.getStatus(DSNStatus.PERMANENT,DSNStatus.SYSTEM_NOT_CAPABLE)+" BDAT is not supported on this connection").immutable();
+    private static final Response INVALID_CHUNK_SIZE = new SMTPResponse(SMTPRetCode.SYNTAX_ERROR_ARGUMENTS, DSNStatus.getStatus(DSNStatus.PERMANENT,DSNStatus.DELIVERY_INVALID_ARG)+" Invalid BDAT chunk size").immutable();
+    private static final Response ERROR_PROCESSING_CHUNK = new SMTPResponse(SMTPRetCode.LOCAL_ERROR, DSNStatus.getStatus(DSNStatus.TRANSIENT,DSNStatus.UNDEFINED_STATUS)+" Error processing message").immutable();
+    private static final String DATA = "DATA";
+    private static final String BDAT = "BDAT";
+    private static final String LAST = "LAST";
+    private static final Collection<String> COMMANDS = Collections.unmodifiableCollection(Arrays.asList(DATA, BDAT));
+    private static final List<String> ESMTP_FEATURES = Collections.unmodifiableList(Arrays.asList("CHUNKING"));
+    private static final byte[] TERMINATOR = new byte[] { '.', '\r', '\n' };
 
     public static final class DataConsumerLineHandler implements LineHandler<SMTPSession> {
 
@@ -110,14 +122,211 @@ public class DataCmdHandler implements CommandHandler<SMTPSession>, ExtensibleHa
 
         }
     }
+
+    /**
+     * Content of a message received with BDAT. The chunks are passed to the {@link DataLineFilter}'s the same
+     * way as the content of a DATA command: the header lines one by one, then the body in blocks of complete
+     * lines, each line starting with a dot being passed alone and dot-stuffed.
+     */
+    static final class ChunkedMessage {
+
+        private static final int MAX_LINE_LENGTH = 8192;
+
+        private final LineHandler<SMTPSession> lineHandler;
+        private byte[] pending = new byte[MAX_LINE_LENGTH];
+        private int pendingLength = 0;
+        private boolean headersComplete = false;
+        private boolean lineStart = true;
+        private boolean ended = false;
+        private Response failure;
+
+        ChunkedMessage(LineHandler<SMTPSession> lineHandler) {
+            this.lineHandler = lineHandler;
+        }
+
+        /**
+         * Return the response which ended the message before its last chunk, if any
+         */
+        Response getFailure() {
+            return failure;
+        }
+
+        Response append(SMTPSession session, ByteBuffer chunk) {
+            if (ended) {
+                return failure;
+            }
+            int length = chunk.remaining();
+            if (pendingLength + length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+            }
+            chunk.get(pending, pendingLength, length);
+            pendingLength += length;
+            failure = process(session, false);
+            return failure;
+        }
+
+        Response finish(SMTPSession session) {
+            if (ended) {
+                return failure;
+            }
+            Response response = process(session, true);
+            if (response == null) {
+                response = lineHandler.onLine(session, ByteBuffer.wrap(TERMINATOR));
+            }
+            ended = true;
+            return response;
+        }
+
+        private Response process(SMTPSession session, boolean last) {
+            int position = 0;
+            Response response = null;
+            while (response == null && position < pendingLength) {
+                int end = nextLine(position);
+                boolean dotted = lineStart && pending[position] == '.';
+                if (end == -1) {
+                    // incomplete line, only passed on when it can not grow anymore
+                    if (last || pendingLength - position >= MAX_LINE_LENGTH) {
+                        response = deliver(session, position, pendingLength, dotted);
+                        lineStart = false;
+                        position = pendingLength;
+                    }
+                    break;
+                }
+                if (lineStart && headersComplete && !dotted) {
+                    while (end < pendingLength && pending[end] != '.') {
+                        int next = nextLine(end);
+                        if (next == -1) {
+                            break;
+                        }
+                        end = next;
+                    }
+                } else if (lineStart && !headersComplete && (end - position == 1 || (end - position == 2 && pending[position] == '\r'))) {
+                    headersComplete = true;
+                }
+                response = deliver(session, position, end, dotted);
+                lineStart = true;
+                position = end;
+            }
+            System.arraycopy(pending, position, pending, 0, pendingLength - position);
+            pendingLength -= position;
+            if (response != null) {
+                ended = true;
+            }
+            return response;
+        }
+
+        private int nextLine(int from) {
+            for (int i = from; i < pendingLength; i++) {
+                if (pending[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private Response deliver(SMTPSession session, int from, int to, boolean dotStuffing) {
+            ByteBuffer line;
+            if (dotStuffing) {
+                byte[] stuffed = new byte[to - from + 1];
+                stuffed[0] = '.';
+                System.arraycopy(pending, from, stuffed, 1, to - from);
+                line = ByteBuffer.wrap(stuffed);
+            } else {
+                // the filters may use the whole backing array of the buffer
+                line = ByteBuffer.wrap(Arrays.copyOfRange(pending, from, to));
+            }
+            return lineHandler.onLine(session, line);
+        }
+    }
+
+    /**
+     * Receives the bytes of a BDAT chunk, then answers the command
+     */
+    static final class ChunkLineHandler implements LineHandler<SMTPSession> {
+
+        private final ChunkedMessage message;
+        private final long size;
+        private final boolean last;
+        private Response failure;
+        private long remaining;
+
+        ChunkLineHandler(ChunkedMessage message, Response failure, long size, boolean last) {
+            this.message = message;
+            this.failure = failure;
+            this.size = size;
+            this.last = last;
+            this.remaining = size;
+        }
+
+        public Response onLine(SMTPSession session, ByteBuffer chunk) {
+            int handlerCount = session.getPushedLineHandlerCount();
+            remaining -= chunk.remaining();
+            if (failure == null) {
+                failure = message.append(session, chunk);
+            }
+            Response response = null;
+            if (remaining <= 0) {
+                response = complete(session);
+            }
+            // the message handler pops the line handler when it ends the message
+            boolean popped = session.getPushedLineHandlerCount() < handlerCount;
+            if (remaining > 0 && popped) {
+                session.pushLineHandler(this);
+            } else if (remaining <= 0 && !popped) {
+                session.popLineHandler();
+            }
+            return response;
+        }
+
+        private Response complete(SMTPSession session) {
+            if (failure != null) {
+                return failure;
+            }
+            if (!last) {
+                return new SMTPResponse(SMTPRetCode.MAIL_OK, DSNStatus.getStatus(DSNStatus.SUCCESS, DSNStatus.UNDEFINED_STATUS) + " " + size + " octets received");
+            }
+            Response response = message.finish(session);
+            if (response == null) {
+                return ERROR_PROCESSING_CHUNK;
+            }
+            return response;
+        }
+
+        @Override
+        public void init(Configuration config) throws ConfigurationException {
+
+        }
+
+        @Override
+        public void destroy() {
+
+        }
+    }
    
     public final static String MAILENV = "MAILENV";
 
-    private final MetricFactory metricFactory;
+    /**
+     * Transaction state key set while the content of a DATA command is being received. The frame decoder of the
+     * transport can use it to pass the body on to the line handlers in blocks of several lines.
+     */
+    public final static String DATA_TRANSFER = "DATA_TRANSFER";
+
+    /**
+     * Connection state key set by a frame decoder able to pass the BDAT chunks on as raw bytes, which the
+     * CHUNKING extension requires.
+     */
+    public final static String CHUNKING_SUPPORTED = "CHUNKING_SUPPORTED";
+
+    private final static String CHUNKED_MESSAGE = "CHUNKED_MESSAGE";
+
+    private final Timer dataTimer;
+    private final Timer bdatTimer;
 
     @Inject
     public DataCmdHandler(MetricFactory metricFactory) {
-        this.metricFactory = metricFactory;
+        MetricName commandMetric = MetricName.of(AbstractHookableCmdHandler.SMTP_METRIC_NAME);
+        this.dataTimer = metricFactory.timer(commandMetric.tag(AbstractHookableCmdHandler.COMMAND_TAG, DATA));
+        this.bdatTimer = metricFactory.timer(commandMetric.tag(AbstractHookableCmdHandler.COMMAND_TAG, BDAT));
     }
 
     private LineHandler<SMTPSession> lineHandler;
@@ -137,10 +346,14 @@ public class DataCmdHandler implements CommandHandler<SMTPSession>, ExtensibleHa
      *
      */
     public Response onCommand(SMTPSession session, Request request) {
-        TimeMetric timeMetric = metricFactory.timer("SMTP-" + request.getCommand());
+        boolean bdat = BDAT.equalsIgnoreCase(request.getCommand());
+        long start = System.nanoTime();
         session.stopDetectingCommandInjection();
         try {
             String parameters = request.getArgument();
+            if (bdat) {
+                return doBDAT(session, parameters);
+            }
             Response response = doDATAFilter(session, parameters);
 
             if (response == null) {
@@ -149,7 +362,7 @@ public class DataCmdHandler implements CommandHandler<SMTPSession>, ExtensibleHa
                 return response;
             }
         } finally {
-            timeMetric.stopAndPublish();
+            (bdat ? bdatTimer : dataTimer).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             session.needsCommandInjectionDetection();
         }
     }
@@ -163,14 +376,93 @@ public class DataCmdHandler implements CommandHandler<SMTPSession>, ExtensibleHa
      * @param session SMTP session object
      * @param argument the argument passed in with the command by the SMTP client
      */
-    @SuppressWarnings("unchecked")
     protected Response doDATA(SMTPSession session, String argument) {
-        MailEnvelope env = createEnvelope(session, (MailAddress) session.getAttachment(SMTPSession.SENDER,ProtocolSession.State.Transaction), new ArrayList<MailAddress>((Collection<MailAddress>)session.getAttachment(SMTPSession.RCPT_LIST,ProtocolSession.State.Transaction)));
-        session.setAttachment(MAILENV, env,ProtocolSession.State.Transaction);
+        Response response = beginMessage(session);
+        if (response != null) {
+            return response;
+        }
+        session.setAttachment(DATA_TRANSFER, new Object(), ProtocolSession.State.Transaction);
         session.pushLineHandler(lineHandler);
         
         return DATA_READY;
     }
+
+    /**
+     * Prepare the storage of the message content, before the first line of a DATA command
+     * or the first chunk of a BDAT transfer is passed to the {@link DataLineFilter}'s
+     *
+     * @param session SMTP session object
+     * @return an error response, or null when the message content can be received
+     */
+    @SuppressWarnings("unchecked")
+    protected Response beginMessage(SMTPSession session) {
+        MailEnvelope env = createEnvelope(session, (MailAddress) session.getAttachment(SMTPSession.SENDER,ProtocolSession.State.Transaction), new ArrayList<MailAddress>((Collection<MailAddress>)session.getAttachment(SMTPSession.RCPT_LIST,ProtocolSession.State.Transaction)));
+        session.setAttachment(MAILENV, env,ProtocolSession.State.Transaction);
+        return null;
+    }
+
+    /**
+     * Handler method called upon receipt of a BDAT command. The chunk is consumed even when the
+     * command is rejected, and the response is only sent once all its bytes were received.
+     *
+     * @param session SMTP session object
+     * @param argument the chunk size, optionally followed by LAST
+     */
+    protected Response doBDAT(SMTPSession session, String argument) {
+        if (session.getAttachment(CHUNKING_SUPPORTED, ProtocolSession.State.Connection) == null) {
+            return CHUNKING_NOT_SUPPORTED;
+        }
+        long size = chunkSize(argument);
+        if (size < 0) {
+            return INVALID_CHUNK_SIZE;
+        }
+        ChunkedMessage message = (ChunkedMessage) session.getAttachment(CHUNKED_MESSAGE, ProtocolSession.State.Transaction);
+        Response failure = null;
+        if (message == null) {
+            failure = doDATAFilter(session, null);
+            if (failure == null) {
+                failure = beginMessage(session);
+            }
+            if (failure == null) {
+                message = new ChunkedMessage(lineHandler);
+                session.setAttachment(CHUNKED_MESSAGE, message, ProtocolSession.State.Transaction);
+            }
+        } else {
+            failure = message.getFailure();
+        }
+        ChunkLineHandler chunkHandler = new ChunkLineHandler(message, failure, size, isLastChunk(argument));
+        session.pushLineHandler(chunkHandler);
+        if (size == 0) {
+            return chunkHandler.onLine(session, ByteBuffer.allocate(0));
+        }
+        return null;
+    }
+
+    /**
+     * Return the chunk size given to a BDAT command
+     *
+     * @param argument the argument of the BDAT command
+     * @return the chunk size, or -1 when the argument is invalid
+     */
+    public static long chunkSize(String argument) {
+        if (argument == null) {
+            return -1;
+        }
+        String[] parts = argument.trim().split(" +");
+        if (parts.length > 2 || (parts.length == 2 && !LAST.equals(parts[1].toUpperCase(Locale.US)))) {
+            return -1;
+        }
+        try {
+            long size = Long.parseLong(parts[0]);
+            return size < 0 ? -1 : size;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isLastChunk(String argument) {
+        return argument.trim().toUpperCase(Locale.US).endsWith(" " + LAST);
+    }
     
     protected MailEnvelope createEnvelope(SMTPSession session, MailAddress sender, List<MailAddress> recipients) {
         MailEnvelopeImpl env = new MailEnvelopeImpl();
@@ -188,6 +480,18 @@ public class DataCmdHandler implements CommandHandler<SMTPSession>, ExtensibleHa
     }
 
 
+    /**
+     * @see org.apache.james.protocols.smtp.core.esmtp.EhloExtension#getImplementedEsmtpFeatures(org.apache.james.protocols.smtp.SMTPSession)
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getImplementedEsmtpFeatures(SMTPSession session) {
+        // Extension defined in RFC 3030
+        if (session.getAttachment(CHUNKING_SUPPORTED, ProtocolSession.State.Connection) != null) {
+            return ESMTP_FEATURES;
+        }
+        return Collections.EMPTY_LIST;
+    }
+
     /**
      * @see org.apache.james.protocols.api.handler.ExtensibleHandler#getMarkerInterfaces()
      */
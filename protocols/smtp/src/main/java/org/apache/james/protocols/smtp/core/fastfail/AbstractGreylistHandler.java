@@ -63,6 +63,18 @@ public abstract class AbstractGreylistHandler implements RcptHook {
         this.tempBlockTime = tempBlockTime;
     }
 
+    protected long getUnseenLifeTime() {
+        return unseenLifeTime;
+    }
+
+    protected long getAutoWhiteListLifeTime() {
+        return autoWhiteListLifeTime;
+    }
+
+    protected long getTempBlockTime() {
+        return tempBlockTime;
+    }
+
 
     private HookResult doGreyListCheck(SMTPSession session, MailAddress senderAddress, MailAddress recipAddress) {
         String recip = "";
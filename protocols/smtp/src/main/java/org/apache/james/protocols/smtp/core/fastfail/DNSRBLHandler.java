@@ -133,55 +133,62 @@ public class DNSRBLHandler implements RcptHook {
 
             if (whitelist != null) {
                 String[] rblList = whitelist;
-                for (String rbl : rblList) {
-                    if (resolve(reversedOctets + rbl)) {
-                        if (session.getLogger().isInfoEnabled()) {
-                            session.getLogger().info("Connection from " + ipAddress + " whitelisted by " + rbl);
-                        }
-
-                        return;
-                    } else {
-                        if (session.getLogger().isDebugEnabled()) {
-                            session.getLogger().debug("IpAddress " + session.getRemoteAddress().getAddress() + " not listed on " + rbl);
-                        }
+                int listed = resolveFirst(queryNames(reversedOctets, rblList));
+                if (session.getLogger().isDebugEnabled()) {
+                    for (int i = 0; i < (listed < 0 ? rblList.length : listed); i++) {
+                        session.getLogger().debug("IpAddress " + session.getRemoteAddress().getAddress() + " not listed on " + rblList[i]);
                     }
                 }
+                if (listed >= 0) {
+                    if (session.getLogger().isInfoEnabled()) {
+                        session.getLogger().info("Connection from " + ipAddress + " whitelisted by " + rblList[listed]);
+                    }
+
+                    return;
+                }
             }
 
             if (blacklist != null) {
                 String[] rblList = blacklist;
-                for (String rbl : rblList) {
-                    if (resolve(reversedOctets + rbl)) {
-                        if (session.getLogger().isInfoEnabled()) {
-                            session.getLogger().info("Connection from " + ipAddress + " restricted by " + rbl + " to SMTP AUTH/postmaster/abuse.");
-                        }
+                int listed = resolveFirst(queryNames(reversedOctets, rblList));
+                if (session.getLogger().isDebugEnabled()) {
+                    for (int i = 0; i < (listed < 0 ? rblList.length : listed); i++) {
+                        // if it is unknown, it isn't blocked
+                        session.getLogger().debug("unknown host exception thrown:" + rblList[i]);
+                    }
+                }
+                if (listed >= 0) {
+                    String rbl = rblList[listed];
+                    if (session.getLogger().isInfoEnabled()) {
+                        session.getLogger().info("Connection from " + ipAddress + " restricted by " + rbl + " to SMTP AUTH/postmaster/abuse.");
+                    }
 
-                        // we should try to retrieve details
-                        if (getDetail) {
-                            Collection<String> txt = resolveTXTRecords(reversedOctets + rbl);
+                    // we should try to retrieve details
+                    if (getDetail) {
+                        Collection<String> txt = resolveTXTRecords(reversedOctets + rbl);
 
-                            // Check if we found a txt record
-                            if (!txt.isEmpty()) {
-                                // Set the detail
-                                String blocklistedDetail = txt.iterator().next().toString();
+                        // Check if we found a txt record
+                        if (!txt.isEmpty()) {
+                            // Set the detail
+                            String blocklistedDetail = txt.iterator().next().toString();
 
-                                session.setAttachment(RBL_DETAIL_MAIL_ATTRIBUTE_NAME, blocklistedDetail, State.Connection);
-                            }
-                        }
-
-                        session.setAttachment(RBL_BLOCKLISTED_MAIL_ATTRIBUTE_NAME, "true", State.Connection);
-                        return;
-                    } else {
-                        // if it is unknown, it isn't blocked
-                        if (session.getLogger().isDebugEnabled()) {
-                            session.getLogger().debug("unknown host exception thrown:" + rbl);
+                            session.setAttachment(RBL_DETAIL_MAIL_ATTRIBUTE_NAME, blocklistedDetail, State.Connection);
                         }
                     }
 
+                    session.setAttachment(RBL_BLOCKLISTED_MAIL_ATTRIBUTE_NAME, "true", State.Connection);
                 }
             }
         }
     }
+
+    private static String[] queryNames(String reversedOctets, String[] rblList) {
+        String[] names = new String[rblList.length];
+        for (int i = 0; i < rblList.length; i++) {
+            names[i] = reversedOctets + rblList[i];
+        }
+        return names;
+    }
     
     /**
      * @see org.apache.james.protocols.smtp.hook.RcptHook#doRcpt(org.apache.james.protocols.smtp.SMTPSession, org.apache.mailet.MailAddress, org.apache.mailet.MailAddress)
@@ -223,6 +230,24 @@ public class DNSRBLHandler implements RcptHook {
         }
     }
     
+    /**
+     * Return the index of the first of the given names which is resolvable, or -1 if none is.
+     * 
+     * This implementation calls {@link #resolve(String)} for each name in turn. Sub-classes may override this to
+     * query all the lists concurrently, as long as the first listed name in the given order wins.
+     * 
+     * @param names
+     * @return index of the first resolvable name
+     */
+    protected int resolveFirst(String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (resolve(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Return a {@link Collection} which holds all TXT records for the ip. This is most times used to add details for a RBL entry.
      * 
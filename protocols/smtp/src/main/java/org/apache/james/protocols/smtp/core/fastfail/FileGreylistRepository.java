@@ -0,0 +1,151 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+
+/**
+ * {@link GreylistRepository} which appends the changes to a local journal file.
+ * <p>
+ * Each line is either <code>S ipAddress sender recipient count time</code> for a stored triplet or
+ * <code>D ipAddress sender recipient</code> for a removed one, the fields being separated by tabs. The journal is
+ * replayed and compacted to the live triplets on {@link #load()}.
+ */
+public class FileGreylistRepository implements GreylistRepository {
+
+    private static final char SEPARATOR = '\t';
+    private static final String STORE = "S";
+    private static final String DELETE = "D";
+
+    private final File file;
+
+    public FileGreylistRepository(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.GreylistRepository#load()
+     */
+    public synchronized Collection<GreylistTriplet> load() throws IOException {
+        Map<String, GreylistTriplet> triplets = new LinkedHashMap<String, GreylistTriplet>();
+        if (file.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    replay(line, triplets);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        compact(triplets.values());
+        return new ArrayList<GreylistTriplet>(triplets.values());
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.GreylistRepository#store(java.util.Collection)
+     */
+    public synchronized void store(Collection<GreylistTriplet> triplets) throws IOException {
+        Writer writer = openWriter(file, true);
+        try {
+            for (GreylistTriplet triplet : triplets) {
+                writeStore(writer, triplet);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.GreylistRepository#remove(java.util.Collection)
+     */
+    public synchronized void remove(Collection<GreylistTriplet> triplets) throws IOException {
+        Writer writer = openWriter(file, true);
+        try {
+            for (GreylistTriplet triplet : triplets) {
+                writer.write(DELETE + SEPARATOR + key(triplet) + '\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void compact(Collection<GreylistTriplet> triplets) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = openWriter(tmp, false);
+        try {
+            for (GreylistTriplet triplet : triplets) {
+                writeStore(writer, triplet);
+            }
+        } finally {
+            writer.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Unable to replace " + file + " by " + tmp);
+            }
+        }
+    }
+
+    private void replay(String line, Map<String, GreylistTriplet> triplets) {
+        String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length == 6 && STORE.equals(fields[0])) {
+            try {
+                GreylistTriplet triplet = new GreylistTriplet(fields[1], fields[2], fields[3], Integer.parseInt(fields[4]), Long.parseLong(fields[5]));
+                triplets.put(key(triplet), triplet);
+            } catch (NumberFormatException e) {
+                // skip the corrupted line, most likely a partial write
+            }
+        } else if (fields.length == 4 && DELETE.equals(fields[0])) {
+            triplets.remove(fields[1] + SEPARATOR + fields[2] + SEPARATOR + fields[3]);
+        }
+    }
+
+    private void writeStore(Writer writer, GreylistTriplet triplet) throws IOException {
+        writer.write(STORE + SEPARATOR + key(triplet) + SEPARATOR + triplet.getCount() + SEPARATOR + triplet.getTime() + '\n');
+    }
+
+    private static String key(GreylistTriplet triplet) {
+        return triplet.getIpAddress() + SEPARATOR + triplet.getSender() + SEPARATOR + triplet.getRecipient();
+    }
+
+    private static Writer openWriter(File file, boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), Charsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+import java.util.Collection;
+
+/**
+ * Persistent backend of the {@link InMemoryGreylistHandler}. The handler answers every RCPT from memory and only
+ * talks to the repository when it starts (to reload the triplets) and from its flush thread (to write back the
+ * changes), so implementations do not need to be fast.
+ */
+public interface GreylistRepository {
+
+    /**
+     * Load all the stored triplets
+     * 
+     * @return triplets
+     * @throws Exception
+     */
+    Collection<GreylistTriplet> load() throws Exception;
+
+    /**
+     * Insert or update the given triplets
+     * 
+     * @param triplets
+     *            The triplets which were added or updated since the last flush
+     * @throws Exception
+     */
+    void store(Collection<GreylistTriplet> triplets) throws Exception;
+
+    /**
+     * Delete the given triplets. Only the (ipAddress, sender, recipient) key of each triplet is relevant.
+     * 
+     * @param triplets
+     *            The triplets which expired or were evicted since the last flush
+     * @throws Exception
+     */
+    void remove(Collection<GreylistTriplet> triplets) throws Exception;
+}
@@ -0,0 +1,91 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+/**
+ * Immutable greylist record: the (ipAddress, sender, recipient) triplet together with the number of times it was
+ * accepted and the time it was last seen.
+ */
+public final class GreylistTriplet {
+
+    private final String ipAddress;
+    private final String sender;
+    private final String recipient;
+    private final int count;
+    private final long time;
+
+    public GreylistTriplet(String ipAddress, String sender, String recipient, int count, long time) {
+        this.ipAddress = ipAddress;
+        this.sender = sender;
+        this.recipient = recipient;
+        this.count = count;
+        this.time = time;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GreylistTriplet)) {
+            return false;
+        }
+        GreylistTriplet that = (GreylistTriplet) o;
+        return count == that.count
+            && time == that.time
+            && ipAddress.equals(that.ipAddress)
+            && sender.equals(that.sender)
+            && recipient.equals(that.recipient);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = ipAddress.hashCode();
+        result = 31 * result + sender.hashCode();
+        result = 31 * result + recipient.hashCode();
+        result = 31 * result + count;
+        return 31 * result + (int) (time ^ (time >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return ipAddress + " | " + sender + " | " + recipient + " -> count: " + count + ", time: " + time;
+    }
+}
@@ -0,0 +1,290 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Concurrent in-memory store of greylist triplets.
+ * <p>
+ * Every triplet is stored with the time it expires at, and is additionally indexed in a bucket covering
+ * <code>bucketSize</code> milliseconds of expiry time. Expiring old triplets therefore only touches the buckets which
+ * are entirely in the past instead of scanning the whole store, and when the store grows above
+ * <code>maxSize</code> the triplets closest to their expiry (usually the ones which were seen only once) are evicted
+ * first.
+ * <p>
+ * The store keeps track of the triplets which changed since the last {@link #drainDirty()} and of the ones which
+ * expired or were evicted since the last {@link #drainRemoved()}, so that they can be written back to a
+ * {@link GreylistRepository} asynchronously.
+ */
+public class GreylistTripletStore {
+
+    private static final class Key {
+        private final String ipAddress;
+        private final String sender;
+        private final String recipient;
+
+        private Key(String ipAddress, String sender, String recipient) {
+            this.ipAddress = ipAddress;
+            this.sender = sender;
+            this.recipient = recipient;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return ipAddress.equals(that.ipAddress) && sender.equals(that.sender) && recipient.equals(that.recipient);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = ipAddress.hashCode();
+            result = 31 * result + sender.hashCode();
+            return 31 * result + recipient.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final GreylistTriplet triplet;
+        private final long expiresAt;
+        private final long bucket;
+
+        private Entry(GreylistTriplet triplet, long expiresAt, long bucket) {
+            this.triplet = triplet;
+            this.expiresAt = expiresAt;
+            this.bucket = bucket;
+        }
+    }
+
+    private final long bucketSize;
+    private final int maxSize;
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    private final ConcurrentSkipListMap<Long, Set<Key>> buckets = new ConcurrentSkipListMap<Long, Set<Key>>();
+    private final Set<Key> dirty = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+    private final Queue<GreylistTriplet> removed = new ConcurrentLinkedQueue<GreylistTriplet>();
+
+    /**
+     * @param bucketSize
+     *            The expiry time range covered by one bucket, in milliseconds
+     * @param maxSize
+     *            The maximum number of triplets to keep, or 0 for no limit
+     */
+    public GreylistTripletStore(long bucketSize, int maxSize) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("bucketSize must be positive");
+        }
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative");
+        }
+        this.bucketSize = bucketSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return the stored triplet, or <code>null</code> if there is none or if it is expired at the given time
+     */
+    public GreylistTriplet get(String ipAddress, String sender, String recipient, long now) {
+        Entry entry = entries.get(new Key(ipAddress, sender, recipient));
+        if (entry == null || entry.expiresAt <= now) {
+            return null;
+        }
+        return entry.triplet;
+    }
+
+    /**
+     * Add or replace a triplet and mark it as dirty
+     */
+    public void put(GreylistTriplet triplet, long expiresAt) {
+        Key key = keyOf(triplet);
+        put(key, triplet, expiresAt);
+        dirty.add(key);
+        evictIfNeeded();
+    }
+
+    /**
+     * Add or replace a triplet which is already persisted, so without marking it as dirty
+     */
+    public void load(GreylistTriplet triplet, long expiresAt) {
+        put(keyOf(triplet), triplet, expiresAt);
+        evictIfNeeded();
+    }
+
+    /**
+     * Drop all the triplets which expire before the bucket containing the given time. Triplets of the current bucket
+     * are already hidden by {@link #get(String, String, String, long)} and are dropped by a later call.
+     * 
+     * @return the number of dropped triplets
+     */
+    public int expire(long now) {
+        int count = 0;
+        Map<Long, Set<Key>> expired = buckets.headMap(bucketOf(now));
+        for (Map.Entry<Long, Set<Key>> bucket : expired.entrySet()) {
+            count += drop(bucket.getKey(), bucket.getValue(), Integer.MAX_VALUE);
+        }
+        return count;
+    }
+
+    /**
+     * Return the triplets which were added or updated since the last call
+     */
+    public List<GreylistTriplet> drainDirty() {
+        List<GreylistTriplet> triplets = new ArrayList<GreylistTriplet>();
+        Iterator<Key> keys = dirty.iterator();
+        while (keys.hasNext()) {
+            Key key = keys.next();
+            keys.remove();
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                triplets.add(entry.triplet);
+            }
+        }
+        return triplets;
+    }
+
+    /**
+     * Return the triplets which expired or were evicted since the last call
+     */
+    public List<GreylistTriplet> drainRemoved() {
+        List<GreylistTriplet> triplets = new ArrayList<GreylistTriplet>();
+        GreylistTriplet triplet;
+        while ((triplet = removed.poll()) != null) {
+            triplets.add(triplet);
+        }
+        return triplets;
+    }
+
+    /**
+     * Mark the given triplets as dirty again, for example because writing them back failed
+     */
+    public void markDirty(Collection<GreylistTriplet> triplets) {
+        for (GreylistTriplet triplet : triplets) {
+            Key key = keyOf(triplet);
+            if (entries.containsKey(key)) {
+                dirty.add(key);
+            }
+        }
+    }
+
+    /**
+     * Mark the given triplets as removed again, for example because deleting them failed
+     */
+    public void markRemoved(Collection<GreylistTriplet> triplets) {
+        removed.addAll(triplets);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void put(Key key, GreylistTriplet triplet, long expiresAt) {
+        Entry entry = new Entry(triplet, expiresAt, bucketOf(expiresAt));
+        Entry previous = entries.put(key, entry);
+        if (previous != null && previous.bucket != entry.bucket) {
+            unindex(key, previous.bucket);
+        }
+        index(key, entry.bucket);
+    }
+
+    private void evictIfNeeded() {
+        while (maxSize > 0 && entries.size() > maxSize) {
+            Map.Entry<Long, Set<Key>> oldest = buckets.firstEntry();
+            if (oldest == null) {
+                return;
+            }
+            drop(oldest.getKey(), oldest.getValue(), entries.size() - maxSize);
+        }
+    }
+
+    /**
+     * Remove up to <code>limit</code> triplets of the given bucket, and the bucket itself once it is empty
+     */
+    private int drop(long bucket, Set<Key> keys, int limit) {
+        int count = 0;
+        Iterator<Key> iterator = keys.iterator();
+        while (iterator.hasNext() && count < limit) {
+            Key key = iterator.next();
+            iterator.remove();
+            Entry entry = entries.get(key);
+            // the triplet may have been updated and moved to another bucket in the meantime
+            if (entry != null && entry.bucket == bucket && entries.remove(key, entry)) {
+                dirty.remove(key);
+                removed.add(entry.triplet);
+                count++;
+            }
+        }
+        if (keys.isEmpty()) {
+            buckets.remove(bucket, keys);
+        }
+        return count;
+    }
+
+    private void index(Key key, long bucket) {
+        while (true) {
+            Set<Key> keys = buckets.get(bucket);
+            if (keys == null) {
+                Set<Key> created = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+                keys = buckets.putIfAbsent(bucket, created);
+                if (keys == null) {
+                    keys = created;
+                }
+            }
+            keys.add(key);
+            // retry if the bucket was dropped concurrently
+            if (buckets.get(bucket) == keys) {
+                return;
+            }
+        }
+    }
+
+    private void unindex(Key key, long bucket) {
+        Set<Key> keys = buckets.get(bucket);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                buckets.remove(bucket, keys);
+            }
+        }
+    }
+
+    private long bucketOf(long time) {
+        return time / bucketSize;
+    }
+
+    private static Key keyOf(GreylistTriplet triplet) {
+        return new Key(triplet.getIpAddress(), triplet.getSender(), triplet.getRecipient());
+    }
+}
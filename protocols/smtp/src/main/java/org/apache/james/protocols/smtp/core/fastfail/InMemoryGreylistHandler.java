@@ -0,0 +1,288 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link AbstractGreylistHandler} which takes its decisions from a {@link GreylistTripletStore} held in memory, so
+ * that no I/O happens on the SMTP thread.
+ * <p>
+ * If a {@link GreylistRepository} is set, the triplets are loaded from it on {@link #start()}, and the changes are
+ * written back to it every <code>flushInterval</code> milliseconds by a background thread and a last time on
+ * {@link #stop()}. Triplets which expired are removed from the store (and the repository) by the same thread.
+ */
+public class InMemoryGreylistHandler extends AbstractGreylistHandler {
+
+    /** 1 minute */
+    private long bucketSize = 60000;
+
+    /** 30 seconds */
+    private long flushInterval = 30000;
+
+    private int maxTriplets = 100000;
+
+    private GreylistRepository repository;
+
+    private volatile GreylistTripletStore store;
+
+    private ScheduledExecutorService flusher;
+
+    private final Object flushLock = new Object();
+
+    /**
+     * Set the expiry time range covered by one bucket of the store
+     * 
+     * @param bucketSize
+     *            The bucket size in milliseconds
+     */
+    public void setBucketSize(long bucketSize) {
+        this.bucketSize = bucketSize;
+    }
+
+    /**
+     * Set the interval at which expired triplets are dropped and changes are written to the repository
+     * 
+     * @param flushInterval
+     *            The interval in milliseconds
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Set the maximum number of triplets held in memory. Once reached, the triplets closest to their expiry are evicted.
+     * 
+     * @param maxTriplets
+     *            The maximum number of triplets, or 0 for no limit
+     */
+    public void setMaxTriplets(int maxTriplets) {
+        this.maxTriplets = maxTriplets;
+    }
+
+    /**
+     * Set the repository the triplets are persisted to. Without repository the triplets only live in memory.
+     * 
+     * @param repository
+     *            The repository
+     */
+    public void setRepository(GreylistRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Start the handler, see {@link #start()}
+     */
+    @Override
+    public void init(Configuration config) throws ConfigurationException {
+        try {
+            start();
+        } catch (Exception e) {
+            throw new ConfigurationException("Unable to load the greylist triplets", e);
+        }
+    }
+
+    /**
+     * Stop the handler, see {@link #stop()}
+     */
+    @Override
+    public void destroy() {
+        try {
+            stop();
+        } catch (Exception e) {
+            flushFailed(e);
+        }
+    }
+
+    /**
+     * Create the store, load it from the repository and start the flush thread
+     * 
+     * @throws Exception
+     *             If loading the repository fails
+     */
+    public synchronized void start() throws Exception {
+        GreylistTripletStore newStore = new GreylistTripletStore(bucketSize, maxTriplets);
+        if (repository != null) {
+            long now = System.currentTimeMillis();
+            for (GreylistTriplet triplet : repository.load()) {
+                long expiresAt = expiresAt(triplet.getCount(), triplet.getTime());
+                if (expiresAt > now) {
+                    newStore.load(triplet, expiresAt);
+                }
+            }
+        }
+        store = newStore;
+
+        if (flushInterval > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("greylist-flush-%d")
+                .setDaemon(true)
+                .build());
+            flusher.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        flush();
+                    } catch (Exception e) {
+                        flushFailed(e);
+                    }
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the flush thread and write the pending changes to the repository
+     * 
+     * @throws Exception
+     *             If the last flush fails
+     */
+    public synchronized void stop() throws Exception {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+            flusher = null;
+        }
+        if (store != null) {
+            flush();
+        }
+    }
+
+    /**
+     * Drop the expired triplets and write the changes since the last flush to the repository. Changes which could not
+     * be written are kept for the next flush.
+     * 
+     * @throws Exception
+     *             If the repository fails
+     */
+    public void flush() throws Exception {
+        GreylistTripletStore current = getStore();
+        current.expire(System.currentTimeMillis());
+        if (repository == null) {
+            current.drainRemoved();
+            current.drainDirty();
+            return;
+        }
+        synchronized (flushLock) {
+            List<GreylistTriplet> removed = current.drainRemoved();
+            if (!removed.isEmpty()) {
+                try {
+                    repository.remove(removed);
+                } catch (Exception e) {
+                    current.markRemoved(removed);
+                    throw e;
+                }
+            }
+            List<GreylistTriplet> dirty = current.drainDirty();
+            if (!dirty.isEmpty()) {
+                try {
+                    repository.store(dirty);
+                } catch (Exception e) {
+                    current.markDirty(dirty);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when a scheduled flush fails. The changes are retried on the next flush.
+     * 
+     * @param e
+     *            The failure
+     */
+    protected void flushFailed(Exception e) {
+        // nothing todo
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.AbstractGreylistHandler#getGreyListData(java.lang.String,
+     *      java.lang.String, java.lang.String)
+     */
+    protected Iterator<String> getGreyListData(String ipAddress, String sender, String recip) {
+        GreylistTriplet triplet = getStore().get(ipAddress, sender, recip, System.currentTimeMillis());
+        if (triplet == null) {
+            return Collections.<String>emptyList().iterator();
+        }
+        return Arrays.asList(String.valueOf(triplet.getTime()), String.valueOf(triplet.getCount())).iterator();
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.AbstractGreylistHandler#insertTriplet(java.lang.String,
+     *      java.lang.String, java.lang.String, int, long)
+     */
+    protected void insertTriplet(String ipAddress, String sender, String recip, int count, long createTime) {
+        getStore().put(new GreylistTriplet(ipAddress, sender, recip, count, createTime), expiresAt(count, createTime));
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.AbstractGreylistHandler#updateTriplet(java.lang.String,
+     *      java.lang.String, java.lang.String, int, long)
+     */
+    protected void updateTriplet(String ipAddress, String sender, String recip, int count, long time) {
+        getStore().put(new GreylistTriplet(ipAddress, sender, recip, count + 1, time), expiresAt(count + 1, time));
+    }
+
+    /**
+     * Nothing to do as every triplet is stored with its own expiry time, see
+     * {@link #cleanupGreyList(long)}
+     */
+    protected void cleanupAutoWhiteListGreyList(long time) {
+    }
+
+    /**
+     * Drop the expired triplets which are due. This is cheap as only whole buckets in the past are visited.
+     */
+    protected void cleanupGreyList(long time) {
+        getStore().expire(System.currentTimeMillis());
+    }
+
+    /**
+     * Return the number of triplets currently held in memory
+     */
+    public int size() {
+        return getStore().size();
+    }
+
+    private long expiresAt(int count, long time) {
+        if (count == 0) {
+            return time + getUnseenLifeTime();
+        }
+        return time + getAutoWhiteListLifeTime();
+    }
+
+    private GreylistTripletStore getStore() {
+        GreylistTripletStore current = store;
+        if (current == null) {
+            throw new IllegalStateException("InMemoryGreylistHandler was not started");
+        }
+        return current;
+    }
+}
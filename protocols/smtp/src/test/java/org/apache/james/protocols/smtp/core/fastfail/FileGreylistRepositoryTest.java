@@ -0,0 +1,94 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileGreylistRepositoryTest {
+
+    private static final GreylistTriplet TRIPLET_1 = new GreylistTriplet("127.0.0.1", "sender@domain", "recipient@domain", 0, 1000);
+    private static final GreylistTriplet TRIPLET_2 = new GreylistTriplet("127.0.0.2", "", "recipient@domain", 3, 2000);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private FileGreylistRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(temporaryFolder.getRoot(), "greylist/journal");
+        repository = new FileGreylistRepository(file);
+    }
+
+    @Test
+    public void loadShouldReturnEmptyWhenNoFile() throws Exception {
+        assertThat(repository.load()).isEmpty();
+    }
+
+    @Test
+    public void loadShouldReturnStoredTriplets() throws Exception {
+        repository.load();
+        repository.store(Arrays.asList(TRIPLET_1, TRIPLET_2));
+
+        assertThat(new FileGreylistRepository(file).load()).containsOnly(TRIPLET_1, TRIPLET_2);
+    }
+
+    @Test
+    public void loadShouldReturnLastStoredVersion() throws Exception {
+        GreylistTriplet updated = new GreylistTriplet("127.0.0.1", "sender@domain", "recipient@domain", 1, 5000);
+        repository.load();
+        repository.store(Arrays.asList(TRIPLET_1));
+        repository.store(Arrays.asList(updated));
+
+        assertThat(new FileGreylistRepository(file).load()).containsOnly(updated);
+    }
+
+    @Test
+    public void loadShouldNotReturnRemovedTriplets() throws Exception {
+        repository.load();
+        repository.store(Arrays.asList(TRIPLET_1, TRIPLET_2));
+        repository.remove(Collections.singletonList(TRIPLET_1));
+
+        assertThat(new FileGreylistRepository(file).load()).containsOnly(TRIPLET_2);
+    }
+
+    @Test
+    public void loadShouldCompactTheJournal() throws Exception {
+        repository.load();
+        repository.store(Arrays.asList(TRIPLET_1, TRIPLET_2));
+        repository.remove(Collections.singletonList(TRIPLET_1));
+        long journalLength = file.length();
+
+        new FileGreylistRepository(file).load();
+
+        assertThat(file.length()).isLessThan(journalLength);
+        assertThat(new FileGreylistRepository(file).load()).containsOnly(TRIPLET_2);
+    }
+}
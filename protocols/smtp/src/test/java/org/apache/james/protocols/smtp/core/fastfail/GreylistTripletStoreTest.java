@@ -0,0 +1,126 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GreylistTripletStoreTest {
+
+    private static final long BUCKET_SIZE = 1000;
+    private static final GreylistTriplet TRIPLET = new GreylistTriplet("127.0.0.1", "sender@domain", "recipient@domain", 0, 0);
+
+    private GreylistTripletStore store;
+
+    @Before
+    public void setUp() {
+        store = new GreylistTripletStore(BUCKET_SIZE, 3);
+    }
+
+    @Test
+    public void getShouldReturnStoredTriplet() {
+        store.put(TRIPLET, 5000);
+
+        assertThat(store.get("127.0.0.1", "sender@domain", "recipient@domain", 0)).isEqualTo(TRIPLET);
+    }
+
+    @Test
+    public void getShouldReturnNullWhenUnknown() {
+        store.put(TRIPLET, 5000);
+
+        assertThat(store.get("127.0.0.2", "sender@domain", "recipient@domain", 0)).isNull();
+    }
+
+    @Test
+    public void getShouldReturnNullWhenExpired() {
+        store.put(TRIPLET, 5000);
+
+        assertThat(store.get("127.0.0.1", "sender@domain", "recipient@domain", 5000)).isNull();
+    }
+
+    @Test
+    public void putShouldReplacePreviousTriplet() {
+        GreylistTriplet updated = new GreylistTriplet("127.0.0.1", "sender@domain", "recipient@domain", 1, 2000);
+        store.put(TRIPLET, 5000);
+        store.put(updated, 10000);
+
+        assertThat(store.get("127.0.0.1", "sender@domain", "recipient@domain", 6000)).isEqualTo(updated);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void expireShouldDropTripletsOfPastBuckets() {
+        GreylistTriplet other = new GreylistTriplet("127.0.0.2", "sender@domain", "recipient@domain", 0, 0);
+        store.put(TRIPLET, 1500);
+        store.put(other, 4500);
+
+        assertThat(store.expire(3000)).isEqualTo(1);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.drainRemoved()).containsOnly(TRIPLET);
+    }
+
+    @Test
+    public void expireShouldNotDropUpdatedTriplet() {
+        GreylistTriplet updated = new GreylistTriplet("127.0.0.1", "sender@domain", "recipient@domain", 1, 2000);
+        store.put(TRIPLET, 1500);
+        store.put(updated, 10000);
+
+        assertThat(store.expire(3000)).isEqualTo(0);
+        assertThat(store.get("127.0.0.1", "sender@domain", "recipient@domain", 3000)).isEqualTo(updated);
+    }
+
+    @Test
+    public void putShouldEvictTripletsClosestToExpiryWhenFull() {
+        store.put(new GreylistTriplet("127.0.0.1", "", "a@domain", 1, 0), 9000);
+        store.put(new GreylistTriplet("127.0.0.2", "", "a@domain", 0, 0), 2000);
+        store.put(new GreylistTriplet("127.0.0.3", "", "a@domain", 1, 0), 8000);
+        store.put(new GreylistTriplet("127.0.0.4", "", "a@domain", 1, 0), 7000);
+
+        assertThat(store.size()).isEqualTo(3);
+        assertThat(store.get("127.0.0.2", "", "a@domain", 0)).isNull();
+        assertThat(store.drainRemoved()).containsOnly(new GreylistTriplet("127.0.0.2", "", "a@domain", 0, 0));
+    }
+
+    @Test
+    public void drainDirtyShouldReturnChangedTripletsOnce() {
+        store.put(TRIPLET, 5000);
+
+        assertThat(store.drainDirty()).containsOnly(TRIPLET);
+        assertThat(store.drainDirty()).isEmpty();
+    }
+
+    @Test
+    public void loadShouldNotMarkTripletAsDirty() {
+        store.load(TRIPLET, 5000);
+
+        assertThat(store.drainDirty()).isEmpty();
+        assertThat(store.get("127.0.0.1", "sender@domain", "recipient@domain", 0)).isEqualTo(TRIPLET);
+    }
+
+    @Test
+    public void markDirtyShouldRequeueStoredTriplets() {
+        store.put(TRIPLET, 5000);
+        store.markDirty(store.drainDirty());
+
+        assertThat(store.drainDirty()).containsOnly(TRIPLET);
+    }
+}
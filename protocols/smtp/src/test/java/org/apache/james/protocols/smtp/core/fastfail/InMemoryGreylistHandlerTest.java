@@ -0,0 +1,165 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.core.fastfail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.james.protocols.smtp.MailAddress;
+import org.apache.james.protocols.smtp.SMTPSession;
+import org.apache.james.protocols.smtp.hook.HookReturnCode;
+import org.apache.james.protocols.smtp.utils.BaseFakeSMTPSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryGreylistHandlerTest {
+
+    private static final String IP = "192.168.100.1";
+
+    private static class MemoryGreylistRepository implements GreylistRepository {
+        private final List<GreylistTriplet> stored = new ArrayList<GreylistTriplet>();
+        private final List<GreylistTriplet> removed = new ArrayList<GreylistTriplet>();
+
+        public Collection<GreylistTriplet> load() {
+            return new ArrayList<GreylistTriplet>(stored);
+        }
+
+        public void store(Collection<GreylistTriplet> triplets) {
+            stored.addAll(triplets);
+        }
+
+        public void remove(Collection<GreylistTriplet> triplets) {
+            removed.addAll(triplets);
+        }
+    }
+
+    private MemoryGreylistRepository repository;
+    private InMemoryGreylistHandler handler;
+
+    private SMTPSession setUpSMTPSession(final String ip) {
+        return new BaseFakeSMTPSession() {
+            @Override
+            public InetSocketAddress getRemoteAddress() {
+                return new InetSocketAddress(ip, 10000);
+            }
+
+            @Override
+            public boolean isRelayingAllowed() {
+                return false;
+            }
+        };
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new MemoryGreylistRepository();
+        handler = new InMemoryGreylistHandler();
+        handler.setFlushInterval(0);
+        handler.setRepository(repository);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        handler.stop();
+    }
+
+    @Test
+    public void doRcptShouldTemporaryRejectNewTriplet() throws Exception {
+        handler.start();
+
+        int result = handler.doRcpt(setUpSMTPSession(IP), new MailAddress("sender@domain"), new MailAddress("recip@domain")).getResult();
+
+        assertThat(result).isEqualTo(HookReturnCode.DENYSOFT);
+    }
+
+    @Test
+    public void doRcptShouldRejectRetryBeforeTempBlockTime() throws Exception {
+        handler.start();
+        SMTPSession session = setUpSMTPSession(IP);
+        handler.doRcpt(session, new MailAddress("sender@domain"), new MailAddress("recip@domain"));
+
+        int result = handler.doRcpt(session, new MailAddress("sender@domain"), new MailAddress("recip@domain")).getResult();
+
+        assertThat(result).isEqualTo(HookReturnCode.DENYSOFT);
+    }
+
+    @Test
+    public void doRcptShouldAcceptRetryAfterTempBlockTime() throws Exception {
+        handler.setTempBlockTime(0);
+        handler.start();
+        SMTPSession session = setUpSMTPSession(IP);
+        handler.doRcpt(session, new MailAddress("sender@domain"), new MailAddress("recip@domain"));
+
+        int result = handler.doRcpt(session, new MailAddress("sender@domain"), new MailAddress("recip@domain")).getResult();
+
+        assertThat(result).isEqualTo(HookReturnCode.DECLINED);
+    }
+
+    @Test
+    public void flushShouldStoreChangedTriplets() throws Exception {
+        handler.start();
+        handler.doRcpt(setUpSMTPSession(IP), new MailAddress("sender@domain"), new MailAddress("recip@domain"));
+
+        handler.flush();
+
+        assertThat(repository.stored).hasSize(1);
+        assertThat(repository.stored.get(0).getIpAddress()).isEqualTo(IP);
+        assertThat(repository.stored.get(0).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void startShouldLoadTripletsFromRepository() throws Exception {
+        handler.setTempBlockTime(0);
+        repository.stored.add(new GreylistTriplet(IP, "sender@domain", "recip@domain", 0, System.currentTimeMillis()));
+        handler.start();
+
+        int result = handler.doRcpt(setUpSMTPSession(IP), new MailAddress("sender@domain"), new MailAddress("recip@domain")).getResult();
+
+        assertThat(result).isEqualTo(HookReturnCode.DECLINED);
+    }
+
+    @Test
+    public void startShouldSkipExpiredTriplets() throws Exception {
+        handler.setUnseenLifeTime(1000);
+        repository.stored.add(new GreylistTriplet(IP, "sender@domain", "recip@domain", 0, System.currentTimeMillis() - 2000));
+        handler.start();
+
+        assertThat(handler.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void flushShouldRemoveExpiredTriplets() throws Exception {
+        handler.setUnseenLifeTime(1);
+        handler.setBucketSize(1);
+        handler.start();
+        handler.doRcpt(setUpSMTPSession(IP), new MailAddress("sender@domain"), new MailAddress("recip@domain"));
+        Thread.sleep(10);
+
+        handler.flush();
+
+        assertThat(handler.size()).isEqualTo(0);
+        assertThat(repository.removed).hasSize(1);
+    }
+}
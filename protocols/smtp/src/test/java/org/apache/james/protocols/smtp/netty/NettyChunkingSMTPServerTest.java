@@ -0,0 +1,267 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.protocols.smtp.netty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.protocols.api.Protocol;
+import org.apache.james.protocols.api.ProtocolServer;
+import org.apache.james.protocols.api.Response;
+import org.apache.james.protocols.api.handler.LineHandler;
+import org.apache.james.protocols.api.utils.MockLogger;
+import org.apache.james.protocols.api.utils.ProtocolServerUtils;
+import org.apache.james.protocols.netty.AbstractChannelPipelineFactory;
+import org.apache.james.protocols.netty.NettyServer;
+import org.apache.james.protocols.smtp.AllButStartTlsLineDelimiterChannelHandlerFactory;
+import org.apache.james.protocols.smtp.MailEnvelope;
+import org.apache.james.protocols.smtp.SMTPConfigurationImpl;
+import org.apache.james.protocols.smtp.SMTPProtocol;
+import org.apache.james.protocols.smtp.SMTPProtocolHandlerChain;
+import org.apache.james.protocols.smtp.SMTPSession;
+import org.apache.james.protocols.smtp.core.DataLineFilter;
+import org.apache.james.protocols.smtp.utils.TestMessageHook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.CharStreams;
+
+public class NettyChunkingSMTPServerTest {
+
+    private static final String LOCALHOST_IP = "127.0.0.1";
+    private static final int RANDOM_PORT = 0;
+    private static final String MESSAGE = "Subject: test\r\n\r\nfirst line\r\n.line starting with a dot\r\n..two dots\r\nlast line\r\n";
+
+    private TestMessageHook hook;
+    private AtomicInteger dataLineCount;
+    private ProtocolServer server;
+    private Socket socket;
+    private BufferedReader reader;
+    private OutputStream out;
+
+    @Before
+    public void setUp() throws Exception {
+        hook = new TestMessageHook();
+        dataLineCount = new AtomicInteger();
+        SMTPProtocolHandlerChain chain = new SMTPProtocolHandlerChain(new NoopMetricFactory());
+        chain.add(0, hook);
+        chain.add(0, new DataLineFilter() {
+            @Override
+            public Response onLine(SMTPSession session, ByteBuffer line, LineHandler<SMTPSession> next) {
+                dataLineCount.incrementAndGet();
+                return next.onLine(session, line);
+            }
+
+            @Override
+            public void init(Configuration config) throws ConfigurationException {
+            }
+
+            @Override
+            public void destroy() {
+            }
+        });
+        chain.wireExtensibleHandlers();
+        Protocol protocol = new SMTPProtocol(chain, new SMTPConfigurationImpl(), new MockLogger());
+        NettyServer nettyServer = NettyServer.builder()
+                .protocol(protocol)
+                .frameHandlerFactory(new AllButStartTlsLineDelimiterChannelHandlerFactory(AbstractChannelPipelineFactory.MAX_LINE_LENGTH))
+                .build();
+        nettyServer.setListenAddresses(new InetSocketAddress(LOCALHOST_IP, RANDOM_PORT));
+        server = nettyServer;
+        server.bind();
+
+        InetSocketAddress bindedAddress = new ProtocolServerUtils(server).retrieveBindedAddress();
+        socket = new Socket(bindedAddress.getAddress(), bindedAddress.getPort());
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.US_ASCII));
+        out = socket.getOutputStream();
+        assertThat(readReply()).startsWith("220");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (socket != null) {
+            socket.close();
+        }
+        if (server != null) {
+            server.unbind();
+        }
+    }
+
+    @Test
+    public void ehloShouldAnnounceChunking() throws Exception {
+        send("EHLO localhost\r\n");
+
+        assertThat(readReply()).contains("CHUNKING\n").startsWith("250");
+    }
+
+    @Test
+    public void bdatShouldDeliverTheChunkAsIs() throws Exception {
+        startTransaction();
+
+        send("BDAT " + MESSAGE.length() + " LAST\r\n" + MESSAGE);
+
+        assertThat(readReply()).startsWith("250");
+        assertThat(queuedMessage()).isEqualTo(MESSAGE);
+    }
+
+    @Test
+    public void bdatShouldDeliverMessagesSplitInChunks() throws Exception {
+        startTransaction();
+        String firstChunk = MESSAGE.substring(0, 20);
+        String secondChunk = MESSAGE.substring(20, 33);
+        String lastChunk = MESSAGE.substring(33);
+
+        send("BDAT " + firstChunk.length() + "\r\n" + firstChunk);
+        assertThat(readReply()).startsWith("250");
+        send("BDAT " + secondChunk.length() + "\r\n" + secondChunk);
+        assertThat(readReply()).startsWith("250");
+        send("BDAT " + lastChunk.length() + " LAST\r\n" + lastChunk);
+        assertThat(readReply()).startsWith("250");
+
+        assertThat(queuedMessage()).isEqualTo(MESSAGE);
+    }
+
+    @Test
+    public void bdatShouldSupportPipelining() throws Exception {
+        startTransaction();
+        String firstChunk = MESSAGE.substring(0, 25);
+        String lastChunk = MESSAGE.substring(25);
+
+        send("BDAT " + firstChunk.length() + "\r\n" + firstChunk
+            + "BDAT " + lastChunk.length() + " LAST\r\n" + lastChunk
+            + "NOOP\r\n");
+
+        assertThat(readReply()).startsWith("250");
+        assertThat(readReply()).startsWith("250");
+        assertThat(readReply()).startsWith("250");
+        assertThat(queuedMessage()).isEqualTo(MESSAGE);
+    }
+
+    @Test
+    public void bdatShouldAcceptAnEmptyLastChunk() throws Exception {
+        startTransaction();
+
+        send("BDAT " + MESSAGE.length() + "\r\n" + MESSAGE);
+        assertThat(readReply()).startsWith("250");
+        send("BDAT 0 LAST\r\n");
+        assertThat(readReply()).startsWith("250");
+
+        assertThat(queuedMessage()).isEqualTo(MESSAGE);
+    }
+
+    @Test
+    public void bdatShouldConsumeTheChunkWhenRejected() throws Exception {
+        send("EHLO localhost\r\n");
+        readReply();
+
+        send("BDAT " + MESSAGE.length() + " LAST\r\n" + MESSAGE + "NOOP\r\n");
+
+        assertThat(readReply()).startsWith("503");
+        assertThat(readReply()).startsWith("250");
+        assertThat(hook.getQueued()).isEmpty();
+    }
+
+    @Test
+    public void bdatShouldRejectInvalidChunkSize() throws Exception {
+        startTransaction();
+
+        send("BDAT abc\r\n");
+
+        assertThat(readReply()).startsWith("501");
+    }
+
+    @Test
+    public void dataShouldDeliverLargeMessages() throws Exception {
+        startTransaction();
+        StringBuilder message = new StringBuilder("Subject: test\r\n\r\n");
+        for (int i = 0; i < 5000; i++) {
+            message.append(Strings.repeat("x", i % 80)).append("\r\n");
+            if (i % 100 == 0) {
+                message.append(".dot\r\n");
+            }
+        }
+
+        send("DATA\r\n");
+        assertThat(readReply()).startsWith("354");
+        send(message.toString().replace("\r\n.", "\r\n..") + ".\r\n");
+        assertThat(readReply()).startsWith("250");
+
+        assertThat(queuedMessage()).isEqualTo(message.toString());
+        assertThat(dataLineCount.get()).isLessThan(5000);
+    }
+
+    @Test
+    public void dataShouldBeFollowedByCommands() throws Exception {
+        startTransaction();
+
+        send("DATA\r\n");
+        assertThat(readReply()).startsWith("354");
+        send(MESSAGE.replace("\r\n.", "\r\n..") + ".\r\nNOOP\r\n");
+
+        assertThat(readReply()).startsWith("250");
+        assertThat(readReply()).startsWith("250");
+        assertThat(queuedMessage()).isEqualTo(MESSAGE);
+    }
+
+    private void startTransaction() throws Exception {
+        send("EHLO localhost\r\n");
+        assertThat(readReply()).startsWith("250");
+        send("MAIL FROM:<me@sender>\r\n");
+        assertThat(readReply()).startsWith("250");
+        send("RCPT TO:<rcpt@domain>\r\n");
+        assertThat(readReply()).startsWith("250");
+    }
+
+    private void send(String content) throws Exception {
+        out.write(content.getBytes(Charsets.US_ASCII));
+        out.flush();
+    }
+
+    private String readReply() throws Exception {
+        StringBuilder reply = new StringBuilder();
+        String line;
+        do {
+            line = reader.readLine();
+            reply.append(line).append("\n");
+        } while (line.length() > 3 && line.charAt(3) == '-');
+        return reply.toString();
+    }
+
+    private String queuedMessage() throws Exception {
+        assertThat(hook.getQueued()).hasSize(1);
+        MailEnvelope envelope = hook.getQueued().get(0);
+        String content = CharStreams.toString(new InputStreamReader(envelope.getMessageInputStream(), Charsets.US_ASCII));
+        return content.substring(content.indexOf("Subject"));
+    }
+}
@@ -0,0 +1,341 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.mail.internet.SharedInputStream;
+import javax.mail.util.SharedFileInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * {@link OutputStream} which keeps the written data in blocks of a
+ * {@link MessageBufferPool}, and moves it to a file once the pool refuses to
+ * hold more of it.
+ * <p>
+ * The content is read back through {@link SharedInputStream}s. Streams which
+ * are still open when the buffer is disposed keep reading its blocks: those
+ * are then handed back to the pool budget but left to the garbage collector
+ * instead of being reused by other messages.
+ */
+public class MessageBuffer extends OutputStream {
+
+    private final MessageBufferPool pool;
+    private final String prefix;
+    private List<ByteBuffer> blocks = new ArrayList<ByteBuffer>();
+    private long byteCount;
+    private File file;
+    private OutputStream fileOut;
+    private boolean disposed;
+    private int openStreams;
+
+    MessageBuffer(MessageBufferPool pool, String prefix) {
+        this.pool = pool;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        checkNotDisposed();
+        if (file == null && byteCount + len > pool.getThreshold()) {
+            spill();
+        }
+        if (file != null) {
+            fileOut.write(b, off, len);
+            byteCount += len;
+            return;
+        }
+        int written = 0;
+        while (written < len) {
+            ByteBuffer block = currentBlock();
+            if (block == null) {
+                spill();
+                fileOut.write(b, off + written, len - written);
+                byteCount += len - written;
+                return;
+            }
+            int length = Math.min(block.remaining(), len - written);
+            block.put(b, off + written, length);
+            written += length;
+            byteCount += length;
+        }
+    }
+
+    private ByteBuffer currentBlock() {
+        if (!blocks.isEmpty()) {
+            ByteBuffer last = blocks.get(blocks.size() - 1);
+            if (last.hasRemaining()) {
+                return last;
+            }
+        }
+        ByteBuffer block = pool.acquire();
+        if (block != null) {
+            blocks.add(block);
+        }
+        return block;
+    }
+
+    private void spill() throws IOException {
+        file = File.createTempFile(prefix, ".m64", pool.getSpillDirectory());
+        fileOut = new BufferedOutputStream(new FileOutputStream(file));
+        byte[] copy = new byte[pool.getBlockSize()];
+        for (ByteBuffer block : blocks) {
+            ByteBuffer data = block.duplicate();
+            data.flip();
+            int length = data.remaining();
+            data.get(copy, 0, length);
+            fileOut.write(copy, 0, length);
+        }
+        releaseBlocks();
+        pool.spilled();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (fileOut != null) {
+            fileOut.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (fileOut != null) {
+            fileOut.close();
+        }
+    }
+
+    /**
+     * Return true if the data is held in memory
+     */
+    public synchronized boolean isInMemory() {
+        return file == null;
+    }
+
+    /**
+     * Return the file the data was spilled to, or null if it is held in memory
+     */
+    public synchronized File getFile() {
+        return file;
+    }
+
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Return a new {@link SharedInputStream} over the written data
+     */
+    public synchronized InputStream newInputStream() throws IOException {
+        checkNotDisposed();
+        if (file != null) {
+            fileOut.flush();
+            return new SharedFileInputStream(file);
+        }
+        return new BlocksInputStream(this, blocks, 0, byteCount);
+    }
+
+    /**
+     * Give the blocks back to the pool and delete the spill file
+     */
+    public synchronized void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        releaseBlocks();
+        if (file != null) {
+            IOUtils.closeQuietly(fileOut);
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    private void releaseBlocks() {
+        for (ByteBuffer block : blocks) {
+            if (openStreams == 0) {
+                pool.release(block);
+            } else {
+                pool.detach(block);
+            }
+        }
+        blocks = new ArrayList<ByteBuffer>();
+    }
+
+    private void checkNotDisposed() throws IOException {
+        if (disposed) {
+            throw new IOException("Message buffer has been disposed");
+        }
+    }
+
+    private synchronized void streamOpened() {
+        openStreams++;
+    }
+
+    private synchronized void streamClosed() {
+        openStreams--;
+    }
+
+    private synchronized ByteBuffer block(List<ByteBuffer> streamBlocks, int index) {
+        return streamBlocks.get(index).duplicate();
+    }
+
+    private static class BlocksInputStream extends InputStream implements SharedInputStream {
+
+        private final MessageBuffer buffer;
+        private final List<ByteBuffer> blocks;
+        private final int blockSize;
+        private final long start;
+        private final long end;
+        private long position;
+        private long mark;
+        private ByteBuffer current;
+        private int currentIndex = -1;
+        private boolean closed;
+
+        public BlocksInputStream(MessageBuffer buffer, List<ByteBuffer> blocks, long start, long end) {
+            this.buffer = buffer;
+            this.blocks = blocks;
+            this.blockSize = buffer.pool.getBlockSize();
+            this.start = start;
+            this.end = end;
+            this.position = start;
+            this.mark = start;
+            buffer.streamOpened();
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkNotClosed();
+            if (position >= end) {
+                return -1;
+            }
+            int b = blockAt(position).get((int) (position % blockSize)) & 0xff;
+            position++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkNotClosed();
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(len, end - position);
+            int read = 0;
+            while (read < toRead) {
+                ByteBuffer block = blockAt(position);
+                block.position((int) (position % blockSize));
+                int length = Math.min(block.remaining(), toRead - read);
+                block.get(b, off + read, length);
+                read += length;
+                position += length;
+            }
+            return read;
+        }
+
+        /**
+         * Return the block holding the given position, only going through the
+         * buffer lock when moving to another block
+         */
+        private ByteBuffer blockAt(long position) {
+            int index = (int) (position / blockSize);
+            if (index != currentIndex) {
+                current = buffer.block(blocks, index);
+                current.clear();
+                currentIndex = index;
+            }
+            return current;
+        }
+
+        private void checkNotClosed() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            mark = position;
+        }
+
+        @Override
+        public synchronized void reset() {
+            position = mark;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                current = null;
+                buffer.streamClosed();
+            }
+        }
+
+        public long getPosition() {
+            return position - start;
+        }
+
+        public InputStream newStream(long start, long end) {
+            if (start < 0) {
+                throw new IllegalArgumentException("start < 0");
+            }
+            if (closed) {
+                throw new IllegalStateException("Stream closed");
+            }
+            long newEnd = end == -1 ? this.end : this.start + end;
+            return new BlocksInputStream(buffer, blocks, this.start + start, Math.min(newEnd, this.end));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.core;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct {@link ByteBuffer} blocks used to hold incoming message data
+ * in memory.
+ * <p>
+ * A message is kept in pooled blocks as long as it does not exceed the per
+ * message threshold and the pool does not exceed its global budget. Beyond
+ * that, the message is spilled to a file of the spill directory.
+ * <p>
+ * The default pool is configured with the following system properties:
+ * <ul>
+ * <li>{@link #THRESHOLD_PROPERTY}: the per message memory budget, in bytes</li>
+ * <li>{@link #BUDGET_PROPERTY}: the global memory budget, in bytes</li>
+ * <li>{@link #SPILL_DIRECTORY_PROPERTY}: the directory where messages are
+ * spilled, the temporary directory by default</li>
+ * </ul>
+ */
+public class MessageBufferPool {
+
+    public final static String THRESHOLD_PROPERTY = "james.message.buffer.threshold";
+    public final static String BUDGET_PROPERTY = "james.message.buffer.budget";
+    public final static String SPILL_DIRECTORY_PROPERTY = "james.message.spill.directory";
+
+    public final static int DEFAULT_BLOCK_SIZE = 16 * 1024;
+    public final static int DEFAULT_THRESHOLD = 512 * 1024;
+    public final static long DEFAULT_BUDGET = 64 * 1024 * 1024;
+
+    private static MessageBufferPool defaultPool;
+
+    /**
+     * Return the pool configured by the system properties
+     */
+    public static synchronized MessageBufferPool getDefault() {
+        if (defaultPool == null) {
+            defaultPool = new MessageBufferPool(DEFAULT_BLOCK_SIZE,
+                Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD),
+                Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET),
+                new File(System.getProperty(SPILL_DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir"))));
+        }
+        return defaultPool;
+    }
+
+    private final int blockSize;
+    private final int threshold;
+    private final long budget;
+    private final File spillDirectory;
+    private final Queue<ByteBuffer> freeBlocks = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+
+    /**
+     * @param blockSize the size of the pooled blocks
+     * @param threshold the size above which a message is spilled to disk
+     * @param budget the maximum number of bytes held by all the messages
+     * @param spillDirectory the directory where messages are spilled
+     */
+    public MessageBufferPool(int blockSize, int threshold, long budget, File spillDirectory) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize should be positive");
+        }
+        this.blockSize = blockSize;
+        this.threshold = threshold;
+        this.budget = budget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Create a new empty {@link MessageBuffer} backed by this pool
+     *
+     * @param prefix the prefix of the spill file name
+     */
+    public MessageBuffer newBuffer(String prefix) {
+        return new MessageBuffer(this, prefix);
+    }
+
+    /**
+     * Return a block, or null if the global budget is exhausted
+     */
+    ByteBuffer acquire() {
+        while (true) {
+            long current = liveBytes.get();
+            if (current + blockSize > budget) {
+                return null;
+            }
+            if (liveBytes.compareAndSet(current, current + blockSize)) {
+                break;
+            }
+        }
+        ByteBuffer block = freeBlocks.poll();
+        if (block == null) {
+            return ByteBuffer.allocateDirect(blockSize);
+        }
+        block.clear();
+        return block;
+    }
+
+    void release(ByteBuffer block) {
+        liveBytes.addAndGet(-blockSize);
+        freeBlocks.offer(block);
+    }
+
+    /**
+     * Give back the budget of a block which is still read by some stream, and
+     * is thus left to the garbage collector instead of being reused
+     */
+    void detach(ByteBuffer block) {
+        liveBytes.addAndGet(-blockSize);
+    }
+
+    void spilled() {
+        spillCount.incrementAndGet();
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Return the number of bytes currently held in memory by the messages of this pool
+     */
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * Return the number of messages which were spilled to disk
+     */
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+}
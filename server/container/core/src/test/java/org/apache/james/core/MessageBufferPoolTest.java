@@ -0,0 +1,260 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.mail.internet.SharedInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MessageBufferPoolTest {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final int THRESHOLD = 64;
+    private static final long BUDGET = 96;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File spillDirectory;
+    private MessageBufferPool testee;
+
+    @Before
+    public void setUp() throws Exception {
+        spillDirectory = temporaryFolder.newFolder();
+        testee = new MessageBufferPool(BLOCK_SIZE, THRESHOLD, BUDGET, spillDirectory);
+    }
+
+    @Test
+    public void smallMessageShouldBeKeptInMemory() throws Exception {
+        MessageBuffer buffer = write(content(40));
+
+        assertThat(buffer.isInMemory()).isTrue();
+        assertThat(testee.getLiveBytes()).isEqualTo(48);
+        assertThat(testee.getSpillCount()).isEqualTo(0);
+        assertThat(spillDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void smallMessageShouldBeReadable() throws Exception {
+        MessageBuffer buffer = write(content(40));
+
+        assertThat(buffer.newInputStream()).hasContentEqualTo(new ByteArrayInputStream(content(40)));
+        assertThat(buffer.getByteCount()).isEqualTo(40);
+    }
+
+    @Test
+    public void messageAboveThresholdShouldBeSpilled() throws Exception {
+        MessageBuffer buffer = write(content(100));
+
+        assertThat(buffer.isInMemory()).isFalse();
+        assertThat(buffer.getFile().getParentFile()).isEqualTo(spillDirectory);
+        assertThat(testee.getLiveBytes()).isEqualTo(0);
+        assertThat(testee.getSpillCount()).isEqualTo(1);
+        assertThat(buffer.newInputStream()).hasContentEqualTo(new ByteArrayInputStream(content(100)));
+    }
+
+    @Test
+    public void messageShouldBeSpilledWhenWrittenInSeveralParts() throws Exception {
+        MessageBuffer buffer = testee.newBuffer("test");
+        byte[] content = content(100);
+        buffer.write(content, 0, 30);
+        buffer.write(content, 30, 30);
+        buffer.write(content, 60, 40);
+        buffer.close();
+
+        assertThat(buffer.isInMemory()).isFalse();
+        assertThat(buffer.newInputStream()).hasContentEqualTo(new ByteArrayInputStream(content));
+    }
+
+    @Test
+    public void messageShouldBeSpilledWhenBudgetIsExhausted() throws Exception {
+        write(content(64));
+        MessageBuffer second = write(content(64));
+
+        assertThat(second.isInMemory()).isFalse();
+        assertThat(testee.getLiveBytes()).isEqualTo(64);
+        assertThat(testee.getSpillCount()).isEqualTo(1);
+        assertThat(second.newInputStream()).hasContentEqualTo(new ByteArrayInputStream(content(64)));
+    }
+
+    @Test
+    public void disposeShouldReleaseMemory() throws Exception {
+        MessageBuffer buffer = write(content(40));
+
+        buffer.dispose();
+
+        assertThat(testee.getLiveBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void disposeShouldDeleteSpilledFile() throws Exception {
+        MessageBuffer buffer = write(content(100));
+
+        buffer.dispose();
+
+        assertThat(spillDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void releasedBlocksShouldBeReused() throws Exception {
+        write(content(64)).dispose();
+        MessageBuffer buffer = write(content(64));
+
+        assertThat(buffer.isInMemory()).isTrue();
+        assertThat(buffer.newInputStream()).hasContentEqualTo(new ByteArrayInputStream(content(64)));
+    }
+
+    @Test(expected = IOException.class)
+    public void newInputStreamShouldFailOnceDisposed() throws Exception {
+        MessageBuffer buffer = write(content(40));
+
+        buffer.dispose();
+
+        buffer.newInputStream();
+    }
+
+    @Test
+    public void openStreamShouldRemainReadableOnceDisposed() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        InputStream in = buffer.newInputStream();
+
+        buffer.dispose();
+        write(content(64));
+
+        assertThat(in).hasContentEqualTo(new ByteArrayInputStream(content(40)));
+    }
+
+    @Test
+    public void disposeShouldReleaseMemoryOfOpenStreams() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        buffer.newInputStream();
+
+        buffer.dispose();
+
+        assertThat(testee.getLiveBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void blocksOfOpenStreamsShouldNotBeReused() throws Exception {
+        MessageBuffer buffer = write(content(64));
+        InputStream in = buffer.newInputStream();
+        buffer.dispose();
+
+        MessageBuffer other = testee.newBuffer("test");
+        byte[] overwrite = new byte[64];
+        other.write(overwrite);
+        other.close();
+
+        assertThat(in).hasContentEqualTo(new ByteArrayInputStream(content(64)));
+    }
+
+    @Test(expected = IOException.class)
+    public void readingShouldFailOnceClosed() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        InputStream in = buffer.newInputStream();
+
+        in.close();
+
+        in.read();
+    }
+
+    @Test
+    public void singleByteReadsShouldReturnTheContentAcrossBlocks() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        InputStream in = buffer.newInputStream();
+
+        byte[] read = new byte[40];
+        for (int i = 0; i < read.length; i++) {
+            read[i] = (byte) in.read();
+        }
+
+        assertThat(read).isEqualTo(content(40));
+        assertThat(in.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void resetShouldMoveBackToAnotherBlock() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        InputStream in = buffer.newInputStream();
+        in.read(new byte[10]);
+        in.mark(0);
+        in.read(new byte[20]);
+
+        in.reset();
+
+        assertThat(in.read()).isEqualTo(10);
+    }
+
+    @Test
+    public void newStreamShouldReturnTheRequestedRange() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        SharedInputStream in = (SharedInputStream) buffer.newInputStream();
+
+        InputStream range = in.newStream(10, 30);
+
+        assertThat(IOUtils.toByteArray(range)).isEqualTo(IOUtils.toByteArray(new ByteArrayInputStream(content(40), 10, 20)));
+    }
+
+    @Test
+    public void newStreamShouldBeRelativeToItsParent() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        SharedInputStream in = (SharedInputStream) ((SharedInputStream) buffer.newInputStream()).newStream(10, -1);
+
+        InputStream range = in.newStream(5, -1);
+
+        assertThat(IOUtils.toByteArray(range)).isEqualTo(IOUtils.toByteArray(new ByteArrayInputStream(content(40), 15, 25)));
+    }
+
+    @Test
+    public void getPositionShouldReturnTheReadBytes() throws Exception {
+        MessageBuffer buffer = write(content(40));
+        InputStream in = buffer.newInputStream();
+
+        in.read(new byte[20]);
+
+        assertThat(((SharedInputStream) in).getPosition()).isEqualTo(20);
+    }
+
+    private MessageBuffer write(byte[] content) throws IOException {
+        MessageBuffer buffer = testee.newBuffer("test");
+        buffer.write(content);
+        buffer.close();
+        return buffer;
+    }
+
+    private byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+}
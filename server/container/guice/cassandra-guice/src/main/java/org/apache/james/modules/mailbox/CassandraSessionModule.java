@@ -38,7 +38,9 @@ import org.apache.james.backends.cassandra.init.ClusterBuilder;
 import org.apache.james.backends.cassandra.init.ClusterWithKeyspaceCreatedFactory;
 import org.apache.james.backends.cassandra.init.QueryLoggerConfiguration;
 import org.apache.james.backends.cassandra.init.SessionWithInitializedTablesFactory;
+import org.apache.james.backends.cassandra.utils.CassandraQueryInstrumentation;
 import org.apache.james.filesystem.api.FileSystem;
+import org.apache.james.metrics.api.MetricFactory;
 import org.apache.james.util.Host;
 
 import java.io.FileNotFoundException;
@@ -72,10 +74,27 @@ public class CassandraSessionModule extends AbstractModule {
 
     @Provides
     @Singleton
-    Session provideSession(CassandraSessionConfiguration configuration, Cluster cluster, CassandraModule cassandraModule)
+    Session provideSession(CassandraSessionConfiguration configuration, Cluster cluster, CassandraModule cassandraModule,
+                           CassandraQueryInstrumentation queryInstrumentation)
             throws FileNotFoundException, ConfigurationException{
         String keyspace = configuration.getConfiguration().getString("cassandra.keyspace");
-        return new SessionWithInitializedTablesFactory(cassandraModule).createSession(cluster, keyspace);
+        return queryInstrumentation.instrument(
+            new SessionWithInitializedTablesFactory(cassandraModule).createSession(cluster, keyspace));
+    }
+
+    @Provides
+    @Singleton
+    CassandraQueryInstrumentation provideQueryInstrumentation(CassandraSessionConfiguration configuration, MetricFactory metricFactory)
+            throws FileNotFoundException, ConfigurationException {
+        PropertiesConfiguration propertiesConfiguration = configuration.getConfiguration();
+        CassandraQueryInstrumentation.Builder builder = CassandraQueryInstrumentation.builder(metricFactory);
+
+        getOptionalIntegerFromConf(propertiesConfiguration, "cassandra.query.instrumentation.slow.query.threshold")
+            .ifPresent(builder::withSlowQueryThreshold);
+        getOptionalIntegerFromConf(propertiesConfiguration, "cassandra.query.instrumentation.slow.query.sampling.interval")
+            .ifPresent(builder::withSlowQuerySamplingInterval);
+
+        return builder.build();
     }
 
     @Provides
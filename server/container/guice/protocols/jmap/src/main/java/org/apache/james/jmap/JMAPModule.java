@@ -27,7 +27,9 @@ import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.io.FileUtils;
 import org.apache.james.filesystem.api.FileSystem;
+import org.apache.james.jmap.event.ComputeMessageFastViewProjectionListener;
 import org.apache.james.jmap.mailet.VacationMailet;
+import org.apache.james.jmap.methods.MethodCallExecutor;
 import org.apache.james.jmap.methods.RequestHandler;
 import org.apache.james.jmap.send.PostDequeueDecoratorFactory;
 import org.apache.james.jmap.utils.HtmlTextExtractor;
@@ -38,12 +40,15 @@ import org.apache.james.jwt.JwtConfiguration;
 import org.apache.james.lifecycle.api.Configurable;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.MailboxManager.SearchCapabilities;
+import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailetcontainer.impl.MatcherMailetPair;
 import org.apache.james.modules.server.CamelMailetContainerModule;
 import org.apache.james.queue.api.MailQueueItemDecoratorFactory;
 import org.apache.james.transport.matchers.RecipientIsLocal;
 import org.apache.james.utils.ConfigurationPerformer;
 import org.apache.james.utils.PropertiesProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.github.fge.lambdas.Throwing;
 import com.google.common.base.Preconditions;
@@ -64,12 +69,16 @@ public class JMAPModule extends AbstractModule {
         install(new MethodsModule());
         bind(JMAPServer.class).in(Scopes.SINGLETON);
         bind(RequestHandler.class).in(Scopes.SINGLETON);
+        bind(MethodCallExecutor.class).in(Scopes.SINGLETON);
         bind(UploadHandler.class).in(Scopes.SINGLETON);
         bind(MailboxBasedHtmlTextExtractor.class).in(Scopes.SINGLETON);
         bind(SystemMailboxesProviderImpl.class).in(Scopes.SINGLETON);
+        bind(ComputeMessageFastViewProjectionListener.class).in(Scopes.SINGLETON);
 
         bind(HtmlTextExtractor.class).to(MailboxBasedHtmlTextExtractor.class);
-        Multibinder.newSetBinder(binder(), ConfigurationPerformer.class).addBinding().to(RequiredCapabilitiesPrecondition.class);
+        Multibinder<ConfigurationPerformer> configurationPerformers = Multibinder.newSetBinder(binder(), ConfigurationPerformer.class);
+        configurationPerformers.addBinding().to(RequiredCapabilitiesPrecondition.class);
+        configurationPerformers.addBinding().to(MessageFastViewProjectionListenerRegistration.class);
 
         Multibinder<CamelMailetContainerModule.TransportProcessorCheck> transportProcessorChecks = Multibinder.newSetBinder(binder(), CamelMailetContainerModule.TransportProcessorCheck.class);
         transportProcessorChecks.addBinding().to(VacationMailetCheck.class);
@@ -134,6 +143,34 @@ public class JMAPModule extends AbstractModule {
         }
     }
 
+    @Singleton
+    public static class MessageFastViewProjectionListenerRegistration implements ConfigurationPerformer {
+        private static final Logger LOGGER = LoggerFactory.getLogger(MessageFastViewProjectionListenerRegistration.class);
+
+        private final MailboxManager mailboxManager;
+        private final ComputeMessageFastViewProjectionListener listener;
+
+        @Inject
+        public MessageFastViewProjectionListenerRegistration(MailboxManager mailboxManager, ComputeMessageFastViewProjectionListener listener) {
+            this.mailboxManager = mailboxManager;
+            this.listener = listener;
+        }
+
+        @Override
+        public void initModule() {
+            try {
+                mailboxManager.addGlobalListener(listener, mailboxManager.createSystemSession("jmap", LOGGER));
+            } catch (MailboxException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public List<Class<? extends Configurable>> forClasses() {
+            return ImmutableList.of();
+        }
+    }
+
     public static class VacationMailetCheck implements CamelMailetContainerModule.TransportProcessorCheck {
         @Override
         public void check(List<MatcherMailetPair> pairs) throws ConfigurationException {
@@ -79,16 +79,28 @@ public class JettyHttpServer implements Closeable {
     }
 
     
-    @SuppressWarnings("unchecked")
     private ServletHolder toServletHolder(String path, Object value) {
+        ServletHolder servletHolder = newServletHolder(value);
+        servletHolder.setAsyncSupported(true);
+        return servletHolder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ServletHolder newServletHolder(Object value) {
         if (value instanceof Servlet) {
             return new ServletHolder((Servlet) value);
         }
         return new ServletHolder((Class<? extends Servlet>)value);
     }
     
-    @SuppressWarnings("unchecked")
     private FilterHolder toFilterHolder(String path, Object value) {
+        FilterHolder filterHolder = newFilterHolder(value);
+        filterHolder.setAsyncSupported(true);
+        return filterHolder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private FilterHolder newFilterHolder(Object value) {
         if (value instanceof Filter) {
             return new FilterHolder((Filter)value);
         }
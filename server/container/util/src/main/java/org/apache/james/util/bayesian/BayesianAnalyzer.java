@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -60,7 +61,13 @@ import java.util.TreeSet;
  * <p>
  * Use: void buildCorpus()
  * <p/>
- * to build the final token/probabilities Map.
+ * to build the final corpus from the token counts, or
+ * <p/>
+ * Use: void updateCorpus()
+ * <p/>
+ * to add the token counts of newly analyzed messages to the existing corpus.
+ * The corpus only keeps hashed token counts, probabilities are derived from
+ * them when a message is classified, so training never requires a rebuild.
  * <p/>
  * Use your own methods for persistent storage of either the individual ham/spam
  * corpus & message counts, and/or the final corpus.
@@ -76,7 +83,7 @@ import java.util.TreeSet;
  * </p>
  * <p/>
  * <p>
- * If you use persistent storage, use: void setCorpus(Map)
+ * If you use persistent storage, use: void setCorpus(TokenCounts)
  * <p/>
  * before calling computeSpamProbability.
  * </p>
@@ -86,8 +93,6 @@ import java.util.TreeSet;
 
 public class BayesianAnalyzer {
 
-    private final Object lock = new Object();
-
     /**
      * Number of "interesting" tokens to use to compute overall spamminess
      * probability.
@@ -127,9 +132,10 @@ public class BayesianAnalyzer {
     private int spamMessageCount = 0;
 
     /**
-     * Final token/probability corpus.
+     * Final token corpus. It is replaced as a whole by buildCorpus and
+     * setCorpus so that classification never needs a lock.
      */
-    private Map<String, Double> corpus = new HashMap<String, Double>();
+    private volatile TokenCounts corpus = new TokenCounts();
 
     /**
      * Inner class for managing Token Probability Strengths during the
@@ -146,6 +152,11 @@ public class BayesianAnalyzer {
          */
         String token = null;
 
+        /**
+         * Token's probability, from the corpus or from its best degeneration.
+         */
+        double probability = DEFAULT_TOKEN_PROBABILITY;
+
         /**
          * Token's computed probability strength.
          */
@@ -256,7 +267,7 @@ public class BayesianAnalyzer {
      * Clears all analysis repositories and counters.
      */
     public void clear() {
-        corpus.clear();
+        corpus = new TokenCounts();
 
         tokenCountsClear();
 
@@ -277,35 +288,52 @@ public class BayesianAnalyzer {
      *
      * @param corpus The new corpus.
      */
-    public void setCorpus(Map<String, Double> corpus) {
+    public void setCorpus(TokenCounts corpus) {
         this.corpus = corpus;
     }
 
     /**
      * Public getter for corpus.
      */
-    public Map<String, Double> getCorpus() {
+    public TokenCounts getCorpus() {
         return this.corpus;
     }
 
     /**
-     * Builds the corpus from the existing ham & spam counts.
+     * Builds the corpus from the existing ham & spam counts, replacing the
+     * current one.
      */
     public void buildCorpus() {
-        // Combine the known ham & spam tokens.
-        Set<String> set = new HashSet<String>(hamTokenCounts.size() + spamTokenCounts.size());
-        set.addAll(hamTokenCounts.keySet());
-        set.addAll(spamTokenCounts.keySet());
-        Map<String, Double> tempCorpus = new HashMap<String, Double>(set.size());
-
-        // Iterate through all the tokens and compute their new
-        // individual probabilities.
-        for (String token : set) {
-            tempCorpus.put(token, computeProbability(token));
-        }
+        TokenCounts tempCorpus = new TokenCounts(Math.max(hamTokenCounts.size(), spamTokenCounts.size()));
+        addCountsTo(tempCorpus);
         setCorpus(tempCorpus);
     }
 
+    /**
+     * Adds the existing ham & spam counts to the current corpus. Messages
+     * being classified at the same time see the new counts as soon as they
+     * are added.
+     */
+    public void updateCorpus() {
+        addCountsTo(corpus);
+    }
+
+    /**
+     * Adds the existing ham & spam token and message counts to the given
+     * corpus.
+     *
+     * @param target The corpus to update
+     */
+    protected void addCountsTo(TokenCounts target) {
+        for (Entry<String, Integer> entry : hamTokenCounts.entrySet()) {
+            target.add(entry.getKey(), entry.getValue(), 0);
+        }
+        for (Entry<String, Integer> entry : spamTokenCounts.entrySet()) {
+            target.add(entry.getKey(), 0, entry.getValue());
+        }
+        target.addMessageCounts(hamMessageCount, spamMessageCount);
+    }
+
     /**
      * Adds a message to the ham list.
      *
@@ -341,7 +369,7 @@ public class BayesianAnalyzer {
 
         // Get the corpus to use in this run
         // A new corpus may be being built in the meantime
-        Map<String, Double> workCorpus = getCorpus();
+        TokenCounts workCorpus = getCorpus();
 
         // Assign their probabilities from the Corpus (using an additional
         // calculation to determine spamminess).
@@ -349,7 +377,7 @@ public class BayesianAnalyzer {
 
         // Compute and return the overall probability that the
         // stream is SPAM.
-        return computeOverallProbability(tokenProbabilityStrengths, workCorpus);
+        return computeOverallProbability(tokenProbabilityStrengths);
     }
 
     /**
@@ -512,38 +540,33 @@ public class BayesianAnalyzer {
     }
 
     /**
-     * Compute the probability that "token" is SPAM.
+     * Compute the probability that a token is SPAM.
      *
-     * @param token
+     * @param hamCount The ham occurrences of the token
+     * @param spamCount The spam occurrences of the token
+     * @param hamMessageCount The number of ham messages in the corpus
+     * @param spamMessageCount The number of spam messages in the corpus
      * @return The probability that the token occurs within spam.
      */
-    private double computeProbability(String token) {
+    private double computeProbability(int hamCount, int spamCount, int hamMessageCount, int spamMessageCount) {
         double hamFactor = 0;
         double spamFactor = 0;
 
-        boolean foundInHam = false;
-        boolean foundInSpam = false;
+        boolean foundInHam = hamCount > 0;
+        boolean foundInSpam = spamCount > 0;
 
         double minThreshold = 0.01;
         double maxThreshold = 0.99;
 
-        if (hamTokenCounts.containsKey(token)) {
-            foundInHam = true;
-        }
-
-        if (spamTokenCounts.containsKey(token)) {
-            foundInSpam = true;
-        }
-
         if (foundInHam) {
-            hamFactor = 2 * hamTokenCounts.get(token).doubleValue();
+            hamFactor = 2 * (double) hamCount;
             if (!foundInSpam) {
                 minThreshold = (hamFactor > 20) ? 0.0001 : 0.0002;
             }
         }
 
         if (foundInSpam) {
-            spamFactor = spamTokenCounts.get(token).doubleValue();
+            spamFactor = spamCount;
             if (!foundInHam) {
                 maxThreshold = (spamFactor > 10) ? 0.9999 : 0.9998;
             }
@@ -569,47 +592,38 @@ public class BayesianAnalyzer {
      * @param workCorpus
      * @return SortedSet of TokenProbabilityStrength objects.
      */
-    private SortedSet<TokenProbabilityStrength> getTokenProbabilityStrengths(Set<String> tokens, Map<String, Double> workCorpus) {
+    private SortedSet<TokenProbabilityStrength> getTokenProbabilityStrengths(Set<String> tokens, TokenCounts workCorpus) {
         // Convert to a SortedSet of token probability strengths.
         SortedSet<TokenProbabilityStrength> tokenProbabilityStrengths = new TreeSet<TokenProbabilityStrength>();
 
+        // Read the message counts once, they may be updated concurrently
+        int hamMessages = workCorpus.getHamMessageCount();
+        int spamMessages = workCorpus.getSpamMessageCount();
+
         for (String token : tokens) {
             TokenProbabilityStrength tps = new TokenProbabilityStrength();
 
             tps.token = token;
 
-            if (workCorpus.containsKey(tps.token)) {
-                tps.strength = Math.abs(0.5 - workCorpus.get(tps.token));
+            long counts = workCorpus.lookup(TokenCounts.hash(tps.token));
+            if (counts != 0L) {
+                tps.probability = computeProbability(TokenCounts.hamCount(counts), TokenCounts.spamCount(counts), hamMessages, spamMessages);
+                tps.strength = Math.abs(0.5 - tps.probability);
             } else {
                 // This token has never been seen before,
-                // we'll give it initially the default probability.
-                Double corpusProbability = DEFAULT_TOKEN_PROBABILITY;
-                tps.strength = Math.abs(0.5 - DEFAULT_TOKEN_PROBABILITY);
-                boolean isTokenDegeneratedFound = false;
-
-                Collection<String> degeneratedTokens = buildDegenerated(tps.token);
-                Iterator<String> iDegenerated = degeneratedTokens.iterator();
-                String tokenDegenerated;
-                double strengthDegenerated;
-                while (iDegenerated.hasNext()) {
-                    tokenDegenerated = iDegenerated.next();
-                    if (workCorpus.containsKey(tokenDegenerated)) {
-                        Double probabilityTemp = workCorpus.get(tokenDegenerated);
-                        strengthDegenerated = Math.abs(0.5 - probabilityTemp);
+                // we'll give it initially the default probability,
+                // unless one of its degenerations is stronger.
+                for (String tokenDegenerated : buildDegenerated(tps.token)) {
+                    long degeneratedCounts = workCorpus.lookup(TokenCounts.hash(tokenDegenerated));
+                    if (degeneratedCounts != 0L) {
+                        double probabilityTemp = computeProbability(TokenCounts.hamCount(degeneratedCounts), TokenCounts.spamCount(degeneratedCounts), hamMessages, spamMessages);
+                        double strengthDegenerated = Math.abs(0.5 - probabilityTemp);
                         if (strengthDegenerated > tps.strength) {
-                            isTokenDegeneratedFound = true;
                             tps.strength = strengthDegenerated;
-                            corpusProbability = probabilityTemp;
+                            tps.probability = probabilityTemp;
                         }
                     }
                 }
-                // to reduce memory usage, put in the corpus only if the
-                // probability is different from (stronger than) the default
-                if (isTokenDegeneratedFound) {
-                    synchronized (lock) {
-                        workCorpus.put(tps.token, corpusProbability);
-                    }
-                }
             }
 
             tokenProbabilityStrengths.add(tps);
@@ -673,10 +687,9 @@ public class BayesianAnalyzer {
      * tokenProbabilities SortedSet.
      *
      * @param tokenProbabilityStrengths
-     * @param workCorpus
      * @return Computed spamminess.
      */
-    private double computeOverallProbability(SortedSet<TokenProbabilityStrength> tokenProbabilityStrengths, Map<String, Double> workCorpus) {
+    private double computeOverallProbability(SortedSet<TokenProbabilityStrength> tokenProbabilityStrengths) {
         double p = 1.0;
         double np = 1.0;
         double tempStrength = 0.5;
@@ -688,14 +701,9 @@ public class BayesianAnalyzer {
 
             // System.out.println(tps);
 
-            double theDoubleValue = DEFAULT_TOKEN_PROBABILITY; // initialize it
-            // to the default
-            Double theDoubleObject = workCorpus.get(tps.token);
-            // if either the original token or a degeneration was found use the
-            // double value, otherwise use the default
-            if (theDoubleObject != null) {
-                theDoubleValue = theDoubleObject;
-            }
+            // either the original token or degeneration probability, or the
+            // default
+            double theDoubleValue = tps.probability;
             p *= theDoubleValue;
             np *= (1.0 - theDoubleValue);
             // System.out.println("Token " + tps + ", p=" + theDoubleValue +
@@ -22,8 +22,11 @@ package org.apache.james.util.bayesian;
 import org.apache.james.util.sql.JDBCUtil;
 import org.apache.james.util.sql.SqlResources;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import java.io.File;
 
@@ -80,6 +83,12 @@ abstract public class JDBCBayesianAnalyzer extends BayesianAnalyzer {
     /** Holds value of property lastDatabaseUpdateTime. */
     private static long lastDatabaseUpdateTime;
 
+    /**
+     * Analyzers whose corpus is kept up to date by
+     * {@link #publishTraining()}.
+     */
+    private static final Set<JDBCBayesianAnalyzer> corpusSubscribers = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<JDBCBayesianAnalyzer, Boolean>()));
+
     /**
      * Getter for property sqlFileName.
      * 
@@ -146,6 +155,103 @@ abstract public class JDBCBayesianAnalyzer extends BayesianAnalyzer {
     public JDBCBayesianAnalyzer() {
     }
 
+    /**
+     * Registers this analyzer so that messages trained by other analyzers in
+     * this JVM are added to its corpus by {@link #publishTraining()}, without
+     * reloading the database.
+     */
+    public void subscribeToTraining() {
+        corpusSubscribers.add(this);
+    }
+
+    /**
+     * Stops receiving the messages trained by other analyzers.
+     */
+    public void unsubscribeFromTraining() {
+        corpusSubscribers.remove(this);
+    }
+
+    /**
+     * Adds the current ham & spam counts of this analyzer to the corpus of
+     * every subscribed analyzer. Must be called while holding
+     * {@link #DATABASE_LOCK}, once the counts have been committed to the
+     * database, so that it does not race with a corpus reload.
+     */
+    public void publishTraining() {
+        JDBCBayesianAnalyzer[] subscribers;
+        synchronized (corpusSubscribers) {
+            subscribers = corpusSubscribers.toArray(new JDBCBayesianAnalyzer[corpusSubscribers.size()]);
+        }
+        for (JDBCBayesianAnalyzer subscriber : subscribers) {
+            if (subscriber != this) {
+                addCountsTo(subscriber.getCorpus());
+            }
+        }
+    }
+
+    /**
+     * Loads the token frequencies from the database straight into a new
+     * corpus, which replaces the current one once fully loaded. Unlike
+     * {@link #loadHamNSpam(Connection)} followed by {@link #buildCorpus()}, the
+     * tokens are never held as strings.
+     * 
+     * @param conn
+     *            The connection for accessing the database
+     * @throws SQLException
+     *             If a database error occurs
+     */
+    public void loadCorpus(Connection conn) throws java.sql.SQLException {
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        TokenCounts corpus = new TokenCounts();
+
+        try {
+            pstmt = conn.prepareStatement(sqlQueries.getSqlString("selectHamTokens", true));
+            rs = pstmt.executeQuery();
+            int hamTokens = 0;
+            while (rs.next()) {
+                int count = rs.getInt(2);
+                // to reduce memory, use the token only if the count is > 1
+                if (count > 1) {
+                    corpus.add(rs.getString(1), count, 0);
+                    hamTokens++;
+                }
+            }
+            delegatedLog("Ham tokens count: " + hamTokens);
+
+            rs.close();
+            pstmt.close();
+
+            pstmt = conn.prepareStatement(sqlQueries.getSqlString("selectSpamTokens", true));
+            rs = pstmt.executeQuery();
+            int spamTokens = 0;
+            while (rs.next()) {
+                int count = rs.getInt(2);
+                if (count > 1) {
+                    corpus.add(rs.getString(1), 0, count);
+                    spamTokens++;
+                }
+            }
+            delegatedLog("Spam tokens count: " + spamTokens);
+
+            rs.close();
+            pstmt.close();
+
+            pstmt = conn.prepareStatement(sqlQueries.getSqlString("selectMessageCounts", true));
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                setHamMessageCount(rs.getInt(1));
+                setSpamMessageCount(rs.getInt(2));
+                corpus.addMessageCounts(rs.getInt(1), rs.getInt(2));
+            }
+
+            setCorpus(corpus);
+        } finally {
+            theJDBCUtil.closeJDBCResultSet(rs);
+            theJDBCUtil.closeJDBCStatement(pstmt);
+        }
+    }
+
     /**
      * Loads the token frequencies from the database.
      * 
@@ -0,0 +1,266 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.bayesian;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Compact ham/spam occurrence dictionary used as the {@link BayesianAnalyzer}
+ * corpus.
+ * </p>
+ * <p>
+ * Tokens are not retained: each one is reduced to a 64 bit hash and stored in
+ * an open-addressing table made of two primitive arrays, the second one
+ * packing the ham and spam counts of the token. This takes a fraction of the
+ * memory needed by a <code>Map&lt;String, Integer&gt;</code>, at the price of
+ * a negligible chance of two tokens sharing their counts.
+ * </p>
+ * <p>
+ * Updates are serialized, lookups never block: a slot value is always written
+ * before its key is published, and a grown table only becomes visible once
+ * fully populated. Lookups running during an update may therefore miss the
+ * latest increment, but never observe a torn entry.
+ * </p>
+ */
+public class TokenCounts {
+
+    private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+    private static final long EMPTY = 0L;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final class Table {
+        private final AtomicLongArray keys;
+        private final AtomicLongArray counts;
+        private final int mask;
+        private final int threshold;
+
+        private Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.counts = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.threshold = (capacity >> 1) + (capacity >> 2);
+        }
+    }
+
+    private volatile Table table;
+
+    private int size;
+
+    private volatile int hamMessageCount;
+
+    private volatile int spamMessageCount;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public TokenCounts() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Creates an empty dictionary sized to hold the given number of tokens
+     * without growing.
+     * 
+     * @param expectedSize The expected number of distinct tokens.
+     */
+    public TokenCounts(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    /**
+     * Adds occurrences of a token.
+     * 
+     * @param token The token.
+     * @param hamDelta Ham occurrences to add, may be negative.
+     * @param spamDelta Spam occurrences to add, may be negative.
+     */
+    public void add(String token, int hamDelta, int spamDelta) {
+        add(hash(token), hamDelta, spamDelta);
+    }
+
+    /**
+     * Adds analyzed messages to the ham and spam message counts.
+     * 
+     * @param hamDelta Ham messages to add.
+     * @param spamDelta Spam messages to add.
+     */
+    public synchronized void addMessageCounts(int hamDelta, int spamDelta) {
+        hamMessageCount = saturatedAdd(hamMessageCount, hamDelta);
+        spamMessageCount = saturatedAdd(spamMessageCount, spamDelta);
+    }
+
+    /**
+     * Returns the ham occurrences of a token, 0 if unknown.
+     */
+    public int getHamCount(String token) {
+        return hamCount(lookup(hash(token)));
+    }
+
+    /**
+     * Returns the spam occurrences of a token, 0 if unknown.
+     */
+    public int getSpamCount(String token) {
+        return spamCount(lookup(hash(token)));
+    }
+
+    /**
+     * Returns true if the token has been added to this dictionary.
+     */
+    public boolean contains(String token) {
+        return lookup(hash(token)) != EMPTY;
+    }
+
+    public int getHamMessageCount() {
+        return hamMessageCount;
+    }
+
+    public int getSpamMessageCount() {
+        return spamMessageCount;
+    }
+
+    /**
+     * Returns the number of distinct tokens.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the packed counts of the token with the given hash, or
+     * {@link #EMPTY} if it is unknown.
+     */
+    long lookup(long key) {
+        Table current = table;
+        int index = indexFor(key, current.mask);
+        while (true) {
+            long candidate = current.keys.get(index);
+            if (candidate == key) {
+                return current.counts.get(index);
+            }
+            if (candidate == EMPTY) {
+                return EMPTY;
+            }
+            index = (index + 1) & current.mask;
+        }
+    }
+
+    synchronized void add(long key, int hamDelta, int spamDelta) {
+        Table current = table;
+        int index = indexFor(key, current.mask);
+        while (true) {
+            long candidate = current.keys.get(index);
+            if (candidate == key) {
+                long packed = current.counts.get(index);
+                current.counts.set(index, pack(saturatedAdd(hamCount(packed), hamDelta), saturatedAdd(spamCount(packed), spamDelta)));
+                return;
+            }
+            if (candidate == EMPTY) {
+                break;
+            }
+            index = (index + 1) & current.mask;
+        }
+
+        if (size >= current.threshold) {
+            current = grow(current);
+            index = indexFor(key, current.mask);
+            while (current.keys.get(index) != EMPTY) {
+                index = (index + 1) & current.mask;
+            }
+        }
+        // The value has to be visible before the key makes the slot reachable
+        current.counts.set(index, pack(saturatedAdd(0, hamDelta), saturatedAdd(0, spamDelta)));
+        current.keys.set(index, key);
+        size++;
+    }
+
+    private Table grow(Table current) {
+        Table grown = new Table(current.keys.length() << 1);
+        for (int i = 0; i < current.keys.length(); i++) {
+            long key = current.keys.get(i);
+            if (key != EMPTY) {
+                int index = indexFor(key, grown.mask);
+                while (grown.keys.get(index) != EMPTY) {
+                    index = (index + 1) & grown.mask;
+                }
+                grown.counts.set(index, current.counts.get(i));
+                grown.keys.set(index, key);
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    /**
+     * Hashes a token to a non zero 64 bit key (FNV-1a over the UTF-16 chars
+     * followed by a finalization mix).
+     */
+    static long hash(CharSequence token) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    static int hamCount(long packed) {
+        return (int) (packed >>> 32) & Integer.MAX_VALUE;
+    }
+
+    static int spamCount(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Packs the counts, the mark bit keeps an entry with zero occurrences
+     * distinguishable from {@link #EMPTY}.
+     */
+    private static long pack(int hamCount, int spamCount) {
+        return ((long) hamCount << 32) | (spamCount & 0xffffffffL) | Long.MIN_VALUE;
+    }
+
+    private static int saturatedAdd(int count, int delta) {
+        long result = (long) count + delta;
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, result));
+    }
+
+    private static int indexFor(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity < Integer.MAX_VALUE >> 1 && (capacity >> 1) + (capacity >> 2) <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
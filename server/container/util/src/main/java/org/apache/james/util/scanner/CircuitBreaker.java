@@ -0,0 +1,79 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+/**
+ * Stops sending requests to a scanner host after <code>failureThreshold</code> consecutive failures. Once
+ * <code>openMillis</code> elapsed a single trial request is let through: the breaker closes again if it succeeds and
+ * stays open for another <code>openMillis</code> otherwise.
+ */
+public class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private int consecutiveFailures;
+    private long openedAt = -1;
+    private boolean trialInFlight;
+
+    /**
+     * @param failureThreshold
+     *            The number of consecutive failures opening the breaker, or 0 to never open it
+     * @param openMillis
+     *            The time the breaker stays open before a trial request is allowed
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Return true if a request can be sent. When this returns true, the outcome must be reported with
+     * {@link #recordSuccess()} or {@link #recordFailure()}.
+     */
+    public synchronized boolean allowRequest() {
+        if (openedAt < 0) {
+            return true;
+        }
+        if (!trialInFlight && System.currentTimeMillis() - openedAt >= openMillis) {
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        openedAt = -1;
+        trialInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (trialInFlight || (failureThreshold > 0 && consecutiveFailures >= failureThreshold)) {
+            openedAt = System.currentTimeMillis();
+        }
+        trialInFlight = false;
+    }
+
+    public synchronized boolean isOpen() {
+        return openedAt >= 0;
+    }
+}
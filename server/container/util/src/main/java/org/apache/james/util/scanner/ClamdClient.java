@@ -0,0 +1,297 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Client for the ClamAV daemon (clamd).
+ * <p>
+ * Every pooled connection is a clamd session opened with <code>IDSESSION</code>, on which messages are sent with
+ * <code>INSTREAM</code> as chunks of at most <code>bufferSize</code> bytes. Idle sessions are checked with
+ * <code>PING</code> and ended with <code>END</code>. clamd closes idle sessions after its <code>IdleTimeout</code>
+ * (30 seconds by default), so the pool <code>maxIdleMillis</code> should stay below it.
+ */
+public class ClamdClient {
+
+    /**
+     * The answer of clamd
+     */
+    public static class Result {
+        private final boolean infected;
+        private final String answer;
+        private final InetSocketAddress address;
+
+        public Result(boolean infected, String answer, InetSocketAddress address) {
+            this.infected = infected;
+            this.answer = answer;
+            this.address = address;
+        }
+
+        public boolean isInfected() {
+            return infected;
+        }
+
+        /**
+         * The answer, for example <code>stream: OK</code> or <code>stream: Eicar-Test-Signature FOUND</code>
+         */
+        public String getAnswer() {
+            return answer;
+        }
+
+        /**
+         * The address of the clamd which scanned the message
+         */
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+    }
+
+    private static final String FOUND_STRING = "FOUND";
+    private static final String ERROR_STRING = "ERROR";
+
+    private static final ScannerConnectionPool.Protocol CLAMD_PROTOCOL = new ScannerConnectionPool.Protocol() {
+        public void open(ScannerConnection connection) throws IOException {
+            sendCommand(connection, "IDSESSION");
+        }
+
+        public void validate(ScannerConnection connection) throws IOException {
+            sendCommand(connection, "PING");
+            String answer = readAnswer(connection);
+            if (!answer.endsWith("PONG")) {
+                throw new IOException("Bad answer from \"PING\" probe: " + answer);
+            }
+        }
+
+        public void close(ScannerConnection connection) {
+            try {
+                sendCommand(connection, "END");
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    };
+
+    /**
+     * Create a pool builder with the clamd protocol, to which at least one address needs to be added
+     */
+    public static ScannerConnectionPool.Builder poolBuilder() {
+        return ScannerConnectionPool.builder(CLAMD_PROTOCOL);
+    }
+
+    private final ScannerConnectionPool pool;
+
+    private final MetricFactory metricFactory;
+
+    private final int chunkSize;
+
+    /**
+     * @param pool
+     *            A pool built with {@link #poolBuilder()}
+     * @param metricFactory
+     *            Used to time the scans
+     * @param chunkSize
+     *            The maximum size of an <code>INSTREAM</code> chunk
+     */
+    public ClamdClient(ScannerConnectionPool pool, MetricFactory metricFactory, int chunkSize) {
+        this.pool = pool;
+        this.metricFactory = metricFactory;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Scan a MimeMessage for viruses by streaming it to clamd.
+     * 
+     * @param message
+     *            The MimeMessage to scan
+     * @return the result
+     * @throws IOException
+     *             if clamd could not be reached
+     * @throws MessagingException
+     *             if the message could not be written, or clamd reported an error while scanning it, for example
+     *             because it exceeds its <code>StreamMaxLength</code>. Such errors are not retried on other hosts.
+     */
+    public Result scan(final MimeMessage message) throws IOException, MessagingException {
+        TimeMetric timeMetric = metricFactory.timer("clamdScan");
+        try {
+            return pool.execute(new ScannerConnectionPool.Operation<Result>() {
+                public Result execute(ScannerConnection connection) throws IOException, MessagingException {
+                    return scan(connection, message);
+                }
+            });
+        } finally {
+            timeMetric.stopAndPublish();
+        }
+    }
+
+    public List<InetSocketAddress> getAddresses() {
+        return pool.getAddresses();
+    }
+
+    public void close() {
+        pool.close();
+    }
+
+    private Result scan(ScannerConnection connection, MimeMessage message) throws IOException, MessagingException {
+        sendCommand(connection, "INSTREAM");
+        ChunkedOutputStream chunks = new ChunkedOutputStream(connection.getOutputStream(), chunkSize);
+        try {
+            message.writeTo(chunks);
+            chunks.finish();
+        } catch (IOException e) {
+            // clamd answers and closes the session as soon as the stream exceeds its limit
+            checkError(connection, readAvailableAnswer(connection));
+            throw e;
+        }
+
+        String answer = readAnswer(connection);
+        checkError(connection, answer);
+        return new Result(answer.endsWith(FOUND_STRING), answer, connection.getAddress());
+    }
+
+    /**
+     * Errors answered to <code>INSTREAM</code>, such as "INSTREAM size limit exceeded", are caused by the message
+     * rather than by the host, hence reported as {@link MessagingException}
+     */
+    private void checkError(ScannerConnection connection, String answer) throws MessagingException {
+        if (answer != null && answer.endsWith(ERROR_STRING)) {
+            // clamd ends the session on errors
+            connection.markNotReusable();
+            throw new MessagingException("clamd on " + connection.getAddress() + " could not scan the message: " + answer);
+        }
+    }
+
+    private String readAvailableAnswer(ScannerConnection connection) {
+        try {
+            if (connection.getInputStream().available() > 0) {
+                return readAnswer(connection);
+            }
+        } catch (IOException e) {
+            // no answer
+        }
+        return null;
+    }
+
+    private static void sendCommand(ScannerConnection connection, String command) throws IOException {
+        OutputStream out = connection.getOutputStream();
+        out.write(("z" + command + "\0").getBytes(Charsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Read a null terminated answer and strip the request id added by <code>IDSESSION</code>
+     */
+    private static String readAnswer(ScannerConnection connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != 0) {
+            if (b < 0) {
+                throw new IOException("Connection closed by clamd on " + connection.getAddress());
+            }
+            answer.write(b);
+        }
+        String line = new String(answer.toByteArray(), Charsets.US_ASCII).trim();
+        int idEnd = line.indexOf(": ");
+        if (idEnd > 0 && isNumber(line.substring(0, idEnd))) {
+            return line.substring(idEnd + 2);
+        }
+        return line;
+    }
+
+    private static boolean isNumber(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the <code>INSTREAM</code> chunks: a 4 bytes network order length followed by the data
+     */
+    private static class ChunkedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int count;
+
+        private ChunkedOutputStream(OutputStream out, int chunkSize) {
+            this.out = out;
+            this.buffer = new byte[chunkSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    writeChunk();
+                }
+                int length = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, length);
+                count += length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        private void finish() throws IOException {
+            writeChunk();
+            writeLength(0);
+            out.flush();
+        }
+
+        private void writeChunk() throws IOException {
+            if (count > 0) {
+                writeLength(count);
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        private void writeLength(int length) throws IOException {
+            out.write(length >>> 24);
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A connection to a scanner daemon, handed out by a {@link ScannerConnectionPool}
+ */
+public class ScannerConnection {
+
+    private final InetSocketAddress address;
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private long lastUsed;
+    private boolean reusable = true;
+
+    ScannerConnection(InetSocketAddress address, int connectTimeout, int readTimeout, int bufferSize) throws IOException {
+        this.address = address;
+        this.socket = new Socket();
+        try {
+            socket.setSoTimeout(readTimeout);
+            socket.connect(address, connectTimeout);
+            this.in = new BufferedInputStream(socket.getInputStream(), bufferSize);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), bufferSize);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Signal that the writing side is done, for protocols which use the end of the stream as the end of the request
+     */
+    public void shutdownOutput() throws IOException {
+        out.flush();
+        socket.shutdownOutput();
+        reusable = false;
+    }
+
+    /**
+     * Prevent the connection from being returned to the pool, for protocols which do not support several requests per
+     * connection or when the connection is in an unknown state
+     */
+    public void markNotReusable() {
+        reusable = false;
+    }
+
+    boolean isReusable() {
+        return reusable && !socket.isClosed();
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    void close() {
+        reusable = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.MessagingException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Pool of connections to one or more hosts running the same scanner daemon.
+ * <p>
+ * Hosts are used round-robin. Each host has its own limit of concurrent requests, its own idle connections and its own
+ * {@link CircuitBreaker}: a host whose breaker is open is skipped, and a request failing on one host is tried on the
+ * next one. Idle connections are validated by the {@link Protocol} before being reused, dropped after
+ * <code>maxIdleMillis</code>, and a request failing on a reused connection is retried once on a new connection.
+ */
+public class ScannerConnectionPool {
+
+    /**
+     * Protocol specific handling of the connection lifecycle
+     */
+    public interface Protocol {
+
+        /**
+         * Called once on every new connection, before the first request
+         */
+        void open(ScannerConnection connection) throws IOException;
+
+        /**
+         * Check that an idle connection is still usable, failing if it is not
+         */
+        void validate(ScannerConnection connection) throws IOException;
+
+        /**
+         * Called before a reusable connection gets closed. Errors should be ignored.
+         */
+        void close(ScannerConnection connection);
+    }
+
+    /**
+     * A request executed on a connection
+     */
+    public interface Operation<T> {
+
+        /**
+         * Execute the request. An {@link IOException} denotes a failure of the host, a {@link MessagingException} a
+         * failure of the message itself.
+         */
+        T execute(ScannerConnection connection) throws IOException, MessagingException;
+    }
+
+    public static class Builder {
+        private final Protocol protocol;
+        private final List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        private int maxConnectionsPerHost = 8;
+        private long maxIdleMillis = 20000;
+        private long validationIntervalMillis = 5000;
+        private int connectTimeout = 10000;
+        private int readTimeout = 60000;
+        private int bufferSize = 8192;
+        private int failureThreshold = 5;
+        private long circuitOpenMillis = 30000;
+
+        private Builder(Protocol protocol) {
+            this.protocol = protocol;
+        }
+
+        public Builder address(InetSocketAddress address) {
+            addresses.add(address);
+            return this;
+        }
+
+        /**
+         * Maximum number of concurrent requests, and so of connections, per host
+         */
+        public Builder maxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Idle connections older than this are closed instead of being reused. Should be lower than the idle timeout
+         * of the daemon.
+         */
+        public Builder maxIdleMillis(long maxIdleMillis) {
+            this.maxIdleMillis = maxIdleMillis;
+            return this;
+        }
+
+        /**
+         * Idle connections older than this are validated before being reused
+         */
+        public Builder validationIntervalMillis(long validationIntervalMillis) {
+            this.validationIntervalMillis = validationIntervalMillis;
+            return this;
+        }
+
+        public Builder connectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Socket read timeout, also used as the maximum time to wait for a free connection
+         */
+        public Builder readTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        public Builder bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Number of consecutive failures after which a host is not used for <code>circuitOpenMillis</code>, 0 to
+         * disable the circuit breaker
+         */
+        public Builder circuitBreaker(int failureThreshold, long circuitOpenMillis) {
+            this.failureThreshold = failureThreshold;
+            this.circuitOpenMillis = circuitOpenMillis;
+            return this;
+        }
+
+        public ScannerConnectionPool build() {
+            Preconditions.checkState(!addresses.isEmpty(), "At least one address is needed");
+            Preconditions.checkState(maxConnectionsPerHost > 0, "maxConnectionsPerHost must be positive");
+            return new ScannerConnectionPool(this);
+        }
+    }
+
+    private static class Host {
+        private final InetSocketAddress address;
+        private final Semaphore permits;
+        private final BlockingDeque<ScannerConnection> idle = new LinkedBlockingDeque<ScannerConnection>();
+        private final CircuitBreaker circuitBreaker;
+
+        private Host(InetSocketAddress address, int maxConnections, CircuitBreaker circuitBreaker) {
+            this.address = address;
+            this.permits = new Semaphore(maxConnections, true);
+            this.circuitBreaker = circuitBreaker;
+        }
+    }
+
+    public static Builder builder(Protocol protocol) {
+        return new Builder(protocol);
+    }
+
+    private final Protocol protocol;
+    private final List<Host> hosts;
+    private final long maxIdleMillis;
+    private final long validationIntervalMillis;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int bufferSize;
+    private final AtomicInteger nextHost = new AtomicInteger();
+    private volatile boolean closed;
+
+    private ScannerConnectionPool(Builder builder) {
+        this.protocol = builder.protocol;
+        this.maxIdleMillis = builder.maxIdleMillis;
+        this.validationIntervalMillis = builder.validationIntervalMillis;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.bufferSize = builder.bufferSize;
+        this.hosts = new ArrayList<Host>(builder.addresses.size());
+        for (InetSocketAddress address : builder.addresses) {
+            hosts.add(new Host(address, builder.maxConnectionsPerHost, new CircuitBreaker(builder.failureThreshold, builder.circuitOpenMillis)));
+        }
+    }
+
+    /**
+     * Execute the operation on the next available host
+     * 
+     * @throws IOException
+     *             if the operation failed on all the available hosts, or if no host is available
+     * @throws MessagingException
+     *             if the operation failed because of the message
+     */
+    public <T> T execute(Operation<T> operation) throws IOException, MessagingException {
+        if (closed) {
+            throw new IOException("Scanner connection pool is closed");
+        }
+        IOException lastFailure = null;
+        int start = nextHost.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < hosts.size(); i++) {
+            Host host = hosts.get((start + i) % hosts.size());
+            if (host.circuitBreaker.allowRequest()) {
+                try {
+                    return execute(host, operation);
+                } catch (IOException e) {
+                    lastFailure = e;
+                }
+            }
+        }
+        if (lastFailure != null) {
+            throw lastFailure;
+        }
+        throw new IOException("No scanner host available, the circuit breakers of " + getAddresses() + " are open");
+    }
+
+    /**
+     * Close all the idle connections. Requests executed afterwards fail.
+     */
+    public void close() {
+        closed = true;
+        for (Host host : hosts) {
+            ScannerConnection connection;
+            while ((connection = host.idle.pollFirst()) != null) {
+                destroy(connection);
+            }
+        }
+    }
+
+    public List<InetSocketAddress> getAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>(hosts.size());
+        for (Host host : hosts) {
+            addresses.add(host.address);
+        }
+        return addresses;
+    }
+
+    /**
+     * Return the number of idle connections to the given host
+     */
+    public int getIdleCount(InetSocketAddress address) {
+        for (Host host : hosts) {
+            if (host.address.equals(address)) {
+                return host.idle.size();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return true if the circuit breaker of the given host is open
+     */
+    public boolean isCircuitOpen(InetSocketAddress address) {
+        for (Host host : hosts) {
+            if (host.address.equals(address)) {
+                return host.circuitBreaker.isOpen();
+            }
+        }
+        return false;
+    }
+
+    private <T> T execute(Host host, Operation<T> operation) throws IOException, MessagingException {
+        boolean hostFailed = true;
+        try {
+            if (!host.permits.tryAcquire(readTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timeout waiting for a connection to " + host.address);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            host.circuitBreaker.recordFailure();
+            throw new IOException("Interrupted while waiting for a connection to " + host.address);
+        } catch (IOException e) {
+            host.circuitBreaker.recordFailure();
+            throw e;
+        }
+        try {
+            T result = execute(host, operation, pollIdle(host));
+            hostFailed = false;
+            return result;
+        } catch (MessagingException e) {
+            hostFailed = false;
+            throw e;
+        } finally {
+            host.permits.release();
+            if (hostFailed) {
+                host.circuitBreaker.recordFailure();
+            } else {
+                host.circuitBreaker.recordSuccess();
+            }
+        }
+    }
+
+    private <T> T execute(Host host, Operation<T> operation, ScannerConnection connection) throws IOException, MessagingException {
+        while (true) {
+            boolean pooled = connection != null;
+            if (connection == null) {
+                connection = open(host);
+            }
+            try {
+                T result = operation.execute(connection);
+                release(host, connection);
+                return result;
+            } catch (IOException e) {
+                connection.close();
+                if (!pooled) {
+                    throw e;
+                }
+                // the pooled connection was probably closed by the daemon, retry once on a new connection
+                connection = null;
+            } catch (MessagingException e) {
+                connection.close();
+                throw e;
+            } catch (RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+        }
+    }
+
+    private ScannerConnection pollIdle(Host host) {
+        ScannerConnection connection;
+        while ((connection = host.idle.pollFirst()) != null) {
+            long idleTime = System.currentTimeMillis() - connection.getLastUsed();
+            if (idleTime > maxIdleMillis) {
+                destroy(connection);
+            } else if (idleTime > validationIntervalMillis && !isValid(connection)) {
+                connection.close();
+            } else {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private boolean isValid(ScannerConnection connection) {
+        try {
+            protocol.validate(connection);
+            connection.touch();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private ScannerConnection open(Host host) throws IOException {
+        ScannerConnection connection = new ScannerConnection(host.address, connectTimeout, readTimeout, bufferSize);
+        try {
+            protocol.open(connection);
+            return connection;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void release(Host host, ScannerConnection connection) {
+        if (!closed && connection.isReusable()) {
+            connection.touch();
+            host.idle.offerFirst(connection);
+        } else {
+            destroy(connection);
+        }
+    }
+
+    private void destroy(ScannerConnection connection) {
+        if (connection.isReusable()) {
+            protocol.close(connection);
+        }
+        connection.close();
+    }
+}
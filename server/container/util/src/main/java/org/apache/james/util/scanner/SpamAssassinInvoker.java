@@ -22,17 +22,10 @@ package org.apache.james.util.scanner;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
-import com.google.common.io.Closeables;
-
-import java.net.Socket;
-import java.net.UnknownHostException;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 /**
  * Sends the message through daemonized SpamAssassin (spamd), visit <a
@@ -46,9 +39,9 @@ public class SpamAssassinInvoker {
     /** The mail attribute under which the flag get stored */
     public final static String FLAG_MAIL_ATTRIBUTE_NAME = "org.apache.james.spamassassin.flag";
 
-    private final String spamdHost;
+    private final SpamdClient client;
 
-    private final int spamdPort;
+    private final String spamdAddress;
 
     private String hits = "?";
 
@@ -65,8 +58,22 @@ public class SpamAssassinInvoker {
      *            The port on which spamd listen
      */
     public SpamAssassinInvoker(String spamdHost, int spamdPort) {
-        this.spamdHost = spamdHost;
-        this.spamdPort = spamdPort;
+        this(new SpamdClient(spamdHost, spamdPort), spamdHost + ":" + spamdPort);
+    }
+
+    /**
+     * Init the spamassassin invoker with a shared client
+     * 
+     * @param client
+     *            The client holding the connections to spamd
+     */
+    public SpamAssassinInvoker(SpamdClient client) {
+        this(client, client.getAddresses().toString());
+    }
+
+    private SpamAssassinInvoker(SpamdClient client, String spamdAddress) {
+        this.client = client;
+        this.spamdAddress = spamdAddress;
     }
 
     /**
@@ -79,70 +86,35 @@ public class SpamAssassinInvoker {
      *             if an error on scanning is detected
      */
     public boolean scanMail(MimeMessage message) throws MessagingException {
-        Socket socket = null;
-        OutputStream out = null;
-        BufferedReader in = null;
-
+        SpamdClient.Result result;
         try {
-            socket = new Socket(spamdHost, spamdPort);
-
-            out = socket.getOutputStream();
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out.write("CHECK SPAMC/1.2\r\n\r\n".getBytes());
-
-            // pass the message to spamd
-            message.writeTo(out);
-            out.flush();
-            socket.shutdownOutput();
-            String s;
-            while ((s = in.readLine()) != null) {
-                if (s.startsWith("Spam:")) {
-                    StringTokenizer t = new StringTokenizer(s, " ");
-                    boolean spam;
-                    try {
-                        t.nextToken();
-                        spam = Boolean.valueOf(t.nextToken());
-                    } catch (Exception e) {
-                        // On exception return flase
-                        return false;
-                    }
-                    t.nextToken();
-                    hits = t.nextToken();
-                    t.nextToken();
-                    required = t.nextToken();
-
-                    if (spam) {
-                        // message was spam
-                        headers.put(FLAG_MAIL_ATTRIBUTE_NAME, "YES");
-                        headers.put(STATUS_MAIL_ATTRIBUTE_NAME, "Yes, hits=" + hits + " required=" + required);
-
-                        // spam detected
-                        return true;
-                    } else {
-                        // add headers
-                        headers.put(FLAG_MAIL_ATTRIBUTE_NAME, "NO");
-                        headers.put(STATUS_MAIL_ATTRIBUTE_NAME, "No, hits=" + hits + " required=" + required);
-
-                        return false;
-                    }
-                }
-            }
-            return false;
+            result = client.check(message);
         } catch (UnknownHostException e1) {
-            throw new MessagingException("Error communicating with spamd. Unknown host: " + spamdHost);
+            throw new MessagingException("Error communicating with spamd. Unknown host: " + spamdAddress);
         } catch (IOException e1) {
-            throw new MessagingException("Error communicating with spamd on " + spamdHost + ":" + spamdPort + " Exception: " + e1);
+            throw new MessagingException("Error communicating with spamd on " + spamdAddress + " Exception: " + e1);
         } catch (MessagingException e1) {
-            throw new MessagingException("Error communicating with spamd on " + spamdHost + ":" + spamdPort + " Exception: " + e1);
-        } finally {
-            try {
-                Closeables.close(in, true);
-                Closeables.close(out, true);
-                socket.close();
-            } catch (Exception e) {
-                // Should never happen
-            }
+            throw new MessagingException("Error communicating with spamd on " + spamdAddress + " Exception: " + e1);
+        }
+        if (result == null) {
+            return false;
+        }
+
+        hits = result.getHits();
+        required = result.getRequired();
+        if (result.isSpam()) {
+            // message was spam
+            headers.put(FLAG_MAIL_ATTRIBUTE_NAME, "YES");
+            headers.put(STATUS_MAIL_ATTRIBUTE_NAME, "Yes, hits=" + hits + " required=" + required);
 
+            // spam detected
+            return true;
+        } else {
+            // add headers
+            headers.put(FLAG_MAIL_ATTRIBUTE_NAME, "NO");
+            headers.put(STATUS_MAIL_ATTRIBUTE_NAME, "No, hits=" + hits + " required=" + required);
+
+            return false;
         }
     }
 
@@ -0,0 +1,170 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Client for daemonized SpamAssassin (spamd).
+ * <p>
+ * spamd answers a single request per connection, so connections are never reused. The {@link ScannerConnectionPool}
+ * still bounds the number of concurrent scans per host and stops calling a failing host.
+ */
+public class SpamdClient {
+
+    /**
+     * The answer of spamd
+     */
+    public static class Result {
+        private final boolean spam;
+        private final String hits;
+        private final String required;
+
+        public Result(boolean spam, String hits, String required) {
+            this.spam = spam;
+            this.hits = hits;
+            this.required = required;
+        }
+
+        public boolean isSpam() {
+            return spam;
+        }
+
+        public String getHits() {
+            return hits;
+        }
+
+        public String getRequired() {
+            return required;
+        }
+    }
+
+    private static final ScannerConnectionPool.Protocol SPAMD_PROTOCOL = new ScannerConnectionPool.Protocol() {
+        public void open(ScannerConnection connection) {
+        }
+
+        public void validate(ScannerConnection connection) {
+        }
+
+        public void close(ScannerConnection connection) {
+        }
+    };
+
+    /**
+     * Create a pool builder with the spamd protocol, to which at least one address needs to be added
+     */
+    public static ScannerConnectionPool.Builder poolBuilder() {
+        return ScannerConnectionPool.builder(SPAMD_PROTOCOL);
+    }
+
+    private final ScannerConnectionPool pool;
+
+    private final MetricFactory metricFactory;
+
+    public SpamdClient(String spamdHost, int spamdPort) {
+        this(poolBuilder().address(new InetSocketAddress(spamdHost, spamdPort)).build(), new NoopMetricFactory());
+    }
+
+    public SpamdClient(ScannerConnectionPool pool, MetricFactory metricFactory) {
+        this.pool = pool;
+        this.metricFactory = metricFactory;
+    }
+
+    /**
+     * Scan a MimeMessage for spam by passing it to spamd.
+     * 
+     * @param message
+     *            The MimeMessage to scan
+     * @return the result, or <code>null</code> if spamd did not answer with a valid spam status
+     * @throws IOException
+     *             if spamd could not be reached
+     * @throws MessagingException
+     *             if the message could not be written
+     */
+    public Result check(final MimeMessage message) throws IOException, MessagingException {
+        TimeMetric timeMetric = metricFactory.timer("spamdScan");
+        try {
+            return pool.execute(new ScannerConnectionPool.Operation<Result>() {
+                public Result execute(ScannerConnection connection) throws IOException, MessagingException {
+                    return check(connection, message);
+                }
+            });
+        } finally {
+            timeMetric.stopAndPublish();
+        }
+    }
+
+    public List<InetSocketAddress> getAddresses() {
+        return pool.getAddresses();
+    }
+
+    public void close() {
+        pool.close();
+    }
+
+    private Result check(ScannerConnection connection, MimeMessage message) throws IOException, MessagingException {
+        OutputStream out = connection.getOutputStream();
+        out.write("CHECK SPAMC/1.2\r\n\r\n".getBytes(Charsets.US_ASCII));
+        // pass the message to spamd
+        message.writeTo(out);
+        connection.shutdownOutput();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), Charsets.US_ASCII));
+        String s;
+        while ((s = in.readLine()) != null) {
+            if (s.startsWith("Spam:")) {
+                return parseSpamHeader(s);
+            }
+        }
+        return null;
+    }
+
+    private Result parseSpamHeader(String line) {
+        StringTokenizer t = new StringTokenizer(line, " ");
+        boolean spam;
+        try {
+            t.nextToken();
+            spam = Boolean.valueOf(t.nextToken());
+        } catch (Exception e) {
+            // On exception handle the answer as missing
+            return null;
+        }
+        t.nextToken();
+        String hits = t.nextToken();
+        t.nextToken();
+        String required = t.nextToken();
+        return new Result(spam, hits, required);
+    }
+}
@@ -0,0 +1,98 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.bayesian;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BayesianAnalyzerTest {
+
+    private static final String SPAM = "Subject: Cheap pills\nBuy cheap viagra pills now, best prices online\n";
+    private static final String HAM = "Subject: Meeting\nThe project meeting is moved to tomorrow morning, see the agenda\n";
+
+    private BayesianAnalyzer analyzer;
+
+    @Before
+    public void setUp() throws Exception {
+        analyzer = new BayesianAnalyzer();
+        for (int i = 0; i < 10; i++) {
+            analyzer.addSpam(new StringReader(SPAM));
+            analyzer.addHam(new StringReader(HAM));
+        }
+        analyzer.buildCorpus();
+    }
+
+    @Test
+    public void buildCorpusShouldKeepTokenAndMessageCounts() {
+        TokenCounts corpus = analyzer.getCorpus();
+
+        assertThat(corpus.getSpamCount("viagra")).isEqualTo(10);
+        assertThat(corpus.getHamCount("agenda")).isEqualTo(10);
+        assertThat(corpus.getSpamMessageCount()).isEqualTo(10);
+        assertThat(corpus.getHamMessageCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void computeSpamProbabilityShouldDetectSpam() throws Exception {
+        assertThat(analyzer.computeSpamProbability(new StringReader(SPAM))).isGreaterThan(0.9);
+    }
+
+    @Test
+    public void computeSpamProbabilityShouldDetectHam() throws Exception {
+        assertThat(analyzer.computeSpamProbability(new StringReader(HAM))).isLessThan(0.1);
+    }
+
+    @Test
+    public void computeSpamProbabilityShouldUseDegeneratedTokens() throws Exception {
+        assertThat(analyzer.computeSpamProbability(new StringReader("VIAGRA PILLS!!!\n"))).isGreaterThan(0.9);
+    }
+
+    @Test
+    public void updateCorpusShouldAddNewCountsWithoutRebuilding() throws Exception {
+        String newSpam = "Claim your lottery jackpot\n";
+        TokenCounts corpus = analyzer.getCorpus();
+        double before = analyzer.computeSpamProbability(new StringReader(newSpam));
+
+        analyzer.tokenCountsClear();
+        analyzer.setHamMessageCount(0);
+        analyzer.setSpamMessageCount(0);
+        for (int i = 0; i < 10; i++) {
+            analyzer.addSpam(new StringReader(newSpam));
+        }
+        analyzer.updateCorpus();
+
+        assertThat(analyzer.getCorpus()).isSameAs(corpus);
+        assertThat(corpus.getSpamMessageCount()).isEqualTo(20);
+        assertThat(corpus.getSpamCount("viagra")).isEqualTo(10);
+        assertThat(analyzer.computeSpamProbability(new StringReader(newSpam))).isGreaterThan(before).isGreaterThan(0.9);
+    }
+
+    @Test
+    public void clearShouldEmptyTheCorpus() {
+        analyzer.clear();
+
+        assertThat(analyzer.getCorpus().size()).isEqualTo(0);
+        assertThat(analyzer.getHamTokenCounts()).isEmpty();
+    }
+}
@@ -0,0 +1,132 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.bayesian;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class TokenCountsTest {
+
+    @Test
+    public void unknownTokenShouldHaveNoOccurrence() {
+        TokenCounts counts = new TokenCounts();
+
+        assertThat(counts.contains("token")).isFalse();
+        assertThat(counts.getHamCount("token")).isEqualTo(0);
+        assertThat(counts.getSpamCount("token")).isEqualTo(0);
+    }
+
+    @Test
+    public void addShouldAccumulateHamAndSpamOccurrences() {
+        TokenCounts counts = new TokenCounts();
+
+        counts.add("token", 2, 0);
+        counts.add("token", 3, 4);
+
+        assertThat(counts.getHamCount("token")).isEqualTo(5);
+        assertThat(counts.getSpamCount("token")).isEqualTo(4);
+        assertThat(counts.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void tokenWithoutOccurrenceShouldStillBeKnown() {
+        TokenCounts counts = new TokenCounts();
+
+        counts.add("token", 0, 0);
+
+        assertThat(counts.contains("token")).isTrue();
+    }
+
+    @Test
+    public void countsShouldNotBecomeNegative() {
+        TokenCounts counts = new TokenCounts();
+
+        counts.add("token", 1, 1);
+        counts.add("token", -3, -1);
+
+        assertThat(counts.getHamCount("token")).isEqualTo(0);
+        assertThat(counts.getSpamCount("token")).isEqualTo(0);
+    }
+
+    @Test
+    public void countsShouldSaturate() {
+        TokenCounts counts = new TokenCounts();
+
+        counts.add("token", Integer.MAX_VALUE, Integer.MAX_VALUE);
+        counts.add("token", 1, 1);
+
+        assertThat(counts.getHamCount("token")).isEqualTo(Integer.MAX_VALUE);
+        assertThat(counts.getSpamCount("token")).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void growingShouldKeepAllCounts() {
+        TokenCounts counts = new TokenCounts(1);
+
+        for (int i = 0; i < 10000; i++) {
+            counts.add("token" + i, i, i + 1);
+        }
+
+        assertThat(counts.size()).isEqualTo(10000);
+        for (int i = 0; i < 10000; i++) {
+            assertThat(counts.getHamCount("token" + i)).isEqualTo(i);
+            assertThat(counts.getSpamCount("token" + i)).isEqualTo(i + 1);
+        }
+    }
+
+    @Test
+    public void addMessageCountsShouldAccumulate() {
+        TokenCounts counts = new TokenCounts();
+
+        counts.addMessageCounts(1, 2);
+        counts.addMessageCounts(3, 4);
+
+        assertThat(counts.getHamMessageCount()).isEqualTo(4);
+        assertThat(counts.getSpamMessageCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void lookupsShouldSeeConsistentCountsWhileGrowing() throws Exception {
+        final TokenCounts counts = new TokenCounts(1);
+        final int tokens = 50000;
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < tokens; i++) {
+                    counts.add("token" + i, 1, 2);
+                }
+            }
+        };
+
+        writer.start();
+        while (writer.isAlive()) {
+            for (int i = 0; i < tokens; i += 97) {
+                if (counts.contains("token" + i)) {
+                    assertThat(counts.getHamCount("token" + i)).isEqualTo(1);
+                    assertThat(counts.getSpamCount("token" + i)).isEqualTo(2);
+                }
+            }
+        }
+        writer.join();
+
+        assertThat(counts.size()).isEqualTo(tokens);
+    }
+}
@@ -0,0 +1,100 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void allowRequestShouldReturnTrueBelowThreshold() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, 60000);
+
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void allowRequestShouldReturnFalseOnceThresholdIsReached() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, 60000);
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.isOpen()).isTrue();
+        assertThat(circuitBreaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    public void successShouldResetTheFailureCount() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, 60000);
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void allowRequestShouldLetASingleTrialThroughOnceOpenTimeElapsed() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 10);
+        circuitBreaker.recordFailure();
+        Thread.sleep(20);
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+        assertThat(circuitBreaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    public void successfulTrialShouldCloseTheBreaker() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 10);
+        circuitBreaker.recordFailure();
+        Thread.sleep(20);
+        circuitBreaker.allowRequest();
+
+        circuitBreaker.recordSuccess();
+
+        assertThat(circuitBreaker.isOpen()).isFalse();
+    }
+
+    @Test
+    public void failedTrialShouldKeepTheBreakerOpen() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 10000);
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.allowRequest()).isFalse();
+        assertThat(circuitBreaker.isOpen()).isTrue();
+    }
+
+    @Test
+    public void zeroThresholdShouldNeverOpen() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(0, 10000);
+
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.recordFailure();
+        }
+
+        assertThat(circuitBreaker.allowRequest()).isTrue();
+    }
+}
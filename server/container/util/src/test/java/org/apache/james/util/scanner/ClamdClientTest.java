@@ -0,0 +1,157 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClamdClientTest {
+
+    private FakeClamd fakeClamd;
+    private ClamdClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        fakeClamd = new FakeClamd();
+        client = new ClamdClient(ClamdClient.poolBuilder()
+                .address(fakeClamd.getAddress())
+                .circuitBreaker(2, 60000)
+                .build(),
+            new NoopMetricFactory(),
+            16);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        fakeClamd.stop();
+    }
+
+    private MimeMessage message(String text) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getDefaultInstance(new Properties()));
+        message.setSubject("test");
+        message.setText(text);
+        message.saveChanges();
+        return message;
+    }
+
+    @Test
+    public void scanShouldReturnCleanForCleanMessage() throws Exception {
+        ClamdClient.Result result = client.scan(message("a clean message which is longer than one chunk"));
+
+        assertThat(result.isInfected()).isFalse();
+        assertThat(result.getAnswer()).isEqualTo("stream: OK");
+        assertThat(result.getAddress()).isEqualTo(fakeClamd.getAddress());
+    }
+
+    @Test
+    public void scanShouldReturnInfectedWhenVirusFound() throws Exception {
+        ClamdClient.Result result = client.scan(message("X5O!P%@AP EICAR test file"));
+
+        assertThat(result.isInfected()).isTrue();
+        assertThat(result.getAnswer()).isEqualTo("stream: Eicar-Test-Signature FOUND");
+    }
+
+    @Test
+    public void scanShouldReuseTheSessionConnection() throws Exception {
+        client.scan(message("first"));
+        client.scan(message("second"));
+        client.scan(message("X5O!P%@AP EICAR"));
+
+        assertThat(fakeClamd.getConnectionCount()).isEqualTo(1);
+        assertThat(client.getAddresses()).containsExactly(fakeClamd.getAddress());
+    }
+
+    @Test
+    public void scanShouldReconnectWhenSessionWasClosedByClamd() throws Exception {
+        client.scan(message("first"));
+        fakeClamd.closeConnections();
+
+        ClamdClient.Result result = client.scan(message("second"));
+
+        assertThat(result.isInfected()).isFalse();
+        assertThat(fakeClamd.getConnectionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void scanShouldReportClamdErrorsAsMessageFailuresWithoutOpeningTheCircuit() throws Exception {
+        fakeClamd.setStreamMaxLength(10);
+        ScannerConnectionPool pool = ClamdClient.poolBuilder()
+            .address(fakeClamd.getAddress())
+            .circuitBreaker(2, 60000)
+            .build();
+        ClamdClient limitedClient = new ClamdClient(pool, new NoopMetricFactory(), 16);
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    limitedClient.scan(message("a message longer than the stream max length"));
+                    fail("MessagingException expected");
+                } catch (MessagingException e) {
+                    assertThat(e.getMessage()).contains("INSTREAM size limit exceeded");
+                }
+            }
+
+            assertThat(pool.isCircuitOpen(fakeClamd.getAddress())).isFalse();
+            assertThat(fakeClamd.getConnectionCount()).isEqualTo(3);
+            fakeClamd.setStreamMaxLength(Integer.MAX_VALUE);
+            assertThat(limitedClient.scan(message("clean")).isInfected()).isFalse();
+        } finally {
+            limitedClient.close();
+        }
+    }
+
+    @Test
+    public void scanShouldOpenTheCircuitWhenClamdIsDown() throws Exception {
+        fakeClamd.stop();
+        ScannerConnectionPool pool = ClamdClient.poolBuilder()
+            .address(fakeClamd.getAddress())
+            .circuitBreaker(2, 60000)
+            .build();
+        ClamdClient downClient = new ClamdClient(pool, new NoopMetricFactory(), 16);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                downClient.scan(message("message"));
+            } catch (IOException e) {
+                // expected
+            }
+        }
+
+        assertThat(pool.isCircuitOpen(fakeClamd.getAddress())).isTrue();
+        try {
+            downClient.scan(message("message"));
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains("circuit breakers");
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Minimal clamd answering PING, IDSESSION, INSTREAM and END. Streams containing "EICAR" are reported as infected.
+ * Streams longer than the stream max length are answered with an error, and end the session.
+ */
+public class FakeClamd {
+
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+    private volatile int streamMaxLength = Integer.MAX_VALUE;
+
+    public FakeClamd() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "fake-clamd");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public void setStreamMaxLength(int streamMaxLength) {
+        this.streamMaxLength = streamMaxLength;
+    }
+
+    /**
+     * Close the open connections, as clamd does when sessions reach their IdleTimeout
+     */
+    public void closeConnections() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        sockets.clear();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        closeConnections();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                sockets.add(socket);
+                Thread handler = new Thread(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            boolean session = false;
+            int id = 0;
+            String command;
+            while ((command = readCommand(in)) != null) {
+                String prefix = session ? ++id + ": " : "";
+                if (command.equals("IDSESSION")) {
+                    session = true;
+                } else if (command.equals("PING")) {
+                    write(out, prefix + "PONG");
+                } else if (command.equals("INSTREAM")) {
+                    String data = readStream(in);
+                    if (data.length() > streamMaxLength) {
+                        write(out, prefix + "INSTREAM size limit exceeded. ERROR");
+                        break;
+                    }
+                    write(out, prefix + (data.contains("EICAR") ? "stream: Eicar-Test-Signature FOUND" : "stream: OK"));
+                } else if (command.equals("END")) {
+                    break;
+                } else {
+                    write(out, prefix + "UNKNOWN COMMAND");
+                }
+                if (!session) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // connection closed
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private String readCommand(InputStream in) throws IOException {
+        ByteArrayOutputStream command = new ByteArrayOutputStream();
+        int b = in.read();
+        if (b < 0) {
+            return null;
+        }
+        // skip the 'z' prefix
+        while ((b = in.read()) > 0) {
+            command.write(b);
+        }
+        return new String(command.toByteArray(), Charsets.US_ASCII);
+    }
+
+    private String readStream(DataInputStream in) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int length;
+        while ((length = in.readInt()) > 0) {
+            byte[] chunk = new byte[length];
+            in.readFully(chunk);
+            data.write(chunk);
+        }
+        return new String(data.toByteArray(), Charsets.US_ASCII);
+    }
+
+    private void write(OutputStream out, String answer) throws IOException {
+        out.write((answer + "\0").getBytes(Charsets.US_ASCII));
+        out.flush();
+    }
+}
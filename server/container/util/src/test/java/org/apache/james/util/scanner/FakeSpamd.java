@@ -0,0 +1,93 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Minimal spamd answering CHECK requests, one per connection. Messages containing "viagra" are reported as spam.
+ */
+public class FakeSpamd {
+
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    public FakeSpamd() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "fake-spamd");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                handle(socket);
+            } catch (IOException e) {
+                // next connection
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        try {
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                request.write(buffer, 0, read);
+            }
+            boolean spam = new String(request.toByteArray(), Charsets.US_ASCII).contains("viagra");
+            OutputStream out = socket.getOutputStream();
+            out.write(("SPAMD/1.1 0 EX_OK\r\nSpam: " + (spam ? "True ; 15.0 / 5.0" : "False ; 1.0 / 5.0") + "\r\n\r\n").getBytes(Charsets.US_ASCII));
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+}
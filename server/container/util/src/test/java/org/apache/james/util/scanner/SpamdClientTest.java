@@ -0,0 +1,91 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.util.scanner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Properties;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpamdClientTest {
+
+    private FakeSpamd fakeSpamd;
+    private SpamdClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        fakeSpamd = new FakeSpamd();
+        client = new SpamdClient(fakeSpamd.getAddress().getHostName(), fakeSpamd.getAddress().getPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        fakeSpamd.stop();
+    }
+
+    private MimeMessage message(String text) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getDefaultInstance(new Properties()));
+        message.setSubject("test");
+        message.setText(text);
+        message.saveChanges();
+        return message;
+    }
+
+    @Test
+    public void checkShouldReturnHamForCleanMessage() throws Exception {
+        SpamdClient.Result result = client.check(message("hello"));
+
+        assertThat(result.isSpam()).isFalse();
+        assertThat(result.getHits()).isEqualTo("1.0");
+        assertThat(result.getRequired()).isEqualTo("5.0");
+    }
+
+    @Test
+    public void checkShouldReturnSpamForSpamMessage() throws Exception {
+        SpamdClient.Result result = client.check(message("cheap viagra"));
+
+        assertThat(result.isSpam()).isTrue();
+        assertThat(result.getHits()).isEqualTo("15.0");
+    }
+
+    @Test
+    public void checkShouldUseOneConnectionPerRequest() throws Exception {
+        client.check(message("first"));
+        client.check(message("second"));
+
+        assertThat(fakeSpamd.getConnectionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void spamAssassinInvokerShouldSetHeadersFromTheResult() throws Exception {
+        SpamAssassinInvoker invoker = new SpamAssassinInvoker(client);
+
+        assertThat(invoker.scanMail(message("cheap viagra"))).isTrue();
+        assertThat(invoker.getHeadersAsAttribute().get(SpamAssassinInvoker.FLAG_MAIL_ATTRIBUTE_NAME)).isEqualTo("YES");
+        assertThat(invoker.getHeadersAsAttribute().get(SpamAssassinInvoker.STATUS_MAIL_ATTRIBUTE_NAME)).isEqualTo("Yes, hits=15.0 required=5.0");
+    }
+}
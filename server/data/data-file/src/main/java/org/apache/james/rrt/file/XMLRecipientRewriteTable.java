@@ -63,6 +63,14 @@ public class XMLRecipientRewriteTable extends AbstractRecipientRewriteTable {
         }
     }
 
+    /**
+     * user@* mappings take precedence over *@domain ones
+     */
+    @Override
+    protected boolean isDomainWildcardFirst() {
+        return false;
+    }
+
     @Override
     protected Mappings getUserDomainMappingsInternal(String user, String domain) throws RecipientRewriteTableException {
         if (mappings == null) {
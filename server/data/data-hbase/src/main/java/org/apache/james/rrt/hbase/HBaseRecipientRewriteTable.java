@@ -137,7 +137,7 @@ public class HBaseRecipientRewriteTable extends AbstractRecipientRewriteTable {
                                     Optional.fromNullable(
                                         map.get(email))
                                         .or(MappingsImpl.empty()))
-                                .add(Bytes.toString(keyValue.getRow()))
+                                .addAll(MappingsImpl.fromRawString(Bytes.toString(keyValue.getValue())))
                                 .build();
                         map.put(email, mappings);
                     }
@@ -194,6 +194,31 @@ public class JDBCRecipientRewriteTable extends AbstractRecipientRewriteTable {
 
     }
 
+    /**
+     * The selectMappings query also matches <code>*@*</code> mappings
+     */
+    @Override
+    protected boolean isGlobalWildcardMapped() {
+        return true;
+    }
+
+    /**
+     * The selectMappings query matches with LIKE, which is case insensitive with the collations of
+     * some databases. Compiled resolution, matching exactly, is thus only used when configured.
+     */
+    @Override
+    protected boolean isCompiledResolutionDefault() {
+        return false;
+    }
+
+    /**
+     * user@* mappings take precedence over *@domain ones
+     */
+    @Override
+    protected boolean isDomainWildcardFirst() {
+        return false;
+    }
+
     /**
      * @throws RecipientRewriteTableException
      * @see org.apache.james.rrt.lib.AbstractRecipientRewriteTable#addMappingInternal(String,
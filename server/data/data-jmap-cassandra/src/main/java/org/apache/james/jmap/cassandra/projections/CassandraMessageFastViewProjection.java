@@ -0,0 +1,103 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.cassandra.projections;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static org.apache.james.jmap.cassandra.projections.table.CassandraMessageFastViewProjectionTable.HTML_BODY;
+import static org.apache.james.jmap.cassandra.projections.table.CassandraMessageFastViewProjectionTable.MESSAGE_ID;
+import static org.apache.james.jmap.cassandra.projections.table.CassandraMessageFastViewProjectionTable.PREVIEW;
+import static org.apache.james.jmap.cassandra.projections.table.CassandraMessageFastViewProjectionTable.TABLE_NAME;
+import static org.apache.james.jmap.cassandra.projections.table.CassandraMessageFastViewProjectionTable.TEXT_BODY;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.inject.Inject;
+
+import org.apache.james.backends.cassandra.utils.CassandraAsyncExecutor;
+import org.apache.james.jmap.api.projections.MessageFastViewPrecomputedProperties;
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
+import org.apache.james.mailbox.model.MessageId;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+
+public class CassandraMessageFastViewProjection implements MessageFastViewProjection {
+
+    private final CassandraAsyncExecutor cassandraAsyncExecutor;
+    private final PreparedStatement insertStatement;
+    private final PreparedStatement selectStatement;
+    private final PreparedStatement deleteStatement;
+
+    @Inject
+    public CassandraMessageFastViewProjection(Session session) {
+        this.cassandraAsyncExecutor = new CassandraAsyncExecutor(session);
+
+        this.insertStatement = session.prepare(insertInto(TABLE_NAME)
+            .value(MESSAGE_ID, bindMarker(MESSAGE_ID))
+            .value(PREVIEW, bindMarker(PREVIEW))
+            .value(TEXT_BODY, bindMarker(TEXT_BODY))
+            .value(HTML_BODY, bindMarker(HTML_BODY)));
+
+        this.selectStatement = session.prepare(select()
+            .from(TABLE_NAME)
+            .where(eq(MESSAGE_ID, bindMarker(MESSAGE_ID))));
+
+        this.deleteStatement = session.prepare(QueryBuilder.delete()
+            .from(TABLE_NAME)
+            .where(eq(MESSAGE_ID, bindMarker(MESSAGE_ID))));
+    }
+
+    @Override
+    public CompletableFuture<Void> store(MessageId messageId, MessageFastViewPrecomputedProperties precomputedProperties) {
+        return cassandraAsyncExecutor.executeVoid(insertStatement.bind()
+            .setString(MESSAGE_ID, messageId.serialize())
+            .setString(PREVIEW, precomputedProperties.getPreview())
+            .setString(TEXT_BODY, precomputedProperties.getTextBody().orElse(null))
+            .setString(HTML_BODY, precomputedProperties.getHtmlBody().orElse(null)));
+    }
+
+    @Override
+    public CompletableFuture<Optional<MessageFastViewPrecomputedProperties>> retrieve(MessageId messageId) {
+        return cassandraAsyncExecutor.executeSingleRow(selectStatement.bind()
+                .setString(MESSAGE_ID, messageId.serialize()))
+            .thenApply(optional -> optional.map(this::fromRow));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(MessageId messageId) {
+        return cassandraAsyncExecutor.executeVoid(deleteStatement.bind()
+            .setString(MESSAGE_ID, messageId.serialize()));
+    }
+
+    private MessageFastViewPrecomputedProperties fromRow(Row row) {
+        return MessageFastViewPrecomputedProperties.builder()
+            .preview(row.getString(PREVIEW))
+            .textBody(Optional.ofNullable(row.getString(TEXT_BODY)))
+            .htmlBody(Optional.ofNullable(row.getString(HTML_BODY)))
+            .build();
+    }
+}
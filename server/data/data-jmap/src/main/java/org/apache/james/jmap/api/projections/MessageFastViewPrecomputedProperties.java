@@ -0,0 +1,114 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.api.projections;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+public class MessageFastViewPrecomputedProperties {
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String preview;
+        private Optional<String> textBody;
+        private Optional<String> htmlBody;
+
+        private Builder() {
+            textBody = Optional.empty();
+            htmlBody = Optional.empty();
+        }
+
+        public Builder preview(String preview) {
+            this.preview = preview;
+            return this;
+        }
+
+        public Builder textBody(Optional<String> textBody) {
+            Preconditions.checkNotNull(textBody);
+            this.textBody = textBody;
+            return this;
+        }
+
+        public Builder htmlBody(Optional<String> htmlBody) {
+            Preconditions.checkNotNull(htmlBody);
+            this.htmlBody = htmlBody;
+            return this;
+        }
+
+        public MessageFastViewPrecomputedProperties build() {
+            Preconditions.checkState(preview != null, "'preview' is mandatory");
+            return new MessageFastViewPrecomputedProperties(preview, textBody, htmlBody);
+        }
+    }
+
+    private final String preview;
+    private final Optional<String> textBody;
+    private final Optional<String> htmlBody;
+
+    private MessageFastViewPrecomputedProperties(String preview, Optional<String> textBody, Optional<String> htmlBody) {
+        this.preview = preview;
+        this.textBody = textBody;
+        this.htmlBody = htmlBody;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public Optional<String> getTextBody() {
+        return textBody;
+    }
+
+    public Optional<String> getHtmlBody() {
+        return htmlBody;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (o instanceof MessageFastViewPrecomputedProperties) {
+            MessageFastViewPrecomputedProperties that = (MessageFastViewPrecomputedProperties) o;
+            return Objects.equals(this.preview, that.preview)
+                && Objects.equals(this.textBody, that.textBody)
+                && Objects.equals(this.htmlBody, that.htmlBody);
+        }
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return Objects.hash(preview, textBody, htmlBody);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("preview", preview)
+            .add("textBody", textBody)
+            .add("htmlBody", htmlBody)
+            .toString();
+    }
+}
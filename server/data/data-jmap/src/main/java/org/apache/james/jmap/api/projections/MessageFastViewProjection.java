@@ -0,0 +1,40 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.api.projections;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.james.mailbox.model.MessageId;
+
+/**
+ * Stores the properties of a message that are expensive to compute (preview, text and html bodies)
+ * so that they can be served without reading and parsing the full message content again.
+ */
+public interface MessageFastViewProjection {
+
+    CompletableFuture<Void> store(MessageId messageId, MessageFastViewPrecomputedProperties precomputedProperties);
+
+    CompletableFuture<Optional<MessageFastViewPrecomputedProperties>> retrieve(MessageId messageId);
+
+    CompletableFuture<Void> delete(MessageId messageId);
+
+}
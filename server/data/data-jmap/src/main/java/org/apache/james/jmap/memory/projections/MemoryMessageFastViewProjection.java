@@ -0,0 +1,62 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.memory.projections;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.james.jmap.api.projections.MessageFastViewPrecomputedProperties;
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
+import org.apache.james.mailbox.model.MessageId;
+
+import com.google.common.base.Preconditions;
+
+public class MemoryMessageFastViewProjection implements MessageFastViewProjection {
+
+    private final Map<MessageId, MessageFastViewPrecomputedProperties> projectionItems;
+
+    public MemoryMessageFastViewProjection() {
+        this.projectionItems = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public CompletableFuture<Void> store(MessageId messageId, MessageFastViewPrecomputedProperties precomputedProperties) {
+        Preconditions.checkNotNull(messageId);
+        Preconditions.checkNotNull(precomputedProperties);
+        projectionItems.put(messageId, precomputedProperties);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Optional<MessageFastViewPrecomputedProperties>> retrieve(MessageId messageId) {
+        Preconditions.checkNotNull(messageId);
+        return CompletableFuture.completedFuture(Optional.ofNullable(projectionItems.get(messageId)));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(MessageId messageId) {
+        Preconditions.checkNotNull(messageId);
+        projectionItems.remove(messageId);
+        return CompletableFuture.completedFuture(null);
+    }
+}
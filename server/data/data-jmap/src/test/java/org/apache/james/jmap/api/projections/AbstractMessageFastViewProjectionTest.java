@@ -0,0 +1,113 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.api.projections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.TestMessageId;
+import org.junit.Before;
+import org.junit.Test;
+
+public abstract class AbstractMessageFastViewProjectionTest {
+
+    public static final MessageId MESSAGE_ID_1 = TestMessageId.of(1);
+    public static final MessageId MESSAGE_ID_2 = TestMessageId.of(2);
+    public static final MessageFastViewPrecomputedProperties PROPERTIES_1 = MessageFastViewPrecomputedProperties.builder()
+        .preview("preview 1")
+        .textBody(Optional.of("text body 1"))
+        .htmlBody(Optional.of("<p>html body 1</p>"))
+        .build();
+    public static final MessageFastViewPrecomputedProperties PROPERTIES_2 = MessageFastViewPrecomputedProperties.builder()
+        .preview("preview 2")
+        .build();
+
+    private MessageFastViewProjection projection;
+
+    protected abstract MessageFastViewProjection createProjection();
+
+    @Before
+    public void setUp() {
+        projection = createProjection();
+    }
+
+    @Test
+    public void retrieveShouldReturnEmptyByDefault() {
+        assertThat(projection.retrieve(MESSAGE_ID_1).join()).isEmpty();
+    }
+
+    @Test
+    public void retrieveShouldReturnStoredProperties() {
+        projection.store(MESSAGE_ID_1, PROPERTIES_1).join();
+
+        assertThat(projection.retrieve(MESSAGE_ID_1).join()).contains(PROPERTIES_1);
+    }
+
+    @Test
+    public void retrieveShouldReturnStoredPropertiesWithoutBodies() {
+        projection.store(MESSAGE_ID_2, PROPERTIES_2).join();
+
+        assertThat(projection.retrieve(MESSAGE_ID_2).join()).contains(PROPERTIES_2);
+    }
+
+    @Test
+    public void retrieveShouldNotReturnPropertiesOfOtherMessages() {
+        projection.store(MESSAGE_ID_1, PROPERTIES_1).join();
+
+        assertThat(projection.retrieve(MESSAGE_ID_2).join()).isEmpty();
+    }
+
+    @Test
+    public void storeShouldOverridePreviousProperties() {
+        projection.store(MESSAGE_ID_1, PROPERTIES_1).join();
+        projection.store(MESSAGE_ID_1, PROPERTIES_2).join();
+
+        assertThat(projection.retrieve(MESSAGE_ID_1).join()).contains(PROPERTIES_2);
+    }
+
+    @Test
+    public void deleteShouldRemoveStoredProperties() {
+        projection.store(MESSAGE_ID_1, PROPERTIES_1).join();
+
+        projection.delete(MESSAGE_ID_1).join();
+
+        assertThat(projection.retrieve(MESSAGE_ID_1).join()).isEmpty();
+    }
+
+    @Test
+    public void deleteShouldNotRemovePropertiesOfOtherMessages() {
+        projection.store(MESSAGE_ID_1, PROPERTIES_1).join();
+        projection.store(MESSAGE_ID_2, PROPERTIES_2).join();
+
+        projection.delete(MESSAGE_ID_1).join();
+
+        assertThat(projection.retrieve(MESSAGE_ID_2).join()).contains(PROPERTIES_2);
+    }
+
+    @Test
+    public void deleteShouldBeIdempotent() {
+        projection.delete(MESSAGE_ID_1).join();
+
+        assertThat(projection.retrieve(MESSAGE_ID_1).join()).isEmpty();
+    }
+}
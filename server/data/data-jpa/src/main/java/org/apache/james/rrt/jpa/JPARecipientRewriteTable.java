@@ -73,6 +73,23 @@ public class JPARecipientRewriteTable extends AbstractRecipientRewriteTable {
         }
     }
 
+    /**
+     * The selectMappings query also matches <code>*@*</code> mappings
+     */
+    @Override
+    protected boolean isGlobalWildcardMapped() {
+        return true;
+    }
+
+    /**
+     * The selectMappings query matches with LIKE, which is case insensitive with the collations of
+     * some databases. Compiled resolution, matching exactly, is thus only used when configured.
+     */
+    @Override
+    protected boolean isCompiledResolutionDefault() {
+        return false;
+    }
+
     /**
      * @throws RecipientRewriteTableException
      * @see org.apache.james.rrt.lib.AbstractRecipientRewriteTable#mapAddressInternal(java.lang.String,
@@ -31,6 +31,9 @@ import org.apache.james.domainlist.api.DomainList;
 import org.apache.james.domainlist.api.DomainListException;
 import org.apache.james.lifecycle.api.Configurable;
 import org.apache.james.lifecycle.api.LogEnabled;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
 import org.apache.james.rrt.api.RecipientRewriteTable;
 import org.apache.james.rrt.api.RecipientRewriteTableException;
 import org.apache.james.rrt.lib.Mapping.Type;
@@ -38,16 +41,28 @@ import org.apache.mailet.MailAddress;
 import org.slf4j.Logger;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
 
 /**
  * 
  */
 public abstract class AbstractRecipientRewriteTable implements RecipientRewriteTable, LogEnabled, Configurable {
+    public static final String RESOLUTION_METRIC_NAME = "recipientRewriteTableResolution";
+    public static final long DEFAULT_COMPILED_RESOLUTION_REFRESH_INTERVAL = 60;
+
     // The maximum mappings which will process before throwing exception
     private int mappingLimit = 10;
 
     private boolean recursive = true;
 
+    private volatile Boolean compiledResolution;
+
+    private long compiledResolutionRefreshInterval = DEFAULT_COMPILED_RESOLUTION_REFRESH_INTERVAL;
+
+    private volatile CompiledRecipientRewriteTable compiledTable;
+
+    private MetricFactory metricFactory = new NoopMetricFactory();
+
     private Logger logger;
 
     private DomainList domainList;
@@ -57,6 +72,11 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         this.domainList = domainList;
     }
 
+    @Inject
+    public void setMetricFactory(MetricFactory metricFactory) {
+        this.metricFactory = metricFactory;
+    }
+
     /**
      * @see org.apache.james.lifecycle.api.Configurable#configure(HierarchicalConfiguration)
      */
@@ -67,7 +87,11 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         } catch (IllegalArgumentException e) {
             throw new ConfigurationException(e.getMessage());
         }
+        setCompiledResolution(config.getBoolean("compiledResolution", isCompiledResolutionDefault()));
+        compiledResolutionRefreshInterval = config.getLong("compiledResolutionRefreshInterval", DEFAULT_COMPILED_RESOLUTION_REFRESH_INTERVAL);
         doConfigure(config);
+        // the mappings may have been changed by the configuration
+        compiledTable = null;
     }
 
     public void setLog(Logger logger) {
@@ -88,6 +112,17 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         this.recursive = recursive;
     }
 
+    /**
+     * Resolve addresses against an in memory snapshot of all mappings instead of querying the
+     * backend for each of them. Defaults to {@link #isCompiledResolutionDefault()}.
+     * 
+     * @param compiledResolution
+     */
+    public void setCompiledResolution(boolean compiledResolution) {
+        this.compiledResolution = compiledResolution;
+        this.compiledTable = null;
+    }
+
     /**
      * Set the mappingLimit
      * 
@@ -107,7 +142,12 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
      *      String)
      */
     public Mappings getMappings(String user, String domain) throws ErrorMappingException, RecipientRewriteTableException {
-        return getMappings(user, domain, mappingLimit);
+        TimeMetric timeMetric = metricFactory.timer(RESOLUTION_METRIC_NAME);
+        try {
+            return getMappings(user, domain, mappingLimit);
+        } finally {
+            timeMetric.stopAndPublish();
+        }
     }
 
     public Mappings getMappings(String user, String domain, int mappingLimit) throws ErrorMappingException, RecipientRewriteTableException {
@@ -129,7 +169,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
                 for (String target : targetMappings.asStrings()) {
                     if (target.startsWith(RecipientRewriteTable.REGEX_PREFIX)) {
                         try {
-                            target = RecipientRewriteTableUtil.regexMap(new MailAddress(user, domain), target);
+                            target = regexMap(new MailAddress(user, domain), target);
                         } catch (PatternSyntaxException e) {
                             getLogger().error("Exception during regexMap processing: ", e);
                         } catch (ParseException e) {
@@ -202,6 +242,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         checkMapping(user, domain, regex);
         getLogger().info("Add regex mapping => " + regex + " for user: " + user + " domain: " + domain);
         addMappingInternal(user, domain, RecipientRewriteTable.REGEX_PREFIX + regex);
+        mappingsChanged(user, domain);
 
     }
 
@@ -212,6 +253,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
     public void removeRegexMapping(String user, String domain, String regex) throws RecipientRewriteTableException {
         getLogger().info("Remove regex mapping => " + regex + " for user: " + user + " domain: " + domain);
         removeMappingInternal(user, domain, RecipientRewriteTable.REGEX_PREFIX + regex);
+        mappingsChanged(user, domain);
     }
 
     /**
@@ -234,6 +276,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         checkMapping(user, domain, address);
         getLogger().info("Add address mapping => " + address + " for user: " + user + " domain: " + domain);
         addMappingInternal(user, domain, address);
+        mappingsChanged(user, domain);
 
     }
 
@@ -251,6 +294,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         }
         getLogger().info("Remove address mapping => " + address + " for user: " + user + " domain: " + domain);
         removeMappingInternal(user, domain, address);
+        mappingsChanged(user, domain);
     }
 
     /**
@@ -261,6 +305,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         checkMapping(user, domain, error);
         getLogger().info("Add error mapping => " + error + " for user: " + user + " domain: " + domain);
         addMappingInternal(user, domain, RecipientRewriteTable.ERROR_PREFIX + error);
+        mappingsChanged(user, domain);
 
     }
 
@@ -271,6 +316,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
     public void removeErrorMapping(String user, String domain, String error) throws RecipientRewriteTableException {
         getLogger().info("Remove error mapping => " + error + " for user: " + user + " domain: " + domain);
         removeMappingInternal(user, domain, RecipientRewriteTable.ERROR_PREFIX + error);
+        mappingsChanged(user, domain);
     }
 
     /**
@@ -346,6 +392,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
     public void addAliasDomainMapping(String aliasDomain, String realDomain) throws RecipientRewriteTableException {
         getLogger().info("Add domain mapping: " + aliasDomain + " => " + realDomain);
         addMappingInternal(null, aliasDomain, RecipientRewriteTable.ALIASDOMAIN_PREFIX + realDomain);
+        mappingsChanged(null, aliasDomain);
     }
 
     /**
@@ -355,6 +402,7 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
     public void removeAliasDomainMapping(String aliasDomain, String realDomain) throws RecipientRewriteTableException {
         getLogger().info("Remove domain mapping: " + aliasDomain + " => " + realDomain);
         removeMappingInternal(null, aliasDomain, RecipientRewriteTable.ALIASDOMAIN_PREFIX + realDomain);
+        mappingsChanged(null, aliasDomain);
     }
 
     protected Logger getLogger() {
@@ -433,6 +481,10 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
      * @return the mappings
      */
     private Mappings mapAddress(String user, String domain) throws RecipientRewriteTableException {
+        CompiledRecipientRewriteTable compiled = getCompiledTable();
+        if (compiled != null) {
+            return compiled.mapAddress(user, domain);
+        }
 
         String mappings = mapAddressInternal(user, domain);
 
@@ -443,6 +495,78 @@ public abstract class AbstractRecipientRewriteTable implements RecipientRewriteT
         }
     }
 
+    private String regexMap(MailAddress address, String target) throws RecipientRewriteTableException {
+        CompiledRecipientRewriteTable compiled = getCompiledTable();
+        if (compiled != null) {
+            return compiled.regexMap(address, target);
+        }
+        return RecipientRewriteTableUtil.regexMap(address, target);
+    }
+
+    private CompiledRecipientRewriteTable getCompiledTable() {
+        CompiledRecipientRewriteTable compiled = compiledTable;
+        if (compiled == null && isCompiledResolution()) {
+            synchronized (this) {
+                compiled = compiledTable;
+                if (compiled == null) {
+                    compiled = new CompiledRecipientRewriteTable(this, isDomainWildcardFirst(), isGlobalWildcardMapped(),
+                        compiledResolutionRefreshInterval, Ticker.systemTicker(), getLogger());
+                    compiledTable = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    private boolean isCompiledResolution() {
+        Boolean compiled = compiledResolution;
+        if (compiled == null) {
+            return isCompiledResolutionDefault();
+        }
+        return compiled;
+    }
+
+    /**
+     * Update the compiled mappings after a change of the mappings of the given user and domain
+     */
+    private void mappingsChanged(String user, String domain) throws RecipientRewriteTableException {
+        CompiledRecipientRewriteTable compiled = compiledTable;
+        if (compiled != null) {
+            compiled.refresh(getFixedUser(user), getFixedDomain(domain));
+        }
+    }
+
+    /**
+     * Whether <code>*@domain</code> mappings take precedence over <code>user@*</code> ones in
+     * {@link #mapAddressInternal(String, String)}. Compiled resolution follows the same order.
+     * 
+     * @return true by default
+     */
+    protected boolean isDomainWildcardFirst() {
+        return true;
+    }
+
+    /**
+     * Whether <code>*@*</code> mappings apply to the addresses having no other mapping in
+     * {@link #mapAddressInternal(String, String)}. Compiled resolution does the same.
+     * 
+     * @return false by default
+     */
+    protected boolean isGlobalWildcardMapped() {
+        return false;
+    }
+
+    /**
+     * Whether compiled resolution is used unless configured otherwise. As compiled resolution
+     * matches users and domains exactly, tables whose {@link #mapAddressInternal(String, String)}
+     * matches them differently, for example case insensitively, should return false.
+     * 
+     * @return true by default
+     */
+    protected boolean isCompiledResolutionDefault() {
+        return true;
+    }
+
     @VisibleForTesting static Mappings sortMappings(Mappings mappings) {
         if (mappings.contains(Mapping.Type.Domain)) {
             return
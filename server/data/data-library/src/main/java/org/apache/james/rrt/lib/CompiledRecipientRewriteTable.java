@@ -0,0 +1,226 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.rrt.lib;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.james.rrt.api.RecipientRewriteTable;
+import org.apache.james.rrt.api.RecipientRewriteTableException;
+import org.apache.mailet.MailAddress;
+import org.slf4j.Logger;
+
+import com.google.common.base.Ticker;
+
+/**
+ * In memory snapshot of all the mappings of an {@link AbstractRecipientRewriteTable}, used to
+ * resolve addresses without querying the backend.
+ * <p>
+ * Mappings are indexed by domain then user, with their regex patterns compiled once. Domain
+ * aliases are the mappings of <code>*@alias</code> and are already sorted first. The snapshot is
+ * updated entry by entry when mappings are added or removed through the table, and reloaded
+ * entirely once <code>refreshInterval</code> has elapsed to pick up changes made outside of this
+ * server. While one thread reloads, the others keep resolving against the previous snapshot.
+ */
+class CompiledRecipientRewriteTable {
+
+    private static class Snapshot {
+        private final ConcurrentMap<String, ConcurrentMap<String, Mappings>> mappingsByDomain = new ConcurrentHashMap<String, ConcurrentMap<String, Mappings>>();
+        private final ConcurrentMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+        private final long loadedAt;
+
+        Snapshot(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        Mappings get(String user, String domain) {
+            Map<String, Mappings> users = mappingsByDomain.get(domain);
+            if (users == null) {
+                return null;
+            }
+            return users.get(user);
+        }
+
+        void put(String user, String domain, Mappings mappings) {
+            if (mappings == null || mappings.isEmpty()) {
+                remove(user, domain);
+                return;
+            }
+            ConcurrentMap<String, Mappings> users = mappingsByDomain.get(domain);
+            if (users == null) {
+                ConcurrentMap<String, Mappings> created = new ConcurrentHashMap<String, Mappings>();
+                users = mappingsByDomain.putIfAbsent(domain, created);
+                if (users == null) {
+                    users = created;
+                }
+            }
+            for (String mapping : mappings.asStrings()) {
+                if (mapping.startsWith(RecipientRewriteTable.REGEX_PREFIX)) {
+                    try {
+                        compile(mapping);
+                    } catch (PatternSyntaxException e) {
+                        // reported when the mapping is used
+                    }
+                }
+            }
+            users.put(user, AbstractRecipientRewriteTable.sortMappings(mappings));
+        }
+
+        void remove(String user, String domain) {
+            Map<String, Mappings> users = mappingsByDomain.get(domain);
+            if (users != null) {
+                users.remove(user);
+            }
+        }
+
+        Pattern compile(String regexMapping) {
+            Pattern pattern = patterns.get(regexMapping);
+            if (pattern == null) {
+                int msgPos = RecipientRewriteTableUtil.regexReplacementIndex(regexMapping);
+                pattern = Pattern.compile(regexMapping.substring(RecipientRewriteTable.REGEX_PREFIX.length(), msgPos));
+                patterns.put(regexMapping, pattern);
+            }
+            return pattern;
+        }
+    }
+
+    private final AbstractRecipientRewriteTable table;
+    private final boolean domainWildcardFirst;
+    private final boolean globalWildcard;
+    private final long refreshIntervalNanos;
+    private final Ticker ticker;
+    private final Logger logger;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param table the table whose mappings are compiled
+     * @param domainWildcardFirst whether <code>*@domain</code> mappings take precedence over
+     *            <code>user@*</code> ones, as in {@link AbstractRecipientRewriteTable#mapAddressInternal(String, String)}
+     * @param globalWildcard whether <code>*@*</code> mappings apply to the addresses having no other mapping
+     * @param refreshInterval number of seconds after which the whole snapshot is reloaded
+     */
+    CompiledRecipientRewriteTable(AbstractRecipientRewriteTable table, boolean domainWildcardFirst, boolean globalWildcard, long refreshInterval, Ticker ticker, Logger logger) {
+        this.table = table;
+        this.domainWildcardFirst = domainWildcardFirst;
+        this.globalWildcard = globalWildcard;
+        this.refreshIntervalNanos = TimeUnit.SECONDS.toNanos(refreshInterval);
+        this.ticker = ticker;
+        this.logger = logger;
+    }
+
+    /**
+     * Return the sorted mappings applying to the given user and domain, or null if none does.
+     */
+    public Mappings mapAddress(String user, String domain) throws RecipientRewriteTableException {
+        Snapshot current = current();
+        Mappings mappings = current.get(user, domain);
+        if (mappings == null) {
+            if (domainWildcardFirst) {
+                mappings = current.get(RecipientRewriteTable.WILDCARD, domain);
+                if (mappings == null) {
+                    mappings = current.get(user, RecipientRewriteTable.WILDCARD);
+                }
+            } else {
+                mappings = current.get(user, RecipientRewriteTable.WILDCARD);
+                if (mappings == null) {
+                    mappings = current.get(RecipientRewriteTable.WILDCARD, domain);
+                }
+            }
+            if (mappings == null && globalWildcard) {
+                mappings = current.get(RecipientRewriteTable.WILDCARD, RecipientRewriteTable.WILDCARD);
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * Processes a regex mapping with its compiled pattern.
+     * 
+     * @see RecipientRewriteTableUtil#regexMap(MailAddress, String)
+     */
+    public String regexMap(MailAddress address, String regexMapping) throws RecipientRewriteTableException {
+        Pattern pattern = current().compile(regexMapping);
+        int msgPos = RecipientRewriteTableUtil.regexReplacementIndex(regexMapping);
+        return RecipientRewriteTableUtil.regexMap(address, pattern, regexMapping.substring(msgPos + 1));
+    }
+
+    /**
+     * Reload the mappings of the given user and domain from the table, after they were changed.
+     */
+    public void refresh(String user, String domain) throws RecipientRewriteTableException {
+        lock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current != null) {
+                current.put(user, domain, table.getUserDomainMappingsInternal(user, domain));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Snapshot current() throws RecipientRewriteTableException {
+        Snapshot current = snapshot;
+        if (current == null) {
+            lock.lock();
+            try {
+                if (snapshot == null) {
+                    snapshot = load();
+                }
+                return snapshot;
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (ticker.read() - current.loadedAt >= refreshIntervalNanos && lock.tryLock()) {
+            try {
+                if (snapshot == current) {
+                    snapshot = load();
+                }
+                return snapshot;
+            } catch (RecipientRewriteTableException e) {
+                logger.warn("Unable to reload recipient rewrite table mappings, using the previous ones", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return current;
+    }
+
+    private Snapshot load() throws RecipientRewriteTableException {
+        Snapshot loaded = new Snapshot(ticker.read());
+        Map<String, Mappings> allMappings = table.getAllMappingsInternal();
+        if (allMappings != null) {
+            for (Map.Entry<String, Mappings> entry : allMappings.entrySet()) {
+                int separator = entry.getKey().lastIndexOf('@');
+                if (separator < 0) {
+                    continue;
+                }
+                loaded.put(entry.getKey().substring(0, separator), entry.getKey().substring(separator + 1), entry.getValue());
+            }
+        }
+        return loaded;
+    }
+}
@@ -54,14 +54,8 @@ public class RecipientRewriteTableUtil {
      * @throws MalformedPatternException
      */
     public static String regexMap(MailAddress address, String targetString) {
-        String result = null;
         int identifierLength = RecipientRewriteTable.REGEX_PREFIX.length();
-
-        int msgPos = targetString.indexOf(':', identifierLength + 1);
-
-        // Throw exception on invalid format
-        if (msgPos < identifierLength + 1)
-            throw new PatternSyntaxException("Regex should be formatted as regex:<regular-expression>:<parameterized-string>", targetString, 0);
+        int msgPos = regexReplacementIndex(targetString);
 
         // log("regex: targetString = " + targetString);
         // log("regex: msgPos = " + msgPos);
@@ -71,6 +65,22 @@ public class RecipientRewriteTableUtil {
         // log("regex: replace = " + targetString.substring(msgPos + 1));
 
         Pattern pattern = Pattern.compile(targetString.substring(identifierLength, msgPos));
+        return regexMap(address, pattern, targetString.substring(msgPos + 1));
+    }
+
+    /**
+     * Processes regex virtual user mapping with an already compiled pattern
+     * 
+     * @param address
+     *            the MailAddress to be mapped
+     * @param pattern
+     *            the regular-expression of the mapping
+     * @param replacement
+     *            the parameterized-string of the mapping
+     * @return the mapped address, or null if the address does not match
+     */
+    public static String regexMap(MailAddress address, Pattern pattern, String replacement) {
+        String result = null;
         Matcher match = pattern.matcher(address.toString());
 
         if (match.matches()) {
@@ -78,11 +88,33 @@ public class RecipientRewriteTableUtil {
             for (int i = 1; i < match.groupCount(); i++) {
                 parameters.put(Integer.toString(i), match.group(i));
             }
-            result = replaceParameters(targetString.substring(msgPos + 1), parameters);
+            result = replaceParameters(replacement, parameters);
         }
         return result;
     }
 
+    /**
+     * Return the index of the colon separating the regular-expression from the
+     * parameterized-string in a regex:<regular-expression>:<parameterized-string>
+     * mapping
+     * 
+     * @param targetString
+     *            a String specifying the mapping
+     * @throws PatternSyntaxException
+     *             if the mapping is not formatted as expected
+     */
+    public static int regexReplacementIndex(String targetString) {
+        int identifierLength = RecipientRewriteTable.REGEX_PREFIX.length();
+
+        int msgPos = targetString.indexOf(':', identifierLength + 1);
+
+        // Throw exception on invalid format
+        if (msgPos < identifierLength + 1)
+            throw new PatternSyntaxException("Regex should be formatted as regex:<regular-expression>:<parameterized-string>", targetString, 0);
+
+        return msgPos;
+    }
+
     /**
      * Returns a named string, replacing parameters with the values set.
      * 
@@ -0,0 +1,205 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.rrt.lib;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.james.rrt.api.RecipientRewriteTableException;
+import org.apache.mailet.MailAddress;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+
+public class CompiledRecipientRewriteTableTest {
+
+    private static final long REFRESH_INTERVAL = 60;
+
+    private AtomicLong time;
+    private Ticker ticker;
+    private MapRecipientRewriteTable table;
+    private CompiledRecipientRewriteTable testee;
+
+    @Before
+    public void setUp() {
+        time = new AtomicLong();
+        ticker = new Ticker() {
+            @Override
+            public long read() {
+                return time.get();
+            }
+        };
+        table = new MapRecipientRewriteTable();
+        testee = new CompiledRecipientRewriteTable(table, true, false, REFRESH_INTERVAL, ticker, LoggerFactory.getLogger(getClass()));
+    }
+
+    @Test
+    public void mapAddressShouldReturnNullWhenNoMapping() throws Exception {
+        assertThat(testee.mapAddress("user", "domain.tld")).isNull();
+    }
+
+    @Test
+    public void mapAddressShouldPreferExactMapping() throws Exception {
+        table.put("user@domain.tld", "exact@other.tld");
+        table.put("*@domain.tld", "domain@other.tld");
+        table.put("user@*", "user@other.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld")).isEqualTo(MappingsImpl.fromRawString("exact@other.tld"));
+    }
+
+    @Test
+    public void mapAddressShouldPreferDomainWildcardByDefault() throws Exception {
+        table.put("*@domain.tld", "domain@other.tld");
+        table.put("user@*", "user@other.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld")).isEqualTo(MappingsImpl.fromRawString("domain@other.tld"));
+    }
+
+    @Test
+    public void mapAddressShouldPreferUserWildcardWhenConfigured() throws Exception {
+        testee = new CompiledRecipientRewriteTable(table, false, false, REFRESH_INTERVAL, ticker, LoggerFactory.getLogger(getClass()));
+        table.put("*@domain.tld", "domain@other.tld");
+        table.put("user@*", "user@other.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld")).isEqualTo(MappingsImpl.fromRawString("user@other.tld"));
+    }
+
+    @Test
+    public void mapAddressShouldPutDomainAliasFirst() throws Exception {
+        table.put("*@domain.tld", "user@other.tld;domain:alias.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld").asStrings())
+            .containsExactly("domain:alias.tld", "user@other.tld");
+    }
+
+    @Test
+    public void mapAddressShouldLoadAllMappingsOnlyOnce() throws Exception {
+        table.put("user@domain.tld", "exact@other.tld");
+
+        testee.mapAddress("user", "domain.tld");
+        testee.mapAddress("other", "domain.tld");
+        testee.mapAddress("user", "domain.tld");
+
+        assertThat(table.loads).isEqualTo(1);
+    }
+
+    @Test
+    public void externalChangesShouldBeVisibleAfterRefreshInterval() throws Exception {
+        testee.mapAddress("user", "domain.tld");
+        table.put("user@domain.tld", "exact@other.tld");
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(REFRESH_INTERVAL - 1));
+        assertThat(testee.mapAddress("user", "domain.tld")).isNull();
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(testee.mapAddress("user", "domain.tld")).isEqualTo(MappingsImpl.fromRawString("exact@other.tld"));
+    }
+
+    @Test
+    public void refreshShouldMakeChangeVisibleImmediately() throws Exception {
+        table.put("user@domain.tld", "exact@other.tld");
+        testee.mapAddress("user", "domain.tld");
+
+        table.put("user@domain.tld", "changed@other.tld");
+        testee.refresh("user", "domain.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld")).isEqualTo(MappingsImpl.fromRawString("changed@other.tld"));
+        assertThat(table.loads).isEqualTo(1);
+    }
+
+    @Test
+    public void refreshShouldRemoveDeletedMappings() throws Exception {
+        table.put("user@domain.tld", "exact@other.tld");
+        testee.mapAddress("user", "domain.tld");
+
+        table.mappings.remove("user@domain.tld");
+        testee.refresh("user", "domain.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld")).isNull();
+    }
+
+    @Test
+    public void mapAddressShouldIgnoreGlobalWildcardByDefault() throws Exception {
+        table.put("*@*", "all@other.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld")).isNull();
+    }
+
+    @Test
+    public void mapAddressShouldFallBackToGlobalWildcardWhenConfigured() throws Exception {
+        testee = new CompiledRecipientRewriteTable(table, false, true, REFRESH_INTERVAL, ticker, LoggerFactory.getLogger(getClass()));
+        table.put("*@*", "all@other.tld");
+        table.put("*@domain.tld", "domain@other.tld");
+
+        assertThat(testee.mapAddress("user", "domain.tld")).isEqualTo(MappingsImpl.fromRawString("domain@other.tld"));
+        assertThat(testee.mapAddress("user", "another.tld")).isEqualTo(MappingsImpl.fromRawString("all@other.tld"));
+    }
+
+    @Test
+    public void regexMapShouldMatchUncompiledRegexMap() throws Exception {
+        String regex = "regex:(.*)@(.*)(\\..*):${1}@${2}.org";
+        table.put("*@domain.tld", regex);
+        MailAddress address = new MailAddress("user@domain.tld");
+
+        assertThat(testee.regexMap(address, regex))
+            .isEqualTo(RecipientRewriteTableUtil.regexMap(address, regex))
+            .isEqualTo("user@domain.org");
+    }
+
+    private static class MapRecipientRewriteTable extends AbstractRecipientRewriteTable {
+        private final Map<String, Mappings> mappings = new HashMap<String, Mappings>();
+        private int loads;
+
+        void put(String key, String rawMappings) {
+            mappings.put(key, MappingsImpl.fromRawString(rawMappings));
+        }
+
+        @Override
+        protected void addMappingInternal(String user, String domain, String mapping) throws RecipientRewriteTableException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void removeMappingInternal(String user, String domain, String mapping) throws RecipientRewriteTableException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Mappings getUserDomainMappingsInternal(String user, String domain) throws RecipientRewriteTableException {
+            return mappings.get(user + "@" + domain);
+        }
+
+        @Override
+        protected Map<String, Mappings> getAllMappingsInternal() throws RecipientRewriteTableException {
+            loads++;
+            return new HashMap<String, Mappings>(mappings);
+        }
+
+        @Override
+        protected String mapAddressInternal(String user, String domain) throws RecipientRewriteTableException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.dnsservice.api;
+
+import java.net.InetAddress;
+import java.util.Collection;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A {@link DNSService} whose lookups can be issued without waiting for their result,
+ * so that independent lookups are done concurrently.
+ * <p>
+ * The returned futures fail with the exception the blocking method would have thrown.
+ */
+public interface AsyncDNSService extends DNSService {
+
+    /**
+     * @see DNSService#findMXRecords(String)
+     */
+    ListenableFuture<Collection<String>> findMXRecordsAsync(String hostname);
+
+    /**
+     * @see DNSService#findTXTRecords(String)
+     */
+    ListenableFuture<Collection<String>> findTXTRecordsAsync(String hostname);
+
+    /**
+     * @see DNSService#getAllByName(String)
+     */
+    ListenableFuture<InetAddress[]> getAllByNameAsync(String host);
+
+    /**
+     * @see DNSService#getByName(String)
+     */
+    ListenableFuture<InetAddress> getByNameAsync(String host);
+
+}
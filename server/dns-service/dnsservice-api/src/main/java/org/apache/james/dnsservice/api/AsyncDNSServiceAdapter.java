@@ -0,0 +1,125 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.dnsservice.api;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Exposes a blocking {@link DNSService} as an {@link AsyncDNSService}, running the lookups
+ * on the given executor.
+ */
+public class AsyncDNSServiceAdapter implements AsyncDNSService {
+
+    /**
+     * Return the given {@link DNSService} if it is already an {@link AsyncDNSService}, otherwise
+     * an adapter running its lookups in the calling thread.
+     */
+    public static AsyncDNSService of(DNSService dnsService) {
+        if (dnsService instanceof AsyncDNSService) {
+            return (AsyncDNSService) dnsService;
+        }
+        return new AsyncDNSServiceAdapter(dnsService, MoreExecutors.newDirectExecutorService());
+    }
+
+    private final DNSService dnsService;
+    private final ListeningExecutorService executor;
+
+    public AsyncDNSServiceAdapter(DNSService dnsService, ListeningExecutorService executor) {
+        this.dnsService = dnsService;
+        this.executor = executor;
+    }
+
+    @Override
+    public ListenableFuture<Collection<String>> findMXRecordsAsync(final String hostname) {
+        return executor.submit(new Callable<Collection<String>>() {
+            @Override
+            public Collection<String> call() throws Exception {
+                return dnsService.findMXRecords(hostname);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Collection<String>> findTXTRecordsAsync(final String hostname) {
+        return executor.submit(new Callable<Collection<String>>() {
+            @Override
+            public Collection<String> call() throws Exception {
+                return dnsService.findTXTRecords(hostname);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<InetAddress[]> getAllByNameAsync(final String host) {
+        return executor.submit(new Callable<InetAddress[]>() {
+            @Override
+            public InetAddress[] call() throws Exception {
+                return dnsService.getAllByName(host);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<InetAddress> getByNameAsync(final String host) {
+        return executor.submit(new Callable<InetAddress>() {
+            @Override
+            public InetAddress call() throws Exception {
+                return dnsService.getByName(host);
+            }
+        });
+    }
+
+    @Override
+    public Collection<String> findMXRecords(String hostname) throws TemporaryResolutionException {
+        return dnsService.findMXRecords(hostname);
+    }
+
+    @Override
+    public Collection<String> findTXTRecords(String hostname) {
+        return dnsService.findTXTRecords(hostname);
+    }
+
+    @Override
+    public InetAddress[] getAllByName(String host) throws UnknownHostException {
+        return dnsService.getAllByName(host);
+    }
+
+    @Override
+    public InetAddress getByName(String host) throws UnknownHostException {
+        return dnsService.getByName(host);
+    }
+
+    @Override
+    public InetAddress getLocalHost() throws UnknownHostException {
+        return dnsService.getLocalHost();
+    }
+
+    @Override
+    public String getHostName(InetAddress addr) {
+        return dnsService.getHostName(addr);
+    }
+}
@@ -20,11 +20,13 @@ package org.apache.james.dnsservice.dnsjava;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.HierarchicalConfiguration;
-import org.apache.james.dnsservice.api.DNSService;
+import org.apache.james.dnsservice.api.AsyncDNSService;
 import org.apache.james.dnsservice.api.DNSServiceMBean;
 import org.apache.james.dnsservice.api.TemporaryResolutionException;
 import org.apache.james.lifecycle.api.Configurable;
 import org.apache.james.lifecycle.api.LogEnabled;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
 import org.slf4j.Logger;
 import org.xbill.DNS.ARecord;
 import org.xbill.DNS.Cache;
@@ -43,7 +45,16 @@ import org.xbill.DNS.TXTRecord;
 import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -52,11 +63,34 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Provides DNS client functionality to services running inside James
+ * <p>
+ * Asynchronous lookups are run by a pool of <code>maxconcurrentlookups</code> threads. Concurrent
+ * requests for the same record share a single lookup.
+ * <p>
+ * Answers are cached by a {@link RecordCache} configured under <code>resolvercache</code>, with
+ * separately sized positive and negative caches and refresh-ahead of frequently used entries.
  */
-public class DNSJavaService implements DNSService, DNSServiceMBean, LogEnabled, Configurable {
+public class DNSJavaService implements AsyncDNSService, DNSServiceMBean, LogEnabled, Configurable {
+
+    /**
+     * Default number of lookups done concurrently by the asynchronous methods
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_LOOKUPS = 16;
+
+    public static final int DEFAULT_POSITIVE_CACHE_SIZE = 10000;
+    public static final int DEFAULT_NEGATIVE_CACHE_SIZE = 10000;
+    public static final long DEFAULT_NEGATIVE_TTL = 300;
+    public static final double DEFAULT_REFRESH_AHEAD = 0.8;
+    public static final int DEFAULT_HOT_THRESHOLD = 3;
 
     /**
      * A resolver instance used to retrieve DNS records. This is a reference to
@@ -109,6 +143,42 @@ public class DNSJavaService implements DNSService, DNSServiceMBean, LogEnabled,
 
     private Logger logger;
 
+    private int maxConcurrentLookups = DEFAULT_MAX_CONCURRENT_LOOKUPS;
+
+    /**
+     * Executor running the asynchronous lookups
+     */
+    private ListeningExecutorService lookupExecutor = MoreExecutors.newDirectExecutorService();
+
+    /**
+     * The asynchronous lookups currently running, by record type and name
+     */
+    private final ConcurrentMap<String, ListenableFuture<?>> inFlightLookups = new ConcurrentHashMap<String, ListenableFuture<?>>();
+
+    private boolean resolverCacheEnabled = true;
+
+    private int positiveCacheSize = DEFAULT_POSITIVE_CACHE_SIZE;
+
+    private int negativeCacheSize = DEFAULT_NEGATIVE_CACHE_SIZE;
+
+    private long negativeTtl = DEFAULT_NEGATIVE_TTL;
+
+    private double refreshAhead = DEFAULT_REFRESH_AHEAD;
+
+    private int hotThreshold = DEFAULT_HOT_THRESHOLD;
+
+    /**
+     * Cache of the answers, in front of the dnsjava lookups. Null when disabled.
+     */
+    private RecordCache recordCache;
+
+    private MetricFactory metricFactory = new NoopMetricFactory();
+
+    @Inject
+    public void setMetricFactory(MetricFactory metricFactory) {
+        this.metricFactory = metricFactory;
+    }
+
     public void setLog(Logger logger) {
         this.logger = logger;
     }
@@ -169,6 +239,24 @@ public class DNSJavaService implements DNSService, DNSServiceMBean, LogEnabled,
         dnsCredibility = authoritative ? Credibility.AUTH_ANSWER : Credibility.NONAUTH_ANSWER;
 
         maxCacheSize = configuration.getInt("maxcachesize", maxCacheSize);
+
+        maxConcurrentLookups = configuration.getInt("maxconcurrentlookups", maxConcurrentLookups);
+        if (maxConcurrentLookups < 1) {
+            throw new ConfigurationException("maxconcurrentlookups should be positive");
+        }
+
+        resolverCacheEnabled = configuration.getBoolean("resolvercache.enabled", resolverCacheEnabled);
+        positiveCacheSize = configuration.getInt("resolvercache.positivesize", positiveCacheSize);
+        negativeCacheSize = configuration.getInt("resolvercache.negativesize", negativeCacheSize);
+        negativeTtl = configuration.getLong("resolvercache.negativettl", negativeTtl);
+        refreshAhead = configuration.getDouble("resolvercache.refreshahead", refreshAhead);
+        hotThreshold = configuration.getInt("resolvercache.hotthreshold", hotThreshold);
+        if (positiveCacheSize < 0 || negativeCacheSize < 0 || negativeTtl < 0) {
+            throw new ConfigurationException("resolvercache sizes and negativettl should not be negative");
+        }
+        if (refreshAhead <= 0 || refreshAhead > 1) {
+            throw new ConfigurationException("resolvercache.refreshahead should be in ]0, 1]");
+        }
     }
 
     @PostConstruct
@@ -219,9 +307,28 @@ public class DNSJavaService implements DNSService, DNSServiceMBean, LogEnabled,
         localHostName = addr.getHostName();
         localAddress = addr.getHostAddress();
 
+        lookupExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(maxConcurrentLookups,
+            new ThreadFactoryBuilder().setNameFormat("dnsjava-lookup-%d").setDaemon(true).build()));
+
+        if (resolverCacheEnabled) {
+            recordCache = new RecordCache(new RecordCache.Loader() {
+                    @Override
+                    public Record[] load(String name, int type, boolean refresh) throws TemporaryResolutionException {
+                        // a refresh bypasses the dnsjava cache, which would return the answer being refreshed
+                        return lookup(name, type, refresh ? new Cache(DClass.IN) : cache);
+                    }
+                }, lookupExecutor, Ticker.systemTicker(), metricFactory,
+                positiveCacheSize, negativeCacheSize, negativeTtl, refreshAhead, hotThreshold);
+        }
+
         logger.debug("DNSService ...init end");
     }
 
+    @PreDestroy
+    public void destroy() {
+        lookupExecutor.shutdownNow();
+    }
+
     /**
      * Return the list of DNS servers in use by this service
      *
@@ -340,12 +447,19 @@ public class DNSJavaService implements DNSService, DNSServiceMBean, LogEnabled,
      * @param typeDesc the description of the record type, for debugging purpose
      */
     protected Record[] lookup(String namestr, int type, String typeDesc) throws TemporaryResolutionException {
+        if (recordCache != null) {
+            return recordCache.lookup(namestr, type);
+        }
+        return lookup(namestr, type, cache);
+    }
+
+    private Record[] lookup(String namestr, int type, Cache lookupCache) throws TemporaryResolutionException {
         // Name name = null;
         try {
             // name = Name.fromString(namestr, Name.root);
             Lookup l = new Lookup(namestr, type);
 
-            l.setCache(cache);
+            l.setCache(lookupCache);
             l.setResolver(resolver);
             l.setCredibility(dnsCredibility);
             l.setSearchPath(searchPaths);
@@ -500,6 +614,77 @@ public class DNSJavaService implements DNSService, DNSServiceMBean, LogEnabled,
         return result;
     }
 
+    @Override
+    public ListenableFuture<Collection<String>> findMXRecordsAsync(final String hostname) {
+        return coalesce("MX:" + hostname, new Callable<Collection<String>>() {
+            @Override
+            public Collection<String> call() throws Exception {
+                return findMXRecords(hostname);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Collection<String>> findTXTRecordsAsync(final String hostname) {
+        return coalesce("TXT:" + hostname, new Callable<Collection<String>>() {
+            @Override
+            public Collection<String> call() throws Exception {
+                return findTXTRecords(hostname);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<InetAddress[]> getAllByNameAsync(final String host) {
+        return coalesce("ALL:" + host, new Callable<InetAddress[]>() {
+            @Override
+            public InetAddress[] call() throws Exception {
+                return getAllByName(host);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<InetAddress> getByNameAsync(final String host) {
+        return coalesce("A:" + host, new Callable<InetAddress>() {
+            @Override
+            public InetAddress call() throws Exception {
+                return getByName(host);
+            }
+        });
+    }
+
+    /**
+     * Run the given lookup on the lookup executor, unless the same lookup is already running
+     * in which case its future is returned.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> ListenableFuture<T> coalesce(final String key, final Callable<T> lookup) {
+        final SettableFuture<T> future = SettableFuture.create();
+        ListenableFuture<?> inFlight = inFlightLookups.putIfAbsent(key.toLowerCase(Locale.US), future);
+        if (inFlight != null) {
+            return (ListenableFuture<T>) inFlight;
+        }
+        try {
+            lookupExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.set(lookup.call());
+                    } catch (Throwable t) {
+                        future.setException(t);
+                    } finally {
+                        inFlightLookups.remove(key.toLowerCase(Locale.US), future);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightLookups.remove(key.toLowerCase(Locale.US), future);
+            future.setException(e);
+        }
+        return future;
+    }
+
     @Override
     public InetAddress getLocalHost() throws UnknownHostException {
         return InetAddress.getLocalHost();
@@ -518,6 +703,9 @@ public class DNSJavaService implements DNSService, DNSServiceMBean, LogEnabled,
     @Override
     public void clearCache() {
         cache.clearCache();
+        if (recordCache != null) {
+            recordCache.clear();
+        }
     }
 
 }
@@ -0,0 +1,265 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.dnsservice.dnsjava;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.dnsservice.api.TemporaryResolutionException;
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
+import org.xbill.DNS.Record;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Resolver side cache of DNS answers, in front of the dnsjava lookups.
+ * <p>
+ * Answers are kept in two separately sized caches: positive answers for the lowest TTL of their
+ * records, empty answers (NXDOMAIN, no data) for a fixed negative TTL. An entry read at least
+ * <code>hotThreshold</code> times is refreshed in the background once <code>refreshAhead</code> of
+ * its TTL has elapsed, so that popular names do not expire in the middle of a burst. On a miss a
+ * single lookup is done for a given name and type, concurrent callers waiting for its answer.
+ * <p>
+ * Temporary failures are never cached.
+ */
+class RecordCache {
+
+    /**
+     * Performs the actual lookup of a name
+     */
+    interface Loader {
+
+        /**
+         * @param name the name to look up
+         * @param type the record type
+         * @param refresh true when refreshing a cached answer, in which case lower level caches
+         *            should be bypassed
+         * @return the records, or null when none were found
+         */
+        Record[] load(String name, int type, boolean refresh) throws TemporaryResolutionException;
+    }
+
+    public static final String HIT_METRIC_NAME = "dnsCacheHits";
+    public static final String NEGATIVE_HIT_METRIC_NAME = "dnsCacheNegativeHits";
+    public static final String MISS_METRIC_NAME = "dnsCacheMisses";
+    public static final String REFRESH_METRIC_NAME = "dnsCacheRefreshes";
+    public static final String LOOKUP_TIMER_NAME = "dnsLookup";
+
+    private static final Record[] NO_RECORDS = new Record[0];
+
+    private static class Entry {
+        private final Record[] records;
+        private final long expiresAt;
+        private final long refreshAt;
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(Record[] records, long expiresAt, long refreshAt) {
+            this.records = records;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        boolean isNegative() {
+            return records.length == 0;
+        }
+    }
+
+    private final Loader loader;
+    private final Executor refreshExecutor;
+    private final Ticker ticker;
+    private final long negativeTtlNanos;
+    private final double refreshAhead;
+    private final int hotThreshold;
+    private final Cache<String, Entry> positive;
+    private final Cache<String, Entry> negative;
+    private final ConcurrentMap<String, SettableFuture<Record[]>> inFlight = new ConcurrentHashMap<String, SettableFuture<Record[]>>();
+
+    private final MetricFactory metricFactory;
+    private final Metric hits;
+    private final Metric negativeHits;
+    private final Metric misses;
+    private final Metric refreshes;
+
+    RecordCache(Loader loader, Executor refreshExecutor, Ticker ticker, MetricFactory metricFactory,
+                int positiveSize, int negativeSize, long negativeTtlSeconds, double refreshAhead, int hotThreshold) {
+        this.loader = loader;
+        this.refreshExecutor = refreshExecutor;
+        this.ticker = ticker;
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.refreshAhead = refreshAhead;
+        this.hotThreshold = hotThreshold;
+        this.positive = CacheBuilder.newBuilder().maximumSize(positiveSize).build();
+        this.negative = CacheBuilder.newBuilder().maximumSize(negativeSize).build();
+        this.metricFactory = metricFactory;
+        this.hits = metricFactory.generate(HIT_METRIC_NAME);
+        this.negativeHits = metricFactory.generate(NEGATIVE_HIT_METRIC_NAME);
+        this.misses = metricFactory.generate(MISS_METRIC_NAME);
+        this.refreshes = metricFactory.generate(REFRESH_METRIC_NAME);
+    }
+
+    /**
+     * Return the records of the given type for the given name, from the cache when possible.
+     *
+     * @return the records, or null when none exist
+     */
+    public Record[] lookup(String name, int type) throws TemporaryResolutionException {
+        String key = type + ":" + name.toLowerCase(Locale.US);
+        long now = ticker.read();
+
+        Entry entry = getIfPresent(key, now);
+        if (entry != null) {
+            if (entry.isNegative()) {
+                negativeHits.increment();
+                return null;
+            }
+            hits.increment();
+            if (entry.hits.incrementAndGet() >= hotThreshold && now - entry.refreshAt >= 0) {
+                refreshAhead(key, name, type, entry);
+            }
+            return entry.records;
+        }
+
+        misses.increment();
+        return load(key, name, type);
+    }
+
+    public long size() {
+        return positive.size() + negative.size();
+    }
+
+    public void clear() {
+        positive.invalidateAll();
+        negative.invalidateAll();
+    }
+
+    private Entry getIfPresent(String key, long now) {
+        Entry entry = positive.getIfPresent(key);
+        if (entry == null) {
+            entry = negative.getIfPresent(key);
+        }
+        if (entry != null && now - entry.expiresAt >= 0) {
+            positive.invalidate(key);
+            negative.invalidate(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private Record[] load(String key, String name, int type) throws TemporaryResolutionException {
+        SettableFuture<Record[]> future = SettableFuture.create();
+        SettableFuture<Record[]> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Record[] records = timedLoad(name, type, false);
+            store(key, records);
+            future.set(records);
+            return records;
+        } catch (TemporaryResolutionException e) {
+            future.setException(e);
+            throw e;
+        } catch (RuntimeException e) {
+            future.setException(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Record[] await(SettableFuture<Record[]> running) throws TemporaryResolutionException {
+        try {
+            return Uninterruptibles.getUninterruptibly(running);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), TemporaryResolutionException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private void refreshAhead(final String key, final String name, final int type, final Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        store(key, timedLoad(name, type, true));
+                        refreshes.increment();
+                    } catch (TemporaryResolutionException e) {
+                        // keep serving the cached answer until it expires
+                        entry.refreshing.set(false);
+                    } catch (RuntimeException e) {
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private Record[] timedLoad(String name, int type, boolean refresh) throws TemporaryResolutionException {
+        TimeMetric timeMetric = metricFactory.timer(LOOKUP_TIMER_NAME);
+        try {
+            return loader.load(name, type, refresh);
+        } finally {
+            timeMetric.stopAndPublish();
+        }
+    }
+
+    private void store(String key, Record[] records) {
+        long now = ticker.read();
+        if (records == null || records.length == 0) {
+            positive.invalidate(key);
+            negative.put(key, new Entry(NO_RECORDS, now + negativeTtlNanos, Long.MAX_VALUE));
+            return;
+        }
+        long ttlNanos = TimeUnit.SECONDS.toNanos(minTtl(records));
+        if (ttlNanos <= 0) {
+            return;
+        }
+        negative.invalidate(key);
+        positive.put(key, new Entry(records, now + ttlNanos, now + (long) (ttlNanos * refreshAhead)));
+    }
+
+    private static long minTtl(Record[] records) {
+        long ttl = Long.MAX_VALUE;
+        for (Record record : records) {
+            ttl = Math.min(ttl, record.getTTL());
+        }
+        return ttl;
+    }
+}
@@ -42,8 +42,15 @@ import org.xbill.DNS.Zone;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DNSJavaServiceTest {
 
@@ -84,6 +91,7 @@ public class DNSJavaServiceTest {
     @After
     public void tearDown() throws Exception {
         dnsServer.setCache(null);
+        dnsServer.destroy();
         dnsServer = null;
         Lookup.setDefaultCache(defaultCache, DClass.IN);
         Lookup.setDefaultResolver(defaultResolver);
@@ -207,6 +215,68 @@ public class DNSJavaServiceTest {
         assertEquals(1, records.size());
         assertTrue(records.contains("mx1.one-mx.bar."));
     }
+
+    @Test
+    public void testFindMXRecordsAsync() throws Exception {
+        doAnswer(new ZoneCacheLookupRecordsAnswer(loadZone("two-mx.differentprio.")))
+                .when(mockedCache).lookupRecords(any(Name.class), anyInt(), anyInt());
+        dnsServer.setCache(mockedCache);
+
+        Collection<String> records = dnsServer.findMXRecordsAsync("two-mx.differentprio.").get();
+        assertEquals(new ArrayList<String>(dnsServer.findMXRecords("two-mx.differentprio.")), new ArrayList<String>(records));
+    }
+
+    @Test
+    public void testConcurrentLookupsOfTheSameNameShouldBeCoalesced() throws Exception {
+        final CountDownLatch lookupStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLookup = new CountDownLatch(1);
+        final AtomicInteger lookups = new AtomicInteger();
+        DNSJavaService blockingServer = new TestableDNSServer() {
+            @Override
+            public Collection<String> findMXRecords(String hostname) {
+                lookups.incrementAndGet();
+                lookupStarted.countDown();
+                try {
+                    releaseLookup.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Collections.singletonList("mx." + hostname);
+            }
+        };
+        blockingServer.setLog(LoggerFactory.getLogger(DNSJavaServiceTest.class));
+        blockingServer.init();
+        try {
+            Future<Collection<String>> first = blockingServer.findMXRecordsAsync("coalesced.com.");
+            assertTrue(lookupStarted.await(10, TimeUnit.SECONDS));
+            Future<Collection<String>> second = blockingServer.findMXRecordsAsync("coalesced.com.");
+            releaseLookup.countDown();
+
+            assertEquals(Collections.singletonList("mx.coalesced.com."), first.get(10, TimeUnit.SECONDS));
+            assertEquals(Collections.singletonList("mx.coalesced.com."), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, lookups.get());
+
+            blockingServer.findMXRecordsAsync("coalesced.com.").get(10, TimeUnit.SECONDS);
+            assertEquals(2, lookups.get());
+        } finally {
+            releaseLookup.countDown();
+            blockingServer.destroy();
+        }
+    }
+
+    @Test
+    public void testGetByNameAsyncShouldFailLikeGetByName() throws Exception {
+        doAnswer(new ZoneCacheLookupRecordsAnswer(loadZone("dnstest.com.")))
+                .when(mockedCache).lookupRecords(any(Name.class), anyInt(), anyInt());
+        dnsServer.setCache(mockedCache);
+        try {
+            dnsServer.getByNameAsync("unknown.dnstest.com.").get();
+            fail("Lookup of an empty name should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnknownHostException);
+        }
+    }
+
     /*
      * public void testCNAMEasMXrecords() throws Exception { // Zone z =
      * loadZone("brandilyncollins.com."); dnsServer.setResolver(null);
@@ -223,7 +293,7 @@ public class DNSJavaServiceTest {
         return new Zone(Name.fromString(zoneName), zoneResource.getFile());
     }
 
-    private final class TestableDNSServer extends DNSJavaService {
+    private class TestableDNSServer extends DNSJavaService {
 
         public void setResolver(Resolver r) {
             resolver = r;
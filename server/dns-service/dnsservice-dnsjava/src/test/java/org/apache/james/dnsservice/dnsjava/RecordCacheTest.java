@@ -0,0 +1,231 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.dnsservice.dnsjava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.james.dnsservice.api.TemporaryResolutionException;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class RecordCacheTest {
+
+    private static final long TTL = 100;
+    private static final long NEGATIVE_TTL = 10;
+
+    private AtomicLong time;
+    private Ticker ticker;
+    private CountingLoader loader;
+    private RecordCache recordCache;
+
+    @Before
+    public void setUp() throws Exception {
+        time = new AtomicLong();
+        ticker = new Ticker() {
+            @Override
+            public long read() {
+                return time.get();
+            }
+        };
+        loader = new CountingLoader();
+        recordCache = new RecordCache(loader, MoreExecutors.directExecutor(), ticker, new NoopMetricFactory(),
+            100, 100, NEGATIVE_TTL, 0.8, 3);
+    }
+
+    @Test
+    public void positiveAnswerShouldBeCachedForItsTtl() throws Exception {
+        Record[] first = recordCache.lookup("host.example.com.", Type.A);
+        advanceSeconds(TTL - 1);
+        Record[] second = recordCache.lookup("HOST.example.com.", Type.A);
+
+        assertSame(first, second);
+        assertEquals(1, loader.loads.get());
+
+        advanceSeconds(1);
+        recordCache.lookup("host.example.com.", Type.A);
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void recordTypesShouldBeCachedSeparately() throws Exception {
+        recordCache.lookup("host.example.com.", Type.A);
+        recordCache.lookup("host.example.com.", Type.MX);
+
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void negativeAnswerShouldBeCachedForTheNegativeTtl() throws Exception {
+        assertNull(recordCache.lookup("missing.example.com.", Type.A));
+        advanceSeconds(NEGATIVE_TTL - 1);
+        assertNull(recordCache.lookup("missing.example.com.", Type.A));
+        assertEquals(1, loader.loads.get());
+
+        advanceSeconds(1);
+        assertNull(recordCache.lookup("missing.example.com.", Type.A));
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void temporaryFailureShouldNotBeCached() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            try {
+                recordCache.lookup("unreachable.example.com.", Type.A);
+                fail("TemporaryResolutionException expected");
+            } catch (TemporaryResolutionException e) {
+                // expected
+            }
+        }
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void hotEntryShouldBeRefreshedBeforeExpiry() throws Exception {
+        recordCache.lookup("host.example.com.", Type.A);
+        recordCache.lookup("host.example.com.", Type.A);
+        recordCache.lookup("host.example.com.", Type.A);
+        advanceSeconds(TTL * 8 / 10);
+        recordCache.lookup("host.example.com.", Type.A);
+
+        assertEquals(1, loader.refreshes.get());
+
+        // the refreshed answer is valid for a full TTL from the refresh
+        advanceSeconds(TTL / 2);
+        recordCache.lookup("host.example.com.", Type.A);
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void coldEntryShouldNotBeRefreshed() throws Exception {
+        recordCache.lookup("host.example.com.", Type.A);
+        advanceSeconds(TTL * 9 / 10);
+        recordCache.lookup("host.example.com.", Type.A);
+
+        assertEquals(0, loader.refreshes.get());
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void concurrentMissesShouldShareASingleLookup() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final RecordCache blockingCache = new RecordCache(new RecordCache.Loader() {
+            @Override
+            public Record[] load(String name, int type, boolean refresh) throws TemporaryResolutionException {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return records(name);
+            }
+        }, MoreExecutors.directExecutor(), ticker, new NoopMetricFactory(), 100, 100, NEGATIVE_TTL, 0.8, 3);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Record[]>> results = new ArrayList<Future<Record[]>>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<Record[]>() {
+                    @Override
+                    public Record[] call() throws Exception {
+                        return blockingCache.lookup("host.example.com.", Type.A);
+                    }
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            Record[] first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Record[]> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void clearShouldEmptyBothCaches() throws Exception {
+        recordCache.lookup("host.example.com.", Type.A);
+        recordCache.lookup("missing.example.com.", Type.A);
+        assertEquals(2, recordCache.size());
+
+        recordCache.clear();
+
+        assertEquals(0, recordCache.size());
+    }
+
+    private void advanceSeconds(long seconds) {
+        time.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private static Record[] records(String name) throws TemporaryResolutionException {
+        try {
+            return new Record[] { new ARecord(Name.fromString(name), DClass.IN, TTL, InetAddress.getByName("192.0.2.1")) };
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class CountingLoader implements RecordCache.Loader {
+        private final AtomicInteger loads = new AtomicInteger();
+        private final AtomicInteger refreshes = new AtomicInteger();
+
+        @Override
+        public Record[] load(String name, int type, boolean refresh) throws TemporaryResolutionException {
+            loads.incrementAndGet();
+            if (refresh) {
+                refreshes.incrementAndGet();
+            }
+            if (name.startsWith("missing")) {
+                return null;
+            }
+            if (name.startsWith("unreachable")) {
+                throw new TemporaryResolutionException("unreachable");
+            }
+            return records(name);
+        }
+    }
+}
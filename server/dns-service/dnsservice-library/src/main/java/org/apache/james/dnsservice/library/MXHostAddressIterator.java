@@ -25,14 +25,21 @@ import java.net.UnknownHostException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
+import org.apache.james.dnsservice.api.AsyncDNSService;
+import org.apache.james.dnsservice.api.AsyncDNSServiceAdapter;
 import org.apache.james.dnsservice.api.DNSService;
 import org.apache.mailet.HostAddress;
 import org.slf4j.Logger;
 
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  *
@@ -51,33 +58,53 @@ public class MXHostAddressIterator implements Iterator<HostAddress> {
         checkNotNull(hosts, "Hosts is null");
         checkNotNull(dns, "Dns is null");
         final List<HostAddress> hAddresses = Lists.newArrayList();
+        final AsyncDNSService asyncDns = AsyncDNSServiceAdapter.of(dns);
+        final List<Map.Entry<String, String>> hostAndPorts = Lists.newArrayList();
+        final List<ListenableFuture<InetAddress[]>> lookups = Lists.newArrayList();
 
+        // Start all the lookups before waiting for the first one
         while (hosts.hasNext()) {
-            String nextHostname = hosts.next();
-            Map.Entry<String, String> hostAndPort = extractHostAndPort(nextHostname, defaultPort);
+            Map.Entry<String, String> hostAndPort = extractHostAndPort(hosts.next(), defaultPort);
+            hostAndPorts.add(hostAndPort);
+            lookups.add(lookup(asyncDns, hostAndPort.getKey(), useSingleIP));
+        }
 
+        for (int i = 0; i < hostAndPorts.size(); i++) {
+            Map.Entry<String, String> hostAndPort = hostAndPorts.get(i);
             try {
-                final InetAddress[] addrs;
-                if (useSingleIP) {
-                    addrs = new InetAddress[]{dns.getByName(hostAndPort.getKey())};
-                } else {
-                    addrs = dns.getAllByName(hostAndPort.getKey());
-                }
-                for (InetAddress addr : addrs) {
+                for (InetAddress addr : lookups.get(i).get()) {
                     hAddresses.add(new HostAddress(hostAndPort.getKey(),
                             "smtp://" + addr.getHostAddress() + ":" + hostAndPort.getValue()));
                 }
-            } catch (UnknownHostException uhe) {
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof UnknownHostException)) {
+                    throw Throwables.propagate(e.getCause());
+                }
                 // this should never happen, since we just got
                 // this host from mxHosts, which should have
                 // already done this check.
                 String logBuffer = "Couldn't resolve IP address for discovered host " + hostAndPort.getKey() + ".";
                 logger.error(logBuffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
         }
         addresses = hAddresses.iterator();
     }
 
+    private static ListenableFuture<InetAddress[]> lookup(AsyncDNSService dns, String host, boolean useSingleIP) {
+        if (useSingleIP) {
+            return Futures.transform(dns.getByNameAsync(host), new Function<InetAddress, InetAddress[]>() {
+                @Override
+                public InetAddress[] apply(InetAddress address) {
+                    return new InetAddress[]{address};
+                }
+            });
+        }
+        return dns.getAllByNameAsync(host);
+    }
+
     private static ImmutableMap.Entry<String, String> extractHostAndPort(String nextHostname, int defaultPort) {
         final String hostname;
         final String port;
@@ -60,10 +60,12 @@ import org.apache.mailet.base.RFC2822Headers;
  * <p>
  * The analysis capabilities are based on token frequencies (the <i>Corpus</i>)
  * learned through a training process (see {@link BayesianAnalysisFeeder}) and
- * stored in a JDBC database. After a training session, the Corpus must be
- * rebuilt from the database in order to acquire the new frequencies. Every 10
- * minutes a special thread in this mailet will check if any change was made to
- * the database by the feeder, and rebuild the corpus if necessary.
+ * stored in a JDBC database. The Corpus is loaded from the database at startup
+ * as a compact dictionary of hashed tokens. Messages trained by a
+ * {@link BayesianAnalysisFeeder} running in the same server are then added
+ * incrementally to the Corpus, while messages keep being analyzed. Every 10
+ * minutes a special thread in this mailet will check if the database was
+ * otherwise flagged as updated, and reload the corpus if necessary.
  * </p>
  * 
  * <p>
@@ -263,6 +265,11 @@ public class BayesianAnalysis extends GenericMailet {
 
     }
 
+    @Override
+    public void destroy() {
+        analyzer.unsubscribeFromTraining();
+    }
+
     private void initDb() throws MessagingException {
 
         try {
@@ -350,10 +357,8 @@ public class BayesianAnalysis extends GenericMailet {
         try {
             // this is synchronized to avoid concurrent update of the corpus
             synchronized (JDBCBayesianAnalyzer.DATABASE_LOCK) {
-                analyzer.tokenCountsClear();
-                analyzer.loadHamNSpam(conn);
-                analyzer.buildCorpus();
-                analyzer.tokenCountsClear();
+                analyzer.loadCorpus(conn);
+                analyzer.subscribeToTraining();
             }
 
             log("BayesianAnalysis Corpus loaded");
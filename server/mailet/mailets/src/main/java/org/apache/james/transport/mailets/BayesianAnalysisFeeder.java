@@ -108,11 +108,10 @@ import org.apache.mailet.base.GenericMailet;
  * </p>
  * 
  * <p>
- * After a training session, the frequency <i>Corpus</i> used by
- * <code>BayesianAnalysis</code> must be rebuilt from the database, in order to
- * take advantage of the new token frequencies. Every 10 minutes a special
- * thread in the <code>BayesianAnalysis</code> mailet will check if any change
- * was made to the database, and rebuild the corpus if necessary.
+ * Once a message is committed to the database, its token frequencies are
+ * added to the <i>Corpus</i> of the <code>BayesianAnalysis</code> mailets
+ * running in the same server, which take advantage of them right away without
+ * rebuilding the corpus from the database.
  * </p>
  * 
  * <p>
@@ -305,7 +304,9 @@ public class BayesianAnalysisFeeder extends GenericMailet {
                     conn.commit();
                     dbUpdated = false;
                     log(messageId + " Training ended successfully");
-                    JDBCBayesianAnalyzer.touchLastDatabaseUpdateTime();
+                    // Running analyzers add the new counts to their corpus
+                    // instead of reloading it
+                    analyzer.publishTraining();
                 }
 
             }
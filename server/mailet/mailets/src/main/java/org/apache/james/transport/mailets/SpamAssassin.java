@@ -19,10 +19,16 @@
 
 package org.apache.james.transport.mailets;
 
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
 import org.apache.james.util.scanner.SpamAssassinInvoker;
+import org.apache.james.util.scanner.SpamdClient;
 import org.apache.mailet.base.GenericMailet;
 import org.apache.mailet.Mail;
 
+import java.net.InetSocketAddress;
+
+import javax.inject.Inject;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
@@ -33,7 +39,8 @@ import javax.mail.internet.MimeMessage;
  * contains the score and the threshold score for spam (usually 5.0). If the
  * message exceeds the threshold, the header X-Spam-Flag will be added with the
  * value of YES. The default host for spamd is localhost and the default port is
- * 783.
+ * 783. At most spamdMaxConnections (default 8) messages are checked
+ * concurrently.
  * 
  * <pre>
  * <code>
@@ -48,6 +55,7 @@ import javax.mail.internet.MimeMessage;
  * &lt;mailet notmatch="SenderHostIsLocal" class="SpamAssassin"&gt;
  * &lt;spamdHost&gt;localhost&lt;/spamdHost&gt;
  * &lt;spamdPort&gt;783&lt;/spamdPort&gt;
+ * &lt;spamdMaxConnections&gt;8&lt;/spamdMaxConnections&gt;
  * </pre>
  */
 public class SpamAssassin extends GenericMailet {
@@ -56,6 +64,15 @@ public class SpamAssassin extends GenericMailet {
 
     int spamdPort;
 
+    private MetricFactory metricFactory = new NoopMetricFactory();
+
+    private SpamdClient spamdClient;
+
+    @Inject
+    public void setMetricFactory(MetricFactory metricFactory) {
+        this.metricFactory = metricFactory;
+    }
+
     /**
      * @see org.apache.mailet.base.GenericMailet#init()
      */
@@ -76,6 +93,22 @@ public class SpamAssassin extends GenericMailet {
                 throw new MessagingException("Please configure a valid port. Not valid: " + spamdPort);
             }
         }
+
+        int spamdMaxConnections = 8;
+        String maxConnections = getInitParameter("spamdMaxConnections");
+        if (maxConnections != null && !maxConnections.equals("")) {
+            try {
+                spamdMaxConnections = Integer.parseInt(maxConnections);
+            } catch (NumberFormatException e) {
+                throw new MessagingException("Please configure a valid spamdMaxConnections. Not valid: " + maxConnections);
+            }
+        }
+
+        spamdClient = new SpamdClient(SpamdClient.poolBuilder()
+                .address(new InetSocketAddress(spamdHost, spamdPort))
+                .maxConnectionsPerHost(spamdMaxConnections)
+                .build(),
+            metricFactory);
     }
 
     /**
@@ -86,7 +119,7 @@ public class SpamAssassin extends GenericMailet {
             MimeMessage message = mail.getMessage();
 
             // Invoke spamassian connection and scan the message
-            SpamAssassinInvoker sa = new SpamAssassinInvoker(spamdHost, spamdPort);
+            SpamAssassinInvoker sa = new SpamAssassinInvoker(spamdClient);
             sa.scanMail(message);
 
             // Add headers as attribute to mail object
@@ -101,6 +134,15 @@ public class SpamAssassin extends GenericMailet {
 
     }
 
+    /**
+     * @see org.apache.mailet.base.GenericMailet#destroy()
+     */
+    public void destroy() {
+        if (spamdClient != null) {
+            spamdClient.close();
+        }
+    }
+
     /**
      * @see org.apache.mailet.base.GenericMailet#getMailetInfo()
      */
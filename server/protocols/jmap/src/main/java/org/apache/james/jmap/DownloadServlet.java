@@ -21,9 +21,13 @@ package org.apache.james.jmap;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT;
+import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -34,6 +38,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.james.jmap.api.SimpleTokenFactory;
+import org.apache.james.jmap.utils.ByteRange;
 import org.apache.james.jmap.utils.DownloadPath;
 import org.apache.james.mailbox.AttachmentManager;
 import org.apache.james.mailbox.MailboxSession;
@@ -50,11 +55,14 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
 
 public class DownloadServlet extends HttpServlet {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DownloadServlet.class);
     private static final String TEXT_PLAIN_CONTENT_TYPE = "text/plain";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String ANY_ETAG = "*";
 
     private final AttachmentManager attachmentManager;
     private final SimpleTokenFactory simpleTokenFactory;
@@ -113,23 +121,33 @@ public class DownloadServlet extends HttpServlet {
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException {
         String pathInfo = req.getPathInfo();
         try {
-            download(getMailboxSession(req), DownloadPath.from(pathInfo), resp);
+            download(getMailboxSession(req), DownloadPath.from(pathInfo), req, resp);
         } catch (IllegalArgumentException e) {
             LOGGER.error(String.format("Error while downloading '%s'", pathInfo), e);
             resp.setStatus(SC_BAD_REQUEST);
         }
     }
 
-    @VisibleForTesting void download(MailboxSession mailboxSession, DownloadPath downloadPath, HttpServletResponse resp) {
+    @VisibleForTesting void download(MailboxSession mailboxSession, DownloadPath downloadPath, HttpServletRequest req, HttpServletResponse resp) {
         String blobId = downloadPath.getBlobId();
         try {
-            addContentDispositionHeader(downloadPath.getName(), resp);
-
             Attachment attachment = attachmentManager.getAttachment(AttachmentId.from(blobId), mailboxSession);
-            IOUtils.copy(attachment.getStream(), resp.getOutputStream());
+            String etag = etag(attachment.getAttachmentId());
+            resp.setHeader("ETag", etag);
+            resp.setHeader("Accept-Ranges", "bytes");
 
-            resp.setHeader("Content-Length", String.valueOf(attachment.getSize()));
-            resp.setStatus(SC_OK);
+            if (matchesAny(req.getHeader("If-None-Match"), etag)) {
+                resp.setStatus(SC_NOT_MODIFIED);
+                return;
+            }
+
+            addContentDispositionHeader(downloadPath.getName(), resp);
+            Optional<ByteRange> range = requestedRange(req, etag);
+            if (range.isPresent()) {
+                respondRange(attachment, range.get(), resp);
+            } else {
+                respondWholeContent(attachment, resp);
+            }
         } catch (AttachmentNotFoundException e) {
             LOGGER.info(String.format("Attachment '%s' not found", blobId), e);
             resp.setStatus(SC_NOT_FOUND);
@@ -139,6 +157,60 @@ public class DownloadServlet extends HttpServlet {
         }
     }
 
+    private void respondWholeContent(Attachment attachment, HttpServletResponse resp) throws IOException {
+        resp.setStatus(SC_OK);
+        resp.setHeader("Content-Length", String.valueOf(attachment.getSize()));
+        try (InputStream content = attachment.getStream()) {
+            IOUtils.copy(content, resp.getOutputStream());
+        }
+    }
+
+    private void respondRange(Attachment attachment, ByteRange range, HttpServletResponse resp) throws IOException {
+        long size = attachment.getSize();
+        if (!range.isSatisfiable(size)) {
+            resp.setStatus(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            resp.setHeader("Content-Range", ByteRange.unsatisfiableContentRange(size));
+            return;
+        }
+        resp.setStatus(SC_PARTIAL_CONTENT);
+        resp.setHeader("Content-Range", range.contentRange(size));
+        resp.setHeader("Content-Length", String.valueOf(range.getLength(size)));
+        try (InputStream content = attachment.getStream(range.getStart(size), range.getLength(size))) {
+            IOUtils.copy(content, resp.getOutputStream());
+        }
+    }
+
+    /**
+     * The Range header is ignored when an If-Range precondition does not match the current entity tag.
+     */
+    private Optional<ByteRange> requestedRange(HttpServletRequest req, String etag) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange != null && !ifRange.trim().equals(etag)) {
+            return Optional.empty();
+        }
+        return ByteRange.parse(req.getHeader("Range"));
+    }
+
+    /**
+     * Attachments are identified by a digest of their content, hence the attachment id is a strong validator.
+     */
+    private String etag(AttachmentId attachmentId) {
+        return "\"" + attachmentId.getId() + "\"";
+    }
+
+    private boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        return Splitter.on(',')
+            .trimResults()
+            .omitEmptyStrings()
+            .splitToList(ifNoneMatch)
+            .stream()
+            .map(candidate -> candidate.startsWith(WEAK_ETAG_PREFIX) ? candidate.substring(WEAK_ETAG_PREFIX.length()) : candidate)
+            .anyMatch(candidate -> candidate.equals(ANY_ETAG) || candidate.equals(etag));
+    }
+
     private void addContentDispositionHeader(Optional<String> optionalName, HttpServletResponse resp) {
         optionalName.ifPresent(name -> addContentDispositionHeaderRegardingEncoding(name, resp));
     }
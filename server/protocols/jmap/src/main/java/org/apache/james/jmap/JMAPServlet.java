@@ -19,20 +19,23 @@
 package org.apache.james.jmap;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.james.jmap.methods.RequestHandler;
+import org.apache.james.jmap.methods.MethodCallExecutor;
 import org.apache.james.jmap.model.AuthenticatedProtocolRequest;
 import org.apache.james.jmap.model.ProtocolRequest;
 import org.apache.james.jmap.model.ProtocolResponse;
@@ -52,13 +55,15 @@ public class JMAPServlet extends HttpServlet {
     public static final String JSON_CONTENT_TYPE = "application/json";
     public static final String JSON_CONTENT_TYPE_UTF8 = "application/json; charset=UTF-8";
 
+    private static final long NO_TIMEOUT = 0;
+
     private final ObjectMapper objectMapper;
-    private final RequestHandler requestHandler;
+    private final MethodCallExecutor methodCallExecutor;
     private final MetricFactory metricFactory;
 
     @Inject
-    public JMAPServlet(RequestHandler requestHandler, MetricFactory metricFactory) {
-        this.requestHandler = requestHandler;
+    public JMAPServlet(MethodCallExecutor methodCallExecutor, MetricFactory metricFactory) {
+        this.methodCallExecutor = methodCallExecutor;
         this.metricFactory = metricFactory;
         this.objectMapper = new ObjectMapper();
     }
@@ -66,25 +71,58 @@ public class JMAPServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException {
         TimeMetric timeMetric = metricFactory.timer("JMAP-request");
+        List<AuthenticatedProtocolRequest> requests;
         try {
-            List<Object[]> responses = 
-                requestAsJsonStream(req)
+            requests = requestAsJsonStream(req)
                 .map(ProtocolRequest::deserialize)
                 .map(x -> AuthenticatedProtocolRequest.decorate(x, req))
-                .flatMap(requestHandler::handle)
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            LOG.error("error handling request", e);
+            resp.setStatus(SC_BAD_REQUEST);
+            timeMetric.stopAndPublish();
+            return;
+        }
+
+        CompletableFuture<List<ProtocolResponse>> responses = methodCallExecutor.execute(requests);
+        if (!req.isAsyncSupported()) {
+            responses.handle((result, error) -> writeResponses(resp, result, error, timeMetric)).join();
+            return;
+        }
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(NO_TIMEOUT);
+        responses.whenComplete((result, error) -> {
+            try {
+                writeResponses(resp, result, error, timeMetric);
+            } finally {
+                asyncContext.complete();
+            }
+        });
+    }
+
+    private Void writeResponses(HttpServletResponse resp, List<ProtocolResponse> responses, Throwable error, TimeMetric timeMetric) {
+        try {
+            if (error != null) {
+                LOG.error("error handling request", error);
+                resp.setStatus(SC_INTERNAL_SERVER_ERROR);
+                return null;
+            }
+            List<Object[]> protocolResponses = responses
+                .stream()
                 .map(ProtocolResponse::asProtocolSpecification)
                 .collect(Collectors.toList());
 
             resp.setContentType(JSON_CONTENT_TYPE);
-            objectMapper.writeValue(resp.getOutputStream(), responses);
+            objectMapper.writeValue(resp.getOutputStream(), protocolResponses);
         } catch (IOException e) {
-            LOG.error("error handling request", e);
+            LOG.error("error writing response", e);
             resp.setStatus(SC_BAD_REQUEST);
         } finally {
             timeMetric.stopAndPublish();
         }
+        return null;
     }
-    
+
     private Stream<JsonNode[]> requestAsJsonStream(HttpServletRequest req) throws IOException, JsonParseException, JsonMappingException {
         return Arrays.stream(
                 objectMapper.readValue(req.getInputStream(), JsonNode[][].class));
@@ -0,0 +1,129 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.event;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
+import org.apache.james.jmap.model.MessageFactory;
+import org.apache.james.jmap.model.MessageFactory.MetaDataWithContent;
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageIdManager;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.FetchGroupImpl;
+import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.MessageResult;
+
+import com.github.steveash.guavate.Guavate;
+
+/**
+ * Computes preview, text and html bodies of delivered messages once, so that getMessages does not need to read
+ * and parse the full content to serve them. Entries are removed when no mailbox holds the message anymore.
+ */
+public class ComputeMessageFastViewProjectionListener implements MailboxListener {
+
+    private final MessageIdManager messageIdManager;
+    private final MessageFactory messageFactory;
+    private final MessageFastViewProjection messageFastViewProjection;
+
+    @Inject
+    public ComputeMessageFastViewProjectionListener(MessageIdManager messageIdManager, MessageFactory messageFactory,
+                                                    MessageFastViewProjection messageFastViewProjection) {
+        this.messageIdManager = messageIdManager;
+        this.messageFactory = messageFactory;
+        this.messageFastViewProjection = messageFastViewProjection;
+    }
+
+    @Override
+    public ListenerType getType() {
+        return ListenerType.ONCE;
+    }
+
+    @Override
+    public ExecutionMode getExecutionMode() {
+        return ExecutionMode.ASYNCHRONOUS;
+    }
+
+    @Override
+    public void event(Event event) {
+        try {
+            if (event instanceof Added) {
+                handleAddedEvent((Added) event);
+            } else if (event instanceof Expunged) {
+                handleExpungedEvent((Expunged) event);
+            }
+        } catch (MailboxException e) {
+            event.getSession().getLog().error("Error while updating the message fast view projection", e);
+        }
+    }
+
+    private void handleAddedEvent(Added added) throws MailboxException {
+        List<MessageId> notPrecomputedIds = messageIds(added)
+            .stream()
+            .filter(messageId -> !messageFastViewProjection.retrieve(messageId).join().isPresent())
+            .collect(Guavate.toImmutableList());
+        if (notPrecomputedIds.isEmpty()) {
+            return;
+        }
+        Collection<MessageResult> messageResults = messageIdManager.getMessages(notPrecomputedIds, FetchGroupImpl.FULL_CONTENT, added.getSession())
+            .stream()
+            .collect(Collectors.toMap(MessageResult::getMessageId, messageResult -> messageResult, (first, second) -> first))
+            .values();
+        for (MessageResult messageResult : messageResults) {
+            MetaDataWithContent message = MetaDataWithContent.builderFromMessageResult(messageResult)
+                .messageId(messageResult.getMessageId())
+                .build();
+            messageFastViewProjection.store(messageResult.getMessageId(), messageFactory.computePrecomputedProperties(message)).join();
+        }
+    }
+
+    private void handleExpungedEvent(Expunged expunged) throws MailboxException {
+        List<MessageId> expungedIds = messageIds(expunged);
+        if (expungedIds.isEmpty()) {
+            return;
+        }
+        Set<MessageId> remainingIds = stillStoredIds(expungedIds, expunged.getSession());
+        expungedIds.stream()
+            .filter(messageId -> !remainingIds.contains(messageId))
+            .forEach(messageId -> messageFastViewProjection.delete(messageId).join());
+    }
+
+    private Set<MessageId> stillStoredIds(List<MessageId> messageIds, MailboxSession session) throws MailboxException {
+        return messageIdManager.getMessages(messageIds, FetchGroupImpl.MINIMAL, session)
+            .stream()
+            .map(MessageResult::getMessageId)
+            .collect(Guavate.toImmutableSet());
+    }
+
+    private List<MessageId> messageIds(MetaDataHoldingEvent event) {
+        return event.getUids()
+            .stream()
+            .map(uid -> event.getMetaData(uid).getMessageId())
+            .distinct()
+            .collect(Guavate.toImmutableList());
+    }
+}
@@ -71,6 +71,11 @@ public class GetMailboxesMethod implements Method {
         return METHOD_NAME;
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public Class<? extends JmapRequest> requestType() {
         return GetMailboxesRequest.class;
@@ -82,6 +82,11 @@ public class GetMessageListMethod implements Method {
         return METHOD_NAME;
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public Class<? extends JmapRequest> requestType() {
         return GetMessageListRequest.class;
@@ -20,25 +20,34 @@
 package org.apache.james.jmap.methods;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
 import org.apache.commons.lang.NotImplementedException;
+import org.apache.james.jmap.api.projections.MessageFastViewPrecomputedProperties;
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
 import org.apache.james.jmap.json.FieldNamePropertyFilter;
 import org.apache.james.jmap.model.ClientId;
 import org.apache.james.jmap.model.GetMessagesRequest;
 import org.apache.james.jmap.model.GetMessagesResponse;
+import org.apache.james.jmap.model.Message;
 import org.apache.james.jmap.model.MessageFactory;
 import org.apache.james.jmap.model.MessageFactory.MetaDataWithContent;
 import org.apache.james.jmap.model.MessageProperties;
 import org.apache.james.jmap.model.MessageProperties.HeaderProperty;
+import org.apache.james.jmap.model.MessageProperties.ReadLevel;
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.MessageIdManager;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.FetchGroupImpl;
+import org.apache.james.mailbox.model.MessageId;
 import org.apache.james.mailbox.model.MessageResult;
+import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.metrics.api.MetricFactory;
 import org.apache.james.metrics.api.TimeMetric;
 
@@ -50,6 +59,7 @@ import com.github.steveash.guavate.Guavate;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 public class GetMessagesMethod implements Method {
@@ -60,21 +70,29 @@ public class GetMessagesMethod implements Method {
     private final MessageFactory messageFactory;
     private final MessageIdManager messageIdManager;
     private final MetricFactory metricFactory;
+    private final MessageFastViewProjection messageFastViewProjection;
 
     @Inject
     @VisibleForTesting GetMessagesMethod(
             MessageFactory messageFactory,
             MessageIdManager messageIdManager,
-            MetricFactory metricFactory) {
+            MetricFactory metricFactory,
+            MessageFastViewProjection messageFastViewProjection) {
         this.messageFactory = messageFactory;
         this.messageIdManager = messageIdManager;
         this.metricFactory = metricFactory;
+        this.messageFastViewProjection = messageFastViewProjection;
     }
     
     @Override
     public Method.Request.Name requestHandled() {
         return METHOD_NAME;
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
     
     @Override
     public Class<? extends JmapRequest> requestType() {
@@ -92,7 +110,7 @@ public class GetMessagesMethod implements Method {
         TimeMetric timeMetric = metricFactory.timer(JMAP_PREFIX + METHOD_NAME.getName());
         try {
             return Stream.of(JmapResponse.builder().clientId(clientId)
-                            .response(getMessagesResponse(mailboxSession, getMessagesRequest))
+                            .response(getMessagesResponse(mailboxSession, getMessagesRequest, outputProperties.computeReadLevel()))
                             .responseName(RESPONSE_NAME)
                             .properties(outputProperties.getOptionalMessageProperties())
                             .filterProvider(buildOptionalHeadersFilteringFilterProvider(outputProperties))
@@ -113,22 +131,12 @@ public class GetMessagesMethod implements Method {
         return new FieldNamePropertyFilter((fieldName) -> headerProperties.contains(HeaderProperty.fromFieldName(fieldName)));
     }
 
-    private GetMessagesResponse getMessagesResponse(MailboxSession mailboxSession, GetMessagesRequest getMessagesRequest) {
+    private GetMessagesResponse getMessagesResponse(MailboxSession mailboxSession, GetMessagesRequest getMessagesRequest, ReadLevel readLevel) {
         getMessagesRequest.getAccountId().ifPresent((input) -> notImplemented());
 
         try {
             return GetMessagesResponse.builder()
-                .messages(
-                    messageIdManager.getMessages(getMessagesRequest.getIds(), FetchGroupImpl.FULL_CONTENT, mailboxSession)
-                        .stream()
-                        .collect(Guavate.toImmutableListMultimap(MessageResult::getMessageId))
-                        .asMap()
-                        .values()
-                        .stream()
-                        .filter(collection -> !collection.isEmpty())
-                        .map(Throwing.function(toMetaDataWithContent()).sneakyThrow())
-                        .map(Throwing.function(messageFactory::fromMetaDataWithContent).sneakyThrow())
-                        .collect(Guavate.toImmutableList()))
+                .messages(retrieveMessages(getMessagesRequest.getIds(), readLevel, mailboxSession))
                 .expectedMessageIds(getMessagesRequest.getIds())
                 .build();
         } catch (MailboxException e) {
@@ -136,10 +144,81 @@ public class GetMessagesMethod implements Method {
         }
     }
 
-    private ThrowingFunction<Collection<MessageResult>, MetaDataWithContent> toMetaDataWithContent() {
+    private List<Message> retrieveMessages(List<MessageId> messageIds, ReadLevel readLevel, MailboxSession mailboxSession) throws MailboxException {
+        if (readLevel == ReadLevel.Fast) {
+            return retrieveFastViewMessages(messageIds, mailboxSession);
+        }
+        return retrieveMessages(messageIds, readLevel, mailboxSession,
+            message -> messageFactory.fromMetaDataWithContent(message, readLevel));
+    }
+
+    /**
+     * Messages whose properties were precomputed are served from their headers only. The others are read in full,
+     * which computes and stores their precomputed properties on the way. Messages are listed in the requested order.
+     */
+    private List<Message> retrieveFastViewMessages(List<MessageId> messageIds, MailboxSession mailboxSession) throws MailboxException {
+        Map<MessageId, MessageFastViewPrecomputedProperties> precomputedProperties = retrievePrecomputedProperties(messageIds);
+        List<MessageId> notPrecomputedIds = messageIds.stream()
+            .filter(messageId -> !precomputedProperties.containsKey(messageId))
+            .collect(Guavate.toImmutableList());
+
+        Map<MessageId, Message> messages = Stream.concat(
+                retrieveMessages(ImmutableList.copyOf(precomputedProperties.keySet()), ReadLevel.Header, mailboxSession,
+                    message -> messageFactory.fromMetaDataWithHeaders(message, precomputedProperties.get(message.getMessageId()))).stream(),
+                retrieveMessages(notPrecomputedIds, ReadLevel.Full, mailboxSession,
+                    messageFactory::fromMetaDataWithContentStoringPrecomputedProperties).stream())
+            .collect(Guavate.toImmutableMap(Message::getId, message -> message));
+        return messageIds.stream()
+            .distinct()
+            .filter(messages::containsKey)
+            .map(messages::get)
+            .collect(Guavate.toImmutableList());
+    }
+
+    private Map<MessageId, MessageFastViewPrecomputedProperties> retrievePrecomputedProperties(List<MessageId> messageIds) {
+        Map<MessageId, CompletableFuture<Optional<MessageFastViewPrecomputedProperties>>> futures = messageIds.stream()
+            .distinct()
+            .collect(Guavate.toImmutableMap(messageId -> messageId, messageFastViewProjection::retrieve));
+        return futures.entrySet()
+            .stream()
+            .filter(entry -> entry.getValue().join().isPresent())
+            .collect(Guavate.toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().join().get()));
+    }
+
+    private List<Message> retrieveMessages(List<MessageId> messageIds, ReadLevel readLevel, MailboxSession mailboxSession,
+                                           ThrowingFunction<MetaDataWithContent, Message> toMessage) throws MailboxException {
+        if (messageIds.isEmpty()) {
+            return ImmutableList.of();
+        }
+        return messageIdManager.getMessages(messageIds, toFetchGroup(readLevel), mailboxSession)
+            .stream()
+            .collect(Guavate.toImmutableListMultimap(MessageResult::getMessageId))
+            .asMap()
+            .values()
+            .stream()
+            .filter(collection -> !collection.isEmpty())
+            .map(Throwing.function(toMetaDataWithContent(readLevel)).sneakyThrow())
+            .map(Throwing.function(toMessage).sneakyThrow())
+            .collect(Guavate.toImmutableList());
+    }
+
+    private FetchGroup toFetchGroup(ReadLevel readLevel) {
+        switch (readLevel) {
+            case Metadata:
+                return FetchGroupImpl.MINIMAL;
+            case Header:
+                return FetchGroupImpl.HEADERS;
+            case Full:
+                return FetchGroupImpl.FULL_CONTENT;
+            default:
+                throw new IllegalArgumentException("Unsupported read level " + readLevel);
+        }
+    }
+
+    private ThrowingFunction<Collection<MessageResult>, MetaDataWithContent> toMetaDataWithContent(ReadLevel readLevel) {
         return messageResults -> {
             MessageResult firstMessageResult = messageResults.iterator().next();
-            return MetaDataWithContent.builderFromMessageResult(firstMessageResult)
+            return MetaDataWithContent.builderFromMessageResult(firstMessageResult, readLevel)
                 .messageId(firstMessageResult.getMessageId())
                 .mailboxIds(messageResults.stream()
                     .map(MessageResult::getMailboxId)
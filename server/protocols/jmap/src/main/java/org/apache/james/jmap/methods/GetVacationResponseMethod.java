@@ -58,6 +58,11 @@ public class GetVacationResponseMethod implements Method {
         return METHOD_NAME;
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
     @Override
     public Class<? extends JmapRequest> requestType() {
         return GetVacationRequest.class;
@@ -126,4 +126,12 @@ public interface Method {
     
     Stream<JmapResponse> process(JmapRequest request, ClientId clientId, MailboxSession mailboxSession);
 
+    /**
+     * Read only methods have no side effect: successive read only calls of a same
+     * JMAP request can be processed concurrently.
+     */
+    default boolean isReadOnly() {
+        return false;
+    }
+
 }
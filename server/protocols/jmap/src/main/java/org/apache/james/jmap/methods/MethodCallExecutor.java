@@ -0,0 +1,158 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.methods;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.apache.james.jmap.model.AuthenticatedProtocolRequest;
+import org.apache.james.jmap.model.ProtocolResponse;
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.util.concurrent.NamedThreadFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Processes the method calls of a JMAP request on a bounded thread pool.
+ *
+ * Successive read only calls are processed concurrently while a call with side effects
+ * waits for all the calls preceding it, and is waited for by all the calls following it.
+ * Responses are always returned in the order of the calls.
+ *
+ * When the queue is full, calls are processed by the submitting thread.
+ */
+public class MethodCallExecutor {
+
+    public static final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final long KEEP_ALIVE_IN_SECONDS = 60;
+
+    private final RequestHandler requestHandler;
+    private final MetricFactory metricFactory;
+    private final Metric queuedCalls;
+    private final Metric rejectedCalls;
+    private final ThreadPoolExecutor executor;
+
+    @Inject
+    public MethodCallExecutor(RequestHandler requestHandler, MetricFactory metricFactory) {
+        this(requestHandler, metricFactory, DEFAULT_THREAD_COUNT, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    @VisibleForTesting
+    MethodCallExecutor(RequestHandler requestHandler, MetricFactory metricFactory, int threadCount, int queueCapacity) {
+        Preconditions.checkArgument(threadCount > 0, "'threadCount' should be strictly positive");
+        Preconditions.checkArgument(queueCapacity > 0, "'queueCapacity' should be strictly positive");
+        this.requestHandler = requestHandler;
+        this.metricFactory = metricFactory;
+        this.queuedCalls = metricFactory.generate("JMAP-method-call-queued");
+        this.rejectedCalls = metricFactory.generate("JMAP-method-call-rejected");
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount,
+            KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new NamedThreadFactory("JMAP-method-call"),
+            this::runOnCaller);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public CompletableFuture<List<ProtocolResponse>> execute(List<AuthenticatedProtocolRequest> requests) {
+        List<CompletableFuture<List<ProtocolResponse>>> responses = new ArrayList<>(requests.size());
+        CompletableFuture<Void> previousStage = CompletableFuture.completedFuture(null);
+        for (List<AuthenticatedProtocolRequest> stage : stages(requests)) {
+            List<CompletableFuture<List<ProtocolResponse>>> stageResponses = new ArrayList<>(stage.size());
+            previousStage = previousStage.thenCompose(any -> {
+                stage.stream()
+                    .map(this::submit)
+                    .forEach(stageResponses::add);
+                return CompletableFuture.allOf(stageResponses.toArray(new CompletableFuture[stageResponses.size()]));
+            });
+            responses.add(previousStage.thenApply(any -> join(stageResponses)));
+        }
+        return previousStage.thenApply(any -> join(responses));
+    }
+
+    @VisibleForTesting
+    List<List<AuthenticatedProtocolRequest>> stages(List<AuthenticatedProtocolRequest> requests) {
+        ImmutableList.Builder<List<AuthenticatedProtocolRequest>> stages = ImmutableList.builder();
+        List<AuthenticatedProtocolRequest> readOnlyCalls = new ArrayList<>();
+        for (AuthenticatedProtocolRequest request : requests) {
+            if (requestHandler.isReadOnly(request)) {
+                readOnlyCalls.add(request);
+            } else {
+                if (!readOnlyCalls.isEmpty()) {
+                    stages.add(ImmutableList.copyOf(readOnlyCalls));
+                    readOnlyCalls.clear();
+                }
+                stages.add(ImmutableList.of(request));
+            }
+        }
+        if (!readOnlyCalls.isEmpty()) {
+            stages.add(ImmutableList.copyOf(readOnlyCalls));
+        }
+        return stages.build();
+    }
+
+    private CompletableFuture<List<ProtocolResponse>> submit(AuthenticatedProtocolRequest request) {
+        return CompletableFuture.supplyAsync(measureQueueing(() -> requestHandler.handle(request).collect(Collectors.toList())), executor);
+    }
+
+    private void runOnCaller(Runnable runnable, ThreadPoolExecutor threadPoolExecutor) {
+        if (threadPoolExecutor.isShutdown()) {
+            throw new RejectedExecutionException("JMAP method call executor is stopped");
+        }
+        rejectedCalls.increment();
+        runnable.run();
+    }
+
+    private <T> Supplier<T> measureQueueing(Supplier<T> call) {
+        TimeMetric queueingTime = metricFactory.timer("JMAP-method-call-queueing");
+        queuedCalls.increment();
+        return () -> {
+            queuedCalls.decrement();
+            queueingTime.stopAndPublish();
+            return call.get();
+        };
+    }
+
+    private List<ProtocolResponse> join(List<CompletableFuture<List<ProtocolResponse>>> responses) {
+        return responses.stream()
+            .flatMap(response -> response.join().stream())
+            .collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -58,6 +58,12 @@ public class RequestHandler {
                         .map(jmapResponseWriter::formatMethodResponse)
                         .orElseThrow(() -> new IllegalStateException("unknown method"));
     }
+
+    public boolean isReadOnly(AuthenticatedProtocolRequest request) {
+        return Optional.ofNullable(methods.get(request.getMethodName()))
+                        .map(Method::isReadOnly)
+                        .orElse(false);
+    }
     
     private Function<Method, Stream<JmapResponse>> extractAndProcess(AuthenticatedProtocolRequest request) {
         MailboxSession mailboxSession = request.getMailboxSession();
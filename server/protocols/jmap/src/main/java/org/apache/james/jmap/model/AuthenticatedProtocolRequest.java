@@ -29,15 +29,14 @@ public class AuthenticatedProtocolRequest extends ProtocolRequest {
         return new AuthenticatedProtocolRequest(request, httpServletRequest);
     }
 
-    private final HttpServletRequest httpServletRequest;
+    private final MailboxSession mailboxSession;
 
     private AuthenticatedProtocolRequest(ProtocolRequest request, HttpServletRequest httpServletRequest) {
         super(request.getMethodName(), request.getParameters(), request.getClientId());
-        this.httpServletRequest = httpServletRequest;
-        
+        this.mailboxSession = (MailboxSession) httpServletRequest.getAttribute(AuthenticationFilter.MAILBOX_SESSION);
     }
 
     public MailboxSession getMailboxSession() {
-        return (MailboxSession) httpServletRequest.getAttribute(AuthenticationFilter.MAILBOX_SESSION);
+        return mailboxSession;
     }
 }
\ No newline at end of file
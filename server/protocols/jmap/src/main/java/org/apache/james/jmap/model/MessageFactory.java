@@ -18,6 +18,7 @@
  ****************************************************************/
 package org.apache.james.jmap.model;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.ZoneId;
@@ -36,7 +37,10 @@ import javax.inject.Inject;
 import javax.mail.Flags;
 import javax.mail.internet.SharedInputStream;
 
+import org.apache.james.jmap.api.projections.MessageFastViewPrecomputedProperties;
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
 import org.apache.james.jmap.model.MessageContentExtractor.MessageContent;
+import org.apache.james.jmap.model.MessageProperties.ReadLevel;
 import org.apache.james.mailbox.MessageUid;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.Cid;
@@ -50,6 +54,8 @@ import org.apache.james.mime4j.dom.address.MailboxList;
 import org.apache.james.mime4j.message.MessageBuilder;
 import org.apache.james.mime4j.stream.Field;
 import org.apache.james.mime4j.stream.MimeConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.github.steveash.guavate.Guavate;
 import com.google.common.base.Preconditions;
@@ -61,47 +67,134 @@ import com.google.common.collect.Sets;
 
 public class MessageFactory {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageFactory.class);
     private static final int NO_LINE_LENGTH_LIMIT_PARSING = -1;
 
     public static final ZoneId UTC_ZONE_ID = ZoneId.of("Z");
 
     private final MessagePreviewGenerator messagePreview;
     private final MessageContentExtractor messageContentExtractor;
+    private final MessageFastViewProjection messageFastViewProjection;
 
     @Inject
-    public MessageFactory(MessagePreviewGenerator messagePreview, MessageContentExtractor messageContentExtractor) {
+    public MessageFactory(MessagePreviewGenerator messagePreview, MessageContentExtractor messageContentExtractor,
+                          MessageFastViewProjection messageFastViewProjection) {
         this.messagePreview = messagePreview;
         this.messageContentExtractor = messageContentExtractor;
+        this.messageFastViewProjection = messageFastViewProjection;
     }
 
     public Message fromMetaDataWithContent(MetaDataWithContent message) throws MailboxException {
         org.apache.james.mime4j.dom.Message mimeMessage = parse(message);
+        return fromMetaDataWithContent(message, mimeMessage, computePrecomputedProperties(mimeMessage));
+    }
+
+    /**
+     * Build a message from its full content, and store the precomputed properties computed on the way so that
+     * subsequent reads can be served from the message headers.
+     */
+    public Message fromMetaDataWithContentStoringPrecomputedProperties(MetaDataWithContent message) throws MailboxException {
+        org.apache.james.mime4j.dom.Message mimeMessage = parse(message);
+        MessageFastViewPrecomputedProperties precomputedProperties = computePrecomputedProperties(mimeMessage);
+        messageFastViewProjection.store(message.getMessageId(), precomputedProperties)
+            .exceptionally(e -> {
+                LOGGER.warn("Could not store precomputed properties of message {}", message.getMessageId().serialize(), e);
+                return null;
+            });
+        return fromMetaDataWithContent(message, mimeMessage, precomputedProperties);
+    }
+
+    private Message fromMetaDataWithContent(MetaDataWithContent message, org.apache.james.mime4j.dom.Message mimeMessage,
+                                            MessageFastViewPrecomputedProperties precomputedProperties) throws MailboxException {
+        return withPrecomputedProperties(withHeaders(withMetaData(message), mimeMessage), precomputedProperties)
+                .attachments(getAttachments(message.getAttachments()))
+                .build();
+    }
+
+    /**
+     * Build a message from its headers, taking preview, text and html bodies from the given precomputed properties
+     * instead of reading the message body.
+     */
+    public Message fromMetaDataWithHeaders(MetaDataWithContent message, MessageFastViewPrecomputedProperties precomputedProperties) throws MailboxException {
+        return withPrecomputedProperties(withHeaders(withMetaData(message), parse(message)), precomputedProperties)
+                .build();
+    }
+
+    public MessageFastViewPrecomputedProperties computePrecomputedProperties(MetaDataWithContent message) throws MailboxException {
+        return computePrecomputedProperties(parse(message));
+    }
+
+    /**
+     * Build a message holding only the properties that can be computed when reading the given level of the stored
+     * message. Other properties are left empty, and are expected to be filtered out of the response.
+     */
+    public Message fromMetaDataWithContent(MetaDataWithContent message, ReadLevel readLevel) throws MailboxException {
+        switch (readLevel) {
+            case Metadata:
+                return fromMetaData(message);
+            case Header:
+                return fromMetaDataWithHeaders(message);
+            case Full:
+                return fromMetaDataWithContent(message);
+            default:
+                throw new IllegalArgumentException("Unsupported read level " + readLevel);
+        }
+    }
+
+    private Message fromMetaData(MetaDataWithContent message) {
+        return withMetaData(message)
+                .subject("")
+                .headers(ImmutableMap.of())
+                .preview(MessagePreviewGenerator.NO_BODY)
+                .build();
+    }
+
+    private Message fromMetaDataWithHeaders(MetaDataWithContent message) throws MailboxException {
+        return withHeaders(withMetaData(message), parse(message))
+                .preview(MessagePreviewGenerator.NO_BODY)
+                .build();
+    }
+
+    private Message.Builder withPrecomputedProperties(Message.Builder builder, MessageFastViewPrecomputedProperties precomputedProperties) {
+        return builder
+                .textBody(precomputedProperties.getTextBody().orElse(null))
+                .htmlBody(precomputedProperties.getHtmlBody().orElse(null))
+                .preview(precomputedProperties.getPreview());
+    }
+
+    private MessageFastViewPrecomputedProperties computePrecomputedProperties(org.apache.james.mime4j.dom.Message mimeMessage) throws MailboxException {
         MessageContent messageContent = extractContent(mimeMessage);
+        return MessageFastViewPrecomputedProperties.builder()
+                .preview(getPreview(messageContent))
+                .textBody(messageContent.getTextBody())
+                .htmlBody(messageContent.getHtmlBody())
+                .build();
+    }
 
+    private Message.Builder withMetaData(MetaDataWithContent message) {
         return Message.builder()
                 .id(message.getMessageId())
                 .blobId(BlobId.of(String.valueOf(message.getUid().asLong())))
                 .threadId(message.getMessageId().serialize())
                 .mailboxIds(message.getMailboxIds())
-                .inReplyToMessageId(getHeader(mimeMessage, "in-reply-to"))
                 .isUnread(! message.getFlags().contains(Flags.Flag.SEEN))
                 .isFlagged(message.getFlags().contains(Flags.Flag.FLAGGED))
                 .isAnswered(message.getFlags().contains(Flags.Flag.ANSWERED))
                 .isDraft(message.getFlags().contains(Flags.Flag.DRAFT))
+                .size(message.getSize())
+                .date(message.getInternalDateAsZonedDateTime());
+    }
+
+    private Message.Builder withHeaders(Message.Builder builder, org.apache.james.mime4j.dom.Message mimeMessage) {
+        return builder
+                .inReplyToMessageId(getHeader(mimeMessage, "in-reply-to"))
                 .subject(Strings.nullToEmpty(mimeMessage.getSubject()).trim())
                 .headers(toMap(mimeMessage.getHeader().getFields()))
                 .from(firstFromMailboxList(mimeMessage.getFrom()))
                 .to(fromAddressList(mimeMessage.getTo()))
                 .cc(fromAddressList(mimeMessage.getCc()))
                 .bcc(fromAddressList(mimeMessage.getBcc()))
-                .replyTo(fromAddressList(mimeMessage.getReplyTo()))
-                .size(message.getSize())
-                .date(message.getInternalDateAsZonedDateTime())
-                .textBody(messageContent.getTextBody().orElse(null))
-                .htmlBody(messageContent.getHtmlBody().orElse(null))
-                .preview(getPreview(messageContent))
-                .attachments(getAttachments(message.getAttachments()))
-                .build();
+                .replyTo(fromAddressList(mimeMessage.getReplyTo()));
     }
 
     private org.apache.james.mime4j.dom.Message parse(MetaDataWithContent message) throws MailboxException {
@@ -212,18 +305,39 @@ public class MessageFactory {
         }
         
         public static Builder builderFromMessageResult(MessageResult messageResult) throws MailboxException {
+            return builderFromMessageResult(messageResult, ReadLevel.Full);
+        }
+
+        /**
+         * The given {@link MessageResult} is expected to be fetched with at least the content needed by the read level.
+         */
+        public static Builder builderFromMessageResult(MessageResult messageResult, ReadLevel readLevel) throws MailboxException {
             Builder builder = builder()
                 .uid(messageResult.getUid())
                 .modSeq(messageResult.getModSeq())
                 .flags(messageResult.getFlags())
                 .size(messageResult.getSize())
                 .internalDate(messageResult.getInternalDate())
-                .attachments(messageResult.getAttachments())
                 .mailboxId(messageResult.getMailboxId());
             try {
-                return builder.content(messageResult.getFullContent().getInputStream());
+                switch (readLevel) {
+                    case Metadata:
+                        return builder
+                            .attachments(ImmutableList.of())
+                            .content(new ByteArrayInputStream(new byte[0]));
+                    case Header:
+                        return builder
+                            .attachments(ImmutableList.of())
+                            .content(messageResult.getHeaders().getInputStream());
+                    case Full:
+                        return builder
+                            .attachments(messageResult.getAttachments())
+                            .content(messageResult.getFullContent().getInputStream());
+                    default:
+                        throw new IllegalArgumentException("Unsupported read level " + readLevel);
+                }
             } catch (IOException e) {
-                throw new MailboxException("Can't get message full content: " + e.getMessage(), e);
+                throw new MailboxException("Can't get message content: " + e.getMessage(), e);
             }
         }
         
@@ -70,6 +70,21 @@ public class MessageProperties {
                 .ensureHeadersMessageProperty();
     }
 
+    public ReadLevel computeReadLevel() {
+        Stream<ReadLevel> readLevels = Stream.concat(
+            buildOutputMessageProperties().stream().map(MessageProperty::getReadLevel),
+            headerPropertiesReadLevel());
+
+        return readLevels.reduce(ReadLevel.Metadata, ReadLevel::combine);
+    }
+
+    private Stream<ReadLevel> headerPropertiesReadLevel() {
+        return headersProperties
+            .filter(properties -> !properties.isEmpty())
+            .map(any -> Stream.of(ReadLevel.Header))
+            .orElse(Stream.of());
+    }
+
     private ImmutableSet<MessageProperty> buildOutputMessageProperties() {
         return this.messageProperties.orElseGet(() -> MessageProperty.allOutputProperties());
     }
@@ -117,49 +132,80 @@ public class MessageProperties {
         INPUTOUTPUT
     }
 
+    /**
+     * Part of the stored message that needs to be read to compute a property.
+     *
+     * Fast stands for the headers, completed by the preview and bodies precomputed in the message fast view projection.
+     */
+    public enum ReadLevel {
+        Metadata(0),
+        Header(1),
+        Fast(2),
+        Full(3);
+
+        static ReadLevel combine(ReadLevel readLevel1, ReadLevel readLevel2) {
+            if (readLevel1.priority > readLevel2.priority) {
+                return readLevel1;
+            }
+            return readLevel2;
+        }
+
+        private final int priority;
+
+        ReadLevel(int priority) {
+            this.priority = priority;
+        }
+    }
+
     public enum MessageProperty implements Property {
-        id("id"),
-        blobId("blobId"),
-        threadId("threadId"),
-        mailboxIds("mailboxIds"),
-        inReplyToMessageId("inReplyToMessageId"),
-        isUnread("isUnread"),
-        isFlagged("isFlagged"),
-        isAnswered("isAnswered"),
-        isDraft("isDraft"),
-        hasAttachment("hasAttachment"),
-        headers("headers"),
-        from("from"),
-        to("to"),
-        cc("cc"),
-        bcc("bcc"),
-        replyTo("replyTo"),
-        subject("subject"),
-        date("date"),
-        size("size"),
-        preview("preview"),
-        textBody("textBody"),
-        htmlBody("htmlBody"),
-        attachments("attachments"),
-        attachedMessages("attachedMessages"),
-        body("body", PropertyType.INPUTONLY);
+        id("id", ReadLevel.Metadata),
+        blobId("blobId", ReadLevel.Metadata),
+        threadId("threadId", ReadLevel.Metadata),
+        mailboxIds("mailboxIds", ReadLevel.Metadata),
+        inReplyToMessageId("inReplyToMessageId", ReadLevel.Header),
+        isUnread("isUnread", ReadLevel.Metadata),
+        isFlagged("isFlagged", ReadLevel.Metadata),
+        isAnswered("isAnswered", ReadLevel.Metadata),
+        isDraft("isDraft", ReadLevel.Metadata),
+        hasAttachment("hasAttachment", ReadLevel.Full),
+        headers("headers", ReadLevel.Header),
+        from("from", ReadLevel.Header),
+        to("to", ReadLevel.Header),
+        cc("cc", ReadLevel.Header),
+        bcc("bcc", ReadLevel.Header),
+        replyTo("replyTo", ReadLevel.Header),
+        subject("subject", ReadLevel.Header),
+        date("date", ReadLevel.Metadata),
+        size("size", ReadLevel.Metadata),
+        preview("preview", ReadLevel.Fast),
+        textBody("textBody", ReadLevel.Fast),
+        htmlBody("htmlBody", ReadLevel.Fast),
+        attachments("attachments", ReadLevel.Full),
+        attachedMessages("attachedMessages", ReadLevel.Full),
+        body("body", PropertyType.INPUTONLY, ReadLevel.Full);
     
         private final String property;
         private final PropertyType type;
+        private final ReadLevel readLevel;
 
-        MessageProperty(String property) {
-            this(property, PropertyType.INPUTOUTPUT);
+        MessageProperty(String property, ReadLevel readLevel) {
+            this(property, PropertyType.INPUTOUTPUT, readLevel);
         }
 
-        MessageProperty(String property, PropertyType type) {
+        MessageProperty(String property, PropertyType type, ReadLevel readLevel) {
             this.property = property;
             this.type = type;
+            this.readLevel = readLevel;
         }
     
         @Override
         public String asFieldName() {
             return property;
         }
+
+        public ReadLevel getReadLevel() {
+            return readLevel;
+        }
     
         public static Stream<MessageProperty> find(String property) {
             Preconditions.checkNotNull(property);
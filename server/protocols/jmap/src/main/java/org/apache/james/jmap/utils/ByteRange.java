@@ -0,0 +1,145 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.utils;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+
+/**
+ * Single byte range as requested by an HTTP Range header (RFC 7233). Positions are resolved against the size of the
+ * content, so that open ended and suffix ranges can be served.
+ */
+public class ByteRange {
+
+    private static final String BYTES_UNIT_PREFIX = "bytes=";
+    private static final char RANGE_SEPARATOR = ',';
+    private static final char POSITION_SEPARATOR = '-';
+
+    /**
+     * Only single byte ranges are supported. Anything else, including malformed values, is ignored: the whole content
+     * is then expected to be served, as allowed by the RFC.
+     */
+    public static Optional<ByteRange> parse(String rangeHeader) {
+        if (Strings.isNullOrEmpty(rangeHeader) || !rangeHeader.startsWith(BYTES_UNIT_PREFIX)) {
+            return Optional.empty();
+        }
+        String rangeSpec = rangeHeader.substring(BYTES_UNIT_PREFIX.length()).trim();
+        int separatorIndex = rangeSpec.indexOf(POSITION_SEPARATOR);
+        if (rangeSpec.indexOf(RANGE_SEPARATOR) >= 0 || separatorIndex < 0) {
+            return Optional.empty();
+        }
+        try {
+            return of(parsePosition(rangeSpec.substring(0, separatorIndex)), parsePosition(rangeSpec.substring(separatorIndex + 1)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<ByteRange> of(Optional<Long> firstBytePosition, Optional<Long> lastBytePosition) {
+        if (!firstBytePosition.isPresent() && !lastBytePosition.isPresent()) {
+            return Optional.empty();
+        }
+        if (firstBytePosition.isPresent() && lastBytePosition.isPresent() && lastBytePosition.get() < firstBytePosition.get()) {
+            return Optional.empty();
+        }
+        return Optional.of(new ByteRange(firstBytePosition, lastBytePosition));
+    }
+
+    private static Optional<Long> parsePosition(String position) {
+        String trimmedPosition = position.trim();
+        if (trimmedPosition.isEmpty()) {
+            return Optional.empty();
+        }
+        long value = Long.parseLong(trimmedPosition);
+        if (value < 0) {
+            throw new NumberFormatException("Negative byte position " + value);
+        }
+        return Optional.of(value);
+    }
+
+    public static String unsatisfiableContentRange(long size) {
+        return "bytes */" + size;
+    }
+
+    private final Optional<Long> firstBytePosition;
+    private final Optional<Long> lastBytePosition;
+
+    @VisibleForTesting ByteRange(Optional<Long> firstBytePosition, Optional<Long> lastBytePosition) {
+        this.firstBytePosition = firstBytePosition;
+        this.lastBytePosition = lastBytePosition;
+    }
+
+    public boolean isSatisfiable(long size) {
+        if (firstBytePosition.isPresent()) {
+            return firstBytePosition.get() < size;
+        }
+        return lastBytePosition.get() > 0 && size > 0;
+    }
+
+    public long getStart(long size) {
+        if (firstBytePosition.isPresent()) {
+            return firstBytePosition.get();
+        }
+        return Math.max(0, size - lastBytePosition.get());
+    }
+
+    public long getEnd(long size) {
+        if (firstBytePosition.isPresent()) {
+            return Math.min(lastBytePosition.orElse(size - 1), size - 1);
+        }
+        return size - 1;
+    }
+
+    public long getLength(long size) {
+        return getEnd(size) - getStart(size) + 1;
+    }
+
+    public String contentRange(long size) {
+        return "bytes " + getStart(size) + "-" + getEnd(size) + "/" + size;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (o instanceof ByteRange) {
+            ByteRange that = (ByteRange) o;
+            return Objects.equals(this.firstBytePosition, that.firstBytePosition)
+                && Objects.equals(this.lastBytePosition, that.lastBytePosition);
+        }
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return Objects.hash(firstBytePosition, lastBytePosition);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("firstBytePosition", firstBytePosition)
+            .add("lastBytePosition", lastBytePosition)
+            .toString();
+    }
+}
@@ -19,12 +19,19 @@
 
 package org.apache.james.jmap;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.james.jmap.api.SimpleTokenFactory;
@@ -32,11 +39,48 @@ import org.apache.james.jmap.utils.DownloadPath;
 import org.apache.james.mailbox.AttachmentManager;
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.Attachment;
+import org.apache.james.mailbox.model.AttachmentId;
 import org.apache.james.metrics.api.NoopMetricFactory;
+import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+
 public class DownloadServletTest {
 
+    private static final String PAYLOAD = "0123456789";
+    private static final Attachment ATTACHMENT = Attachment.builder()
+        .attachmentId(AttachmentId.from("blobId"))
+        .bytes(PAYLOAD.getBytes(Charsets.UTF_8))
+        .type("text/plain")
+        .build();
+    private static final String ETAG = "\"blobId\"";
+
+    private MailboxSession mailboxSession;
+    private HttpServletRequest req;
+    private HttpServletResponse resp;
+    private ByteArrayOutputStream responseBody;
+    private DownloadServlet testee;
+
+    @Before
+    public void setUp() throws Exception {
+        mailboxSession = mock(MailboxSession.class);
+        AttachmentManager attachmentManager = mock(AttachmentManager.class);
+        when(attachmentManager.getAttachment(eq(AttachmentId.from("blobId")), eq(mailboxSession)))
+            .thenReturn(ATTACHMENT);
+        req = mock(HttpServletRequest.class);
+        resp = mock(HttpServletResponse.class);
+        responseBody = new ByteArrayOutputStream();
+        when(resp.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                responseBody.write(b);
+            }
+        });
+        testee = new DownloadServlet(attachmentManager, null, new NoopMetricFactory());
+    }
+
     @Test
     public void downloadMayFailWhenUnknownErrorOnAttachmentManager() throws Exception {
         MailboxSession mailboxSession = mock(MailboxSession.class);
@@ -48,8 +92,95 @@ public class DownloadServletTest {
         DownloadServlet testee = new DownloadServlet(mockedAttachmentManager, nullSimpleTokenFactory, new NoopMetricFactory());
 
         HttpServletResponse resp = mock(HttpServletResponse.class);
-        testee.download(mailboxSession, DownloadPath.from("/blobId"), resp);
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), mock(HttpServletRequest.class), resp);
 
         verify(resp).setStatus(500);
     }
+
+    @Test
+    public void downloadShouldReturnWholeContentWithEntityTag() throws Exception {
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(200);
+        verify(resp).setHeader("ETag", ETAG);
+        verify(resp).setHeader("Accept-Ranges", "bytes");
+        verify(resp).setHeader("Content-Length", "10");
+        assertThat(responseBody.toString("UTF-8")).isEqualTo(PAYLOAD);
+    }
+
+    @Test
+    public void downloadShouldReturnNotModifiedWhenEntityTagMatches() throws Exception {
+        when(req.getHeader("If-None-Match")).thenReturn("\"other\", " + ETAG);
+
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(304);
+        verify(resp, never()).getOutputStream();
+    }
+
+    @Test
+    public void downloadShouldReturnContentWhenEntityTagDoesNotMatch() throws Exception {
+        when(req.getHeader("If-None-Match")).thenReturn("\"other\"");
+
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(200);
+        assertThat(responseBody.toString("UTF-8")).isEqualTo(PAYLOAD);
+    }
+
+    @Test
+    public void downloadShouldReturnRequestedRange() throws Exception {
+        when(req.getHeader("Range")).thenReturn("bytes=2-5");
+
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(206);
+        verify(resp).setHeader("Content-Range", "bytes 2-5/10");
+        verify(resp).setHeader("Content-Length", "4");
+        assertThat(responseBody.toString("UTF-8")).isEqualTo("2345");
+    }
+
+    @Test
+    public void downloadShouldReturnSuffixRange() throws Exception {
+        when(req.getHeader("Range")).thenReturn("bytes=-3");
+
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(206);
+        verify(resp).setHeader("Content-Range", "bytes 7-9/10");
+        assertThat(responseBody.toString("UTF-8")).isEqualTo("789");
+    }
+
+    @Test
+    public void downloadShouldRejectUnsatisfiableRange() throws Exception {
+        when(req.getHeader("Range")).thenReturn("bytes=20-");
+
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(416);
+        verify(resp).setHeader("Content-Range", "bytes */10");
+        assertThat(responseBody.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void downloadShouldIgnoreRangeWhenIfRangeDoesNotMatch() throws Exception {
+        when(req.getHeader("Range")).thenReturn("bytes=2-5");
+        when(req.getHeader("If-Range")).thenReturn("\"other\"");
+
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(200);
+        assertThat(responseBody.toString("UTF-8")).isEqualTo(PAYLOAD);
+    }
+
+    @Test
+    public void downloadShouldServeRangeWhenIfRangeMatches() throws Exception {
+        when(req.getHeader("Range")).thenReturn("bytes=2-5");
+        when(req.getHeader("If-Range")).thenReturn(ETAG);
+
+        testee.download(mailboxSession, DownloadPath.from("/blobId"), req, resp);
+
+        verify(resp).setStatus(206);
+        assertThat(responseBody.toString("UTF-8")).isEqualTo("2345");
+    }
 }
@@ -32,6 +32,7 @@ import org.apache.james.http.jetty.Configuration;
 import org.apache.james.http.jetty.JettyHttpServer;
 import org.apache.james.jmap.methods.ErrorResponse;
 import org.apache.james.jmap.methods.Method;
+import org.apache.james.jmap.methods.MethodCallExecutor;
 import org.apache.james.jmap.methods.RequestHandler;
 import org.apache.james.jmap.model.ClientId;
 import org.apache.james.jmap.model.ProtocolResponse;
@@ -56,7 +57,7 @@ public class JMAPServletTest {
     @Before
     public void setup() throws Exception {
         requestHandler = mock(RequestHandler.class);
-        JMAPServlet jmapServlet = new JMAPServlet(requestHandler, new NoopMetricFactory());
+        JMAPServlet jmapServlet = new JMAPServlet(new MethodCallExecutor(requestHandler, new NoopMetricFactory()), new NoopMetricFactory());
 
         server = JettyHttpServer.create(
                 Configuration.builder()
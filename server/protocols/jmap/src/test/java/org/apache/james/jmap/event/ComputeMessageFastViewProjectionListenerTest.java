@@ -0,0 +1,136 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.Optional;
+
+import org.apache.james.jmap.api.projections.MessageFastViewPrecomputedProperties;
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
+import org.apache.james.jmap.memory.projections.MemoryMessageFastViewProjection;
+import org.apache.james.jmap.model.MessageContentExtractor;
+import org.apache.james.jmap.model.MessageFactory;
+import org.apache.james.jmap.model.MessagePreviewGenerator;
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageIdManager;
+import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.inmemory.manager.InMemoryIntegrationResources;
+import org.apache.james.mailbox.mock.MockMailboxSession;
+import org.apache.james.mailbox.model.ComposedMessageId;
+import org.apache.james.mailbox.model.MailboxId;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+public class ComputeMessageFastViewProjectionListenerTest {
+
+    private static final String USER = "user";
+
+    private MailboxManager mailboxManager;
+    private MessageIdManager messageIdManager;
+    private MessageFastViewProjection messageFastViewProjection;
+    private MailboxSession session;
+    private MessageManager inbox;
+    private MailboxId customMailboxId;
+
+    @Before
+    public void setUp() throws Exception {
+        MessagePreviewGenerator messagePreview = mock(MessagePreviewGenerator.class);
+        when(messagePreview.forTextBody(any())).thenReturn("text preview");
+        messageFastViewProjection = new MemoryMessageFastViewProjection();
+        MessageFactory messageFactory = new MessageFactory(messagePreview, new MessageContentExtractor(), messageFastViewProjection);
+
+        InMemoryIntegrationResources inMemoryIntegrationResources = new InMemoryIntegrationResources();
+        mailboxManager = inMemoryIntegrationResources.createMailboxManager(inMemoryIntegrationResources.createGroupMembershipResolver());
+        messageIdManager = inMemoryIntegrationResources.createMessageIdManager(mailboxManager);
+
+        session = new MockMailboxSession(USER);
+        MailboxPath inboxPath = MailboxPath.inbox(session);
+        MailboxPath customMailboxPath = new MailboxPath(inboxPath, "custom");
+        mailboxManager.createMailbox(inboxPath, session);
+        mailboxManager.createMailbox(customMailboxPath, session);
+        inbox = mailboxManager.getMailbox(inboxPath, session);
+        customMailboxId = mailboxManager.getMailbox(customMailboxPath, session).getId();
+
+        mailboxManager.addGlobalListener(new ComputeMessageFastViewProjectionListener(messageIdManager, messageFactory, messageFastViewProjection), session);
+    }
+
+    @Test
+    public void appendShouldStorePrecomputedProperties() throws Exception {
+        ComposedMessageId messageId = appendMessage();
+
+        assertThat(messageFastViewProjection.retrieve(messageId.getMessageId()).join())
+            .contains(MessageFastViewPrecomputedProperties.builder()
+                .preview("text preview")
+                .textBody(Optional.of("my message"))
+                .build());
+    }
+
+    @Test
+    public void appendShouldNotOverrideExistingPrecomputedProperties() throws Exception {
+        ComposedMessageId messageId = appendMessage();
+        MessageFastViewPrecomputedProperties existingProperties = MessageFastViewPrecomputedProperties.builder()
+            .preview("existing preview")
+            .build();
+        messageFastViewProjection.store(messageId.getMessageId(), existingProperties).join();
+
+        messageIdManager.setInMailboxes(messageId.getMessageId(), ImmutableList.of(inbox.getId(), customMailboxId), session);
+
+        assertThat(messageFastViewProjection.retrieve(messageId.getMessageId()).join())
+            .contains(existingProperties);
+    }
+
+    @Test
+    public void deleteShouldRemovePrecomputedProperties() throws Exception {
+        ComposedMessageId messageId = appendMessage();
+
+        messageIdManager.delete(messageId.getMessageId(), ImmutableList.of(inbox.getId()), session);
+
+        assertThat(messageFastViewProjection.retrieve(messageId.getMessageId()).join())
+            .isEmpty();
+    }
+
+    @Test
+    public void deleteShouldKeepPrecomputedPropertiesWhenMessageIsStillInAnotherMailbox() throws Exception {
+        ComposedMessageId messageId = appendMessage();
+        messageIdManager.setInMailboxes(messageId.getMessageId(), ImmutableList.of(inbox.getId(), customMailboxId), session);
+
+        messageIdManager.delete(messageId.getMessageId(), ImmutableList.of(inbox.getId()), session);
+
+        assertThat(messageFastViewProjection.retrieve(messageId.getMessageId()).join())
+            .isPresent();
+    }
+
+    private ComposedMessageId appendMessage() throws Exception {
+        ByteArrayInputStream content = new ByteArrayInputStream("Subject: test\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        return inbox.appendMessage(content, new Date(), session, false, null);
+    }
+}
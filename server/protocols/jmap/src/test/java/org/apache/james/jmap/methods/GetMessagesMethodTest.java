@@ -34,8 +34,14 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.mail.Flags;
+
 import org.apache.commons.lang.NotImplementedException;
+import org.apache.james.jmap.api.projections.MessageFastViewPrecomputedProperties;
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
+import org.apache.james.jmap.memory.projections.MemoryMessageFastViewProjection;
 import org.apache.james.jmap.model.ClientId;
+import org.apache.james.jmap.model.Emailer;
 import org.apache.james.jmap.model.GetMessagesRequest;
 import org.apache.james.jmap.model.GetMessagesResponse;
 import org.apache.james.jmap.model.Message;
@@ -105,6 +111,7 @@ public class GetMessagesMethodTest {
     private static final User ROBERT = new User("robert", "secret");
 
     private MailboxManager mailboxManager;
+    private MessageFastViewProjection messageFastViewProjection;
     private GetMessagesMethod testee;
 
     private MailboxSession session;
@@ -119,7 +126,8 @@ public class GetMessagesMethodTest {
         when(messagePreview.forHTMLBody(any())).thenReturn("html preview");
         when(messagePreview.forTextBody(any())).thenReturn("text preview");
         MessageContentExtractor messageContentExtractor = new MessageContentExtractor();
-        MessageFactory messageFactory = new MessageFactory(messagePreview, messageContentExtractor);
+        messageFastViewProjection = new MemoryMessageFastViewProjection();
+        MessageFactory messageFactory = new MessageFactory(messagePreview, messageContentExtractor, messageFastViewProjection);
         InMemoryIntegrationResources inMemoryIntegrationResources = new InMemoryIntegrationResources();
         GroupMembershipResolver groupMembershipResolver = inMemoryIntegrationResources.createGroupMembershipResolver();
         mailboxManager = inMemoryIntegrationResources.createMailboxManager(groupMembershipResolver);
@@ -129,7 +137,7 @@ public class GetMessagesMethodTest {
         customMailboxPath = new MailboxPath(inboxPath, "custom");
         mailboxManager.createMailbox(inboxPath, session);
         mailboxManager.createMailbox(customMailboxPath, session);
-        testee = new GetMessagesMethod(messageFactory, inMemoryIntegrationResources.createMessageIdManager(mailboxManager), new DefaultMetricFactory());
+        testee = new GetMessagesMethod(messageFactory, inMemoryIntegrationResources.createMessageIdManager(mailboxManager), new DefaultMetricFactory(), messageFastViewProjection);
     }
     
     @Test
@@ -354,6 +362,139 @@ public class GetMessagesMethodTest {
         assertThat(JsonPath.parse(response).<Map<String, String>>read("$.response.list[0].headers")).containsOnly(MapEntry.entry("From", "user@domain.tld"), MapEntry.entry("HEADer2", "Header2Content"));
     }
 
+    @Test
+    public void processShouldReturnHeaderPropertiesWhenOnlyHeaderPropertiesRequested() throws Exception {
+        MessageManager inbox = mailboxManager.getMailbox(inboxPath, session);
+        Date now = new Date();
+        ByteArrayInputStream message1Content = new ByteArrayInputStream(("From: user@domain.tld\r\n"
+            + "Subject: message 1 subject\r\n\r\nmy message").getBytes(Charsets.UTF_8));
+        ComposedMessageId message1 = inbox.appendMessage(message1Content, now, session, false, null);
+
+        GetMessagesRequest request = GetMessagesRequest.builder()
+            .ids(ImmutableList.of(message1.getMessageId()))
+            .properties(ImmutableList.of("subject", "from"))
+            .build();
+
+        List<JmapResponse> result = testee.process(request, clientId, session).collect(Collectors.toList());
+
+        assertThat(result).hasSize(1);
+        GetMessagesResponse getMessagesResponse = (GetMessagesResponse) result.get(0).getResponse();
+        assertThat(getMessagesResponse.list())
+            .extracting(Message::getSubject, message -> message.getFrom().flatMap(Emailer::getEmail))
+            .containsExactly(Tuple.tuple("message 1 subject", Optional.of("user@domain.tld")));
+    }
+
+    @Test
+    public void processShouldReturnFlagsWhenOnlyMetadataPropertiesRequested() throws Exception {
+        MessageManager inbox = mailboxManager.getMailbox(inboxPath, session);
+        Date now = new Date();
+        ByteArrayInputStream message1Content = new ByteArrayInputStream("Subject: message 1 subject\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        ComposedMessageId message1 = inbox.appendMessage(message1Content, now, session, false, new Flags(Flags.Flag.FLAGGED));
+
+        GetMessagesRequest request = GetMessagesRequest.builder()
+            .ids(ImmutableList.of(message1.getMessageId()))
+            .properties(ImmutableList.of("isUnread", "isFlagged", "mailboxIds"))
+            .build();
+
+        List<JmapResponse> result = testee.process(request, clientId, session).collect(Collectors.toList());
+
+        assertThat(result).hasSize(1);
+        GetMessagesResponse getMessagesResponse = (GetMessagesResponse) result.get(0).getResponse();
+        assertThat(getMessagesResponse.list())
+            .extracting(Message::isIsUnread, Message::isIsFlagged, Message::getMailboxIds)
+            .containsExactly(Tuple.tuple(true, true, ImmutableList.of(message1.getMailboxId())));
+    }
+
+    @Test
+    public void processShouldTakeBodiesFromPrecomputedPropertiesWhenPresent() throws Exception {
+        MessageManager inbox = mailboxManager.getMailbox(inboxPath, session);
+        Date now = new Date();
+        ByteArrayInputStream message1Content = new ByteArrayInputStream("Subject: message 1 subject\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        ComposedMessageId message1 = inbox.appendMessage(message1Content, now, session, false, null);
+        messageFastViewProjection.store(message1.getMessageId(), MessageFastViewPrecomputedProperties.builder()
+                .preview("precomputed preview")
+                .textBody(Optional.of("precomputed body"))
+                .build())
+            .join();
+
+        GetMessagesRequest request = GetMessagesRequest.builder()
+            .ids(ImmutableList.of(message1.getMessageId()))
+            .properties(ImmutableList.of("subject", "preview", "textBody"))
+            .build();
+
+        List<JmapResponse> result = testee.process(request, clientId, session).collect(Collectors.toList());
+
+        assertThat(result).hasSize(1);
+        GetMessagesResponse getMessagesResponse = (GetMessagesResponse) result.get(0).getResponse();
+        assertThat(getMessagesResponse.list())
+            .extracting(Message::getSubject, Message::getPreview, Message::getTextBody)
+            .containsExactly(Tuple.tuple("message 1 subject", "precomputed preview", Optional.of("precomputed body")));
+    }
+
+    @Test
+    public void processShouldComputeAndStorePrecomputedPropertiesWhenMissing() throws Exception {
+        MessageManager inbox = mailboxManager.getMailbox(inboxPath, session);
+        Date now = new Date();
+        ByteArrayInputStream message1Content = new ByteArrayInputStream("Subject: message 1 subject\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        ComposedMessageId message1 = inbox.appendMessage(message1Content, now, session, false, null);
+        ByteArrayInputStream message2Content = new ByteArrayInputStream("Subject: message 2 subject\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        ComposedMessageId message2 = inbox.appendMessage(message2Content, now, session, false, null);
+        messageFastViewProjection.store(message2.getMessageId(), MessageFastViewPrecomputedProperties.builder()
+                .preview("precomputed preview")
+                .textBody(Optional.of("precomputed body"))
+                .build())
+            .join();
+
+        GetMessagesRequest request = GetMessagesRequest.builder()
+            .ids(ImmutableList.of(message1.getMessageId(), message2.getMessageId()))
+            .properties(ImmutableList.of("textBody"))
+            .build();
+
+        List<JmapResponse> result = testee.process(request, clientId, session).collect(Collectors.toList());
+
+        assertThat(result).hasSize(1);
+        GetMessagesResponse getMessagesResponse = (GetMessagesResponse) result.get(0).getResponse();
+        assertThat(getMessagesResponse.list())
+            .extracting(Message::getId, Message::getTextBody)
+            .containsOnly(Tuple.tuple(message1.getMessageId(), Optional.of("my message")),
+                Tuple.tuple(message2.getMessageId(), Optional.of("precomputed body")));
+        assertThat(messageFastViewProjection.retrieve(message1.getMessageId()).join())
+            .contains(MessageFastViewPrecomputedProperties.builder()
+                .preview("text preview")
+                .textBody(Optional.of("my message"))
+                .build());
+    }
+
+    @Test
+    public void processShouldListPrecomputedAndComputedMessagesInTheRequestedOrder() throws Exception {
+        MessageManager inbox = mailboxManager.getMailbox(inboxPath, session);
+        Date now = new Date();
+        ByteArrayInputStream message1Content = new ByteArrayInputStream("Subject: message 1 subject\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        ComposedMessageId message1 = inbox.appendMessage(message1Content, now, session, false, null);
+        ByteArrayInputStream message2Content = new ByteArrayInputStream("Subject: message 2 subject\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        ComposedMessageId message2 = inbox.appendMessage(message2Content, now, session, false, null);
+        ByteArrayInputStream message3Content = new ByteArrayInputStream("Subject: message 3 subject\r\n\r\nmy message".getBytes(Charsets.UTF_8));
+        ComposedMessageId message3 = inbox.appendMessage(message3Content, now, session, false, null);
+        messageFastViewProjection.store(message2.getMessageId(), MessageFastViewPrecomputedProperties.builder()
+                .preview("precomputed preview")
+                .textBody(Optional.of("precomputed body"))
+                .build())
+            .join();
+
+        GetMessagesRequest request = GetMessagesRequest.builder()
+            .ids(ImmutableList.of(message3.getMessageId(), message2.getMessageId(), message1.getMessageId()))
+            .properties(ImmutableList.of("textBody"))
+            .build();
+
+        List<JmapResponse> result = testee.process(request, clientId, session).collect(Collectors.toList());
+
+        assertThat(result).hasSize(1);
+        GetMessagesResponse getMessagesResponse = (GetMessagesResponse) result.get(0).getResponse();
+        assertThat(getMessagesResponse.list())
+            .extracting(Message::getId)
+            .containsExactly(message3.getMessageId(), message2.getMessageId(), message1.getMessageId());
+    }
+
     @Test
     public void processShouldReturnOneMessageWhenMessageInSeveralMailboxes() throws Exception {
         MessageManager inbox = mailboxManager.getMailbox(inboxPath, session);
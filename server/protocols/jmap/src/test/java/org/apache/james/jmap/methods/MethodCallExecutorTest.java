@@ -0,0 +1,177 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.methods;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.james.jmap.model.AuthenticatedProtocolRequest;
+import org.apache.james.jmap.model.ProtocolRequest;
+import org.apache.james.jmap.model.ProtocolResponse;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+
+public class MethodCallExecutorTest {
+
+    private static final int THREAD_COUNT = 4;
+    private static final int QUEUE_CAPACITY = 10;
+    private static final long TIMEOUT_IN_SECONDS = 10;
+
+    private RequestHandler requestHandler;
+    private MethodCallExecutor testee;
+
+    @Before
+    public void setUp() {
+        requestHandler = mock(RequestHandler.class);
+        when(requestHandler.isReadOnly(any())).thenAnswer(invocation ->
+            ((AuthenticatedProtocolRequest) invocation.getArguments()[0]).getMethodName().getName().startsWith("get"));
+        when(requestHandler.handle(any())).thenAnswer(invocation ->
+            Stream.of(response((AuthenticatedProtocolRequest) invocation.getArguments()[0])));
+        testee = new MethodCallExecutor(requestHandler, new NoopMetricFactory(), THREAD_COUNT, QUEUE_CAPACITY);
+    }
+
+    @After
+    public void tearDown() {
+        testee.stop();
+    }
+
+    @Test
+    public void stagesShouldGroupSuccessiveReadOnlyCalls() {
+        AuthenticatedProtocolRequest getMailboxes = request("getMailboxes", "#0");
+        AuthenticatedProtocolRequest getMessageList = request("getMessageList", "#1");
+        AuthenticatedProtocolRequest setMessages = request("setMessages", "#2");
+        AuthenticatedProtocolRequest setMailboxes = request("setMailboxes", "#3");
+        AuthenticatedProtocolRequest getMessages = request("getMessages", "#4");
+
+        assertThat(testee.stages(ImmutableList.of(getMailboxes, getMessageList, setMessages, setMailboxes, getMessages)))
+            .containsExactlyElementsOf(ImmutableList.of(
+                ImmutableList.of(getMailboxes, getMessageList),
+                ImmutableList.of(setMessages),
+                ImmutableList.of(setMailboxes),
+                ImmutableList.of(getMessages)));
+    }
+
+    @Test
+    public void executeShouldReturnEmptyWhenNoCall() {
+        assertThat(testee.execute(ImmutableList.of()).join()).isEmpty();
+    }
+
+    @Test
+    public void executeShouldReturnResponsesInCallOrder() {
+        List<ProtocolResponse> responses = testee.execute(ImmutableList.of(
+                request("getMailboxes", "#0"),
+                request("setMessages", "#1"),
+                request("getMessages", "#2"),
+                request("getMessageList", "#3")))
+            .join();
+
+        assertThat(responses)
+            .extracting(response -> response.getClientId().getId())
+            .containsExactly("#0", "#1", "#2", "#3");
+    }
+
+    @Test
+    public void executeShouldProcessSuccessiveReadOnlyCallsConcurrently() {
+        CountDownLatch allCallsStarted = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            allCallsStarted.countDown();
+            allCallsStarted.await(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+            return Stream.of(response((AuthenticatedProtocolRequest) invocation.getArguments()[0]));
+        }).when(requestHandler).handle(any());
+
+        testee.execute(ImmutableList.of(request("getMailboxes", "#0"), request("getMessages", "#1"))).join();
+
+        assertThat(allCallsStarted.getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void executeShouldNotProcessCallsFollowingACallWithSideEffectsBeforeItEnds() {
+        AtomicInteger runningCalls = new AtomicInteger();
+        AtomicInteger maxRunningCalls = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxRunningCalls.accumulateAndGet(runningCalls.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            runningCalls.decrementAndGet();
+            return Stream.of(response((AuthenticatedProtocolRequest) invocation.getArguments()[0]));
+        }).when(requestHandler).handle(any());
+
+        testee.execute(ImmutableList.of(
+                request("setMessages", "#0"),
+                request("setMailboxes", "#1"),
+                request("setVacationResponse", "#2")))
+            .join();
+
+        assertThat(maxRunningCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void executeShouldFailWhenACallFails() {
+        doThrow(new IllegalStateException("unknown method")).when(requestHandler).handle(any());
+
+        assertThat(testee.execute(ImmutableList.of(request("getMailboxes", "#0"))))
+            .hasFailedWithThrowableThat()
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void executeShouldProcessCallsOnCallerThreadWhenQueueIsFull() {
+        ImmutableList.Builder<AuthenticatedProtocolRequest> requests = ImmutableList.builder();
+        for (int i = 0; i < THREAD_COUNT + QUEUE_CAPACITY + 5; i++) {
+            requests.add(request("getMessages", "#" + i));
+        }
+
+        assertThat(testee.execute(requests.build()).join())
+            .hasSize(THREAD_COUNT + QUEUE_CAPACITY + 5);
+    }
+
+    private AuthenticatedProtocolRequest request(String methodName, String clientId) {
+        JsonNode[] nodes = new JsonNode[] {
+            new ObjectNode(new JsonNodeFactory(false)).textNode(methodName),
+            new ObjectNode(new JsonNodeFactory(false)),
+            new ObjectNode(new JsonNodeFactory(false)).textNode(clientId)};
+        return AuthenticatedProtocolRequest.decorate(ProtocolRequest.deserialize(nodes), mock(HttpServletRequest.class));
+    }
+
+    private ProtocolResponse response(AuthenticatedProtocolRequest request) {
+        return new ProtocolResponse(Method.Response.name(request.getMethodName().getName()),
+            new ObjectNode(new JsonNodeFactory(false)),
+            request.getClientId());
+    }
+}
@@ -25,13 +25,18 @@ import java.io.ByteArrayInputStream;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Date;
+import java.util.Optional;
 
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.james.jmap.api.projections.MessageFastViewPrecomputedProperties;
+import org.apache.james.jmap.api.projections.MessageFastViewProjection;
+import org.apache.james.jmap.memory.projections.MemoryMessageFastViewProjection;
 import org.apache.james.jmap.model.MessageFactory.MetaDataWithContent;
+import org.apache.james.jmap.model.MessageProperties.ReadLevel;
 import org.apache.james.jmap.utils.HtmlTextExtractor;
 import org.apache.james.mailbox.MessageUid;
 import org.apache.james.mailbox.inmemory.InMemoryId;
@@ -55,13 +60,15 @@ public class MessageFactoryTest {
     private MessageFactory messageFactory;
     private MessagePreviewGenerator messagePreview ;
     private HtmlTextExtractor htmlTextExtractor;
+    private MessageFastViewProjection messageFastViewProjection;
     
     @Before
     public void setUp() {
         htmlTextExtractor = mock(HtmlTextExtractor.class);
         messagePreview = new MessagePreviewGenerator(htmlTextExtractor);
         MessageContentExtractor messageContentExtractor = new MessageContentExtractor();
-        messageFactory = new MessageFactory(messagePreview, messageContentExtractor);
+        messageFastViewProjection = new MemoryMessageFastViewProjection();
+        messageFactory = new MessageFactory(messagePreview, messageContentExtractor, messageFastViewProjection);
     }
     @Test
     public void emptyMailShouldBeLoadedIntoMessage() throws Exception {
@@ -82,6 +89,118 @@ public class MessageFactoryTest {
             .containsExactly("(Empty)", 0L, "", ImmutableMap.of("Date", "Tue, 14 Jul 2015 12:30:42 +0000", "MIME-Version", "1.0"), ZONED_DATE);
     }
 
+    @Test
+    public void metadataReadLevelShouldNotReadContent() throws Exception {
+        MetaDataWithContent testMail = MetaDataWithContent.builder()
+                .uid(MessageUid.of(2))
+                .flags(new Flags(Flag.FLAGGED))
+                .size(42)
+                .internalDate(INTERNAL_DATE)
+                .content(new ByteArrayInputStream("Subject: test subject\n\nMail body".getBytes(Charsets.UTF_8)))
+                .attachments(ImmutableList.of())
+                .mailboxId(MAILBOX_ID)
+                .messageId(TestMessageId.of(2))
+                .build();
+
+        Message testee = messageFactory.fromMetaDataWithContent(testMail, ReadLevel.Metadata);
+        assertThat(testee)
+            .extracting(Message::isIsUnread, Message::isIsFlagged, Message::getSize, Message::getDate, Message::getSubject, Message::getHeaders, Message::getTextBody)
+            .containsExactly(true, true, 42L, ZONED_DATE, "", ImmutableMap.of(), Optional.empty());
+    }
+
+    @Test
+    public void headerReadLevelShouldSetHeadersButNotBody() throws Exception {
+        String headers = "From: user <user@domain>\n"
+                + "Subject: test subject\n";
+        MetaDataWithContent testMail = MetaDataWithContent.builder()
+                .uid(MessageUid.of(2))
+                .flags(new Flags(Flag.SEEN))
+                .size(42)
+                .internalDate(INTERNAL_DATE)
+                .content(new ByteArrayInputStream(headers.getBytes(Charsets.UTF_8)))
+                .attachments(ImmutableList.of())
+                .mailboxId(MAILBOX_ID)
+                .messageId(TestMessageId.of(2))
+                .build();
+
+        Message testee = messageFactory.fromMetaDataWithContent(testMail, ReadLevel.Header);
+        assertThat(testee)
+            .extracting(Message::getSubject, Message::getFrom, Message::getTextBody, Message::getHtmlBody)
+            .containsExactly("test subject", Optional.of(Emailer.builder().name("user").email("user@domain").build()), Optional.empty(), Optional.empty());
+    }
+
+    @Test
+    public void fromMetaDataWithContentStoringPrecomputedPropertiesShouldStoreThem() throws Exception {
+        MetaDataWithContent testMail = MetaDataWithContent.builder()
+                .uid(MessageUid.of(2))
+                .flags(new Flags(Flag.SEEN))
+                .size(42)
+                .internalDate(INTERNAL_DATE)
+                .content(new ByteArrayInputStream("Subject: test subject\n\nMail body".getBytes(Charsets.UTF_8)))
+                .attachments(ImmutableList.of())
+                .mailboxId(MAILBOX_ID)
+                .messageId(TestMessageId.of(2))
+                .build();
+
+        messageFactory.fromMetaDataWithContentStoringPrecomputedProperties(testMail);
+
+        assertThat(messageFastViewProjection.retrieve(TestMessageId.of(2)).join())
+            .contains(MessageFastViewPrecomputedProperties.builder()
+                .preview("Mail body")
+                .textBody(Optional.of("Mail body"))
+                .build());
+    }
+
+    @Test
+    public void fullReadShouldComputeBodiesFromTheContent() throws Exception {
+        MetaDataWithContent testMail = MetaDataWithContent.builder()
+                .uid(MessageUid.of(2))
+                .flags(new Flags(Flag.SEEN))
+                .size(42)
+                .internalDate(INTERNAL_DATE)
+                .content(new ByteArrayInputStream("Subject: test subject\n\nMail body".getBytes(Charsets.UTF_8)))
+                .attachments(ImmutableList.of())
+                .mailboxId(MAILBOX_ID)
+                .messageId(TestMessageId.of(2))
+                .build();
+        messageFastViewProjection.store(TestMessageId.of(2), MessageFastViewPrecomputedProperties.builder()
+                .preview("stored preview")
+                .textBody(Optional.of("stored body"))
+                .build())
+            .join();
+
+        Message testee = messageFactory.fromMetaDataWithContent(testMail);
+        assertThat(testee)
+            .extracting(Message::getSubject, Message::getPreview, Message::getTextBody)
+            .containsExactly("test subject", "Mail body", Optional.of("Mail body"));
+    }
+
+    @Test
+    public void fromMetaDataWithHeadersShouldTakeBodiesFromPrecomputedProperties() throws Exception {
+        String headers = "From: user <user@domain>\n"
+                + "Subject: test subject\n";
+        MetaDataWithContent testMail = MetaDataWithContent.builder()
+                .uid(MessageUid.of(2))
+                .flags(new Flags(Flag.SEEN))
+                .size(42)
+                .internalDate(INTERNAL_DATE)
+                .content(new ByteArrayInputStream(headers.getBytes(Charsets.UTF_8)))
+                .attachments(ImmutableList.of())
+                .mailboxId(MAILBOX_ID)
+                .messageId(TestMessageId.of(2))
+                .build();
+        MessageFastViewPrecomputedProperties precomputedProperties = MessageFastViewPrecomputedProperties.builder()
+                .preview("stored preview")
+                .textBody(Optional.of("stored body"))
+                .htmlBody(Optional.of("<p>stored body</p>"))
+                .build();
+
+        Message testee = messageFactory.fromMetaDataWithHeaders(testMail, precomputedProperties);
+        assertThat(testee)
+            .extracting(Message::getSubject, Message::getPreview, Message::getTextBody, Message::getHtmlBody)
+            .containsExactly("test subject", "stored preview", Optional.of("stored body"), Optional.of("<p>stored body</p>"));
+    }
+
     @Test
     public void flagsShouldBeSetIntoMessage() throws Exception {
         Flags flags = new Flags();
@@ -25,6 +25,7 @@ import java.util.Optional;
 
 import org.apache.james.jmap.model.MessageProperties.MessageProperty;
 import org.apache.james.jmap.model.MessageProperties.HeaderProperty;
+import org.apache.james.jmap.model.MessageProperties.ReadLevel;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableSet;
@@ -79,4 +80,45 @@ public class MessagePropertiesTest {
             value -> assertThat(value).contains(HeaderProperty.fromFieldName("x-spam-score"))
         );
     }
+
+    @Test
+    public void computeReadLevelShouldReturnFullWhenAllPropertiesRequested() {
+        MessageProperties actual = new MessageProperties(Optional.empty()).toOutputProperties();
+        assertThat(actual.computeReadLevel()).isEqualTo(ReadLevel.Full);
+    }
+
+    @Test
+    public void computeReadLevelShouldReturnMetadataWhenOnlyMetadataPropertiesRequested() {
+        MessageProperties actual = new MessageProperties(
+            Optional.of(ImmutableSet.of("isUnread", "mailboxIds", "size"))).toOutputProperties();
+        assertThat(actual.computeReadLevel()).isEqualTo(ReadLevel.Metadata);
+    }
+
+    @Test
+    public void computeReadLevelShouldReturnHeaderWhenHeaderPropertyRequested() {
+        MessageProperties actual = new MessageProperties(
+            Optional.of(ImmutableSet.of("isUnread", "subject"))).toOutputProperties();
+        assertThat(actual.computeReadLevel()).isEqualTo(ReadLevel.Header);
+    }
+
+    @Test
+    public void computeReadLevelShouldReturnHeaderWhenIndividualHeadersRequested() {
+        MessageProperties actual = new MessageProperties(
+            Optional.of(ImmutableSet.of("headers.X-Spam-Score"))).toOutputProperties();
+        assertThat(actual.computeReadLevel()).isEqualTo(ReadLevel.Header);
+    }
+
+    @Test
+    public void computeReadLevelShouldReturnFastWhenBodyPropertyRequested() {
+        MessageProperties actual = new MessageProperties(
+            Optional.of(ImmutableSet.of("subject", "preview"))).toOutputProperties();
+        assertThat(actual.computeReadLevel()).isEqualTo(ReadLevel.Fast);
+    }
+
+    @Test
+    public void computeReadLevelShouldReturnFullWhenAttachmentsRequested() {
+        MessageProperties actual = new MessageProperties(
+            Optional.of(ImmutableSet.of("textBody", "attachments"))).toOutputProperties();
+        assertThat(actual.computeReadLevel()).isEqualTo(ReadLevel.Full);
+    }
 }
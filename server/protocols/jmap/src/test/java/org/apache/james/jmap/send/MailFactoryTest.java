@@ -30,6 +30,7 @@ import java.util.Date;
 import javax.mail.Flags;
 import javax.mail.util.SharedByteArrayInputStream;
 
+import org.apache.james.jmap.memory.projections.MemoryMessageFastViewProjection;
 import org.apache.james.jmap.model.Message;
 import org.apache.james.jmap.model.MessageContentExtractor;
 import org.apache.james.jmap.model.MessageFactory;
@@ -80,7 +81,7 @@ public class MailFactoryTest {
         when(messagePreview.forTextBody(any())).thenReturn("text preview");
 
         MessageContentExtractor messageContentExtractor = new MessageContentExtractor();
-        MessageFactory messageFactory = new MessageFactory(messagePreview, messageContentExtractor);
+        MessageFactory messageFactory = new MessageFactory(messagePreview, messageContentExtractor, new MemoryMessageFastViewProjection());
         jmapMessage = messageFactory.fromMetaDataWithContent(message);
     }
 
@@ -0,0 +1,123 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.jmap.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class ByteRangeTest {
+
+    @Test
+    public void parseShouldReturnEmptyWhenNoHeader() {
+        assertThat(ByteRange.parse(null)).isEmpty();
+    }
+
+    @Test
+    public void parseShouldReturnEmptyWhenUnknownUnit() {
+        assertThat(ByteRange.parse("lines=1-2")).isEmpty();
+    }
+
+    @Test
+    public void parseShouldReturnEmptyWhenSeveralRanges() {
+        assertThat(ByteRange.parse("bytes=0-1,4-5")).isEmpty();
+    }
+
+    @Test
+    public void parseShouldReturnEmptyWhenNoPosition() {
+        assertThat(ByteRange.parse("bytes=-")).isEmpty();
+    }
+
+    @Test
+    public void parseShouldReturnEmptyWhenLastPositionBeforeFirstOne() {
+        assertThat(ByteRange.parse("bytes=5-2")).isEmpty();
+    }
+
+    @Test
+    public void parseShouldReturnEmptyWhenInvalidPosition() {
+        assertThat(ByteRange.parse("bytes=a-2")).isEmpty();
+    }
+
+    @Test
+    public void parseShouldReturnEmptyWhenNegativePosition() {
+        assertThat(ByteRange.parse("bytes=--2")).isEmpty();
+    }
+
+    @Test
+    public void parseShouldAcceptClosedRange() {
+        assertThat(ByteRange.parse("bytes=2-5")).contains(new ByteRange(Optional.of(2L), Optional.of(5L)));
+    }
+
+    @Test
+    public void parseShouldAcceptOpenRange() {
+        assertThat(ByteRange.parse("bytes=2-")).contains(new ByteRange(Optional.of(2L), Optional.empty()));
+    }
+
+    @Test
+    public void parseShouldAcceptSuffixRange() {
+        assertThat(ByteRange.parse("bytes=-3")).contains(new ByteRange(Optional.empty(), Optional.of(3L)));
+    }
+
+    @Test
+    public void closedRangeShouldBeResolvedAgainstSize() {
+        ByteRange range = ByteRange.parse("bytes=2-5").get();
+
+        assertThat(range.isSatisfiable(10)).isTrue();
+        assertThat(range.getStart(10)).isEqualTo(2);
+        assertThat(range.getLength(10)).isEqualTo(4);
+        assertThat(range.contentRange(10)).isEqualTo("bytes 2-5/10");
+    }
+
+    @Test
+    public void lastPositionShouldBeTruncatedToSize() {
+        ByteRange range = ByteRange.parse("bytes=2-50").get();
+
+        assertThat(range.contentRange(10)).isEqualTo("bytes 2-9/10");
+        assertThat(range.getLength(10)).isEqualTo(8);
+    }
+
+    @Test
+    public void openRangeShouldEndAtTheLastByte() {
+        assertThat(ByteRange.parse("bytes=4-").get().contentRange(10)).isEqualTo("bytes 4-9/10");
+    }
+
+    @Test
+    public void suffixRangeShouldServeTheLastBytes() {
+        assertThat(ByteRange.parse("bytes=-3").get().contentRange(10)).isEqualTo("bytes 7-9/10");
+    }
+
+    @Test
+    public void suffixRangeLongerThanSizeShouldServeTheWholeContent() {
+        assertThat(ByteRange.parse("bytes=-30").get().contentRange(10)).isEqualTo("bytes 0-9/10");
+    }
+
+    @Test
+    public void rangeStartingAfterContentShouldNotBeSatisfiable() {
+        assertThat(ByteRange.parse("bytes=10-").get().isSatisfiable(10)).isFalse();
+    }
+
+    @Test
+    public void emptySuffixRangeShouldNotBeSatisfiable() {
+        assertThat(ByteRange.parse("bytes=-0").get().isSatisfiable(10)).isFalse();
+    }
+}
@@ -26,6 +26,7 @@ import java.nio.channels.FileChannel;
 
 import org.apache.james.imap.encode.ImapResponseWriter;
 import org.apache.james.imap.message.response.Literal;
+import org.apache.james.mailbox.model.SharedByteBufferInputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelPipeline;
@@ -42,11 +43,13 @@ import org.jboss.netty.handler.stream.ChunkedStream;
  */
 public class ChannelImapResponseWriter implements ImapResponseWriter {
 
+    private static final int CHUNK_SIZE = 8192;
+
     private final Channel channel;
-	private final boolean zeroCopy;
+    private final boolean zeroCopy;
 
     public ChannelImapResponseWriter(Channel channel) {
-    	this(channel, true);
+        this(channel, true);
     }
 
     public ChannelImapResponseWriter(Channel channel, boolean zeroCopy) {
@@ -71,21 +74,27 @@ public class ChannelImapResponseWriter implements ImapResponseWriter {
             InputStream in = literal.getInputStream();
             if (in instanceof FileInputStream && channel.getFactory() instanceof NioServerSocketChannelFactory) {
                 FileChannel fc = ((FileInputStream) in).getChannel();
-                   // Zero-copy is only possible if no SSL/TLS  and no COMPRESS is in place
+                // Zero-copy is only possible if no SSL/TLS  and no COMPRESS is in place
                 //
                 // See JAMES-1305 and JAMES-1306
-                ChannelPipeline cp = channel.getPipeline();
-                if (zeroCopy && cp.get(SslHandler.class) == null && cp.get(ZlibEncoder.class) == null ) {
-                    channel.write(new DefaultFileRegion(fc, fc.position(), literal.size()));
+                if (zeroCopy && isZeroCopyPossible()) {
+                    channel.write(new DefaultFileRegion(fc, fc.position(), literal.size(), true));
                 } else {
-                    channel.write(new ChunkedNioFile(fc, 8192));
+                    channel.write(new ChunkedNioFile(fc, fc.position(), literal.size(), CHUNK_SIZE));
                 }
+            } else if (in instanceof SharedByteBufferInputStream) {
+                // The content is already in memory, so write slices of it instead of copying it through
+                // the stream
+                channel.write(new ChunkedByteBuffer(((SharedByteBufferInputStream) in).asByteBuffer(), CHUNK_SIZE));
             } else {
-                channel.write(new ChunkedStream(literal.getInputStream()));
+                channel.write(new ChunkedStream(in, CHUNK_SIZE));
             }
         }
     }
-    
-    
+
+    private boolean isZeroCopyPossible() {
+        ChannelPipeline cp = channel.getPipeline();
+        return cp.get(SslHandler.class) == null && cp.get(ZlibEncoder.class) == null;
+    }
 
 }
@@ -0,0 +1,70 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imapserver.netty;
+
+import java.nio.ByteBuffer;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.stream.ChunkedInput;
+import org.jboss.netty.handler.stream.ChunkedWriteHandler;
+
+/**
+ * {@link ChunkedInput} which writes a {@link ByteBuffer} in slices of the given
+ * chunk size. Slices share the content of the buffer so no copy is done.
+ * 
+ * As the chunks are pulled by the {@link ChunkedWriteHandler} only when the
+ * channel is writable, big literals do not pile up in the channel write queue.
+ */
+public class ChunkedByteBuffer implements ChunkedInput {
+
+    private final ByteBuffer buffer;
+    private final int chunkSize;
+
+    public ChunkedByteBuffer(ByteBuffer buffer, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize + " (expected: a positive integer)");
+        }
+        this.buffer = buffer.duplicate();
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean hasNextChunk() throws Exception {
+        return buffer.hasRemaining();
+    }
+
+    public Object nextChunk() throws Exception {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        int length = Math.min(chunkSize, buffer.remaining());
+        ByteBuffer chunk = buffer.slice();
+        chunk.limit(length);
+        buffer.position(buffer.position() + length);
+        return ChannelBuffers.wrappedBuffer(chunk);
+    }
+
+    public boolean isEndOfInput() throws Exception {
+        return !buffer.hasRemaining();
+    }
+
+    public void close() throws Exception {
+        buffer.position(buffer.limit());
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.james.imapserver.netty;
 
 import static org.jboss.netty.channel.Channels.pipeline;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLEngine;
@@ -36,6 +37,7 @@ import org.apache.james.protocols.netty.ChannelGroupHandler;
 import org.apache.james.protocols.netty.ChannelHandlerFactory;
 import org.apache.james.protocols.netty.ConnectionLimitUpstreamHandler;
 import org.apache.james.protocols.netty.ConnectionPerIpLimitUpstreamHandler;
+import org.apache.james.util.concurrent.JMXEnabledThreadPoolExecutor;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.ChannelUpstreamHandler;
@@ -66,11 +68,17 @@ public class IMAPServer extends AbstractConfigurableAsyncServer implements ImapC
     private boolean plainAuthDisallowed;
     private int timeout;
     private int literalSizeLimit;
+    private boolean pipelining;
+    private int maxPipelinedCommands;
+    private int pipeliningThreads;
+    private ExecutorService pipeliningExecutor;
 
     public final static int DEFAULT_MAX_LINE_LENGTH = 65536; // Use a big default
     public final static int DEFAULT_IN_MEMORY_SIZE_LIMIT = 10485760; // Use 10MB as default
     public final static int DEFAULT_TIMEOUT = 30 * 60; // default timeout is 30 seconds
     public final static int DEFAULT_LITERAL_SIZE_LIMIT = 0;
+    public final static int DEFAULT_MAX_PIPELINED_COMMANDS = 4;
+    public final static int DEFAULT_PIPELINING_THREADS = 16;
 
     public IMAPServer(ImapDecoder decoder, ImapEncoder encoder, ImapProcessor processor, ImapMetrics imapMetrics) {
         this.processor = processor;
@@ -91,6 +99,12 @@ public class IMAPServer extends AbstractConfigurableAsyncServer implements ImapC
         literalSizeLimit = configuration.getInt("literalSizeLimit", DEFAULT_LITERAL_SIZE_LIMIT);
 
         plainAuthDisallowed = configuration.getBoolean("plainAuthDisallowed", false);
+        pipelining = configuration.getBoolean("pipelining", false);
+        maxPipelinedCommands = configuration.getInt("maxPipelinedCommands", DEFAULT_MAX_PIPELINED_COMMANDS);
+        pipeliningThreads = configuration.getInt("pipeliningThreads", DEFAULT_PIPELINING_THREADS);
+        if (pipelining && (maxPipelinedCommands < 1 || pipeliningThreads < 1)) {
+            throw new ConfigurationException("maxPipelinedCommands and pipeliningThreads should be strictly positive");
+        }
         timeout = configuration.getInt("timeout", DEFAULT_TIMEOUT);
         if (timeout < DEFAULT_TIMEOUT) {
             throw new ConfigurationException("Minimum timeout of 30 minutes required. See rfc2060 5.4 for details");
@@ -102,6 +116,22 @@ public class IMAPServer extends AbstractConfigurableAsyncServer implements ImapC
         
     }
 
+    @Override
+    protected void preInit() throws Exception {
+        super.preInit();
+        if (pipelining) {
+            pipeliningExecutor = JMXEnabledThreadPoolExecutor.newFixedThreadPool(getThreadPoolJMXPath(), getDefaultJMXName() + "-pipelining", pipeliningThreads);
+        }
+    }
+
+    @Override
+    protected void postDestroy() {
+        super.postDestroy();
+        if (pipeliningExecutor != null) {
+            pipeliningExecutor.shutdownNow();
+        }
+    }
+
     /**
      * @see AbstractConfigurableAsyncServer#getDefaultPort()
      */
@@ -178,9 +208,9 @@ public class IMAPServer extends AbstractConfigurableAsyncServer implements ImapC
         ImapChannelUpstreamHandler coreHandler;
         Encryption secure = getEncryption();
         if (secure!= null && secure.isStartTLS()) {
-           coreHandler = new ImapChannelUpstreamHandler(hello, processor, encoder, getLogger(), compress, plainAuthDisallowed, secure.getContext(), getEnabledCipherSuites(), imapMetrics);
+           coreHandler = new ImapChannelUpstreamHandler(hello, processor, encoder, getLogger(), compress, plainAuthDisallowed, secure.getContext(), getEnabledCipherSuites(), imapMetrics, pipeliningExecutor, maxPipelinedCommands);
         } else {
-           coreHandler = new ImapChannelUpstreamHandler(hello, processor, encoder, getLogger(), compress, plainAuthDisallowed, imapMetrics);
+           coreHandler = new ImapChannelUpstreamHandler(hello, processor, encoder, getLogger(), compress, plainAuthDisallowed, null, null, imapMetrics, pipeliningExecutor, maxPipelinedCommands);
         }
         return coreHandler;
     }
@@ -20,13 +20,18 @@ package org.apache.james.imapserver.netty;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.net.ssl.SSLContext;
 
 import org.apache.james.imap.api.ImapConstants;
 import org.apache.james.imap.api.ImapMessage;
 import org.apache.james.imap.api.ImapSessionState;
+import org.apache.james.imap.api.ImapSessionUtils;
+import org.apache.james.imap.api.message.response.ImapResponseMessage;
 import org.apache.james.imap.api.process.ImapProcessor;
+import org.apache.james.imap.api.process.ImapProcessor.Responder;
 import org.apache.james.imap.api.process.ImapSession;
 import org.apache.james.imap.encode.ImapEncoder;
 import org.apache.james.imap.encode.ImapResponseComposer;
@@ -40,8 +45,10 @@ import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelLocal;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.DefaultExceptionEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
@@ -54,6 +61,8 @@ import org.slf4j.Logger;
 @SuppressWarnings("deprecation")
 public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler implements NettyConstants{
 
+    private static final ChannelLocal<ImapCommandPipeline> pipelines = new ChannelLocal<ImapCommandPipeline>();
+
     private final Logger logger;
 
     private final String hello;
@@ -74,6 +83,10 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
 
     private final Metric imapConnectionsMetric;
     private final Metric imapCommandsMetric;
+
+    private final Executor pipeliningExecutor;
+
+    private final int maxConcurrentCommands;
     
     public ImapChannelUpstreamHandler(String hello, ImapProcessor processor, ImapEncoder encoder, Logger logger, boolean compress,
                                       boolean plainAuthDisallowed, ImapMetrics imapMetrics) {
@@ -83,6 +96,16 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
     public ImapChannelUpstreamHandler(String hello, ImapProcessor processor, ImapEncoder encoder, Logger logger, boolean compress,
                                       boolean plainAuthDisallowed, SSLContext context, String[] enabledCipherSuites,
                                       ImapMetrics imapMetrics) {
+        this(hello, processor, encoder, logger, compress, plainAuthDisallowed, context, enabledCipherSuites, imapMetrics, null, 0);
+    }
+
+    /**
+     * When a pipelining {@link Executor} is given, the independent commands of a session are processed concurrently
+     * on it, at most maxConcurrentCommands at a time. See {@link ImapCommandPipeline}.
+     */
+    public ImapChannelUpstreamHandler(String hello, ImapProcessor processor, ImapEncoder encoder, Logger logger, boolean compress,
+                                      boolean plainAuthDisallowed, SSLContext context, String[] enabledCipherSuites,
+                                      ImapMetrics imapMetrics, Executor pipeliningExecutor, int maxConcurrentCommands) {
         this.logger = logger;
         this.hello = hello;
         this.processor = processor;
@@ -93,6 +116,12 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
         this.plainAuthDisallowed = plainAuthDisallowed;
         this.imapConnectionsMetric = imapMetrics.getConnectionsMetric();
         this.imapCommandsMetric = imapMetrics.getCommandsMetric();
+        this.pipeliningExecutor = pipeliningExecutor;
+        this.maxConcurrentCommands = maxConcurrentCommands;
+    }
+
+    private boolean isPipeliningEnabled() {
+        return pipeliningExecutor != null;
     }
 
     private Logger getLogger(Channel channel) {
@@ -102,6 +131,9 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
     @Override
     public void channelBound(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
         ImapSession imapsession = new NettyImapSession(ctx.getChannel(), logger, context, enabledCipherSuites, compress, plainAuthDisallowed);
+        if (isPipeliningEnabled()) {
+            imapsession.setAttribute(ImapSessionUtils.DEFER_EXPUNGE_RESPONSES_ATTRIBUTE_SESSION_KEY, Boolean.TRUE);
+        }
         attributes.set(ctx.getChannel(), imapsession);
         super.channelBound(ctx, e);
     }
@@ -115,6 +147,7 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
         // remove the stored attribute for the channel to free up resources
         // See JAMES-1195
         ImapSession imapSession = (ImapSession) attributes.remove(ctx.getChannel());
+        pipelines.remove(ctx.getChannel());
         if (imapSession != null)
             imapSession.logout();
         imapConnectionsMetric.decrement();
@@ -131,6 +164,9 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
 
         ImapResponseComposer response = new ImapResponseComposerImpl(new ChannelImapResponseWriter(ctx.getChannel()));
         ctx.setAttachment(response);
+        if (isPipeliningEnabled()) {
+            pipelines.set(ctx.getChannel(), createPipeline(ctx));
+        }
 
         // write hello to client
         response.untagged().message("OK").message(hello).end();
@@ -184,9 +220,22 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
 
         imapCommandsMetric.increment();
+        ImapMessage message = (ImapMessage) e.getMessage();
+        ImapCommandPipeline pipeline = pipelines.get(ctx.getChannel());
+
+        if (pipeline != null) {
+            pipeline.submit(message);
+        } else {
+            process(ctx, message);
+        }
+
+        super.messageReceived(ctx, e);
+
+    }
+
+    private void process(ChannelHandlerContext ctx, ImapMessage message) throws IOException {
         ImapSession session = (ImapSession) attributes.get(ctx.getChannel());
         ImapResponseComposer response = (ImapResponseComposer) ctx.getAttachment();
-        ImapMessage message = (ImapMessage) e.getMessage();
         ChannelPipeline cp = ctx.getPipeline();
 
         try {
@@ -206,22 +255,70 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
                     channel.write(ChannelBuffers.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
                 }
             }
-            final IOException failure = responseEncoder.getFailure();
-
-            if (failure != null) {
-                final Logger logger = session.getLog();
-                logger.info(failure.getMessage());
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Failed to write " + message, failure);
-                }
-                throw failure;
-            }
+            checkFailure(session, message, responseEncoder);
         } finally {
             ctx.getPipeline().remove(NettyConstants.HEARTBEAT_HANDLER);
         }
+    }
 
-        super.messageReceived(ctx, e);
+    private void checkFailure(ImapSession session, ImapMessage message, ResponseEncoder responseEncoder) throws IOException {
+        final IOException failure = responseEncoder.getFailure();
+
+        if (failure != null) {
+            final Logger logger = session.getLog();
+            logger.info(failure.getMessage());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to write " + message, failure);
+            }
+            throw failure;
+        }
+    }
+
+    private ImapCommandPipeline createPipeline(final ChannelHandlerContext ctx) {
+        ImapCommandPipeline.CommandExecution execution = new ImapCommandPipeline.CommandExecution() {
+            public void execute(ImapMessage message) {
+                try {
+                    process(ctx, message);
+                } catch (Exception e) {
+                    handleFailure(ctx, e);
+                }
+            }
 
+            public void execute(ImapMessage message, Responder responder) {
+                try {
+                    processor.process(message, responder, (ImapSession) attributes.get(ctx.getChannel()));
+                } catch (Exception e) {
+                    handleFailure(ctx, e);
+                }
+            }
+        };
+        ImapCommandPipeline.ResponseWriter responseWriter = new ImapCommandPipeline.ResponseWriter() {
+            public void write(ImapMessage message, List<ImapResponseMessage> responses) {
+                ImapSession session = (ImapSession) attributes.get(ctx.getChannel());
+                if (session == null) {
+                    // The channel was closed meanwhile
+                    return;
+                }
+                ResponseEncoder responseEncoder = new ResponseEncoder(encoder, (ImapResponseComposer) ctx.getAttachment(), session);
+                for (ImapResponseMessage response : responses) {
+                    responseEncoder.respond(response);
+                }
+                try {
+                    checkFailure(session, message, responseEncoder);
+                } catch (IOException e) {
+                    handleFailure(ctx, e);
+                }
+            }
+        };
+        return new ImapCommandPipeline(pipeliningExecutor, maxConcurrentCommands, execution, responseWriter);
+    }
+
+    private void handleFailure(ChannelHandlerContext ctx, Exception e) {
+        try {
+            exceptionCaught(ctx, new DefaultExceptionEvent(ctx.getChannel(), e));
+        } catch (Exception exceptionCaughtFailure) {
+            getLogger(ctx.getChannel()).error("Error while handling imap request failure", exceptionCaughtFailure);
+        }
     }
 
 }
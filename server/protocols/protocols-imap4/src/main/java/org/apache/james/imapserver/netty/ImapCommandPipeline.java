@@ -0,0 +1,303 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imapserver.netty;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.james.imap.api.ImapMessage;
+import org.apache.james.imap.api.message.FetchData;
+import org.apache.james.imap.api.message.response.ImapResponseMessage;
+import org.apache.james.imap.api.process.ImapProcessor.Responder;
+import org.apache.james.imap.message.request.FetchRequest;
+
+/**
+ * Orders the execution of the IMAP commands received on a single connection.
+ * 
+ * Commands which do not alter the session nor the mailbox (see
+ * {@link #isConcurrent(ImapMessage)}) are processed concurrently on the given
+ * {@link Executor}. Their responses are recorded and written once all the
+ * commands received before them were answered, so the client still receives
+ * the responses in tag order.
+ * 
+ * All the other commands act as barriers: they are only executed once all the
+ * previously received commands were answered, and no command received after them
+ * starts before they completed. They are executed on the calling thread and
+ * write their responses directly, which keeps IDLE, STARTTLS, COMPRESS and
+ * AUTHENTICATE working as without pipelining.
+ * 
+ * Only one thread at a time writes responses or executes barrier commands.
+ * 
+ * At most maxPendingCommands commands are held at a time: once reached,
+ * {@link #submit(ImapMessage)} blocks until the oldest ones were answered, which
+ * stops reading from a client pipelining faster than it is served.
+ */
+public class ImapCommandPipeline {
+
+    public static final int DEFAULT_MAX_PENDING_COMMANDS = 128;
+
+    /**
+     * Executes the commands submitted to the pipeline
+     */
+    public interface CommandExecution {
+
+        /**
+         * Execute a barrier command, writing its responses directly
+         */
+        void execute(ImapMessage message);
+
+        /**
+         * Execute a concurrent command, handing its responses to the given {@link Responder}
+         */
+        void execute(ImapMessage message, Responder responder);
+    }
+
+    /**
+     * Writes the recorded responses of a concurrently executed command
+     */
+    public interface ResponseWriter {
+        void write(ImapMessage message, List<ImapResponseMessage> responses);
+    }
+
+    /**
+     * Return true if the given command can be processed concurrently with other
+     * commands of the same session.
+     * 
+     * Only UID FETCH commands which neither set the \Seen flag nor enable
+     * CONDSTORE/QRESYNC are considered: they do not modify the mailbox and their
+     * responses do not depend on message sequence numbers.
+     * 
+     * @param message
+     * @return concurrent
+     */
+    public static boolean isConcurrent(ImapMessage message) {
+        if (!(message instanceof FetchRequest)) {
+            return false;
+        }
+        FetchRequest request = (FetchRequest) message;
+        FetchData fetch = request.getFetch();
+        return request.isUseUids()
+            && !fetch.isSetSeen()
+            && !fetch.isModSeq()
+            && !fetch.getVanished()
+            && fetch.getChangedSince() == -1;
+    }
+
+    private enum State {
+        WAITING,
+        RUNNING,
+        DONE
+    }
+
+    private final class PendingCommand implements Runnable, Responder {
+        private final ImapMessage message;
+        private final boolean concurrent;
+        private final List<ImapResponseMessage> responses = new ArrayList<ImapResponseMessage>();
+        private State state = State.WAITING;
+
+        private PendingCommand(ImapMessage message, boolean concurrent) {
+            this.message = message;
+            this.concurrent = concurrent;
+        }
+
+        public void respond(ImapResponseMessage response) {
+            synchronized (responses) {
+                responses.add(response);
+            }
+        }
+
+        public void run() {
+            try {
+                execution.execute(message, this);
+            } finally {
+                complete(this);
+            }
+        }
+    }
+
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final int maxPendingCommands;
+    private final CommandExecution execution;
+    private final ResponseWriter responseWriter;
+
+    private final LinkedList<PendingCommand> pendingCommands = new LinkedList<PendingCommand>();
+    private int runningConcurrentCommands;
+    private boolean draining;
+    private boolean drainRequested;
+
+    public ImapCommandPipeline(Executor executor, int maxConcurrency, CommandExecution execution, ResponseWriter responseWriter) {
+        this(executor, maxConcurrency, DEFAULT_MAX_PENDING_COMMANDS, execution, responseWriter);
+    }
+
+    public ImapCommandPipeline(Executor executor, int maxConcurrency, int maxPendingCommands, CommandExecution execution, ResponseWriter responseWriter) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency should be strictly positive");
+        }
+        if (maxPendingCommands < maxConcurrency) {
+            throw new IllegalArgumentException("maxPendingCommands should not be lower than maxConcurrency");
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.maxPendingCommands = maxPendingCommands;
+        this.execution = execution;
+        this.responseWriter = responseWriter;
+    }
+
+    /**
+     * Submit a command received on the connection. Commands must be submitted in
+     * the order they were received.
+     * 
+     * Blocks while maxPendingCommands commands are waiting for their answer.
+     * 
+     * @param message
+     */
+    public void submit(ImapMessage message) {
+        synchronized (this) {
+            boolean interrupted = false;
+            while (pendingCommands.size() >= maxPendingCommands) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            pendingCommands.add(new PendingCommand(message, isConcurrent(message)));
+        }
+        drain();
+    }
+
+    /**
+     * Return the number of commands received but not yet answered
+     * 
+     * @return count
+     */
+    public synchronized int getPendingCommandCount() {
+        return pendingCommands.size();
+    }
+
+    private void complete(PendingCommand command) {
+        synchronized (this) {
+            command.state = State.DONE;
+            if (command.concurrent) {
+                runningConcurrentCommands--;
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                drainRequested = true;
+                return;
+            }
+            draining = true;
+        }
+        boolean drained = false;
+        try {
+            while (!drained) {
+                boolean again = drainOnce();
+                synchronized (this) {
+                    // A drain requested while the last pass ran would be lost otherwise
+                    if (!again && !drainRequested) {
+                        draining = false;
+                        drained = true;
+                    }
+                }
+            }
+        } finally {
+            if (!drained) {
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the responses of the answered commands at the head of the queue,
+     * start the commands which may be started, and execute the barrier command
+     * at the head of the queue if any.
+     * 
+     * @return true if another pass is needed
+     */
+    private boolean drainOnce() {
+        List<PendingCommand> answered = new ArrayList<PendingCommand>();
+        List<PendingCommand> toStart = new ArrayList<PendingCommand>();
+        PendingCommand barrier = null;
+        synchronized (this) {
+            drainRequested = false;
+            while (!pendingCommands.isEmpty() && pendingCommands.getFirst().state == State.DONE) {
+                answered.add(pendingCommands.removeFirst());
+            }
+            if (!answered.isEmpty()) {
+                notifyAll();
+            }
+            Iterator<PendingCommand> commands = pendingCommands.iterator();
+            while (commands.hasNext()) {
+                PendingCommand command = commands.next();
+                if (!command.concurrent) {
+                    if (command.state == State.WAITING && command == pendingCommands.getFirst()) {
+                        command.state = State.RUNNING;
+                        barrier = command;
+                    }
+                    // Nothing received after a barrier can start before it completes
+                    break;
+                }
+                if (command.state == State.WAITING) {
+                    if (runningConcurrentCommands >= maxConcurrency) {
+                        break;
+                    }
+                    command.state = State.RUNNING;
+                    runningConcurrentCommands++;
+                    toStart.add(command);
+                }
+            }
+        }
+
+        for (PendingCommand command : answered) {
+            synchronized (command.responses) {
+                responseWriter.write(command.message, command.responses);
+            }
+        }
+        for (PendingCommand command : toStart) {
+            executor.execute(command);
+        }
+        if (barrier != null) {
+            try {
+                execution.execute(barrier.message);
+            } finally {
+                synchronized (this) {
+                    pendingCommands.remove(barrier);
+                    notifyAll();
+                }
+            }
+            return true;
+        }
+        return !answered.isEmpty();
+    }
+}
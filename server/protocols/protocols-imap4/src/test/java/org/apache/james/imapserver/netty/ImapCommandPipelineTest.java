@@ -0,0 +1,303 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imapserver.netty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.imap.api.ImapCommand;
+import org.apache.james.imap.api.ImapConstants;
+import org.apache.james.imap.api.ImapMessage;
+import org.apache.james.imap.api.message.FetchData;
+import org.apache.james.imap.api.message.IdRange;
+import org.apache.james.imap.api.message.response.ImapResponseMessage;
+import org.apache.james.imap.api.process.ImapProcessor.Responder;
+import org.apache.james.imap.message.request.AbstractImapRequest;
+import org.apache.james.imap.message.request.FetchRequest;
+import org.apache.james.imap.message.request.NoopRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImapCommandPipelineTest {
+
+    private static final ImapCommand FETCH = ImapCommand.selectedStateCommand(ImapConstants.FETCH_COMMAND_NAME);
+    private static final ImapCommand NOOP = ImapCommand.anyStateCommand(ImapConstants.NOOP_COMMAND_NAME);
+
+    private ExecutorService executor;
+    private List<String> written;
+    private List<String> started;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        written = new CopyOnWriteArrayList<String>();
+        started = new CopyOnWriteArrayList<String>();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void isConcurrentShouldAcceptUidFetchNotSettingSeen() {
+        assertThat(ImapCommandPipeline.isConcurrent(uidFetch("A1"))).isTrue();
+    }
+
+    @Test
+    public void isConcurrentShouldRejectSequenceNumberFetch() {
+        FetchRequest fetch = new FetchRequest(FETCH, false, new IdRange[] { new IdRange(1) }, new FetchData(), "A1");
+
+        assertThat(ImapCommandPipeline.isConcurrent(fetch)).isFalse();
+    }
+
+    @Test
+    public void isConcurrentShouldRejectFetchChangedSince() {
+        FetchData fetchData = new FetchData();
+        fetchData.setChangedSince(12);
+        FetchRequest fetch = new FetchRequest(FETCH, true, new IdRange[] { new IdRange(1) }, fetchData, "A1");
+
+        assertThat(ImapCommandPipeline.isConcurrent(fetch)).isFalse();
+    }
+
+    @Test
+    public void isConcurrentShouldRejectOtherCommands() {
+        assertThat(ImapCommandPipeline.isConcurrent(noop("A1"))).isFalse();
+    }
+
+    @Test
+    public void responsesShouldBeWrittenInSubmissionOrder() throws Exception {
+        final CountDownLatch firstMayComplete = new CountDownLatch(1);
+        final CountDownLatch allWritten = new CountDownLatch(2);
+        ImapCommandPipeline pipeline = new ImapCommandPipeline(executor, 4, new RecordingExecution() {
+            @Override
+            protected void beforeConcurrentExecution(String tag) throws InterruptedException {
+                if (tag.equals("A1")) {
+                    firstMayComplete.await();
+                }
+            }
+        }, new RecordingWriter(allWritten));
+
+        pipeline.submit(uidFetch("A1"));
+        pipeline.submit(uidFetch("A2"));
+        awaitStarted(2);
+        firstMayComplete.countDown();
+
+        assertThat(allWritten.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).containsExactly("A1", "A2");
+    }
+
+    @Test
+    public void barrierShouldWaitForPreviousCommands() throws Exception {
+        final CountDownLatch firstMayComplete = new CountDownLatch(1);
+        final CountDownLatch allWritten = new CountDownLatch(2);
+        ImapCommandPipeline pipeline = new ImapCommandPipeline(executor, 4, new RecordingExecution() {
+            @Override
+            protected void beforeConcurrentExecution(String tag) throws InterruptedException {
+                firstMayComplete.await();
+            }
+
+            @Override
+            public void execute(ImapMessage message) {
+                super.execute(message);
+                allWritten.countDown();
+            }
+        }, new RecordingWriter(allWritten));
+
+        pipeline.submit(uidFetch("A1"));
+        pipeline.submit(noop("A2"));
+        awaitStarted(1);
+
+        assertThat(started).containsExactly("A1");
+        firstMayComplete.countDown();
+
+        assertThat(allWritten.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).containsExactly("A1", "A2");
+    }
+
+    @Test
+    public void commandsSubmittedAfterBarrierShouldNotStartBeforeIt() throws Exception {
+        final CountDownLatch firstMayComplete = new CountDownLatch(1);
+        final CountDownLatch allWritten = new CountDownLatch(3);
+        ImapCommandPipeline pipeline = new ImapCommandPipeline(executor, 4, new RecordingExecution() {
+            @Override
+            protected void beforeConcurrentExecution(String tag) throws InterruptedException {
+                if (tag.equals("A1")) {
+                    firstMayComplete.await();
+                }
+            }
+
+            @Override
+            public void execute(ImapMessage message) {
+                super.execute(message);
+                allWritten.countDown();
+            }
+        }, new RecordingWriter(allWritten));
+
+        pipeline.submit(uidFetch("A1"));
+        pipeline.submit(noop("A2"));
+        pipeline.submit(uidFetch("A3"));
+        awaitStarted(1);
+        Thread.sleep(100);
+
+        assertThat(started).containsExactly("A1");
+        firstMayComplete.countDown();
+
+        assertThat(allWritten.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(started).containsExactly("A1", "A2", "A3");
+        assertThat(written).containsExactly("A1", "A2", "A3");
+    }
+
+    @Test
+    public void concurrentCommandsShouldBeLimitedToMaxConcurrency() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch allWritten = new CountDownLatch(10);
+        ImapCommandPipeline pipeline = new ImapCommandPipeline(executor, 2, new RecordingExecution() {
+            @Override
+            protected void beforeConcurrentExecution(String tag) throws InterruptedException {
+                int current = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                }
+                Thread.sleep(20);
+                running.decrementAndGet();
+            }
+        }, new RecordingWriter(allWritten));
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(uidFetch("A" + i));
+        }
+
+        assertThat(allWritten.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+        assertThat(pipeline.getPendingCommandCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void submitShouldBlockWhileMaxPendingCommandsAreWaiting() throws Exception {
+        final CountDownLatch firstMayComplete = new CountDownLatch(1);
+        final CountDownLatch allWritten = new CountDownLatch(3);
+        final ImapCommandPipeline pipeline = new ImapCommandPipeline(executor, 2, 2, new RecordingExecution() {
+            @Override
+            protected void beforeConcurrentExecution(String tag) throws InterruptedException {
+                if (tag.equals("A1")) {
+                    firstMayComplete.await();
+                }
+            }
+        }, new RecordingWriter(allWritten));
+
+        pipeline.submit(uidFetch("A1"));
+        pipeline.submit(uidFetch("A2"));
+        final CountDownLatch thirdSubmitted = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            public void run() {
+                pipeline.submit(uidFetch("A3"));
+                thirdSubmitted.countDown();
+            }
+        });
+
+        assertThat(thirdSubmitted.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(pipeline.getPendingCommandCount()).isEqualTo(2);
+        firstMayComplete.countDown();
+
+        assertThat(thirdSubmitted.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(allWritten.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).containsExactly("A1", "A2", "A3");
+    }
+
+    @Test
+    public void responsesShouldAllBeWrittenWhenCommandsCompleteConcurrently() throws Exception {
+        int commandCount = 2000;
+        CountDownLatch allWritten = new CountDownLatch(commandCount);
+        ImapCommandPipeline pipeline = new ImapCommandPipeline(executor, 8, new RecordingExecution(), new RecordingWriter(allWritten));
+
+        for (int i = 0; i < commandCount; i++) {
+            pipeline.submit(uidFetch("A" + i));
+        }
+
+        assertThat(allWritten.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).hasSize(commandCount);
+        assertThat(pipeline.getPendingCommandCount()).isEqualTo(0);
+    }
+
+    private void awaitStarted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (started.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private FetchRequest uidFetch(String tag) {
+        return new FetchRequest(FETCH, true, new IdRange[] { new IdRange(1) }, new FetchData(), tag);
+    }
+
+    private NoopRequest noop(String tag) {
+        return new NoopRequest(NOOP, tag);
+    }
+
+    private static String tag(ImapMessage message) {
+        return ((AbstractImapRequest) message).getTag();
+    }
+
+    private class RecordingExecution implements ImapCommandPipeline.CommandExecution {
+
+        protected void beforeConcurrentExecution(String tag) throws InterruptedException {
+        }
+
+        public void execute(ImapMessage message) {
+            started.add(tag(message));
+            written.add(tag(message));
+        }
+
+        public void execute(ImapMessage message, Responder responder) {
+            started.add(tag(message));
+            try {
+                beforeConcurrentExecution(tag(message));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responder.respond(new ImapResponseMessage() {
+            });
+        }
+    }
+
+    private class RecordingWriter implements ImapCommandPipeline.ResponseWriter {
+        private final CountDownLatch writes;
+
+        private RecordingWriter(CountDownLatch writes) {
+            this.writes = writes;
+        }
+
+        public void write(ImapMessage message, List<ImapResponseMessage> responses) {
+            assertThat(responses).hasSize(1);
+            written.add(tag(message));
+            writes.countDown();
+        }
+    }
+}
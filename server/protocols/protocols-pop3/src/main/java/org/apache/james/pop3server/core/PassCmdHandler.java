@@ -30,6 +30,7 @@ import org.apache.james.mailbox.exception.BadCredentialsException;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.MailboxPath;
 import org.apache.james.pop3server.mailbox.MailboxAdapter;
+import org.apache.james.pop3server.mailbox.MessageMetaDataSnapshots;
 import org.apache.james.protocols.api.Request;
 import org.apache.james.protocols.api.Response;
 import org.apache.james.protocols.lib.POP3BeforeSMTPHelper;
@@ -46,10 +47,12 @@ import org.apache.james.protocols.pop3.mailbox.Mailbox;
 public class PassCmdHandler extends AbstractPassCmdHandler  {
 
     private MailboxManager manager;
+    private MessageMetaDataSnapshots snapshots;
 
     @Inject
     public void setMailboxManager(@Named("mailboxmanager") MailboxManager manager) {
         this.manager = manager;
+        this.snapshots = new MessageMetaDataSnapshots(manager);
     }
 
     @Override
@@ -74,8 +77,8 @@ public class PassCmdHandler extends AbstractPassCmdHandler  {
             if (!manager.mailboxExists(inbox, mSession)) {
                 manager.createMailbox(inbox, mSession);
             }
-            MessageManager mailbox = manager.getMailbox(MailboxPath.inbox(mSession), mSession);
-            return new MailboxAdapter(manager, mailbox, mSession);
+            MessageManager mailbox = manager.getMailbox(inbox, mSession);
+            return new MailboxAdapter(manager, mailbox, mSession, snapshots.snapshot(inbox, mailbox, mSession));
         } catch (BadCredentialsException e) {
             return null;
         } catch (MailboxException e) {
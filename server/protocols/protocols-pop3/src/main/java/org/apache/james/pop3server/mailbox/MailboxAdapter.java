@@ -88,10 +88,21 @@ public class MailboxAdapter implements Mailbox {
 
     private final MailboxManager mailboxManager;
 
+    private final MessageMetaDataSnapshot snapshot;
+
     public MailboxAdapter(MailboxManager mailboxManager, MessageManager manager, MailboxSession session) {
+        this(mailboxManager, manager, session, null);
+    }
+
+    /**
+     * Create a {@link MailboxAdapter} which reads the messages meta data from the given
+     * {@link MessageMetaDataSnapshot} as long as it is valid
+     */
+    public MailboxAdapter(MailboxManager mailboxManager, MessageManager manager, MailboxSession session, MessageMetaDataSnapshot snapshot) {
         this.manager = manager;
         this.session = session;
         this.mailboxManager = mailboxManager;
+        this.snapshot = snapshot;
     }
 
     @Override
@@ -150,6 +161,9 @@ public class MailboxAdapter implements Mailbox {
     public List<MessageMetaData> getMessages() throws IOException {
         try {
             mailboxManager.startProcessingRequest(session);
+            if (hasValidSnapshot()) {
+                return snapshot.getMessages(manager, session);
+            }
             Iterator<MessageResult> results = manager.getMessages(MessageRange.all(), METADATA_GROUP, session);
             List<MessageMetaData> mList = new ArrayList<MessageMetaData>();
             while (results.hasNext()) {
@@ -191,6 +205,9 @@ public class MailboxAdapter implements Mailbox {
     public String getIdentifier() throws IOException {
         try {
             mailboxManager.startProcessingRequest(session);
+            if (hasValidSnapshot()) {
+                return snapshot.getIdentifier(manager, session);
+            }
             long validity = manager.getMetaData(false, session, MessageManager.MetaData.FetchGroup.NO_COUNT)
                     .getUidValidity();
             return Long.toString(validity);
@@ -201,6 +218,10 @@ public class MailboxAdapter implements Mailbox {
         }
     }
 
+    private boolean hasValidSnapshot() {
+        return snapshot != null && snapshot.isValid();
+    }
+
     @Override
     public void close() throws IOException {
         try {
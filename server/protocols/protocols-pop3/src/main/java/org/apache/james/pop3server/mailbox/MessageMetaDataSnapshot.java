@@ -0,0 +1,201 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.pop3server.mailbox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.FetchGroupImpl;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.model.MessageResult;
+import org.apache.james.protocols.pop3.mailbox.MessageMetaData;
+
+/**
+ * Holds the UID and the size of the messages of a mailbox, as needed by the
+ * STAT, LIST and UIDL commands.
+ * <p>
+ * The snapshot is loaded once from the mailbox, then kept up to date from the
+ * mailbox events, so that opening a POP3 session does not scan the mailbox.
+ * As only the events of this server are received, the snapshot should be
+ * checked against the mailbox metadata before being reused, see
+ * {@link #isUpToDate(MessageManager.MetaData)}.
+ */
+public class MessageMetaDataSnapshot implements MailboxListener {
+
+    private final SortedMap<MessageUid, Long> sizes = new TreeMap<MessageUid, Long>();
+    private final Set<MessageUid> expungedWhileLoading = new HashSet<MessageUid>();
+    private final Object loadLock = new Object();
+    private boolean loading;
+    private boolean loaded;
+    private boolean valid = true;
+    private String identifier;
+    private MessageUid uidNext;
+    private List<MessageMetaData> messages;
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    @Override
+    public ListenerType getType() {
+        return ListenerType.MAILBOX;
+    }
+
+    @Override
+    public ExecutionMode getExecutionMode() {
+        return ExecutionMode.SYNCHRONOUS;
+    }
+
+    @Override
+    public synchronized void event(Event event) {
+        if (event instanceof Added) {
+            Added added = (Added) event;
+            for (MessageUid uid : added.getUids()) {
+                sizes.put(uid, added.getMetaData(uid).getSize());
+                if (uidNext != null && uid.compareTo(uidNext) >= 0) {
+                    uidNext = uid.next();
+                }
+            }
+            messages = null;
+        } else if (event instanceof Expunged) {
+            for (MessageUid uid : ((Expunged) event).getUids()) {
+                sizes.remove(uid);
+                if (loading) {
+                    expungedWhileLoading.add(uid);
+                }
+            }
+            messages = null;
+        } else if (event instanceof MailboxDeletion || event instanceof MailboxRenamed) {
+            valid = false;
+        }
+    }
+
+    /**
+     * Return the messages of the mailbox, loading them from the given
+     * {@link MessageManager} on first call.
+     */
+    public List<MessageMetaData> getMessages(MessageManager manager, MailboxSession session) throws MailboxException {
+        load(manager, session);
+        synchronized (this) {
+            if (messages == null) {
+                List<MessageMetaData> list = new ArrayList<MessageMetaData>(sizes.size());
+                for (Map.Entry<MessageUid, Long> entry : sizes.entrySet()) {
+                    list.add(new MessageMetaData(String.valueOf(entry.getKey().asLong()), entry.getValue()));
+                }
+                messages = Collections.unmodifiableList(list);
+            }
+            return messages;
+        }
+    }
+
+    /**
+     * Return the identifier of the mailbox, which is its UID validity
+     */
+    public String getIdentifier(MessageManager manager, MailboxSession session) throws MailboxException {
+        load(manager, session);
+        synchronized (this) {
+            return identifier;
+        }
+    }
+
+    private void load(MessageManager manager, MailboxSession session) throws MailboxException {
+        lastAccess = System.currentTimeMillis();
+        synchronized (loadLock) {
+            synchronized (this) {
+                if (loaded) {
+                    return;
+                }
+                loading = true;
+            }
+            try {
+                MessageManager.MetaData metaData = manager.getMetaData(false, session, MessageManager.MetaData.FetchGroup.NO_COUNT);
+                MessageUid loadedUidNext = metaData.getUidNext();
+                Map<MessageUid, Long> scanned = new TreeMap<MessageUid, Long>();
+                Iterator<MessageResult> results = manager.getMessages(MessageRange.all(), FetchGroupImpl.MINIMAL, session);
+                while (results.hasNext()) {
+                    MessageResult result = results.next();
+                    scanned.put(result.getUid(), result.getSize());
+                    if (result.getUid().compareTo(loadedUidNext) >= 0) {
+                        loadedUidNext = result.getUid().next();
+                    }
+                }
+                synchronized (this) {
+                    for (Map.Entry<MessageUid, Long> entry : scanned.entrySet()) {
+                        if (!expungedWhileLoading.contains(entry.getKey()) && !sizes.containsKey(entry.getKey())) {
+                            sizes.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    identifier = Long.toString(metaData.getUidValidity());
+                    if (!sizes.isEmpty() && sizes.lastKey().compareTo(loadedUidNext) >= 0) {
+                        loadedUidNext = sizes.lastKey().next();
+                    }
+                    uidNext = loadedUidNext;
+                    messages = null;
+                    loaded = true;
+                }
+            } finally {
+                synchronized (this) {
+                    loading = false;
+                    expungedWhileLoading.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Return false if the given metadata, read from the mailbox, shows changes
+     * this snapshot did not receive the events of, like the messages added or
+     * expunged through another server.
+     * 
+     * The highest mod-sequence is not compared as it also moves on flag
+     * updates, which do not matter here.
+     */
+    public synchronized boolean isUpToDate(MessageManager.MetaData metaData) {
+        if (!loaded) {
+            return true;
+        }
+        return metaData.getUidNext().equals(uidNext) && metaData.getMessageCount() == sizes.size();
+    }
+
+    /**
+     * Return false once the mailbox was deleted or renamed, or once the
+     * snapshot stopped listening to the mailbox events
+     */
+    public synchronized boolean isValid() {
+        return valid;
+    }
+
+    synchronized void invalidate() {
+        valid = false;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+}
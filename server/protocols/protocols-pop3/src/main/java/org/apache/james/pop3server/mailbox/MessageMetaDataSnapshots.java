@@ -0,0 +1,129 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.pop3server.mailbox;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxPath;
+
+/**
+ * Keeps a {@link MessageMetaDataSnapshot} per mailbox, shared by the POP3
+ * sessions opened on it. Snapshots which were not used for a while are dropped,
+ * and stop listening to the mailbox events.
+ * 
+ * A snapshot is only kept up to date by the events of this server. Before being
+ * reused it is compared with the mailbox metadata, and rebuilt if the mailbox was
+ * changed by another server or outside of James.
+ */
+public class MessageMetaDataSnapshots {
+
+    public final static long DEFAULT_IDLE_TIMEOUT = 30 * 60 * 1000;
+
+    private final MailboxManager mailboxManager;
+    private final long idleTimeout;
+    private final Map<MailboxPath, Registration> snapshots = new HashMap<MailboxPath, Registration>();
+    private long lastExpiration = System.currentTimeMillis();
+
+    public MessageMetaDataSnapshots(MailboxManager mailboxManager) {
+        this(mailboxManager, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public MessageMetaDataSnapshots(MailboxManager mailboxManager, long idleTimeout) {
+        this.mailboxManager = mailboxManager;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Return the snapshot of the given mailbox, registering it for the mailbox
+     * events if needed.
+     */
+    public MessageMetaDataSnapshot snapshot(MailboxPath path, MessageManager mailbox, MailboxSession session) throws MailboxException {
+        MessageManager.MetaData metaData = mailbox.getMetaData(false, session, MessageManager.MetaData.FetchGroup.NO_UNSEEN);
+        return snapshot(path, metaData, session);
+    }
+
+    private synchronized MessageMetaDataSnapshot snapshot(MailboxPath path, MessageManager.MetaData metaData, MailboxSession session) throws MailboxException {
+        expireIdleSnapshots();
+        Registration registration = snapshots.get(path);
+        if (registration != null) {
+            if (registration.snapshot.isValid() && registration.snapshot.isUpToDate(metaData)) {
+                return registration.snapshot;
+            }
+            unregister(path, registration);
+        }
+        MessageMetaDataSnapshot snapshot = new MessageMetaDataSnapshot();
+        mailboxManager.addListener(path, snapshot, session);
+        snapshots.put(path, new Registration(snapshot, session));
+        return snapshot;
+    }
+
+    private void expireIdleSnapshots() {
+        long now = System.currentTimeMillis();
+        if (now - lastExpiration < idleTimeout / 10) {
+            return;
+        }
+        lastExpiration = now;
+        Iterator<Map.Entry<MailboxPath, Registration>> entries = snapshots.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<MailboxPath, Registration> entry = entries.next();
+            if (now - entry.getValue().snapshot.getLastAccess() > idleTimeout) {
+                entries.remove();
+                removeListener(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void unregister(MailboxPath path, Registration registration) {
+        snapshots.remove(path);
+        removeListener(path, registration);
+    }
+
+    private void removeListener(MailboxPath path, Registration registration) {
+        registration.snapshot.invalidate();
+        try {
+            mailboxManager.removeListener(path, registration.snapshot, registration.session);
+        } catch (MailboxException e) {
+            registration.session.getLog().warn("Unable to remove POP3 snapshot listener for " + path, e);
+        }
+    }
+
+    /**
+     * Return the number of mailboxes having a snapshot
+     */
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    private static class Registration {
+        private final MessageMetaDataSnapshot snapshot;
+        private final MailboxSession session;
+
+        private Registration(MessageMetaDataSnapshot snapshot, MailboxSession session) {
+            this.snapshot = snapshot;
+            this.session = session;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.util.Date;
 import java.util.List;
 
 import javax.mail.Flags;
+import javax.mail.util.SharedByteArrayInputStream;
 
 import org.apache.commons.net.pop3.POP3Client;
 import org.apache.commons.net.pop3.POP3MessageInfo;
@@ -42,6 +43,7 @@ import org.apache.james.filesystem.api.mock.MockFileSystem;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.MessageUid;
 import org.apache.james.mailbox.acl.GroupMembershipResolver;
 import org.apache.james.mailbox.acl.MailboxACLResolver;
 import org.apache.james.mailbox.acl.SimpleGroupMembershipResolver;
@@ -50,11 +52,17 @@ import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.inmemory.InMemoryMailboxSessionMapperFactory;
 import org.apache.james.mailbox.model.MailboxConstants;
 import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.store.Authenticator;
 import org.apache.james.mailbox.store.Authorizator;
 import org.apache.james.mailbox.store.StoreMailboxManager;
+import org.apache.james.mailbox.store.mail.MessageMapper;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.impl.MessageParser;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
 import org.apache.james.pop3server.netty.POP3Server;
 import org.apache.james.protocols.api.utils.ProtocolServerUtils;
 import org.apache.james.protocols.lib.POP3BeforeSMTPHelper;
@@ -76,6 +84,7 @@ public class POP3ServerTest {
     private POP3Client pop3Client = null;
     protected MockFileSystem fileSystem;
     protected MockProtocolHandlerLoader protocolHandlerChain;
+    private InMemoryMailboxSessionMapperFactory mapperFactory;
     private StoreMailboxManager mailboxManager;
     private final byte[] content = ("Return-path: return@test.com\r\n"
             + "Content-Transfer-Encoding: plain\r\n"
@@ -425,6 +434,97 @@ public class POP3ServerTest {
 
     }
 
+    @Test
+    public void testStatUidlListShouldReflectChangesBetweenSessions() throws Exception {
+        finishSetUp(pop3Configuration);
+
+        pop3Client = new POP3Client();
+        InetSocketAddress bindedAddress = new ProtocolServerUtils(pop3Server).retrieveBindedAddress();
+        pop3Client.connect(bindedAddress.getAddress().getHostAddress(), bindedAddress.getPort());
+
+        usersRepository.addUser("foo2", "bar2");
+
+        MailboxPath mailboxPath = new MailboxPath(MailboxConstants.USER_NAMESPACE, "foo2", "INBOX");
+        MailboxSession session = mailboxManager.login("foo2", "bar2", LoggerFactory.getLogger("Test"));
+
+        if (!mailboxManager.mailboxExists(mailboxPath, session)) {
+            mailboxManager.createMailbox(mailboxPath, session);
+        }
+
+        MessageManager mailbox = mailboxManager.getMailbox(mailboxPath, session);
+        setupTestMails(session, mailbox);
+
+        pop3Client.login("foo2", "bar2");
+        assertEquals(2, pop3Client.status().number);
+        assertTrue(pop3Client.deleteMessage(1));
+        pop3Client.sendCommand("quit");
+        pop3Client.disconnect();
+
+        mailbox.appendMessage(new ByteArrayInputStream("Subject: test\r\n\r\nBody".getBytes()), new Date(), session, true, new Flags());
+
+        pop3Client.connect(bindedAddress.getAddress().getHostAddress(), bindedAddress.getPort());
+        pop3Client.login("foo2", "bar2");
+
+        POP3MessageInfo[] listEntries = pop3Client.listMessages();
+        POP3MessageInfo[] uidlEntries = pop3Client.listUniqueIdentifiers();
+        assertEquals(2, pop3Client.status().number);
+        assertEquals(2, listEntries.length);
+        assertEquals("2", uidlEntries[0].identifier);
+        assertEquals("3", uidlEntries[1].identifier);
+        assertEquals("Subject: test\r\n\r\nBody".length(), listEntries[1].size);
+
+        pop3Client.sendCommand("quit");
+        pop3Client.disconnect();
+
+        mailboxManager.deleteMailbox(mailboxPath, session);
+    }
+
+    @Test
+    public void testStatUidlListShouldReflectChangesMadeWithoutEvents() throws Exception {
+        finishSetUp(pop3Configuration);
+
+        pop3Client = new POP3Client();
+        InetSocketAddress bindedAddress = new ProtocolServerUtils(pop3Server).retrieveBindedAddress();
+        pop3Client.connect(bindedAddress.getAddress().getHostAddress(), bindedAddress.getPort());
+
+        usersRepository.addUser("foo2", "bar2");
+
+        MailboxPath mailboxPath = new MailboxPath(MailboxConstants.USER_NAMESPACE, "foo2", "INBOX");
+        MailboxSession session = mailboxManager.login("foo2", "bar2", LoggerFactory.getLogger("Test"));
+
+        if (!mailboxManager.mailboxExists(mailboxPath, session)) {
+            mailboxManager.createMailbox(mailboxPath, session);
+        }
+
+        setupTestMails(session, mailboxManager.getMailbox(mailboxPath, session));
+
+        pop3Client.login("foo2", "bar2");
+        assertEquals(2, pop3Client.status().number);
+        pop3Client.sendCommand("quit");
+        pop3Client.disconnect();
+
+        // As done by another server, which events are not received here
+        Mailbox mailbox = mapperFactory.getMailboxMapper(session).findMailboxByPath(mailboxPath);
+        MessageMapper messageMapper = mapperFactory.getMessageMapper(session);
+        messageMapper.delete(mailbox, messageMapper.findInMailbox(mailbox, MessageRange.one(MessageUid.of(1)), FetchType.Metadata, 1).next());
+        byte[] added = "Subject: test\r\n\r\nBody".getBytes();
+        messageMapper.add(mailbox, new SimpleMailboxMessage(new DefaultMessageId.Factory().generate(), new Date(), added.length, 17,
+            new SharedByteArrayInputStream(added), new Flags(), new PropertyBuilder(), mailbox.getMailboxId()));
+
+        pop3Client.connect(bindedAddress.getAddress().getHostAddress(), bindedAddress.getPort());
+        pop3Client.login("foo2", "bar2");
+
+        POP3MessageInfo[] uidlEntries = pop3Client.listUniqueIdentifiers();
+        assertEquals(2, pop3Client.status().number);
+        assertEquals("2", uidlEntries[0].identifier);
+        assertEquals("3", uidlEntries[1].identifier);
+
+        pop3Client.sendCommand("quit");
+        pop3Client.disconnect();
+
+        mailboxManager.deleteMailbox(mailboxPath, session);
+    }
+
     /**
      * Test for JAMES-1202 - This was failing before as the more then one connection to the same
      * mailbox was not handled the right way
@@ -724,11 +824,11 @@ public class POP3ServerTest {
         protocolHandlerChain = new MockProtocolHandlerLoader();
         protocolHandlerChain.put("usersrepository", UsersRepository.class, usersRepository);
     
-        InMemoryMailboxSessionMapperFactory factory = new InMemoryMailboxSessionMapperFactory();
+        mapperFactory = new InMemoryMailboxSessionMapperFactory();
         MailboxACLResolver aclResolver = new UnionMailboxACLResolver();
         GroupMembershipResolver groupMembershipResolver = new SimpleGroupMembershipResolver();
         MessageParser messageParser = new MessageParser();
-        mailboxManager = new StoreMailboxManager(factory, new Authenticator() {
+        mailboxManager = new StoreMailboxManager(mapperFactory, new Authenticator() {
     
             @Override
             public boolean isAuthentic(String userid, CharSequence passwd) {
@@ -40,13 +40,13 @@ public class JamesDataCmdHandler extends DataCmdHandler {
     }
 
     /**
-     * Handler method called upon receipt of a DATA command. Reads in message
-     * data, creates header, and delivers to mail server service for delivery.
+     * Creates the stream source the message content, received with DATA or BDAT,
+     * is written to.
      *
      * @param session  SMTP session object
-     * @param argument the argument passed in with the command by the SMTP client
      */
-    protected SMTPResponse doDATA(SMTPSession session, String argument) {
+    @Override
+    protected SMTPResponse beginMessage(SMTPSession session) {
         try {
             MimeMessageInputStreamSource mmiss = new MimeMessageInputStreamSource(MailImpl.getId());
             session.setAttachment(SMTPConstants.DATA_MIMEMESSAGE_STREAMSOURCE, mmiss, State.Transaction);
@@ -54,11 +54,7 @@ public class JamesDataCmdHandler extends DataCmdHandler {
             session.getLogger().warn("Error creating mimemessagesource for incoming data", e);
             return new SMTPResponse(SMTPRetCode.LOCAL_ERROR, "Unexpected error preparing to receive DATA.");
         }
-
-        // out = new PipedOutputStream(messageIn);
-        session.pushLineHandler(getLineHandler());
-
-        return new SMTPResponse(SMTPRetCode.DATA_READY, "Ok Send data ending with <CRLF>.<CRLF>");
+        return null;
     }
 
 }
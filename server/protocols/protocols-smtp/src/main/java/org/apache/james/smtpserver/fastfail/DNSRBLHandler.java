@@ -18,19 +18,26 @@
  ****************************************************************/
 package org.apache.james.smtpserver.fastfail;
 
+import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.inject.Inject;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.james.dnsservice.api.AsyncDNSService;
+import org.apache.james.dnsservice.api.AsyncDNSServiceAdapter;
 import org.apache.james.dnsservice.api.DNSService;
 import org.apache.james.protocols.api.handler.ProtocolHandler;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 public class DNSRBLHandler extends org.apache.james.protocols.smtp.core.fastfail.DNSRBLHandler implements ProtocolHandler {
 
     private DNSService dns;
@@ -82,6 +89,37 @@ public class DNSRBLHandler extends org.apache.james.protocols.smtp.core.fastfail
         }
     }
 
+    /**
+     * Query all the lists at once and wait for the answers in the configured order.
+     * The lookups still pending once the answer is known are cancelled.
+     */
+    @Override
+    protected int resolveFirst(String[] names) {
+        AsyncDNSService asyncDns = AsyncDNSServiceAdapter.of(dns);
+        List<ListenableFuture<InetAddress>> lookups = new ArrayList<ListenableFuture<InetAddress>>(names.length);
+        try {
+            for (String name : names) {
+                lookups.add(asyncDns.getByNameAsync(name));
+            }
+            for (int i = 0; i < lookups.size(); i++) {
+                try {
+                    lookups.get(i).get();
+                    return i;
+                } catch (ExecutionException e) {
+                    // not listed
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+            return -1;
+        } finally {
+            for (ListenableFuture<InetAddress> lookup : lookups) {
+                lookup.cancel(true);
+            }
+        }
+    }
+
     @Override
     protected Collection<String> resolveTXTRecords(String ip) {
         return dns.findTXTRecords(ip);
@@ -0,0 +1,166 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.smtpserver.fastfail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.james.dnsservice.api.DNSService;
+import org.apache.james.dnsservice.library.netmatcher.NetMatcher;
+import org.apache.james.filesystem.api.FileSystem;
+import org.apache.james.protocols.smtp.MailAddress;
+import org.apache.james.protocols.smtp.SMTPSession;
+import org.apache.james.protocols.smtp.core.fastfail.FileGreylistRepository;
+import org.apache.james.protocols.smtp.core.fastfail.GreylistRepository;
+import org.apache.james.protocols.smtp.hook.HookResult;
+import org.apache.james.protocols.smtp.hook.HookReturnCode;
+import org.apache.james.util.TimeConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * GreylistHandler which keeps the triplets in memory and, if a <code>repositoryPath</code> is configured, persists
+ * them asynchronously to a local journal file. Greylist decisions never wait for I/O.
+ */
+public class InMemoryGreylistHandler extends org.apache.james.protocols.smtp.core.fastfail.InMemoryGreylistHandler {
+
+    /** This log is the fall back shared by all instances */
+    private static final Logger FALLBACK_LOG = LoggerFactory.getLogger(InMemoryGreylistHandler.class);
+
+    /**
+     * Non context specific log should only be used when no context specific log
+     * is available
+     */
+    private Logger serviceLog = FALLBACK_LOG;
+
+    private FileSystem fileSystem = null;
+
+    private DNSService dnsService;
+
+    private NetMatcher wNetworks;
+
+    /**
+     * Gets the file system service.
+     * 
+     * @return the fileSystem
+     */
+    public final FileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    /**
+     * Sets the filesystem service
+     * 
+     * @param system
+     *            The filesystem service
+     */
+    @Inject
+    public void setFileSystem(FileSystem system) {
+        this.fileSystem = system;
+    }
+
+    @Inject
+    public final void setDNSService(DNSService dnsService) {
+        this.dnsService = dnsService;
+    }
+
+    protected NetMatcher getWhiteListedNetworks() {
+        return wNetworks;
+    }
+
+    protected Logger getLog() {
+        return serviceLog;
+    }
+
+    /**
+     * @see org.apache.james.lifecycle.api.LogEnabled#setLog(Logger)
+     */
+    public void setLog(Logger log) {
+        this.serviceLog = log;
+    }
+
+    /**
+     * Create the repository the triplets are persisted to
+     * 
+     * @param handlerConfiguration
+     *            The handler configuration
+     * @return repository or <code>null</code> if the triplets should only be kept in memory
+     * @throws ConfigurationException
+     */
+    protected GreylistRepository createRepository(Configuration handlerConfiguration) throws ConfigurationException {
+        String repositoryPath = handlerConfiguration.getString("repositoryPath", null);
+        if (repositoryPath == null) {
+            return null;
+        }
+        try {
+            return new FileGreylistRepository(fileSystem.getFile(repositoryPath));
+        } catch (Exception e) {
+            throw new ConfigurationException("Unable to access repositoryPath " + repositoryPath, e);
+        }
+    }
+
+    /**
+     */
+    public HookResult doRcpt(SMTPSession session, MailAddress sender, MailAddress rcpt) {
+        if ((wNetworks == null) || (!wNetworks.matchInetNetwork(session.getRemoteAddress().getAddress().getHostAddress()))) {
+            return super.doRcpt(session, sender, rcpt);
+        } else {
+            session.getLogger().info("IpAddress " + session.getRemoteAddress().getAddress().getHostAddress() + " is whitelisted. Skip greylisting.");
+        }
+        return new HookResult(HookReturnCode.DECLINED);
+    }
+
+    @Override
+    protected void flushFailed(Exception e) {
+        serviceLog.error("Unable to persist the greylist triplets, will retry on next flush", e);
+    }
+
+    @Override
+    public void init(Configuration handlerConfiguration) throws ConfigurationException {
+        try {
+            setTempBlockTime(TimeConverter.getMilliSeconds(handlerConfiguration.getString("tempBlockTime", "1 hour")));
+            setAutoWhiteListLifeTime(TimeConverter.getMilliSeconds(handlerConfiguration.getString("autoWhiteListLifeTime", "36 days")));
+            setUnseenLifeTime(TimeConverter.getMilliSeconds(handlerConfiguration.getString("unseenLifeTime", "4 hours")));
+            setFlushInterval(TimeConverter.getMilliSeconds(handlerConfiguration.getString("flushInterval", "30 seconds")));
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException(e.getMessage());
+        }
+        setMaxTriplets(handlerConfiguration.getInt("maxTriplets", 100000));
+
+        String nets = handlerConfiguration.getString("whitelistedNetworks");
+        if (nets != null) {
+            String[] whitelistArray = nets.split(",");
+            List<String> wList = new ArrayList<String>(whitelistArray.length);
+            for (String aWhitelistArray : whitelistArray) {
+                wList.add(aWhitelistArray.trim());
+            }
+            wNetworks = new NetMatcher(wList, dnsService);
+            serviceLog.info("Whitelisted addresses: " + getWhiteListedNetworks().toString());
+        }
+
+        setRepository(createRepository(handlerConfiguration));
+        super.init(handlerConfiguration);
+        serviceLog.info("Loaded " + size() + " greylist triplets");
+    }
+}
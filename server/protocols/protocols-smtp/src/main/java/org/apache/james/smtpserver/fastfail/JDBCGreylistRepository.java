@@ -0,0 +1,224 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.smtpserver.fastfail;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.james.protocols.smtp.core.fastfail.GreylistRepository;
+import org.apache.james.protocols.smtp.core.fastfail.GreylistTriplet;
+import org.apache.james.util.sql.JDBCUtil;
+import org.apache.james.util.sql.SqlResources;
+import org.slf4j.Logger;
+
+/**
+ * {@link GreylistRepository} which stores the triplets in the same table as the {@link JDBCGreylistHandler}, using
+ * the "GreyList" statements of the sqlResources.xml file.
+ */
+public class JDBCGreylistRepository implements GreylistRepository {
+
+    private final DataSource datasource;
+
+    private final Logger serviceLog;
+
+    private String selectAllQuery;
+
+    private String insertQuery;
+
+    private String updateQuery;
+
+    private String deleteTripletQuery;
+
+    /**
+     * Contains all of the sql strings for this component.
+     */
+    private final SqlResources sqlQueries = new SqlResources();
+
+    /** Holds value of property sqlParameters. */
+    private final Map<String, String> sqlParameters = new HashMap<String, String>();
+
+    /**
+     * The JDBCUtil helper class
+     */
+    private final JDBCUtil theJDBCUtil = new JDBCUtil() {
+        protected void delegatedLog(String logString) {
+            serviceLog.debug("JDBCGreylistRepository: " + logString);
+        }
+    };
+
+    public JDBCGreylistRepository(DataSource datasource, Logger serviceLog) {
+        this.datasource = datasource;
+        this.serviceLog = serviceLog;
+    }
+
+    /**
+     * Initializes the sql statements from the given SqlResources file and create the table if needed
+     * 
+     * @param sqlFile
+     *            The sqlResources.xml file
+     * @throws Exception
+     *             If any error occurs
+     */
+    public void init(File sqlFile) throws Exception {
+        Connection conn = datasource.getConnection();
+        try {
+            sqlQueries.init(sqlFile.getCanonicalFile(), "GreyList", conn, sqlParameters);
+
+            selectAllQuery = sqlQueries.getSqlString("selectAllQuery", true);
+            insertQuery = sqlQueries.getSqlString("insertQuery", true);
+            updateQuery = sqlQueries.getSqlString("updateQuery", true);
+            deleteTripletQuery = sqlQueries.getSqlString("deleteTripletQuery", true);
+        } finally {
+            theJDBCUtil.closeJDBCConnection(conn);
+        }
+        createTable("greyListTableName", "createGreyListTable");
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.GreylistRepository#load()
+     */
+    public Collection<GreylistTriplet> load() throws SQLException {
+        List<GreylistTriplet> triplets = new ArrayList<GreylistTriplet>();
+        Connection conn = datasource.getConnection();
+        PreparedStatement mappingStmt = null;
+        try {
+            mappingStmt = conn.prepareStatement(selectAllQuery);
+            ResultSet mappingRS = null;
+            try {
+                mappingRS = mappingStmt.executeQuery();
+                while (mappingRS.next()) {
+                    triplets.add(new GreylistTriplet(mappingRS.getString(1), mappingRS.getString(2), mappingRS.getString(3),
+                        mappingRS.getInt(4), mappingRS.getTimestamp(5).getTime()));
+                }
+            } finally {
+                theJDBCUtil.closeJDBCResultSet(mappingRS);
+            }
+        } finally {
+            theJDBCUtil.closeJDBCStatement(mappingStmt);
+            theJDBCUtil.closeJDBCConnection(conn);
+        }
+        return triplets;
+    }
+
+    /**
+     * Update each triplet and insert it when it does not exist yet.
+     * 
+     * @see org.apache.james.protocols.smtp.core.fastfail.GreylistRepository#store(java.util.Collection)
+     */
+    public void store(Collection<GreylistTriplet> triplets) throws SQLException {
+        Connection conn = datasource.getConnection();
+        PreparedStatement updateStmt = null;
+        PreparedStatement insertStmt = null;
+        try {
+            updateStmt = conn.prepareStatement(updateQuery);
+            insertStmt = conn.prepareStatement(insertQuery);
+            for (GreylistTriplet triplet : triplets) {
+                updateStmt.setTimestamp(1, new Timestamp(triplet.getTime()));
+                updateStmt.setInt(2, triplet.getCount());
+                updateStmt.setString(3, triplet.getIpAddress());
+                updateStmt.setString(4, triplet.getSender());
+                updateStmt.setString(5, triplet.getRecipient());
+                if (updateStmt.executeUpdate() == 0) {
+                    insertStmt.setString(1, triplet.getIpAddress());
+                    insertStmt.setString(2, triplet.getSender());
+                    insertStmt.setString(3, triplet.getRecipient());
+                    insertStmt.setInt(4, triplet.getCount());
+                    insertStmt.setTimestamp(5, new Timestamp(triplet.getTime()));
+                    insertStmt.executeUpdate();
+                }
+            }
+        } finally {
+            theJDBCUtil.closeJDBCStatement(insertStmt);
+            theJDBCUtil.closeJDBCStatement(updateStmt);
+            theJDBCUtil.closeJDBCConnection(conn);
+        }
+    }
+
+    /**
+     * @see org.apache.james.protocols.smtp.core.fastfail.GreylistRepository#remove(java.util.Collection)
+     */
+    public void remove(Collection<GreylistTriplet> triplets) throws SQLException {
+        Connection conn = datasource.getConnection();
+        PreparedStatement mappingStmt = null;
+        try {
+            mappingStmt = conn.prepareStatement(deleteTripletQuery);
+            for (GreylistTriplet triplet : triplets) {
+                mappingStmt.setString(1, triplet.getIpAddress());
+                mappingStmt.setString(2, triplet.getSender());
+                mappingStmt.setString(3, triplet.getRecipient());
+                mappingStmt.addBatch();
+            }
+            mappingStmt.executeBatch();
+        } finally {
+            theJDBCUtil.closeJDBCStatement(mappingStmt);
+            theJDBCUtil.closeJDBCConnection(conn);
+        }
+    }
+
+    /**
+     * Create the table if not exists.
+     * 
+     * @param tableNameSqlStringName
+     *            The tableSqlname
+     * @param createSqlStringName
+     *            The createSqlname
+     * @return true or false
+     * @throws SQLException
+     */
+    private boolean createTable(String tableNameSqlStringName, String createSqlStringName) throws SQLException {
+        Connection conn = datasource.getConnection();
+        try {
+            String tableName = sqlQueries.getSqlString(tableNameSqlStringName, true);
+
+            DatabaseMetaData dbMetaData = conn.getMetaData();
+
+            // Try UPPER, lower, and MixedCase, to see if the table is there.
+            if (theJDBCUtil.tableExists(dbMetaData, tableName)) {
+                return false;
+            }
+
+            PreparedStatement createStatement = null;
+
+            try {
+                createStatement = conn.prepareStatement(sqlQueries.getSqlString(createSqlStringName, true));
+                createStatement.execute();
+
+                serviceLog.info("Created table '" + tableName + "' using sqlResources string '" + createSqlStringName + "'.");
+            } finally {
+                theJDBCUtil.closeJDBCStatement(createStatement);
+            }
+            return true;
+        } finally {
+            theJDBCUtil.closeJDBCConnection(conn);
+        }
+    }
+}
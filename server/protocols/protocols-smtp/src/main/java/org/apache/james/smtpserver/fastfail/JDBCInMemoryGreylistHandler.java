@@ -0,0 +1,66 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.smtpserver.fastfail;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.james.protocols.smtp.core.fastfail.GreylistRepository;
+
+/**
+ * {@link InMemoryGreylistHandler} which persists the triplets to the database table used by the
+ * {@link JDBCGreylistHandler}, so both can be swapped without losing the auto whitelist. Unlike the
+ * {@link JDBCGreylistHandler}, the database is only accessed on startup and by the flush thread.
+ */
+public class JDBCInMemoryGreylistHandler extends InMemoryGreylistHandler {
+
+    private DataSource datasource = null;
+
+    /**
+     * Set the datasources.
+     * 
+     * @param datasource
+     *            The datasource
+     */
+    @Inject
+    public void setDataSource(DataSource datasource) {
+        this.datasource = datasource;
+    }
+
+    @Override
+    protected GreylistRepository createRepository(Configuration handlerConfiguration) throws ConfigurationException {
+        String sqlFileUrl = handlerConfiguration.getString("sqlFile", null);
+        if (sqlFileUrl == null) {
+            throw new ConfigurationException("sqlFile is not configured");
+        }
+        if (!sqlFileUrl.startsWith("file://") && !sqlFileUrl.startsWith("classpath:")) {
+            throw new ConfigurationException("Malformed sqlFile - Must be of the format \"file://<filename>\".");
+        }
+        try {
+            JDBCGreylistRepository repository = new JDBCGreylistRepository(datasource, getLog());
+            repository.init(getFileSystem().getFile(sqlFileUrl));
+            return repository;
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to init datasource", e);
+        }
+    }
+}
@@ -19,11 +19,16 @@
 
 package org.apache.james.smtpserver.fastfail;
 
+import java.net.InetSocketAddress;
+
+import javax.inject.Inject;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
 import org.apache.james.protocols.api.ProtocolSession.State;
 import org.apache.james.protocols.api.handler.ProtocolHandler;
 import org.apache.james.protocols.smtp.SMTPSession;
@@ -32,6 +37,7 @@ import org.apache.james.protocols.smtp.hook.HookResult;
 import org.apache.james.protocols.smtp.hook.HookReturnCode;
 import org.apache.james.smtpserver.JamesMessageHook;
 import org.apache.james.util.scanner.SpamAssassinInvoker;
+import org.apache.james.util.scanner.SpamdClient;
 import org.apache.mailet.Mail;
 
 /**
@@ -58,10 +64,15 @@ import org.apache.mailet.Mail;
  *   &lt;spamdPort&gt;783&lt;/spamdPort&gt; <br>
  *   &lt;spamdRejectionHits&gt;15.0&lt;/spamdRejectionHits&gt;
  *   &lt;checkAuthNetworks&gt;false&lt;/checkAuthNetworks&gt;
+ *   &lt;spamdMaxConnections&gt;8&lt;/spamdMaxConnections&gt;
  * &lt;/handler&gt;
  * </pre>
  * 
  * </p>
+ * <p>
+ * At most <code>spamdMaxConnections</code> messages are checked concurrently, and spamd is not called anymore for
+ * a while after several consecutive failures.
+ * </p>
  */
 public class SpamAssassinHandler implements JamesMessageHook, ProtocolHandler {
 
@@ -74,6 +85,18 @@ public class SpamAssassinHandler implements JamesMessageHook, ProtocolHandler {
     /** The hits on which the message get rejected */
     private double spamdRejectionHits = 0.0;
 
+    /** The maximum number of concurrent connections to spamd */
+    private int spamdMaxConnections = 8;
+
+    private MetricFactory metricFactory = new NoopMetricFactory();
+
+    private SpamdClient spamdClient;
+
+    @Inject
+    public void setMetricFactory(MetricFactory metricFactory) {
+        this.metricFactory = metricFactory;
+    }
+
     /**
      * Set the host the spamd daemon is running at
      * 
@@ -82,6 +105,7 @@ public class SpamAssassinHandler implements JamesMessageHook, ProtocolHandler {
      */
     public void setSpamdHost(String spamdHost) {
         this.spamdHost = spamdHost;
+        resetSpamdClient();
     }
 
     /**
@@ -92,6 +116,18 @@ public class SpamAssassinHandler implements JamesMessageHook, ProtocolHandler {
      */
     public void setSpamdPort(int spamdPort) {
         this.spamdPort = spamdPort;
+        resetSpamdClient();
+    }
+
+    /**
+     * Set the maximum number of concurrent connections to spamd
+     * 
+     * @param spamdMaxConnections
+     *            the maximum number of connections
+     */
+    public void setSpamdMaxConnections(int spamdMaxConnections) {
+        this.spamdMaxConnections = spamdMaxConnections;
+        resetSpamdClient();
     }
 
     /**
@@ -113,7 +149,7 @@ public class SpamAssassinHandler implements JamesMessageHook, ProtocolHandler {
 
         try {
             MimeMessage message = mail.getMessage();
-            SpamAssassinInvoker sa = new SpamAssassinInvoker(spamdHost, spamdPort);
+            SpamAssassinInvoker sa = new SpamAssassinInvoker(getSpamdClient());
             sa.scanMail(message);
 
             // Add the headers
@@ -150,10 +186,29 @@ public class SpamAssassinHandler implements JamesMessageHook, ProtocolHandler {
         setSpamdHost(config.getString("spamdHost", "localhost"));
         setSpamdPort(config.getInt("spamdPort", 783));
         setSpamdRejectionHits(config.getDouble("spamdRejectionHits", 0.0));        
+        setSpamdMaxConnections(config.getInt("spamdMaxConnections", 8));
     }
 
     @Override
     public void destroy() {
-        // nothing to-do
+        resetSpamdClient();
+    }
+
+    private synchronized SpamdClient getSpamdClient() {
+        if (spamdClient == null) {
+            spamdClient = new SpamdClient(SpamdClient.poolBuilder()
+                    .address(new InetSocketAddress(spamdHost, spamdPort))
+                    .maxConnectionsPerHost(spamdMaxConnections)
+                    .build(),
+                metricFactory);
+        }
+        return spamdClient;
+    }
+
+    private synchronized void resetSpamdClient() {
+        if (spamdClient != null) {
+            spamdClient.close();
+            spamdClient = null;
+        }
     }
 }
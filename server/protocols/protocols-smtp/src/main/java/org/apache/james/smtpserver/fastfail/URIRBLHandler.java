@@ -19,11 +19,12 @@
 package org.apache.james.smtpserver.fastfail;
 
 import java.io.IOException;
-import java.net.UnknownHostException;
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.inject.Inject;
 import javax.mail.MessagingException;
@@ -34,6 +35,8 @@ import javax.mail.internet.MimePart;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.james.dnsservice.api.AsyncDNSService;
+import org.apache.james.dnsservice.api.AsyncDNSServiceAdapter;
 import org.apache.james.dnsservice.api.DNSService;
 import org.apache.james.protocols.api.ProtocolSession.State;
 import org.apache.james.protocols.api.handler.ProtocolHandler;
@@ -46,6 +49,8 @@ import org.apache.mailet.Mail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * Extract domains from message and check against URIRBLServer. For more
  * informations see <a href="http://www.surbl.org">www.surbl.org</a>
@@ -197,32 +202,45 @@ public class URIRBLHandler implements JamesMessageHook, ProtocolHandler {
 
             HashSet<String> domains = scanMailForDomains(message, session);
 
+            // Query every domain on every server at once, then report the first listing in scan order
+            AsyncDNSService asyncDns = AsyncDNSServiceAdapter.of(dnsService);
+            List<String[]> queries = new ArrayList<String[]>();
+            List<ListenableFuture<InetAddress>> lookups = new ArrayList<ListenableFuture<InetAddress>>();
             for (String domain : domains) {
-                Iterator<String> uRbl = uriRbl.iterator();
-                String target = domain;
+                for (String uRblServer : uriRbl) {
+                    String address = domain + "." + uRblServer;
 
-                while (uRbl.hasNext()) {
-                    try {
-                        String uRblServer = uRbl.next();
-                        String address = target + "." + uRblServer;
+                    if (session.getLogger().isDebugEnabled()) {
+                        session.getLogger().debug("Lookup " + address);
+                    }
 
-                        if (session.getLogger().isDebugEnabled()) {
-                            session.getLogger().debug("Lookup " + address);
-                        }
+                    queries.add(new String[] { domain, uRblServer });
+                    lookups.add(asyncDns.getByNameAsync(address));
+                }
+            }
 
-                        dnsService.getByName(address);
+            try {
+                for (int i = 0; i < lookups.size(); i++) {
+                    try {
+                        lookups.get(i).get();
 
                         // store server name for later use
-                        session.setAttachment(URBLSERVER, uRblServer, State.Transaction);
-                        session.setAttachment(LISTED_DOMAIN, target, State.Transaction);
+                        session.setAttachment(URBLSERVER, queries.get(i)[1], State.Transaction);
+                        session.setAttachment(LISTED_DOMAIN, queries.get(i)[0], State.Transaction);
 
                         return true;
-
-                    } catch (UnknownHostException uhe) {
+                    } catch (ExecutionException e) {
                         // domain not found. keep processing
                     }
                 }
+            } finally {
+                // the remaining lookups are not needed once a listing is found
+                for (ListenableFuture<InetAddress> lookup : lookups) {
+                    lookup.cancel(true);
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (MessagingException e) {
             session.getLogger().error(e.getMessage());
         } catch (IOException e) {
@@ -454,7 +454,7 @@ public class SMTPServerTest {
 
         assertThat(capabilitieslist)
             .as("capabilities")
-            .hasSize(3);
+            .hasSize(4);
         assertThat(capabilitieslist.contains("PIPELINING"))
             .as("capabilities present PIPELINING")
             .isTrue();
@@ -464,6 +464,9 @@ public class SMTPServerTest {
         assertThat(capabilitieslist.contains("8BITMIME"))
             .as("capabilities present 8BITMIME")
             .isTrue();
+        assertThat(capabilitieslist.contains("CHUNKING"))
+            .as("capabilities present CHUNKING")
+            .isTrue();
 
         smtpProtocol.setSender("mail@localhost");
         smtpProtocol.addRecipient("mail@localhost");
@@ -478,6 +481,36 @@ public class SMTPServerTest {
             .isNotNull();
     }
 
+    @Test
+    public void testBdatMailSend() throws Exception {
+        init(smtpConfiguration);
+
+        InetSocketAddress bindedAddress = new ProtocolServerUtils(smtpServer).retrieveBindedAddress();
+        Socket client = new Socket(bindedAddress.getAddress().getHostAddress(), bindedAddress.getPort());
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            OutputStream out = client.getOutputStream();
+            String firstChunk = "Subject: test\r\n\r\n";
+            String lastChunk = ".Body starting with a dot\r\n";
+
+            assertThat(in.readLine()).startsWith("220");
+            out.write(("HELO localhost\r\nMAIL FROM:<mail@localhost>\r\nRCPT TO:<mail@localhost>\r\n"
+                + "BDAT " + firstChunk.length() + "\r\n" + firstChunk
+                + "BDAT " + lastChunk.length() + " LAST\r\n" + lastChunk).getBytes());
+            out.flush();
+            for (int i = 0; i < 5; i++) {
+                assertThat(in.readLine()).startsWith("250");
+            }
+        } finally {
+            client.close();
+        }
+
+        Mail mail = queue.getLastMail();
+        assertThat(mail).as("mail received by mail server").isNotNull();
+        assertThat(mail.getMessage().getSubject()).isEqualTo("test");
+        assertThat(mail.getMessage().getContent()).isEqualTo(".Body starting with a dot\r\n");
+    }
+
     @Test
     public void testStartTLSInEHLO() throws Exception {
         smtpConfiguration.setStartTLS();
@@ -502,10 +535,10 @@ public class SMTPServerTest {
 
         assertThat(capabilitieslist)
             .as("capabilities")
-            .hasSize(4);
+            .hasSize(5);
         assertThat(capabilitieslist)
-            .as("capabilities present PIPELINING ENHANCEDSTATUSCODES 8BITMIME STARTTLS")
-            .containsOnly("PIPELINING", "ENHANCEDSTATUSCODES", "8BITMIME", "STARTTLS");
+            .as("capabilities present PIPELINING ENHANCEDSTATUSCODES 8BITMIME CHUNKING STARTTLS")
+            .containsOnly("PIPELINING", "ENHANCEDSTATUSCODES", "8BITMIME", "CHUNKING", "STARTTLS");
 
         smtpProtocol.quit();
         smtpProtocol.disconnect();
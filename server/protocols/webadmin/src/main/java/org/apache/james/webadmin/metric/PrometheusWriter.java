@@ -0,0 +1,194 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.webadmin.metric;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes metric samples in the Prometheus text exposition format (version
+ * 0.0.4) straight to the underlying writer.
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary");
+
+        private final String value;
+
+        Type(String value) {
+            this.value = value;
+        }
+    }
+
+    private final Writer writer;
+    private final String prefix;
+    private final Map<String, String> declaredFamilies;
+
+    public PrometheusWriter(Writer writer, String prefix) {
+        this.writer = writer;
+        this.prefix = prefix;
+        this.declaredFamilies = new HashMap<>();
+    }
+
+    /**
+     * Declares the type of a metric family. Returns the sanitized family name
+     * to use for its samples.
+     */
+    public String family(String name, Type type) throws IOException {
+        return family(name, type, name);
+    }
+
+    /**
+     * Declares the type of a metric family on behalf of a source metric.
+     * Several samples of the same source may share the family, but a family
+     * can only be declared once: returns null when another source already
+     * declared the same sanitized family, in which case its samples must be
+     * skipped.
+     */
+    public String family(String name, Type type, String source) throws IOException {
+        String family = sanitize(name);
+        String owner = type.value + ' ' + source;
+        String declaringOwner = declaredFamilies.get(family);
+        if (declaringOwner != null) {
+            return declaringOwner.equals(owner) ? family : null;
+        }
+        declaredFamilies.put(family, owner);
+        writer.write("# TYPE ");
+        writer.write(family);
+        writer.write(' ');
+        writer.write(type.value);
+        writer.write('\n');
+        return family;
+    }
+
+    public void sample(String family, Map<String, String> labels, double value) throws IOException {
+        sample(family, "", labels, null, null, value);
+    }
+
+    public void sample(String family, String suffix, Map<String, String> labels, double value) throws IOException {
+        sample(family, suffix, labels, null, null, value);
+    }
+
+    /**
+     * Writes a sample with an additional label, typically the quantile of a
+     * summary.
+     */
+    public void sample(String family, String suffix, Map<String, String> labels, String extraLabel, String extraValue, double value) throws IOException {
+        writer.write(family);
+        writer.write(suffix);
+        if (!labels.isEmpty() || extraLabel != null) {
+            writer.write('{');
+            boolean first = true;
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                first = label(first, label.getKey(), label.getValue());
+            }
+            if (extraLabel != null) {
+                label(first, extraLabel, extraValue);
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(format(value));
+        writer.write('\n');
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private boolean label(boolean first, String name, String value) throws IOException {
+        if (!first) {
+            writer.write(',');
+        }
+        writer.write(sanitizeLabel(name));
+        writer.write("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                writer.write("\\\\");
+                break;
+            case '"':
+                writer.write("\\\"");
+                break;
+            case '\n':
+                writer.write("\\n");
+                break;
+            default:
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+        return false;
+    }
+
+    /**
+     * Converts a James metric name (camelCase, dashes...) to a snake case
+     * Prometheus name.
+     */
+    String sanitize(String name) {
+        StringBuilder builder = new StringBuilder(prefix.length() + name.length() + 8).append(prefix);
+        char previous = '_';
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && (Character.isLowerCase(previous) || Character.isDigit(previous))) {
+                builder.append('_');
+            }
+            char lower = Character.toLowerCase(c);
+            if ((lower >= 'a' && lower <= 'z') || (lower >= '0' && lower <= '9')) {
+                builder.append(lower);
+            } else if (builder.charAt(builder.length() - 1) != '_') {
+                builder.append('_');
+            }
+            previous = c;
+        }
+        return builder.toString();
+    }
+
+    private String sanitizeLabel(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (i > 0 && c >= '0' && c <= '9');
+            builder.append(valid ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,282 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.webadmin.routes;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.dropwizard.DropWizardMetricFactory;
+import org.apache.james.webadmin.Constants;
+import org.apache.james.webadmin.Routes;
+import org.apache.james.webadmin.metric.PrometheusWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+
+import spark.Request;
+import spark.Response;
+import spark.Service;
+
+/**
+ * Exposes the DropWizard metrics and the statistics of the JMX enabled thread
+ * pools in the Prometheus text format.
+ *
+ * The response is written while the metrics are read. A scrape stops once its
+ * time budget is spent; the samples written so far are kept and the
+ * <code>james_scrape_truncated</code> gauge is set to 1.
+ */
+public class MetricsRoutes implements Routes {
+
+    public static final String METRICS = "/metrics";
+    public static final long DEFAULT_SCRAPE_BUDGET_MILLIS = 5000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRoutes.class);
+    private static final String PREFIX = "james_";
+    private static final String THREAD_POOL_PATTERN = "org.apache.james:threadpool=*,*";
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Map<String, Double> QUANTILES = ImmutableMap.<String, Double>builder()
+        .put("0.5", 0.5)
+        .put("0.75", 0.75)
+        .put("0.95", 0.95)
+        .put("0.98", 0.98)
+        .put("0.99", 0.99)
+        .put("0.999", 0.999)
+        .build();
+
+    private enum ThreadPoolAttribute {
+        ACTIVE_THREADS("ActiveThreads", "threadPoolActiveThreads", PrometheusWriter.Type.GAUGE),
+        MAXIMAL_THREADS("MaximalThreads", "threadPoolMaximalThreads", PrometheusWriter.Type.GAUGE),
+        ACTIVE_TASKS("ActiveTasks", "threadPoolActiveTasks", PrometheusWriter.Type.GAUGE),
+        QUEUED_TASKS("QueuedTasks", "threadPoolQueuedTasks", PrometheusWriter.Type.GAUGE),
+        TOTAL_TASKS("TotalTasks", "threadPoolTasksTotal", PrometheusWriter.Type.COUNTER),
+        AVERAGE_TASK_TIME("AverageTaskTime", "threadPoolAverageTaskTimeMilliseconds", PrometheusWriter.Type.GAUGE);
+
+        private final String attribute;
+        private final String family;
+        private final PrometheusWriter.Type type;
+
+        ThreadPoolAttribute(String attribute, String family, PrometheusWriter.Type type) {
+            this.attribute = attribute;
+            this.family = family;
+            this.type = type;
+        }
+    }
+
+    private static class Scrape {
+        private final long start;
+        private final long deadline;
+        private boolean truncated;
+
+        private Scrape(long budgetNanos) {
+            this.start = System.nanoTime();
+            this.deadline = start + budgetNanos;
+        }
+
+        private boolean isOver() {
+            if (!truncated && System.nanoTime() - deadline > 0) {
+                truncated = true;
+            }
+            return truncated;
+        }
+    }
+
+    private final DropWizardMetricFactory metricFactory;
+    private final MBeanServer mBeanServer;
+    private final long budgetNanos;
+
+    @Inject
+    public MetricsRoutes(DropWizardMetricFactory metricFactory) {
+        this(metricFactory, ManagementFactory.getPlatformMBeanServer(), DEFAULT_SCRAPE_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @VisibleForTesting
+    MetricsRoutes(DropWizardMetricFactory metricFactory, MBeanServer mBeanServer, long budget, TimeUnit unit) {
+        this.metricFactory = metricFactory;
+        this.mBeanServer = mBeanServer;
+        this.budgetNanos = unit.toNanos(budget);
+    }
+
+    @Override
+    public void define(Service service) {
+        service.get(METRICS, this::scrape);
+    }
+
+    private String scrape(Request request, Response response) throws IOException {
+        response.status(200);
+        response.type(PrometheusWriter.CONTENT_TYPE);
+        Writer writer = new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8);
+        write(new PrometheusWriter(writer, PREFIX), new Scrape(budgetNanos));
+        writer.flush();
+        return Constants.EMPTY_BODY;
+    }
+
+    @VisibleForTesting
+    void write(Writer writer) throws IOException {
+        write(new PrometheusWriter(writer, PREFIX), new Scrape(budgetNanos));
+        writer.flush();
+    }
+
+    private void write(PrometheusWriter prometheus, Scrape scrape) throws IOException {
+        writeRegistry(prometheus, scrape);
+        writeThreadPools(prometheus, scrape);
+
+        if (scrape.truncated) {
+            LOGGER.warn("Metrics scrape exceeded its budget of {} ms, the response was truncated", TimeUnit.NANOSECONDS.toMillis(budgetNanos));
+        }
+        String durationFamily = prometheus.family("scrapeDurationSeconds", PrometheusWriter.Type.GAUGE);
+        prometheus.sample(durationFamily, Collections.emptyMap(), (System.nanoTime() - scrape.start) / NANOS_PER_SECOND);
+        String truncatedFamily = prometheus.family("scrapeTruncated", PrometheusWriter.Type.GAUGE);
+        prometheus.sample(truncatedFamily, Collections.emptyMap(), scrape.truncated ? 1 : 0);
+        prometheus.flush();
+    }
+
+    private void writeRegistry(PrometheusWriter prometheus, Scrape scrape) throws IOException {
+        MetricRegistry registry = metricFactory.getMetricRegistry();
+
+        for (Map.Entry<String, Counter> counter : registry.getCounters().entrySet()) {
+            if (scrape.isOver()) {
+                return;
+            }
+            MetricName name = metricFactory.getMetricName(counter.getKey());
+            String family = family(prometheus, name.getName(), PrometheusWriter.Type.GAUGE, "counter " + name.getName());
+            if (family != null) {
+                prometheus.sample(family, name.getTags(), counter.getValue().getCount());
+            }
+        }
+
+        for (@SuppressWarnings("rawtypes") Map.Entry<String, Gauge> gauge : registry.getGauges().entrySet()) {
+            if (scrape.isOver()) {
+                return;
+            }
+            Object value = gauge.getValue().getValue();
+            if (value instanceof Number || value instanceof Boolean) {
+                MetricName name = metricFactory.getMetricName(gauge.getKey());
+                String family = family(prometheus, name.getName(), PrometheusWriter.Type.GAUGE, "gauge " + name.getName());
+                if (family != null) {
+                    prometheus.sample(family, name.getTags(), toDouble(value));
+                }
+            }
+        }
+
+        for (Map.Entry<String, Meter> meter : registry.getMeters().entrySet()) {
+            if (scrape.isOver()) {
+                return;
+            }
+            MetricName name = metricFactory.getMetricName(meter.getKey());
+            String family = family(prometheus, name.getName() + "_total", PrometheusWriter.Type.COUNTER, "meter " + name.getName());
+            if (family != null) {
+                prometheus.sample(family, name.getTags(), meter.getValue().getCount());
+            }
+        }
+
+        for (Map.Entry<String, Histogram> histogram : registry.getHistograms().entrySet()) {
+            if (scrape.isOver()) {
+                return;
+            }
+            MetricName name = metricFactory.getMetricName(histogram.getKey());
+            String family = family(prometheus, name.getName(), PrometheusWriter.Type.SUMMARY, "histogram " + name.getName());
+            if (family != null) {
+                writeSummary(prometheus, family, name, histogram.getValue().getSnapshot(), histogram.getValue().getCount(), 1);
+            }
+        }
+
+        for (Map.Entry<String, Timer> timer : registry.getTimers().entrySet()) {
+            if (scrape.isOver()) {
+                return;
+            }
+            MetricName name = metricFactory.getMetricName(timer.getKey());
+            String family = family(prometheus, name.getName() + "_seconds", PrometheusWriter.Type.SUMMARY, "timer " + name.getName());
+            if (family != null) {
+                writeSummary(prometheus, family, name, timer.getValue().getSnapshot(), timer.getValue().getCount(), NANOS_PER_SECOND);
+            }
+        }
+    }
+
+    private String family(PrometheusWriter prometheus, String name, PrometheusWriter.Type type, String source) throws IOException {
+        String family = prometheus.family(name, type, source);
+        if (family == null) {
+            LOGGER.warn("Skipping {}: its Prometheus name collides with another metric", source);
+        }
+        return family;
+    }
+
+    private void writeSummary(PrometheusWriter prometheus, String family, MetricName name, Snapshot snapshot, long count, double unit) throws IOException {
+        for (Map.Entry<String, Double> quantile : QUANTILES.entrySet()) {
+            prometheus.sample(family, "", name.getTags(), "quantile", quantile.getKey(), snapshot.getValue(quantile.getValue()) / unit);
+        }
+        // DropWizard does not keep the total of the recorded values, estimate it from the snapshot mean
+        prometheus.sample(family, "_sum", name.getTags(), snapshot.getMean() * count / unit);
+        prometheus.sample(family, "_count", name.getTags(), count);
+    }
+
+    private void writeThreadPools(PrometheusWriter prometheus, Scrape scrape) throws IOException {
+        Set<ObjectName> threadPools;
+        try {
+            threadPools = mBeanServer.queryNames(new ObjectName(THREAD_POOL_PATTERN), null);
+        } catch (JMException e) {
+            LOGGER.warn("Could not list the thread pools", e);
+            return;
+        }
+
+        for (ThreadPoolAttribute attribute : ThreadPoolAttribute.values()) {
+            String family = prometheus.family(attribute.family, attribute.type);
+            for (ObjectName threadPool : threadPools) {
+                if (scrape.isOver()) {
+                    return;
+                }
+                try {
+                    Object value = mBeanServer.getAttribute(threadPool, attribute.attribute);
+                    prometheus.sample(family, threadPool.getKeyPropertyList(), toDouble(value));
+                } catch (JMException e) {
+                    LOGGER.debug("Could not read {} of {}", attribute.attribute, threadPool, e);
+                }
+            }
+        }
+    }
+
+    private double toDouble(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        return ((Number) value).doubleValue();
+    }
+}
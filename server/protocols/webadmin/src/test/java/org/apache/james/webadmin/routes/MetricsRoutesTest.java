@@ -0,0 +1,202 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.webadmin.routes;
+
+import static com.jayway.restassured.RestAssured.when;
+import static org.apache.james.webadmin.WebAdminServer.NO_CONFIGURATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.apache.james.metrics.api.MetricName;
+import org.apache.james.metrics.dropwizard.DropWizardMetricFactory;
+import org.apache.james.metrics.logger.DefaultMetricFactory;
+import org.apache.james.webadmin.WebAdminServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.builder.RequestSpecBuilder;
+
+public class MetricsRoutesTest {
+
+    public interface FakeThreadPoolMBean {
+        int getActiveThreads();
+
+        int getTotalTasks();
+    }
+
+    public static class FakeThreadPool implements FakeThreadPoolMBean {
+        @Override
+        public int getActiveThreads() {
+            return 3;
+        }
+
+        @Override
+        public int getTotalTasks() {
+            return 42;
+        }
+    }
+
+    private DropWizardMetricFactory metricFactory;
+    private MBeanServer mBeanServer;
+    private WebAdminServer webAdminServer;
+
+    @Before
+    public void setUp() throws Exception {
+        metricFactory = new DropWizardMetricFactory(new MetricRegistry());
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+    }
+
+    @After
+    public void tearDown() {
+        if (webAdminServer != null) {
+            webAdminServer.destroy();
+        }
+    }
+
+    @Test
+    public void shouldRenderTaggedTimersAsSummaries() throws Exception {
+        metricFactory.timer(MetricName.of("IMAP").tag("command", "FETCH")).update(2, TimeUnit.SECONDS);
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics).contains("# TYPE james_imap_seconds summary\n",
+            "james_imap_seconds{command=\"FETCH\",quantile=\"0.5\"} 2\n",
+            "james_imap_seconds_count{command=\"FETCH\"} 1\n");
+    }
+
+    @Test
+    public void shouldDeclareAFamilyOnlyOnce() throws Exception {
+        metricFactory.timer(MetricName.of("IMAP").tag("command", "FETCH")).update(2, TimeUnit.SECONDS);
+        metricFactory.timer(MetricName.of("IMAP").tag("command", "SELECT")).update(2, TimeUnit.SECONDS);
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics.split("# TYPE james_imap_seconds ", -1)).hasSize(2);
+    }
+
+    @Test
+    public void shouldRenderTheSumOfSummaries() throws Exception {
+        metricFactory.timer(MetricName.of("IMAP")).update(2, TimeUnit.SECONDS);
+        metricFactory.timer(MetricName.of("IMAP")).update(4, TimeUnit.SECONDS);
+        metricFactory.histogram(MetricName.of("messageSize")).update(10);
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics).contains("james_imap_seconds_sum 6\n",
+            "james_message_size_sum 10\n",
+            "james_message_size_count 1\n");
+    }
+
+    @Test
+    public void shouldSkipMetricsWhoseNameCollidesWithAnotherMetric() throws Exception {
+        metricFactory.counter(MetricName.of("queueSize")).increment();
+        metricFactory.gauge(MetricName.of("queue-size"), () -> 7);
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics.split("# TYPE james_queue_size ", -1)).hasSize(2);
+        assertThat(metrics).contains("james_queue_size 1\n")
+            .doesNotContain("james_queue_size 7\n");
+    }
+
+    @Test
+    public void shouldRenderCountersMetersAndGauges() throws Exception {
+        metricFactory.generate("spamdScanErrors").increment();
+        metricFactory.meter(MetricName.of("delivered")).mark(2);
+        metricFactory.gauge(MetricName.of("queueSize").tag("queue", "spool"), () -> 7);
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics).contains("# TYPE james_spamd_scan_errors gauge\njames_spamd_scan_errors 1\n",
+            "# TYPE james_delivered_total counter\njames_delivered_total 2\n",
+            "james_queue_size{queue=\"spool\"} 7\n");
+    }
+
+    @Test
+    public void shouldEscapeLabelValues() throws Exception {
+        metricFactory.counter(MetricName.of("counter").tag("value", "a\"b\\c")).increment();
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics).contains("james_counter{value=\"a\\\"b\\\\c\"} 1\n");
+    }
+
+    @Test
+    public void shouldRenderThreadPools() throws Exception {
+        mBeanServer.registerMBean(new FakeThreadPool(), new ObjectName("org.apache.james:type=server,threadpool=imap-executor"));
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics).contains("# TYPE james_thread_pool_tasks_total counter\n")
+            .containsPattern("james_thread_pool_active_threads\\{[^}]*threadpool=\"imap-executor\"[^}]*\\} 3\n")
+            .containsPattern("james_thread_pool_tasks_total\\{[^}]*\\} 42\n");
+    }
+
+    @Test
+    public void shouldTruncateTheScrapeOnceTheBudgetIsSpent() throws Exception {
+        metricFactory.generate("counter").increment();
+
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, -1, TimeUnit.SECONDS));
+
+        assertThat(metrics).doesNotContain("james_counter ")
+            .contains("james_scrape_truncated 1\n");
+    }
+
+    @Test
+    public void scrapeShouldNotBeTruncatedWithinBudget() throws Exception {
+        String metrics = scrape(new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+
+        assertThat(metrics).contains("james_scrape_truncated 0\n");
+    }
+
+    @Test
+    public void getMetricsShouldServeThePrometheusFormat() throws Exception {
+        metricFactory.generate("counter").increment();
+        webAdminServer = new WebAdminServer(new DefaultMetricFactory(), new MetricsRoutes(metricFactory, mBeanServer, 5, TimeUnit.SECONDS));
+        webAdminServer.configure(NO_CONFIGURATION);
+        webAdminServer.await();
+        RestAssured.requestSpecification = new RequestSpecBuilder()
+            .setPort(webAdminServer.getPort().toInt())
+            .build();
+
+        when()
+            .get(MetricsRoutes.METRICS)
+        .then()
+            .statusCode(200)
+            .contentType(containsString("text/plain; version=0.0.4"))
+            .body(containsString("james_counter 1\n"));
+    }
+
+    private String scrape(MetricsRoutes routes) throws Exception {
+        StringWriter writer = new StringWriter();
+        routes.write(writer);
+        return writer.toString();
+    }
+}